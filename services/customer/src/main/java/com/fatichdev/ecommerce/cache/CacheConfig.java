@@ -0,0 +1,28 @@
+package com.fatichdev.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String CUSTOMERS = "customers";
+
+    @Bean
+    public CacheManager cacheManager(CustomerCacheProperties properties) {
+        var cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        // Writes go through this service and evict, the TTL only bounds staleness across replicas
+        cacheManager.registerCustomCache(CUSTOMERS, Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+}
@@ -0,0 +1,15 @@
+package com.fatichdev.ecommerce.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.cache")
+public record CustomerCacheProperties(
+        @DefaultValue("10m")
+        Duration ttl,
+        @DefaultValue("100000")
+        long maxSize
+) {
+}
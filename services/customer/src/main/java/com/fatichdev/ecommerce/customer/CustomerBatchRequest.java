@@ -0,0 +1,13 @@
+package com.fatichdev.ecommerce.customer;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record CustomerBatchRequest(
+        @NotEmpty(message = "At least one customer ID is required")
+        @Size(max = 1000, message = "At most 1000 customers can be requested at once")
+        List<String> ids
+) {
+}
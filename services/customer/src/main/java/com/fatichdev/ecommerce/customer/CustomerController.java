@@ -1,17 +1,26 @@
 package com.fatichdev.ecommerce.customer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
 @RestController
 @RequestMapping("/api/v1/customers")
 @RequiredArgsConstructor
 public class CustomerController {
     private final CustomerService service;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<String> createCustomer(
@@ -29,8 +38,37 @@ public class CustomerController {
     }
 
     @GetMapping
-    public ResponseEntity<List<CustomerResponse>> findAll() {
-        return ResponseEntity.ok(service.findAllCustomers());
+    public ResponseEntity<CustomerPageResponse> findAll(
+            @RequestParam(value = "lastSeenId", required = false) String lastSeenId,
+            @RequestParam(value = "size", defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(service.findPage(lastSeenId, size));
+    }
+
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        StreamingResponseBody body = outputStream -> {
+            var writer = objectMapper.writerFor(CustomerResponse.class)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            service.exportCustomers(customer -> {
+                try {
+                    writer.writeValue(outputStream, customer);
+                    outputStream.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<CustomerResponse>> findAllByIds(
+            @RequestBody @Valid CustomerBatchRequest request
+    ) {
+        return ResponseEntity.ok(service.findAllByIds(request.ids()));
     }
 
     @GetMapping("/exists/{customer-id}")
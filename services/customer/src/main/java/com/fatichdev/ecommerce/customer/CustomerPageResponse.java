@@ -0,0 +1,9 @@
+package com.fatichdev.ecommerce.customer;
+
+import java.util.List;
+
+public record CustomerPageResponse(
+        List<CustomerResponse> customers,
+        String nextCursor
+) {
+}
@@ -1,6 +1,13 @@
 package com.fatichdev.ecommerce.customer;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.List;
+
 public interface CustomerRepository extends MongoRepository<Customer, String> {
+
+    List<Customer> findAllByOrderByIdAsc(Limit limit);
+
+    List<Customer> findByIdGreaterThanOrderByIdAsc(String lastSeenId, Limit limit);
 }
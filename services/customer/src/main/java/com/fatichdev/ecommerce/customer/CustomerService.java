@@ -4,9 +4,24 @@ import com.fatichdev.ecommerce.exception.CustomerNotFoundException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static com.fatichdev.ecommerce.cache.CacheConfig.CUSTOMERS;
 
 @Service
 @RequiredArgsConstructor
@@ -14,12 +29,21 @@ public class CustomerService {
 
     private final CustomerRepository repository;
     private final CustomerMapper mapper;
+    private final CacheManager cacheManager;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${application.listing.max-page-size:500}")
+    private int maxPageSize;
+
+    @Value("${application.listing.export-batch-size:500}")
+    private int exportBatchSize;
 
     public String createCustomer(CustomerRequest request) {
         var customer = repository.save(mapper.toCustomer(request));
         return customer.getId();
     }
 
+    @CacheEvict(cacheNames = CUSTOMERS, key = "#request.id")
     public void updateCustomer(CustomerRequest request) {
         var customer = repository.findById(request.id())
                 .orElseThrow(() -> new CustomerNotFoundException(
@@ -49,16 +73,36 @@ public class CustomerService {
 
     }
 
-    public List<CustomerResponse> findAllCustomers() {
-        return repository.findAll().stream()
+    public CustomerPageResponse findPage(String lastSeenId, int size) {
+        var pageSize = Math.max(1, Math.min(size, maxPageSize));
+        var customers = (lastSeenId == null
+                ? repository.findAllByOrderByIdAsc(Limit.of(pageSize))
+                : repository.findByIdGreaterThanOrderByIdAsc(lastSeenId, Limit.of(pageSize)))
+                .stream()
                 .map(mapper::fromCustomer)
                 .toList();
+        var nextCursor = customers.size() < pageSize ? null : customers.get(customers.size() - 1).id();
+        return new CustomerPageResponse(customers, nextCursor);
+    }
+
+    /**
+     * Walks the collection with one cursor in _id order. The driver fetches the next batch only once the
+     * consumer has taken the previous one, so a slow reader holds back the cursor instead of filling the heap.
+     */
+    public void exportCustomers(Consumer<CustomerResponse> consumer) {
+        var query = new Query()
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .cursorBatchSize(exportBatchSize);
+        try (var customers = mongoTemplate.stream(query, Customer.class)) {
+            customers.map(mapper::fromCustomer).forEach(consumer);
+        }
     }
 
     public Boolean existsById(String customerId) {
-        return repository.findById(customerId).isPresent();
+        return repository.existsById(customerId);
     }
 
+    @Cacheable(cacheNames = CUSTOMERS, key = "#customerId")
     public CustomerResponse findById(String customerId) {
         return repository.findById(customerId)
                 .map(mapper::fromCustomer)
@@ -67,6 +111,37 @@ public class CustomerService {
                 ));
     }
 
+    /**
+     * Resolves the customers served from the cache and loads the rest with a single $in query.
+     * Unknown ids are left out of the result, which keeps the order of the requested ids.
+     */
+    public List<CustomerResponse> findAllByIds(List<String> customerIds) {
+        var cache = Objects.requireNonNull(cacheManager.getCache(CUSTOMERS));
+        var ids = new LinkedHashSet<>(customerIds);
+        var found = new HashMap<String, CustomerResponse>();
+        var missing = new ArrayList<String>();
+        for (String id : ids) {
+            var cached = cache.get(id, CustomerResponse.class);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Customer customer : repository.findAllById(missing)) {
+                var response = mapper.fromCustomer(customer);
+                cache.put(customer.getId(), response);
+                found.put(customer.getId(), response);
+            }
+        }
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @CacheEvict(cacheNames = CUSTOMERS, key = "#customerId")
     public void deleteCustomer(String customerId) {
         if (!existsById(customerId)) {
             throw new CustomerNotFoundException(
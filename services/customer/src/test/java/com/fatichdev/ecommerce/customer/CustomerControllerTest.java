@@ -0,0 +1,56 @@
+package com.fatichdev.ecommerce.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = CustomerController.class, properties = "spring.cloud.config.enabled=false")
+class CustomerControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @MockBean
+    private CustomerService service;
+
+    @Test
+    void aBulkLookupTakesUpToAThousandIds() throws Exception {
+        var ids = ids(1000);
+        when(service.findAllByIds(ids)).thenReturn(List.of());
+
+        mockMvc.perform(post("/api/v1/customers/batch").contentType(APPLICATION_JSON).content(body(ids)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void aBulkLookupOfMoreThanAThousandIdsIsRejected() throws Exception {
+        mockMvc.perform(post("/api/v1/customers/batch").contentType(APPLICATION_JSON).content(body(ids(1001))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors.ids").value("At most 1000 customers can be requested at once"));
+        verify(service, never()).findAllByIds(anyList());
+    }
+
+    private String body(List<String> ids) throws Exception {
+        return objectMapper.writeValueAsString(new CustomerBatchRequest(ids));
+    }
+
+    private static List<String> ids(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "c-" + i).toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.fatichdev.ecommerce.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Streams the export through the controller from a collection several cursor batches long.
+ */
+@SpringBootTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "management.tracing.enabled=false",
+        "application.listing.export-batch-size=" + CustomerExportTest.BATCH_SIZE
+})
+@AutoConfigureMockMvc
+class CustomerExportTest {
+
+    static final int BATCH_SIZE = 7;
+    private static final int CUSTOMERS = 50;
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        var address = MONGO.bind();
+        registry.add("spring.data.mongodb.uri", () -> "mongodb://localhost:" + address.getPort() + "/customer");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        MONGO.shutdown();
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private CustomerRepository repository;
+
+    @Test
+    void theExportStreamsEveryCustomerInIdOrderAsOneJsonLineEach() throws Exception {
+        repository.deleteAll();
+        // Inserted out of _id order, so the export has to sort
+        var customers = new ArrayList<Customer>();
+        IntStream.range(0, CUSTOMERS).map(i -> CUSTOMERS - 1 - i).forEach(i -> customers.add(Customer.builder()
+                .id("c-%03d".formatted(i))
+                .firstname("Ada")
+                .lastname("Lovelace")
+                .email("ada" + i + "@example.com")
+                .build()));
+        repository.saveAll(customers);
+
+        var started = mockMvc.perform(get("/api/v1/customers/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        var body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        var lines = body.split("\n");
+        assertThat(lines).hasSize(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            var customer = objectMapper.readValue(lines[i], CustomerResponse.class);
+            assertThat(customer.id()).isEqualTo("c-%03d".formatted(i));
+            assertThat(customer.email()).isEqualTo("ada" + i + "@example.com");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.fatichdev.ecommerce.customer;
+
+import com.fatichdev.ecommerce.cache.CacheConfig;
+import com.fatichdev.ecommerce.cache.CustomerCacheProperties;
+import com.fatichdev.ecommerce.exception.CustomerNotFoundException;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+
+import static com.fatichdev.ecommerce.cache.CacheConfig.CUSTOMERS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataMongoTest(properties = "spring.cloud.config.enabled=false")
+@Import({CustomerService.class, CustomerMapper.class, CacheConfig.class})
+@EnableConfigurationProperties(CustomerCacheProperties.class)
+class CustomerServiceTest {
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        var address = MONGO.bind();
+        registry.add("spring.data.mongodb.uri", () -> "mongodb://localhost:" + address.getPort() + "/customer");
+    }
+
+    @Autowired
+    private CustomerService service;
+    @Autowired
+    private CacheManager cacheManager;
+    @SpyBean
+    private CustomerRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+        cacheManager.getCache(CUSTOMERS).clear();
+        repository.saveAll(List.of(customer("c-1", "Ada"), customer("c-2", "Grace"), customer("c-3", "Alan")));
+        clearInvocations(repository);
+    }
+
+    @Test
+    void aCachedCustomerIsServedWithoutARoundTrip() {
+        service.findById("c-1");
+        clearInvocations(repository);
+
+        assertThat(service.findById("c-1").firstname()).isEqualTo("Ada");
+        verify(repository, never()).findById("c-1");
+    }
+
+    @Test
+    void anUpdateEvictsTheCachedCustomer() {
+        service.findById("c-1");
+
+        service.updateCustomer(new CustomerRequest("c-1", "Augusta", null, null, null));
+
+        assertThat(cacheManager.getCache(CUSTOMERS).get("c-1")).isNull();
+        assertThat(service.findById("c-1").firstname()).isEqualTo("Augusta");
+    }
+
+    @Test
+    void aDeleteEvictsTheCachedCustomer() {
+        service.findById("c-1");
+
+        service.deleteCustomer("c-1");
+
+        assertThat(cacheManager.getCache(CUSTOMERS).get("c-1")).isNull();
+        assertThatThrownBy(() -> service.findById("c-1")).isInstanceOf(CustomerNotFoundException.class);
+    }
+
+    @Test
+    void aBulkLookupKeepsTheRequestedOrderAndDropsUnknownIds() {
+        service.findById("c-2");
+        clearInvocations(repository);
+
+        var customers = service.findAllByIds(List.of("c-3", "unknown", "c-2", "c-1", "c-3"));
+
+        assertThat(customers).extracting(CustomerResponse::id).containsExactly("c-3", "c-2", "c-1");
+        // c-2 comes from the cache, the others from one $in query that also caches them
+        verify(repository).findAllById(List.of("c-3", "unknown", "c-1"));
+        assertThat(cacheManager.getCache(CUSTOMERS).get("c-3")).isNotNull();
+        assertThat(cacheManager.getCache(CUSTOMERS).get("unknown")).isNull();
+    }
+
+    @Test
+    void aPageContinuesAfterTheLastIdOfThePreviousOne() {
+        repository.saveAll(List.of(customer("c-4", "Barbara"), customer("c-0", "Edsger")));
+
+        var first = service.findPage(null, 2);
+        var second = service.findPage(first.nextCursor(), 2);
+        var last = service.findPage(second.nextCursor(), 2);
+
+        assertThat(first.customers()).extracting(CustomerResponse::id).containsExactly("c-0", "c-1");
+        assertThat(first.nextCursor()).isEqualTo("c-1");
+        assertThat(second.customers()).extracting(CustomerResponse::id).containsExactly("c-2", "c-3");
+        // A short page is the last one
+        assertThat(last.customers()).extracting(CustomerResponse::id).containsExactly("c-4");
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    private static Customer customer(String id, String firstname) {
+        return Customer.builder()
+                .id(id)
+                .firstname(firstname)
+                .lastname("Lovelace")
+                .email(firstname.toLowerCase() + "@example.com")
+                .build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.fatichdev.ecommerce.kafka.serialization;
+
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.message.SchemaStore;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Avro single-object encoding (marker, 8-byte schema fingerprint, binary body) backed by a file-based schema store.
+ * Every {@code <subject>/v<version>.avsc} under the configured location is registered so older writers can still
+ * be decoded; the highest version of a subject is used to write and as the reader schema. The schemas of every
+ * subject ship with this module, so producers and consumers always know the same versions.
+ */
+public class AvroEventCodec {
+
+    public static final String SCHEMA_LOCATION_CONFIG = "avro.schema.location";
+    public static final String DEFAULT_SCHEMA_LOCATION = "classpath*:schemas/**/*.avsc";
+
+    private static final Pattern SCHEMA_FILE = Pattern.compile(".*/([^/]+)/v(\\d+)\\.avsc$");
+    private static final Conversions.DecimalConversion DECIMAL_CONVERSION = new Conversions.DecimalConversion();
+
+    private final SchemaStore.Cache schemaStore = new SchemaStore.Cache();
+    private final Map<String, Schema> schemas = new HashMap<>();
+    private final Map<String, BinaryMessageEncoder<GenericRecord>> encoders = new HashMap<>();
+    private final Map<String, BinaryMessageDecoder<GenericRecord>> decoders = new HashMap<>();
+
+    private AvroEventCodec() {
+    }
+
+    public static AvroEventCodec load(String location) {
+        var codec = new AvroEventCodec();
+        var versions = new HashMap<String, Integer>();
+        try {
+            for (var resource : new PathMatchingResourcePatternResolver(AvroEventCodec.class.getClassLoader()).getResources(location)) {
+                var matcher = SCHEMA_FILE.matcher(resource.getURL().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                Schema schema;
+                try (var input = resource.getInputStream()) {
+                    schema = new Schema.Parser().parse(input);
+                }
+                codec.schemaStore.addSchema(schema);
+                var subject = matcher.group(1);
+                var version = Integer.parseInt(matcher.group(2));
+                if (version > versions.getOrDefault(subject, 0)) {
+                    versions.put(subject, version);
+                    codec.schemas.put(subject, schema);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load Avro schemas from " + location, e);
+        }
+        codec.schemas.forEach((subject, schema) -> {
+            codec.encoders.put(subject, new BinaryMessageEncoder<>(GenericData.get(), schema));
+            codec.decoders.put(subject, new BinaryMessageDecoder<>(GenericData.get(), schema, codec.schemaStore));
+        });
+        return codec;
+    }
+
+    public static boolean isAvro(byte[] data) {
+        return data != null && data.length > 10 && data[0] == (byte) 0xC3 && data[1] == (byte) 0x01;
+    }
+
+    public Schema schema(String subject) {
+        var schema = schemas.get(subject);
+        if (schema == null) {
+            throw new IllegalArgumentException("No Avro schema registered for subject " + subject);
+        }
+        return schema;
+    }
+
+    public byte[] encode(String subject, GenericRecord record) {
+        var output = new ByteArrayOutputStream(256);
+        try {
+            encoders.get(subject).encode(record, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    public GenericRecord decode(String subject, byte[] data) {
+        schema(subject);
+        try {
+            return decoders.get(subject).decode(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encodes an amount for a decimal field, or for the decimal branch of a nullable one; {@code null} stays null.
+     */
+    public static ByteBuffer toDecimal(BigDecimal value, Schema schema) {
+        if (value == null) {
+            return null;
+        }
+        var decimalSchema = nonNull(schema);
+        var decimal = (LogicalTypes.Decimal) decimalSchema.getLogicalType();
+        return DECIMAL_CONVERSION.toBytes(value.setScale(decimal.getScale(), RoundingMode.HALF_UP), decimalSchema, decimal);
+    }
+
+    public static BigDecimal fromDecimal(Object value, Schema schema) {
+        if (value == null) {
+            return null;
+        }
+        var decimalSchema = nonNull(schema);
+        return DECIMAL_CONVERSION.fromBytes(((ByteBuffer) value).duplicate(), decimalSchema, decimalSchema.getLogicalType());
+    }
+
+    public static Long toLocalTimestamp(LocalDateTime value) {
+        return value == null ? null : value.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime fromLocalTimestamp(Object value) {
+        return value == null ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli((Long) value), ZoneOffset.UTC);
+    }
+
+    public static String string(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static Schema nonNull(Schema schema) {
+        if (schema.getType() != Schema.Type.UNION) {
+            return schema;
+        }
+        return schema.getTypes().stream()
+                .filter(branch -> branch.getType() != Schema.Type.NULL)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No value branch in " + schema));
+    }
+}
@@ -0,0 +1,87 @@
+package com.fatichdev.ecommerce.kafka.serialization;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.message.MissingSchemaException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.fromDecimal;
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.fromLocalTimestamp;
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.toDecimal;
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.toLocalTimestamp;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AvroEventCodecTest {
+
+    private static final String ORDER_CONFIRMATION = "order-confirmation";
+
+    private final AvroEventCodec codec = AvroEventCodec.load(AvroEventCodec.DEFAULT_SCHEMA_LOCATION);
+
+    @Test
+    void anEventWrittenWithTheFirstSchemaIsReadWithTheLatest() throws IOException {
+        var v1 = parse("schemas/order-confirmation/v1.avsc");
+        var customer = new GenericData.Record(v1.getField("customer").schema());
+        customer.put("id", "c-1");
+        var record = new GenericData.Record(v1);
+        record.put("orderReference", "ORD-1");
+        record.put("totalAmount", toDecimal(new BigDecimal("19.99"), v1.getField("totalAmount").schema()));
+        record.put("customer", customer);
+        record.put("products", new GenericData.Array<>(0, v1.getField("products").schema()));
+
+        var read = codec.decode(ORDER_CONFIRMATION, new BinaryMessageEncoder<GenericRecord>(GenericData.get(), v1).encode(record).array());
+
+        assertThat(read.getSchema()).isEqualTo(codec.schema(ORDER_CONFIRMATION));
+        assertThat(read.get("orderReference")).hasToString("ORD-1");
+        assertThat(fromDecimal(read.get("totalAmount"), read.getSchema().getField("totalAmount").schema())).isEqualByComparingTo("19.99");
+        assertThat(read.get("createdAt")).isNull();
+    }
+
+    @Test
+    void missingAmountsRoundTripAsNull() {
+        var schema = codec.schema(ORDER_CONFIRMATION);
+        var productSchema = schema.getField("products").schema().getElementType();
+        var product = new GenericData.Record(productSchema);
+        product.put("price", toDecimal(null, productSchema.getField("price").schema()));
+        product.put("quantity", 1d);
+        var record = new GenericData.Record(schema);
+        record.put("totalAmount", toDecimal(null, schema.getField("totalAmount").schema()));
+        record.put("customer", new GenericData.Record(schema.getField("customer").schema()));
+        record.put("products", new GenericData.Array<>(schema.getField("products").schema(), List.of(product)));
+        record.put("createdAt", toLocalTimestamp(LocalDateTime.of(2026, 3, 1, 9, 30, 15)));
+
+        var read = codec.decode(ORDER_CONFIRMATION, codec.encode(ORDER_CONFIRMATION, record));
+
+        assertThat(fromDecimal(read.get("totalAmount"), schema.getField("totalAmount").schema())).isNull();
+        @SuppressWarnings("unchecked")
+        var readProduct = ((List<GenericRecord>) read.get("products")).getFirst();
+        assertThat(fromDecimal(readProduct.get("price"), productSchema.getField("price").schema())).isNull();
+        assertThat(fromLocalTimestamp(read.get("createdAt"))).isEqualTo(LocalDateTime.of(2026, 3, 1, 9, 30, 15));
+    }
+
+    @Test
+    void anEventFromAnUnknownSchemaIsRejected() throws IOException {
+        var unknown = SchemaBuilder.record("OrderConfirmation").namespace("com.fatichdev.ecommerce.events")
+                .fields().optionalString("orderReference").optionalString("coupon").endRecord();
+        var record = new GenericData.Record(unknown);
+        record.put("orderReference", "ORD-1");
+        var data = new BinaryMessageEncoder<GenericRecord>(GenericData.get(), unknown).encode(record).array();
+
+        assertThat(AvroEventCodec.isAvro(data)).isTrue();
+        assertThatThrownBy(() -> codec.decode(ORDER_CONFIRMATION, data)).isInstanceOf(MissingSchemaException.class);
+    }
+
+    private static Schema parse(String resource) throws IOException {
+        try (var input = AvroEventCodecTest.class.getClassLoader().getResourceAsStream(resource)) {
+            return new Schema.Parser().parse(input);
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.fatichdev.ecommerce;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableAsync
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class NotificationApplication {
 
 	public static void main(String[] args) {
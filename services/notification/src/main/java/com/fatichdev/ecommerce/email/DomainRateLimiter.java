@@ -0,0 +1,44 @@
+package com.fatichdev.ecommerce.email;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket per destination domain, so a burst to one provider cannot get the sender throttled or blocked.
+ */
+class DomainRateLimiter {
+
+    private final double permitsPerSecond;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    DomainRateLimiter(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Takes a permit for the domain and returns 0, or returns how many nanoseconds to wait for the next one.
+     */
+    long tryAcquire(String domain) {
+        return buckets.computeIfAbsent(domain, key -> new Bucket(permitsPerSecond)).tryAcquire(permitsPerSecond);
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        private Bucket(double capacity) {
+            this.tokens = capacity;
+        }
+
+        private synchronized long tryAcquire(double permitsPerSecond) {
+            var now = System.nanoTime();
+            tokens = Math.min(permitsPerSecond, tokens + (now - refilledAt) * permitsPerSecond / 1_000_000_000d);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) ((1 - tokens) * 1_000_000_000d / permitsPerSecond);
+        }
+    }
+}
@@ -7,18 +7,15 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static com.fatichdev.ecommerce.email.EmailTemplates.ORDER_CONFIRMATION;
+import static com.fatichdev.ecommerce.email.EmailTemplates.ORDER_SUMMARY;
 import static com.fatichdev.ecommerce.email.EmailTemplates.PAYMENT_CONFIRMATION;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.springframework.mail.javamail.MimeMessageHelper.MULTIPART_MODE_RELATED;
@@ -30,10 +27,11 @@ public class EmailService {
 
     private final JavaMailSender mailSender;
 
-    private final SpringTemplateEngine templateEngine;
+    private final MailDispatcher mailDispatcher;
 
-    @Async
-    public void sendPaymentSuccessEmail(
+    private final EmailTemplateRenderer templateRenderer;
+
+    public CompletableFuture<Void> sendPaymentSuccessEmail(
             String destinationEmail,
             String customerName,
             BigDecimal amount,
@@ -45,33 +43,30 @@ public class EmailService {
         messageHelper.setFrom("hello@fatihes.com");
         final String templateName = PAYMENT_CONFIRMATION.getTemplate();
 
-        Map<String, Object> variables = new HashMap<>();
-        variables.put("customerName", customerName);
-        variables.put("amount", amount);
-        variables.put("orderReference", orderReference);
-
-        Context context = new Context();
-        context.setVariables(variables);
         messageHelper.setSubject(PAYMENT_CONFIRMATION.getSubject());
 
         try {
-            String htmlTemplate = templateEngine.process(templateName, context);
+            String htmlTemplate = templateRenderer.render(PAYMENT_CONFIRMATION, context -> {
+                context.setVariable("customerName", customerName);
+                context.setVariable("amount", amount);
+                context.setVariable("orderReference", orderReference);
+            });
             messageHelper.setText(htmlTemplate, true);
 
             messageHelper.setTo(destinationEmail);
-            mailSender.send(mimeMessage);
+            var sent = mailDispatcher.submit(mimeMessage, destinationEmail);
 
-            log.info(String.format("INFO - Email sent to: %s with template: %s", destinationEmail, templateName));
+            log.info(String.format("INFO - Email queued to: %s with template: %s", destinationEmail, templateName));
+            return sent;
 
         } catch (MessagingException e) {
-            log.warn("WARNING - Cannot send email to {}", destinationEmail);
-            throw new RuntimeException(e);
+            log.warn("WARNING - Cannot build email to {}", destinationEmail);
+            throw e;
         }
     }
 
 
-    @Async
-    public void sendOrderConfirmationEmail(
+    public CompletableFuture<Void> sendOrderConfirmationEmail(
             String destinationEmail,
             String customerName,
             BigDecimal amount,
@@ -84,30 +79,66 @@ public class EmailService {
         messageHelper.setFrom("hello@fatihes.com");
         final String templateName = ORDER_CONFIRMATION.getTemplate();
 
-        Map<String, Object> variables = new HashMap<>();
-        variables.put("customerName", customerName);
-        variables.put("totalAmount", amount);
-        variables.put("orderReference", orderReference);
-        variables.put("products", products);
-
-        Context context = new Context();
-        context.setVariables(variables);
         messageHelper.setSubject(ORDER_CONFIRMATION.getSubject());
 
         try {
-            String htmlTemplate = templateEngine.process(templateName, context);
+            String htmlTemplate = templateRenderer.render(ORDER_CONFIRMATION, context -> {
+                context.setVariable("customerName", customerName);
+                context.setVariable("totalAmount", amount);
+                context.setVariable("orderReference", orderReference);
+                context.setVariable("products", products);
+            });
             messageHelper.setText(htmlTemplate, true);
 
             messageHelper.setTo(destinationEmail);
-            mailSender.send(mimeMessage);
+            var sent = mailDispatcher.submit(mimeMessage, destinationEmail);
 
-            log.info(String.format("INFO - Email sent to: %s with template: %s", destinationEmail, templateName));
+            log.info(String.format("INFO - Email queued to: %s with template: %s", destinationEmail, templateName));
+            return sent;
 
         } catch (MessagingException e) {
-            log.warn("WARNING - Cannot send email to {}", destinationEmail);
-            throw new RuntimeException(e);
+            log.warn("WARNING - Cannot build email to {}", destinationEmail);
+            throw e;
         }
     }
 
 
+    public CompletableFuture<Void> sendOrderSummaryEmail(
+            String destinationEmail,
+            String customerName,
+            BigDecimal totalAmount,
+            BigDecimal paidAmount,
+            String orderReference,
+            List<Product> products
+    ) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper messageHelper =
+                new MimeMessageHelper(mimeMessage, MULTIPART_MODE_RELATED, UTF_8.name());
+        messageHelper.setFrom("hello@fatihes.com");
+        final String templateName = ORDER_SUMMARY.getTemplate();
+
+        messageHelper.setSubject(ORDER_SUMMARY.getSubject());
+
+        try {
+            String htmlTemplate = templateRenderer.render(ORDER_SUMMARY, context -> {
+                context.setVariable("customerName", customerName);
+                context.setVariable("totalAmount", totalAmount);
+                context.setVariable("amount", paidAmount);
+                context.setVariable("orderReference", orderReference);
+                context.setVariable("products", products);
+            });
+            messageHelper.setText(htmlTemplate, true);
+
+            messageHelper.setTo(destinationEmail);
+            var sent = mailDispatcher.submit(mimeMessage, destinationEmail);
+
+            log.info(String.format("INFO - Email queued to: %s with template: %s", destinationEmail, templateName));
+            return sent;
+
+        } catch (MessagingException e) {
+            log.warn("WARNING - Cannot build email to {}", destinationEmail);
+            throw e;
+        }
+    }
+
 }
@@ -0,0 +1,37 @@
+package com.fatichdev.ecommerce.email;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.dialect.IDialect;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+
+@Configuration
+public class EmailTemplateConfig {
+
+    /**
+     * Same engine Spring Boot would create, with the parsed-template cache sized for the handful of email templates.
+     */
+    @Bean
+    public SpringTemplateEngine templateEngine(
+            ThymeleafProperties thymeleafProperties,
+            ObjectProvider<ITemplateResolver> templateResolvers,
+            ObjectProvider<IDialect> dialects,
+            @Value("${application.mail.templates.cache-max-size:16}") int cacheMaxSize
+    ) {
+        var cacheManager = new StandardCacheManager();
+        cacheManager.setTemplateCacheMaxSize(cacheMaxSize);
+
+        var engine = new SpringTemplateEngine();
+        engine.setEnableSpringELCompiler(thymeleafProperties.isEnableSpringElCompiler());
+        engine.setRenderHiddenMarkersBeforeCheckboxes(thymeleafProperties.isRenderHiddenMarkersBeforeCheckboxes());
+        engine.setCacheManager(cacheManager);
+        templateResolvers.orderedStream().forEach(engine::addTemplateResolver);
+        dialects.orderedStream().forEach(engine::addDialect);
+        return engine;
+    }
+}
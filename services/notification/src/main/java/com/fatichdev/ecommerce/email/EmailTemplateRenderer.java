@@ -0,0 +1,102 @@
+package com.fatichdev.ecommerce.email;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/**
+ * Renders email templates with a per-thread context and output buffer, so a render only allocates the final body.
+ * Templates are parsed once at startup and then served from the engine's template cache.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailTemplateRenderer {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private final SpringTemplateEngine templateEngine;
+
+    private final ThreadLocal<RenderState> renderState = ThreadLocal.withInitial(RenderState::new);
+
+    @PostConstruct
+    void precompile() {
+        for (EmailTemplates template : EmailTemplates.values()) {
+            render(template, context -> {
+            });
+            log.info("INFO - Email template {} parsed and cached", template.getTemplate());
+        }
+    }
+
+    public String render(EmailTemplates template, Consumer<Context> variables) {
+        var state = renderState.get();
+        state.context.clearVariables();
+        state.writer.reset();
+        try {
+            variables.accept(state.context);
+            templateEngine.process(template.getTemplate(), state.context, state.writer);
+            return state.writer.toString();
+        } finally {
+            // Don't keep the products of the last order reachable from a long-lived consumer thread
+            state.context.clearVariables();
+        }
+    }
+
+    private static final class RenderState {
+        private final Context context = new Context();
+        private final BufferWriter writer = new BufferWriter();
+    }
+
+    private static final class BufferWriter extends Writer {
+        private StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+
+        private void reset() {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+            } else {
+                buffer.setLength(0);
+            }
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            buffer.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            buffer.append(string, offset, offset + length);
+        }
+
+        @Override
+        public void write(int c) {
+            buffer.append((char) c);
+        }
+
+        @Override
+        public Writer append(CharSequence sequence) {
+            buffer.append(sequence);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+}
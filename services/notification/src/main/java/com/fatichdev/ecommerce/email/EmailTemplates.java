@@ -4,7 +4,8 @@ import lombok.Getter;
 
 public enum EmailTemplates {
     PAYMENT_CONFIRMATION("payment-confirmation.html", "Payment Successfully Processed"),
-    ORDER_CONFIRMATION("order-confirmation.html", "Order Confirmation");
+    ORDER_CONFIRMATION("order-confirmation.html", "Order Confirmation"),
+    ORDER_SUMMARY("order-summary.html", "Order Confirmed and Paid");
 
     @Getter
     private final String template;
@@ -0,0 +1,29 @@
+package com.fatichdev.ecommerce.email;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.mail.dispatch")
+public record MailDispatchProperties(
+        @DefaultValue("1000")
+        int queueCapacity,
+        @DefaultValue("30s")
+        Duration enqueueTimeout,
+        @DefaultValue("4")
+        int workers,
+        @DefaultValue("100")
+        int messagesPerConnection,
+        @DefaultValue("5s")
+        Duration idleConnectionTimeout,
+        @DefaultValue("10")
+        double domainRatePerSecond,
+        @DefaultValue("5")
+        int maxAttempts,
+        @DefaultValue("500ms")
+        Duration initialBackoff,
+        @DefaultValue("30s")
+        Duration maxBackoff
+) {
+}
@@ -0,0 +1,233 @@
+package com.fatichdev.ecommerce.email;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends emails from a bounded queue with a fixed set of workers. Each worker keeps its SMTP connection open
+ * for many messages, messages are paced per destination domain, and failures are retried with jittered backoff.
+ * When the queue is full {@link #submit} blocks the caller, which slows down the Kafka consumer feeding it.
+ * A failed connection is not held against the message: during an SMTP outage messages wait in the queue, so the
+ * outage turns into backpressure rather than dropped emails.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MailDispatcher {
+
+    private final JavaMailSenderImpl mailSender;
+    private final MailDispatchProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final DelayQueue<MailTask> queue = new DelayQueue<>();
+    private Semaphore capacity;
+    private DomainRateLimiter rateLimiter;
+    private ExecutorService workers;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    void start() {
+        capacity = new Semaphore(properties.queueCapacity());
+        rateLimiter = new DomainRateLimiter(properties.domainRatePerSecond());
+        Gauge.builder("mail.dispatch.queue.depth", queue, DelayQueue::size).register(meterRegistry);
+        workers = Executors.newFixedThreadPool(properties.workers());
+        for (int i = 0; i < properties.workers(); i++) {
+            workers.submit(this::work);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues an email and returns a future that completes once the SMTP server accepted it, or fails once the
+     * email is dropped after its last attempt.
+     */
+    public CompletableFuture<Void> submit(MimeMessage message, String destinationEmail) {
+        try {
+            if (!capacity.tryAcquire(properties.enqueueTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Mail dispatch queue is full, cannot send email to " + destinationEmail);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing email to " + destinationEmail, e);
+        }
+        var sent = new CompletableFuture<Void>();
+        queue.put(new MailTask(message, destinationEmail, domainOf(destinationEmail), 1, System.nanoTime(), sent));
+        return sent;
+    }
+
+    private void work() {
+        Transport transport = null;
+        int sentOnConnection = 0;
+        int failedConnects = 0;
+        while (running) {
+            MailTask task = null;
+            try {
+                task = queue.poll(properties.idleConnectionTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    transport = close(transport);
+                    continue;
+                }
+                var wait = rateLimiter.tryAcquire(task.domain());
+                if (wait > 0) {
+                    queue.put(task.deferredBy(wait));
+                    continue;
+                }
+                if (transport == null || sentOnConnection >= properties.messagesPerConnection() || !transport.isConnected()) {
+                    transport = close(transport);
+                    transport = connect();
+                    sentOnConnection = 0;
+                    failedConnects = 0;
+                }
+                if (send(transport, task)) {
+                    sentOnConnection++;
+                } else {
+                    transport = close(transport);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (MessagingException e) {
+                // The server is down, not the message: the task goes back as it was, still holding its permit
+                failedConnects++;
+                var backoff = backoffNanos(failedConnects);
+                log.warn("WARNING - Cannot connect to the SMTP server, retrying in {} ms", backoff / 1_000_000, e);
+                transport = close(transport);
+                queue.put(task.deferredBy(backoff));
+                sleepQuietly(TimeUnit.NANOSECONDS.toMillis(backoff));
+            } catch (RuntimeException e) {
+                transport = close(transport);
+                if (task != null) {
+                    retryOrDrop(task, e);
+                }
+            }
+        }
+        close(transport);
+    }
+
+    private boolean send(Transport transport, MailTask task) {
+        var sample = Timer.start(meterRegistry);
+        try {
+            task.message().saveChanges();
+            transport.sendMessage(task.message(), task.message().getAllRecipients());
+            sample.stop(meterRegistry.timer("mail.send.latency", "outcome", "success"));
+            capacity.release();
+            log.info("INFO - Email sent to: {}", task.destinationEmail());
+            task.sent().complete(null);
+            return true;
+        } catch (MessagingException e) {
+            sample.stop(meterRegistry.timer("mail.send.latency", "outcome", "failure"));
+            retryOrDrop(task, e);
+            return false;
+        }
+    }
+
+    private void retryOrDrop(MailTask task, Exception e) {
+        if (task.attempt() >= properties.maxAttempts()) {
+            meterRegistry.counter("mail.send.dropped").increment();
+            capacity.release();
+            log.warn("WARNING - Cannot send email to {} after {} attempts", task.destinationEmail(), task.attempt(), e);
+            task.sent().completeExceptionally(e);
+            return;
+        }
+        meterRegistry.counter("mail.send.retries").increment();
+        queue.put(task.retry(backoffNanos(task.attempt())));
+    }
+
+    // Full jitter: spread retries so a recovering SMTP server is not hit by all of them at once
+    private long backoffNanos(int attempt) {
+        var ceiling = Math.min(
+                properties.maxBackoff().toNanos(),
+                properties.initialBackoff().toNanos() << Math.min(attempt - 1, 20)
+        );
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private Transport connect() throws MessagingException {
+        var transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    private static Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Cannot close SMTP connection", e);
+            }
+        }
+        return null;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String domainOf(String email) {
+        try {
+            var address = new InternetAddress(email).getAddress();
+            return address.substring(address.indexOf('@') + 1).toLowerCase(Locale.ROOT);
+        } catch (MessagingException e) {
+            return "";
+        }
+    }
+
+    private record MailTask(
+            MimeMessage message,
+            String destinationEmail,
+            String domain,
+            int attempt,
+            long readyAt,
+            CompletableFuture<Void> sent
+    ) implements Delayed {
+
+        MailTask deferredBy(long nanos) {
+            return new MailTask(message, destinationEmail, domain, attempt, System.nanoTime() + nanos, sent);
+        }
+
+        MailTask retry(long backoffNanos) {
+            return new MailTask(message, destinationEmail, domain, attempt + 1, System.nanoTime() + backoffNanos, sent);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((MailTask) other).readyAt);
+        }
+    }
+}
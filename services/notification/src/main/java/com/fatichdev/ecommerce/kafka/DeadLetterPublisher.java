@@ -0,0 +1,95 @@
+package com.fatichdev.ecommerce.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Parks the records the consumer could not read (an unknown schema fingerprint, a malformed payload) on
+ * {@code <topic>.DLT} with their original bytes, so one bad record neither blocks its partition nor is lost.
+ * The ErrorHandlingDeserializer hands such records over with a null value and the failure in a header.
+ */
+@Component
+@Slf4j
+public class DeadLetterPublisher {
+
+    public static final String DEAD_LETTER_SUFFIX = ".DLT";
+
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(DeadLetterPublisher.class);
+
+    private final KafkaOperations<String, byte[]> deadLetterTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public DeadLetterPublisher(KafkaOperations<String, byte[]> deadLetterTemplate, MeterRegistry meterRegistry) {
+        this.deadLetterTemplate = deadLetterTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the values of the readable records and parks the rest, waiting for the broker to take them: the
+     * listener returning commits the offsets of the whole batch.
+     */
+    public <T> List<T> readable(List<ConsumerRecord<String, T>> records) {
+        var readable = new ArrayList<T>(records.size());
+        var parked = new ArrayList<CompletableFuture<?>>();
+        for (ConsumerRecord<String, T> record : records) {
+            if (record.value() != null) {
+                readable.add(record.value());
+                continue;
+            }
+            var failure = SerializationUtils.getExceptionFromHeader(
+                    record, SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+            if (failure != null) {
+                parked.add(park(record, failure));
+            }
+        }
+        if (!parked.isEmpty()) {
+            CompletableFuture.allOf(parked.toArray(CompletableFuture[]::new)).join();
+            log.warn("Parked {} unreadable records from {} on its dead letter topic",
+                    parked.size(), records.getFirst().topic());
+        }
+        return readable;
+    }
+
+    private CompletableFuture<?> park(ConsumerRecord<String, ?> record, DeserializationException failure) {
+        var headers = new RecordHeaders();
+        record.headers().forEach(header -> {
+            if (!header.key().equals(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER)) {
+                headers.add(header);
+            }
+        });
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, bytes(record.topic()));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, bytes(String.valueOf(record.partition())));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, bytes(String.valueOf(record.offset())));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_FQCN, bytes(rootCause(failure).getClass().getName()));
+        headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE, bytes(String.valueOf(rootCause(failure).getMessage())));
+        meterRegistry.counter("notification.dead.letters", "topic", record.topic()).increment();
+        return deadLetterTemplate.send(new ProducerRecord<>(
+                record.topic() + DEAD_LETTER_SUFFIX, null, record.key(), failure.getData(), headers));
+    }
+
+    private static Throwable rootCause(Throwable failure) {
+        var cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
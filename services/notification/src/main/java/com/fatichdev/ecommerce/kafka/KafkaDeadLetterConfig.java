@@ -0,0 +1,46 @@
+package com.fatichdev.ecommerce.kafka;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import static com.fatichdev.ecommerce.kafka.DeadLetterPublisher.DEAD_LETTER_SUFFIX;
+
+/**
+ * Producer and topics for the records {@link DeadLetterPublisher} parks. Values go out as the bytes that were
+ * consumed, since they could not be read.
+ */
+@Configuration
+public class KafkaDeadLetterConfig {
+
+    @Bean
+    public KafkaTemplate<String, byte[]> deadLetterTemplate(KafkaProperties kafkaProperties) {
+        var configs = kafkaProperties.buildProducerProperties(null);
+        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(configs));
+    }
+
+    @Bean
+    public NewTopic orderDeadLetterTopic() {
+        return TopicBuilder
+                .name("order-topic" + DEAD_LETTER_SUFFIX)
+                .partitions(1)
+                .build();
+    }
+
+    @Bean
+    public NewTopic paymentDeadLetterTopic() {
+        return TopicBuilder
+                .name("payment-topic" + DEAD_LETTER_SUFFIX)
+                .partitions(1)
+                .build();
+    }
+}
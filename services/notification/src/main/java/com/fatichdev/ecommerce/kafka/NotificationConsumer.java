@@ -1,18 +1,18 @@
 package com.fatichdev.ecommerce.kafka;
 
-import com.fatichdev.ecommerce.email.EmailService;
 import com.fatichdev.ecommerce.kafka.order.OrderConfirmation;
 import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
 import com.fatichdev.ecommerce.notification.Notification;
-import com.fatichdev.ecommerce.notification.NotificationRepository;
-import com.fatichdev.ecommerce.notification.NotificationType;
-import jakarta.mail.MessagingException;
+import com.fatichdev.ecommerce.notification.NotificationDeduplicator;
+import com.fatichdev.ecommerce.notification.NotificationDigest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static com.fatichdev.ecommerce.notification.NotificationType.ORDER_CONFIRMATION;
 import static com.fatichdev.ecommerce.notification.NotificationType.PAYMENT_CONFIRMATION;
@@ -21,52 +21,46 @@ import static com.fatichdev.ecommerce.notification.NotificationType.PAYMENT_CONF
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationConsumer {
-    private final NotificationRepository repository;
-    private final EmailService emailService;
+    private final NotificationDeduplicator deduplicator;
+    private final NotificationDigest digest;
+    private final DeadLetterPublisher deadLetters;
 
-    @KafkaListener(topics = "payment-topic")
-    public void consumerPaymentSuccessNotification(PaymentConfirmation paymentConfirmation) throws MessagingException {
-        log.info("Consuming payment confirmation: {}", paymentConfirmation);
-        repository.save(
-                Notification.builder()
-                        .type(PAYMENT_CONFIRMATION)
-                        .notificationDate(LocalDateTime.now())
-                        .paymentConfirmation(paymentConfirmation)
-                        .build()
-        );
-
-        // send email
-        var customerName = paymentConfirmation.customerFirstName() + " " + paymentConfirmation.customerLastName();
-        emailService.sendPaymentSuccessEmail(
-                paymentConfirmation.customerEmail(),
-                customerName,
-                paymentConfirmation.amount(),
-                paymentConfirmation.orderReference()
+    @KafkaListener(topics = "payment-topic", batch = "true")
+    public void consumerPaymentSuccessNotification(List<ConsumerRecord<String, PaymentConfirmation>> records) {
+        log.info("Consuming {} payment confirmations", records.size());
+        // One bulk insert per poll; a replayed record only gets an email if the first delivery never sent one
+        var notifications = deduplicator.insertNew(
+                deadLetters.readable(records).stream()
+                        .map(paymentConfirmation -> Notification.builder()
+                                .type(PAYMENT_CONFIRMATION)
+                                .orderReference(paymentConfirmation.orderReference())
+                                .notificationDate(LocalDateTime.now())
+                                .emailPending(true)
+                                .paymentConfirmation(paymentConfirmation)
+                                .build())
+                        .toList()
         );
 
+        // send email, merged with the matching order confirmation when it arrives in time
+        digest.add(notifications);
     }
 
-    @KafkaListener(topics = "order-topic")
-    public void consumerOrderConfirmationNotification(OrderConfirmation orderConfirmation) throws MessagingException {
-        log.info("Consuming order confirmation: {}", orderConfirmation);
-        repository.save(
-                Notification.builder()
-                        .type(ORDER_CONFIRMATION)
-                        .notificationDate(LocalDateTime.now())
-                        .orderConfirmation(orderConfirmation)
-                        .build()
+    @KafkaListener(topics = "order-topic", batch = "true")
+    public void consumerOrderConfirmationNotification(List<ConsumerRecord<String, OrderConfirmation>> records) {
+        log.info("Consuming {} order confirmations", records.size());
+        var notifications = deduplicator.insertNew(
+                deadLetters.readable(records).stream()
+                        .map(orderConfirmation -> Notification.builder()
+                                .type(ORDER_CONFIRMATION)
+                                .orderReference(orderConfirmation.orderReference())
+                                .notificationDate(LocalDateTime.now())
+                                .emailPending(true)
+                                .orderConfirmation(orderConfirmation)
+                                .build())
+                        .toList()
         );
 
-        // send email
-        var customerName = orderConfirmation.customer().firstname() + " " + orderConfirmation.customer().lastname();
-        emailService.sendOrderConfirmationEmail(
-                orderConfirmation.customer().email(),
-                customerName,
-                orderConfirmation.totalAmount(),
-                orderConfirmation.orderReference(),
-                orderConfirmation.products()
-        );
-
-
+        // send email, merged with the matching payment confirmation when it arrives in time
+        digest.add(notifications);
     }
 }
@@ -0,0 +1,110 @@
+package com.fatichdev.ecommerce.kafka.serialization;
+
+import com.fatichdev.ecommerce.kafka.order.Customer;
+import com.fatichdev.ecommerce.kafka.order.OrderConfirmation;
+import com.fatichdev.ecommerce.kafka.order.Product;
+import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
+import com.fatichdev.ecommerce.kafka.payment.PaymentMethod;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.fromDecimal;
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.string;
+
+/**
+ * Dual-read deserializer used while producers migrate from JSON to Avro: Avro single-object payloads are
+ * recognised by their marker bytes and decoded by topic, anything else goes to the JSON deserializer.
+ */
+public class EventDeserializer implements Deserializer<Object> {
+
+    private static final Map<String, String> TOPIC_SUBJECTS = Map.of(
+            "order-topic", "order-confirmation",
+            "payment-topic", "payment-confirmation"
+    );
+
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+    private AvroEventCodec codec;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+        var location = configs.get(AvroEventCodec.SCHEMA_LOCATION_CONFIG);
+        codec = AvroEventCodec.load(location == null ? AvroEventCodec.DEFAULT_SCHEMA_LOCATION : location.toString());
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        var subject = TOPIC_SUBJECTS.get(topic);
+        if (subject == null || !AvroEventCodec.isAvro(data)) {
+            return headers == null ? jsonDeserializer.deserialize(topic, data) : jsonDeserializer.deserialize(topic, headers, data);
+        }
+        var record = codec.decode(subject, data);
+        return switch (subject) {
+            case "order-confirmation" -> toOrderConfirmation(record);
+            default -> toPaymentConfirmation(record);
+        };
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static OrderConfirmation toOrderConfirmation(GenericRecord record) {
+        var customer = (GenericRecord) record.get("customer");
+        var products = (List<GenericRecord>) record.get("products");
+        return new OrderConfirmation(
+                string(record.get("orderReference")),
+                fromDecimal(record.get("totalAmount"), record.getSchema().getField("totalAmount").schema()),
+                paymentMethod(record.get("paymentMethod")),
+                new Customer(
+                        string(customer.get("id")),
+                        string(customer.get("firstname")),
+                        string(customer.get("lastname")),
+                        string(customer.get("email"))
+                ),
+                products.stream()
+                        .map(product -> new Product(
+                                (Integer) product.get("productId"),
+                                string(product.get("name")),
+                                string(product.get("description")),
+                                fromDecimal(product.get("price"), product.getSchema().getField("price").schema()),
+                                (Double) product.get("quantity")
+                        ))
+                        .toList()
+        );
+    }
+
+    private static PaymentConfirmation toPaymentConfirmation(GenericRecord record) {
+        return new PaymentConfirmation(
+                string(record.get("orderReference")),
+                fromDecimal(record.get("amount"), record.getSchema().getField("amount").schema()),
+                paymentMethod(record.get("paymentMethod")),
+                string(record.get("customerFirstName")),
+                string(record.get("customerLastName")),
+                string(record.get("customerEmail"))
+        );
+    }
+
+    private static PaymentMethod paymentMethod(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return PaymentMethod.valueOf(value.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
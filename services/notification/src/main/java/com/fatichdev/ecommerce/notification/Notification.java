@@ -4,6 +4,8 @@ import com.fatichdev.ecommerce.kafka.order.OrderConfirmation;
 import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -14,14 +16,29 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Document
+@CompoundIndex(name = "type_order_reference", def = "{'type': 1, 'orderReference': 1}", unique = true,
+        partialFilter = "{'orderReference': {$exists: true}}")
 public class Notification {
     @Id
     private String id;
 
     private NotificationType type;
 
+    private String orderReference;
+
     private LocalDateTime notificationDate;
 
+    // Set until the email is delivered, then removed, so the sparse index only holds the backlog
+    @Indexed(sparse = true)
+    private Boolean emailPending;
+
+    // Replica that will send the pending email, and until when it may before another replica takes it over
+    private String leaseOwner;
+
+    private LocalDateTime leasedUntil;
+
+    private LocalDateTime emailSentAt;
+
     private OrderConfirmation orderConfirmation;
 
     private PaymentConfirmation paymentConfirmation;
@@ -0,0 +1,13 @@
+package com.fatichdev.ecommerce.notification;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "application.notification.dedupe")
+public record NotificationDedupeProperties(
+        @DefaultValue("100000")
+        int recentKeys,
+        // Names this replica in leases; kept across restarts, a replica resumes its own pending emails at once
+        String instanceId
+) {
+}
@@ -0,0 +1,239 @@
+package com.fatichdev.ecommerce.notification;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decides which consumed notifications this replica emails. A notification is stored under its natural id,
+ * {@code type:orderReference}, so a replayed Kafka record maps onto the document of the first delivery instead of
+ * adding one. Recent duplicates are recognised in memory; older ones are rejected by the unique id in Mongo.
+ * A rejected duplicate whose email never went out is taken over again when this replica leased it or its lease
+ * lapsed, so a batch redelivered after a failure still gets its emails.
+ */
+@Service
+@Slf4j
+public class NotificationDeduplicator {
+
+    static final String EMAIL_PENDING = "emailPending";
+    static final String LEASE_OWNER = "leaseOwner";
+    static final String LEASED_UNTIL = "leasedUntil";
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final RecentNotificationKeys recentKeys;
+    private final Duration lease;
+    private final String instanceId;
+    private final Counter newNotifications;
+    private final Counter memoryDuplicates;
+    private final Counter storeDuplicates;
+    private final Counter takenOver;
+
+    public NotificationDeduplicator(
+            MongoTemplate mongoTemplate,
+            NotificationDedupeProperties properties,
+            NotificationDigestProperties digestProperties,
+            MeterRegistry meterRegistry
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.recentKeys = new RecentNotificationKeys(properties.recentKeys());
+        this.lease = digestProperties.lease();
+        this.instanceId = StringUtils.hasText(properties.instanceId()) ? properties.instanceId() : UUID.randomUUID().toString();
+        this.newNotifications = meterRegistry.counter("notification.dedupe", "result", "new");
+        this.memoryDuplicates = meterRegistry.counter("notification.dedupe", "result", "memory");
+        this.storeDuplicates = meterRegistry.counter("notification.dedupe", "result", "store");
+        this.takenOver = meterRegistry.counter("notification.dedupe", "result", "taken-over");
+    }
+
+    /**
+     * Inserts the notifications that have not been seen before with one unordered bulk write, leased to this replica,
+     * and returns them together with the redelivered ones this replica takes over.
+     */
+    public List<Notification> insertNew(List<Notification> notifications) {
+        var candidates = new LinkedHashMap<String, Notification>();
+        for (Notification notification : notifications) {
+            var key = keyOf(notification);
+            if (recentKeys.contains(key) || candidates.putIfAbsent(key, notification) != null) {
+                memoryDuplicates.increment();
+            }
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        var leasedUntil = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).plus(lease);
+        var batch = new ArrayList<>(candidates.values());
+        for (Notification notification : batch) {
+            if (notification.getOrderReference() != null) {
+                notification.setId(keyOf(notification));
+            }
+            notification.setLeaseOwner(instanceId);
+            notification.setLeasedUntil(leasedUntil);
+        }
+        var rejected = new HashSet<Integer>();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class)
+                    .insert(batch)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (var error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+                rejected.add(error.getIndex());
+            }
+        }
+
+        var inserted = new ArrayList<Notification>(batch.size());
+        var duplicateIds = new HashSet<String>(rejected.size());
+        for (int i = 0; i < batch.size(); i++) {
+            var notification = batch.get(i);
+            if (rejected.contains(i)) {
+                storeDuplicates.increment();
+                duplicateIds.add(notification.getId());
+            } else {
+                newNotifications.increment();
+                inserted.add(notification);
+            }
+        }
+        if (!duplicateIds.isEmpty()) {
+            var redelivered = takeOver(duplicateIds, true);
+            takenOver.increment(redelivered.size());
+            inserted.addAll(redelivered);
+            // The rest were emailed or are leased by a live replica, whose lease the scan takes over should it die
+            redelivered.forEach(notification -> duplicateIds.remove(notification.getId()));
+            recentKeys.addAll(duplicateIds);
+        }
+        if (inserted.size() < notifications.size()) {
+            log.info("Skipped {} duplicate notifications", notifications.size() - inserted.size());
+        }
+        return inserted;
+    }
+
+    /**
+     * Remembers notifications the digest accepted, so replays of them are dropped without a round trip to Mongo.
+     */
+    void handedOff(Collection<Notification> notifications) {
+        notifications.forEach(notification -> recentKeys.add(keyOf(notification)));
+    }
+
+    /**
+     * Forgets notifications whose email could not be queued or sent, so a redelivery takes them over again.
+     */
+    void forget(Collection<Notification> notifications) {
+        notifications.forEach(notification -> recentKeys.remove(keyOf(notification)));
+    }
+
+    /**
+     * Extends the leases this replica holds on the given notifications.
+     */
+    void renew(Collection<String> ids) {
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("id").in(ids).and(EMAIL_PENDING).is(true).and(LEASE_OWNER).is(instanceId)),
+                new Update().set(LEASED_UNTIL, LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).plus(lease)),
+                Notification.class
+        );
+    }
+
+    String instanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Returns the ids of up to {@code limit} pending notifications leased to this replica, in id order after
+     * {@code afterId}; after a restart these are the emails the previous run of this replica left unsent.
+     */
+    List<String> findLeased(String afterId, int limit) {
+        var criteria = Criteria.where(EMAIL_PENDING).is(true).and(LEASE_OWNER).is(instanceId);
+        if (afterId != null) {
+            criteria = criteria.and("id").gt(afterId);
+        }
+        var query = new Query(criteria).with(Sort.by("id")).limit(limit);
+        query.fields().include("id");
+        return mongoTemplate.find(query, Notification.class).stream().map(Notification::getId).toList();
+    }
+
+    /**
+     * Returns the ids of up to {@code limit} pending notifications whose lease lapsed, oldest first.
+     */
+    List<String> findLapsed(int limit) {
+        var query = new Query(lapsed(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS)))
+                .with(Sort.by("notificationDate"))
+                .limit(limit);
+        query.fields().include("id");
+        return mongoTemplate.find(query, Notification.class).stream().map(Notification::getId).toList();
+    }
+
+    /**
+     * Leases the given pending notifications to this replica where their lease lapsed, or, with {@code includeOwn},
+     * where this replica leased them already, and returns the ones it got.
+     */
+    List<Notification> takeOver(Collection<String> ids, boolean includeOwn) {
+        var now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        // Most redelivered duplicates were emailed long ago: read them by id and only write to the claimable ones
+        var byId = new Query(Criteria.where("id").in(ids));
+        byId.fields().include(EMAIL_PENDING, LEASE_OWNER, LEASED_UNTIL);
+        var claimableIds = mongoTemplate.find(byId, Notification.class).stream()
+                .filter(notification -> isClaimable(notification, now, includeOwn))
+                .map(Notification::getId)
+                .toList();
+        if (claimableIds.isEmpty()) {
+            return List.of();
+        }
+
+        var leasedUntil = now.plus(lease);
+        var claimable = includeOwn
+                ? new Criteria().orOperator(lapsed(now), Criteria.where(EMAIL_PENDING).is(true).and(LEASE_OWNER).is(instanceId))
+                : lapsed(now);
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("id").in(claimableIds).andOperator(claimable)),
+                new Update().set(LEASE_OWNER, instanceId).set(LEASED_UNTIL, leasedUntil),
+                Notification.class
+        );
+        // Whatever another replica took in between carries its owner or a different expiry
+        return mongoTemplate.find(new Query(Criteria.where("id").in(claimableIds)), Notification.class).stream()
+                .filter(notification -> instanceId.equals(notification.getLeaseOwner())
+                        && leasedUntil.equals(notification.getLeasedUntil()))
+                .toList();
+    }
+
+    private boolean isClaimable(Notification notification, LocalDateTime now, boolean includeOwn) {
+        if (!Boolean.TRUE.equals(notification.getEmailPending())) {
+            return false;
+        }
+        var leasedUntil = notification.getLeasedUntil();
+        return leasedUntil == null || leasedUntil.isBefore(now) || includeOwn && instanceId.equals(notification.getLeaseOwner());
+    }
+
+    // Documents stored before leases existed have none, and are up for grabs
+    private static Criteria lapsed(LocalDateTime now) {
+        return Criteria.where(EMAIL_PENDING).is(true).orOperator(
+                Criteria.where(LEASED_UNTIL).lt(now),
+                Criteria.where(LEASED_UNTIL).exists(false)
+        );
+    }
+
+    private static String keyOf(Notification notification) {
+        return notification.getType() + ":" + notification.getOrderReference();
+    }
+}
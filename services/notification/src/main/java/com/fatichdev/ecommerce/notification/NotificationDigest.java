@@ -0,0 +1,389 @@
+package com.fatichdev.ecommerce.notification;
+
+import com.fatichdev.ecommerce.email.EmailService;
+import com.fatichdev.ecommerce.kafka.order.OrderConfirmation;
+import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.fatichdev.ecommerce.notification.NotificationDeduplicator.EMAIL_PENDING;
+import static com.fatichdev.ecommerce.notification.NotificationDeduplicator.LEASED_UNTIL;
+import static com.fatichdev.ecommerce.notification.NotificationDeduplicator.LEASE_OWNER;
+
+/**
+ * Coalesces order and payment confirmations per order reference for a short window, so an order that is paid within
+ * the window gets a single summary email instead of two. The window is kept in the order's {@link OrderDigest} in
+ * Mongo, so the two confirmations are merged even when different replicas consume them: the replica that completes
+ * the digest, or that finds its window closed, claims it and emails every notification it holds, reading the ones
+ * consumed elsewhere from Mongo. A replica holding a notification the claimed email covers lets it go.
+ * <p>
+ * Notifications stay flagged as email-pending in Mongo until the SMTP server accepted their email. A pending
+ * notification is leased to the replica that consumed it; that replica renews the lease while it holds the
+ * notification, and once a lease lapses the periodic scan of any replica takes the notification over, which is how
+ * pending emails survive a lost replica. A replica restarted under the same instance id resumes its own at once.
+ */
+@Service
+@Slf4j
+public class NotificationDigest {
+
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    private final EmailService emailService;
+    private final NotificationDeduplicator deduplicator;
+    private final OrderDigestStore digestStore;
+    private final MongoTemplate mongoTemplate;
+    private final NotificationDigestProperties properties;
+    private final Counter summaryEmails;
+    private final Counter singleEmails;
+    private final Counter failedEmails;
+
+    // Insertion ordered, roughly by window end; guarded by "this"
+    private final LinkedHashMap<String, PendingEmail> pending = new LinkedHashMap<>();
+    private final ConcurrentLinkedQueue<Notification> sent = new ConcurrentLinkedQueue<>();
+    // Ids of the notifications waiting here or in the mail dispatcher; every scan renews their leases
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+    private volatile boolean resumed;
+
+    public NotificationDigest(
+            EmailService emailService,
+            NotificationDeduplicator deduplicator,
+            OrderDigestStore digestStore,
+            MongoTemplate mongoTemplate,
+            NotificationDigestProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.emailService = emailService;
+        this.deduplicator = deduplicator;
+        this.digestStore = digestStore;
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.summaryEmails = meterRegistry.counter("notification.digest.emails", "kind", "summary");
+        this.singleEmails = meterRegistry.counter("notification.digest.emails", "kind", "single");
+        this.failedEmails = meterRegistry.counter("notification.digest.emails", "kind", "failed");
+        Gauge.builder("notification.digest.pending", this, NotificationDigest::pendingCount).register(meterRegistry);
+    }
+
+    /**
+     * Renews the leases of the notifications held here, then takes over the pending notifications whose lease lapsed.
+     * The first scan also resumes the notifications an earlier run of this replica still leases.
+     */
+    @Scheduled(fixedDelayString = "${application.notification.digest.scan-interval-ms:60000}")
+    public void scanPending() {
+        var heldIds = List.copyOf(held);
+        for (int from = 0; from < heldIds.size(); from += SCAN_BATCH_SIZE) {
+            deduplicator.renew(heldIds.subList(from, Math.min(heldIds.size(), from + SCAN_BATCH_SIZE)));
+        }
+
+        int claimed = 0;
+        if (!resumed) {
+            String afterId = null;
+            List<String> leased;
+            do {
+                leased = deduplicator.findLeased(afterId, SCAN_BATCH_SIZE);
+                if (leased.isEmpty()) {
+                    break;
+                }
+                var mine = deduplicator.takeOver(leased, true);
+                add(mine);
+                claimed += mine.size();
+                afterId = leased.getLast();
+            } while (leased.size() == SCAN_BATCH_SIZE);
+            resumed = true;
+        }
+        List<String> lapsed;
+        do {
+            lapsed = deduplicator.findLapsed(SCAN_BATCH_SIZE);
+            if (lapsed.isEmpty()) {
+                break;
+            }
+            var mine = deduplicator.takeOver(lapsed, false);
+            add(mine, true);
+            claimed += mine.size();
+        } while (lapsed.size() == SCAN_BATCH_SIZE);
+        if (claimed > 0) {
+            log.info("Took over {} notifications waiting for an email", claimed);
+        }
+    }
+
+    public void add(List<Notification> notifications) {
+        add(notifications, false);
+    }
+
+    /**
+     * @param lapsed whether the notifications were taken over after their lease lapsed; a claim covering them then
+     *               outlived its email, so they are emailed whoever claimed them
+     */
+    private void add(List<Notification> notifications, boolean lapsed) {
+        var accepted = new ArrayList<Notification>(notifications.size());
+        for (Notification notification : notifications) {
+            // Already waiting here, e.g. taken over again from a redelivered batch
+            if (held.add(notification.getId())) {
+                accepted.add(notification);
+            }
+        }
+        deduplicator.handedOff(accepted);
+        if (accepted.isEmpty()) {
+            return;
+        }
+        if (!properties.enabled()) {
+            sendAll(accepted.stream().map(notification -> new PendingEmail(null).add(notification)).toList());
+            return;
+        }
+
+        var digests = digestStore.join(accepted, properties.window());
+        var settled = new ArrayList<PendingEmail>();
+        synchronized (this) {
+            for (Notification notification : accepted) {
+                var digest = digests.get(notification.getOrderReference());
+                var entry = pending.computeIfAbsent(notification.getOrderReference(), reference -> new PendingEmail(digest));
+                entry.add(notification).digest = digest;
+                if (lapsed) {
+                    entry.lapsedIds.add(notification.getId());
+                }
+            }
+            for (OrderDigest digest : digests.values()) {
+                if (digest.isComplete() || digest.isClaimed()) {
+                    settled.add(pending.remove(digest.getOrderReference()));
+                }
+            }
+            if (pending.size() > properties.maxPending()) {
+                // Full: the oldest orders go out without waiting rather than growing the state without bound
+                var eldest = pending.values().iterator();
+                while (pending.size() > properties.maxPending()) {
+                    settled.add(eldest.next());
+                    eldest.remove();
+                }
+            }
+        }
+        sendAll(settle(settled));
+    }
+
+    @Scheduled(fixedDelayString = "${application.notification.digest.flush-interval-ms:1000}")
+    public void flushExpired() {
+        var now = LocalDateTime.now();
+        var expired = new ArrayList<PendingEmail>();
+        synchronized (this) {
+            var entries = pending.values().iterator();
+            while (entries.hasNext()) {
+                var entry = entries.next();
+                if (!entry.windowEndsAt().isAfter(now)) {
+                    expired.add(entry);
+                    entries.remove();
+                }
+            }
+        }
+        try {
+            sendAll(settle(expired));
+        } finally {
+            markSent();
+        }
+    }
+
+    /**
+     * Decides, through the shared digest, which emails this replica sends for entries whose order is complete, whose
+     * window closed or whose digest another replica already claimed.
+     */
+    private List<PendingEmail> settle(List<PendingEmail> entries) {
+        var unclaimed = entries.stream().map(entry -> entry.digest).filter(digest -> !digest.isClaimed()).toList();
+        if (!unclaimed.isEmpty()) {
+            var claimed = digestStore.claim(unclaimed, instanceId());
+            entries.forEach(entry -> entry.digest = claimed.getOrDefault(entry.orderReference(), entry.digest));
+        }
+
+        var ready = new ArrayList<PendingEmail>(entries.size());
+        var elsewhere = new ArrayList<String>();
+        for (PendingEmail entry : entries) {
+            if (entry.digest.isClaimedBy(instanceId())) {
+                entry.claimed = true;
+                ready.add(entry);
+                var covered = new ArrayList<>(entry.digest.getClaims().getFirst().coveredIds());
+                entry.notifications.forEach(notification -> covered.remove(notification.getId()));
+                elsewhere.addAll(covered);
+            } else {
+                var alone = alone(entry);
+                if (alone != null) {
+                    ready.add(alone);
+                }
+            }
+        }
+        if (!elsewhere.isEmpty()) {
+            // Consumed by another replica, which lets them go once it sees the claim
+            var claimedHere = new HashMap<String, PendingEmail>();
+            ready.stream().filter(email -> email.claimed).forEach(email -> claimedHere.put(email.orderReference(), email));
+            digestStore.findNotifications(elsewhere)
+                    .forEach(notification -> claimedHere.get(notification.getOrderReference()).add(notification));
+        }
+        return ready;
+    }
+
+    // The claimer emails what its claim covers; anything that joined afterwards goes out on its own
+    private PendingEmail alone(PendingEmail entry) {
+        var alone = new PendingEmail(entry.digest);
+        for (Notification notification : entry.notifications) {
+            if (entry.digest.covers(notification.getId()) && !entry.lapsedIds.contains(notification.getId())) {
+                held.remove(notification.getId());
+            } else {
+                alone.add(notification);
+            }
+        }
+        return alone.notifications.isEmpty() ? null : alone;
+    }
+
+    private String instanceId() {
+        return deduplicator.instanceId();
+    }
+
+    private void sendAll(List<PendingEmail> ready) {
+        for (int i = 0; i < ready.size(); i++) {
+            var email = ready.get(i);
+            try {
+                send(email);
+            } catch (MessagingException e) {
+                failedEmails.increment();
+                log.warn("WARNING - Cannot build email for order {}", email.orderReference(), e);
+                giveBack(email);
+            } catch (RuntimeException e) {
+                // Not queued, typically because the dispatch queue is full; the scan retries them once their lease lapses
+                ready.subList(i, ready.size()).forEach(this::giveBack);
+                throw e;
+            }
+        }
+    }
+
+    private void send(PendingEmail email) throws MessagingException {
+        CompletableFuture<Void> queued;
+        if (email.isComplete()) {
+            var order = email.orderConfirmation;
+            queued = emailService.sendOrderSummaryEmail(
+                    order.customer().email(),
+                    order.customer().firstname() + " " + order.customer().lastname(),
+                    order.totalAmount(),
+                    email.paymentConfirmation.amount(),
+                    order.orderReference(),
+                    order.products()
+            );
+            summaryEmails.increment();
+        } else if (email.orderConfirmation != null) {
+            var order = email.orderConfirmation;
+            queued = emailService.sendOrderConfirmationEmail(
+                    order.customer().email(),
+                    order.customer().firstname() + " " + order.customer().lastname(),
+                    order.totalAmount(),
+                    order.orderReference(),
+                    order.products()
+            );
+            singleEmails.increment();
+        } else {
+            var payment = email.paymentConfirmation;
+            queued = emailService.sendPaymentSuccessEmail(
+                    payment.customerEmail(),
+                    payment.customerFirstName() + " " + payment.customerLastName(),
+                    payment.amount(),
+                    payment.orderReference()
+            );
+            singleEmails.increment();
+        }
+        queued.whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                sent.addAll(email.notifications);
+                release(email);
+            } else {
+                // Still flagged as pending in Mongo, so the scan retries the email once the lease lapses
+                failedEmails.increment();
+                log.warn("WARNING - Cannot send email for order {}", email.orderReference(), failure);
+                giveBack(email);
+            }
+        });
+    }
+
+    private void release(PendingEmail email) {
+        email.notifications.forEach(notification -> held.remove(notification.getId()));
+    }
+
+    // Not sent: a redelivery of these notifications, or the scan once their lease lapsed, may take them over again
+    private void giveBack(PendingEmail email) {
+        release(email);
+        deduplicator.forget(email.notifications);
+        if (email.claimed) {
+            digestStore.unclaim(email.orderReference());
+        }
+    }
+
+    private void markSent() {
+        var sentAt = LocalDateTime.now();
+        var operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class);
+        int count = 0;
+        Notification notification;
+        while ((notification = sent.poll()) != null) {
+            operations.updateOne(
+                    new Query(Criteria.where("id").is(notification.getId())),
+                    new Update().set("emailSentAt", sentAt).unset(EMAIL_PENDING).unset(LEASE_OWNER).unset(LEASED_UNTIL)
+            );
+            count++;
+        }
+        if (count > 0) {
+            operations.execute();
+        }
+    }
+
+    private synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private static final class PendingEmail {
+        private final List<Notification> notifications = new ArrayList<>(2);
+        private final Set<String> lapsedIds = new HashSet<>(2);
+        private OrderDigest digest;
+        private boolean claimed;
+        private OrderConfirmation orderConfirmation;
+        private PaymentConfirmation paymentConfirmation;
+
+        private PendingEmail(OrderDigest digest) {
+            this.digest = digest;
+        }
+
+        private LocalDateTime windowEndsAt() {
+            return digest.getWindowEndsAt();
+        }
+
+        private String orderReference() {
+            return notifications.getFirst().getOrderReference();
+        }
+
+        private PendingEmail add(Notification notification) {
+            notifications.add(notification);
+            if (notification.getOrderConfirmation() != null) {
+                orderConfirmation = notification.getOrderConfirmation();
+            }
+            if (notification.getPaymentConfirmation() != null) {
+                paymentConfirmation = notification.getPaymentConfirmation();
+            }
+            return this;
+        }
+
+        private boolean isComplete() {
+            return orderConfirmation != null && paymentConfirmation != null;
+        }
+    }
+}
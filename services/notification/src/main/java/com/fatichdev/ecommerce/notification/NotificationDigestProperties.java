@@ -0,0 +1,19 @@
+package com.fatichdev.ecommerce.notification;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.notification.digest")
+public record NotificationDigestProperties(
+        @DefaultValue("true")
+        boolean enabled,
+        @DefaultValue("10s")
+        Duration window,
+        @DefaultValue("50000")
+        int maxPending,
+        @DefaultValue("5m")
+        Duration lease
+) {
+}
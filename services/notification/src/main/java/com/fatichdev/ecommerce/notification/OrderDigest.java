@@ -0,0 +1,67 @@
+package com.fatichdev.ecommerce.notification;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The coalescing window of one order, shared by every replica: the notifications consumed for the order, wherever
+ * they were consumed, and the replicas that claimed the order's email once it was complete or its window closed.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@Document
+public class OrderDigest {
+    @Id
+    private String orderReference;
+
+    private String orderNotificationId;
+
+    private String paymentNotificationId;
+
+    // Opened by the first notification of the order; long after it closed, the document is dropped
+    @Indexed(expireAfter = "1d")
+    private LocalDateTime windowEndsAt;
+
+    // Every claim made, in order; the first one is the claim that stands, the others lost to it
+    private List<Claim> claims;
+
+    boolean isComplete() {
+        return orderNotificationId != null && paymentNotificationId != null;
+    }
+
+    boolean isClaimed() {
+        return claims != null && !claims.isEmpty();
+    }
+
+    boolean isClaimedBy(String owner) {
+        return isClaimed() && claims.getFirst().claimedBy().equals(owner);
+    }
+
+    // The notifications the standing claim's email covers; any that joined later are emailed on their own
+    boolean covers(String notificationId) {
+        return isClaimed() && claims.getFirst().coveredIds().contains(notificationId);
+    }
+
+    List<String> notificationIds() {
+        var ids = new ArrayList<String>(2);
+        if (orderNotificationId != null) {
+            ids.add(orderNotificationId);
+        }
+        if (paymentNotificationId != null) {
+            ids.add(paymentNotificationId);
+        }
+        return ids;
+    }
+
+    record Claim(String claimedBy, List<String> coveredIds) {
+    }
+}
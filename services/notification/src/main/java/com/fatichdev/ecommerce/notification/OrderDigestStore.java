@@ -0,0 +1,95 @@
+package com.fatichdev.ecommerce.notification;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.fatichdev.ecommerce.notification.NotificationType.ORDER_CONFIRMATION;
+
+/**
+ * Reads and writes the {@link OrderDigest} of each order. Every write selects the digest by order reference alone,
+ * so it goes through the primary key index.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderDigestStore {
+
+    private static final String ORDER_NOTIFICATION_ID = "orderNotificationId";
+    private static final String PAYMENT_NOTIFICATION_ID = "paymentNotificationId";
+    private static final String CLAIMS = "claims";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Adds the notifications to the digests of their orders with one unordered bulk write, opening the window of
+     * the orders seen for the first time, and returns the digests of those orders by order reference.
+     */
+    Map<String, OrderDigest> join(Collection<Notification> notifications, Duration window) {
+        var windowEndsAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).plus(window);
+        var operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderDigest.class);
+        for (Notification notification : notifications) {
+            operations.upsert(
+                    byReference(notification.getOrderReference()),
+                    new Update().set(idField(notification), notification.getId()).setOnInsert("windowEndsAt", windowEndsAt)
+            );
+        }
+        operations.execute();
+        return find(notifications.stream().map(Notification::getOrderReference).distinct().toList());
+    }
+
+    /**
+     * Claims the emails of the given orders for {@code owner} with one unordered bulk write, each claim covering the
+     * notifications its digest held as last read, and returns the digests as they stand after the claims by order
+     * reference. Every claim is appended and the first one wins, so exactly one replica finds itself the claimer of
+     * an order however many claim it at once.
+     */
+    Map<String, OrderDigest> claim(Collection<OrderDigest> seen, String owner) {
+        var operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderDigest.class);
+        for (OrderDigest digest : seen) {
+            operations.updateOne(
+                    byReference(digest.getOrderReference()),
+                    new Update().push(CLAIMS, new OrderDigest.Claim(owner, digest.notificationIds()))
+            );
+        }
+        operations.execute();
+        return find(seen.stream().map(OrderDigest::getOrderReference).toList());
+    }
+
+    /**
+     * Drops the claim of an email that could not be sent, so whichever replica takes the notifications over claims
+     * again. Only the standing claimer gives a claim up, and nobody else claims while it stands.
+     */
+    void unclaim(String orderReference) {
+        mongoTemplate.updateFirst(byReference(orderReference), new Update().unset(CLAIMS), OrderDigest.class);
+    }
+
+    List<Notification> findNotifications(Collection<String> ids) {
+        return mongoTemplate.find(new Query(Criteria.where("id").in(ids)), Notification.class);
+    }
+
+    private Map<String, OrderDigest> find(List<String> orderReferences) {
+        return mongoTemplate.find(new Query(Criteria.where("orderReference").in(orderReferences)), OrderDigest.class).stream()
+                .collect(Collectors.toMap(OrderDigest::getOrderReference, Function.identity()));
+    }
+
+    private static Query byReference(String orderReference) {
+        return new Query(Criteria.where("orderReference").is(orderReference));
+    }
+
+    private static String idField(Notification notification) {
+        return notification.getType() == ORDER_CONFIRMATION ? ORDER_NOTIFICATION_ID : PAYMENT_NOTIFICATION_ID;
+    }
+}
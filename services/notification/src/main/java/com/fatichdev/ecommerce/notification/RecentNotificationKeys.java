@@ -0,0 +1,41 @@
+package com.fatichdev.ecommerce.notification;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded memory of the notification keys this replica recently handed to the digest or found handled in Mongo,
+ * least recently seen first. A key is only remembered once its notification was handed off, so a batch that failed
+ * before that point is not mistaken for a replay when it is redelivered. Anything older is left to the unique id in
+ * Mongo.
+ */
+class RecentNotificationKeys {
+
+    private final LinkedHashMap<String, Boolean> recent;
+
+    RecentNotificationKeys(int recentKeys) {
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentKeys;
+            }
+        };
+    }
+
+    synchronized boolean contains(String key) {
+        return recent.get(key) != null;
+    }
+
+    synchronized void add(String key) {
+        recent.put(key, Boolean.TRUE);
+    }
+
+    synchronized void addAll(Collection<String> keys) {
+        keys.forEach(key -> recent.put(key, Boolean.TRUE));
+    }
+
+    synchronized void remove(String key) {
+        recent.remove(key);
+    }
+}
@@ -0,0 +1,126 @@
+package com.fatichdev.ecommerce.email;
+
+import com.fatichdev.ecommerce.kafka.order.Product;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.dialect.IDialect;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresolver.ITemplateResolver;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static com.fatichdev.ecommerce.email.EmailTemplates.ORDER_CONFIRMATION;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Renders the order confirmation for orders of 1, 10 and 100 products the way EmailService used to (a fresh
+ * variable map and context per email, Boot's default engine) and through {@link EmailTemplateRenderer}, and reports
+ * renders per second and bytes allocated per render.
+ */
+@Slf4j
+class EmailTemplateRendererBenchmarkTest {
+
+    private static final int WARM_UP = 5_000;
+    private static final int ITERATIONS = 20_000;
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void theRendererProducesTheSameBodyWithLessAllocation() {
+        var defaultEngine = new SpringTemplateEngine();
+        defaultEngine.addTemplateResolver(templateResolver());
+        var renderer = new EmailTemplateRenderer(configuredEngine());
+        renderer.precompile();
+
+        for (int products : new int[]{1, 10, 100}) {
+            var order = products(products);
+            Supplier<String> perEmail = () -> {
+                Map<String, Object> variables = new HashMap<>();
+                variables.put("customerName", "Ada Lovelace");
+                variables.put("totalAmount", new BigDecimal("1249.90"));
+                variables.put("orderReference", "ORD-20260301-000042");
+                variables.put("products", order);
+                var context = new Context();
+                context.setVariables(variables);
+                return defaultEngine.process(ORDER_CONFIRMATION.getTemplate(), context);
+            };
+            Supplier<String> rendered = () -> renderer.render(ORDER_CONFIRMATION, context -> {
+                context.setVariable("customerName", "Ada Lovelace");
+                context.setVariable("totalAmount", new BigDecimal("1249.90"));
+                context.setVariable("orderReference", "ORD-20260301-000042");
+                context.setVariable("products", order);
+            });
+            assertThat(rendered.get()).isEqualTo(perEmail.get());
+
+            var before = measure(perEmail);
+            var after = measure(rendered);
+            log.info("{} products: per email {} renders/s, {} bytes/render | renderer {} renders/s, {} bytes/render",
+                    products, Math.round(before.rendersPerSecond()), before.bytesPerRender(),
+                    Math.round(after.rendersPerSecond()), after.bytesPerRender());
+
+            // Renders per second are reported, not asserted: they depend on the machine
+            assertThat(after.bytesPerRender()).isLessThan(before.bytesPerRender());
+        }
+    }
+
+    private Measurement measure(Supplier<String> render) {
+        var length = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            length += render.get().length();
+        }
+        var threadId = Thread.currentThread().threadId();
+        var allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        var start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            length += render.get().length();
+        }
+        var elapsed = System.nanoTime() - start;
+        var allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        assertThat(length).isPositive();
+        return new Measurement(ITERATIONS * 1e9 / elapsed, allocated / ITERATIONS);
+    }
+
+    private static SpringTemplateEngine configuredEngine() {
+        var thymeleafProperties = new ThymeleafProperties();
+        thymeleafProperties.setEnableSpringElCompiler(true);
+        var beans = new StaticListableBeanFactory(Map.of("templateResolver", templateResolver()));
+        return new EmailTemplateConfig().templateEngine(
+                thymeleafProperties,
+                beans.getBeanProvider(ITemplateResolver.class),
+                beans.getBeanProvider(IDialect.class),
+                16
+        );
+    }
+
+    // What Boot configures from the default spring.thymeleaf properties
+    private static ClassLoaderTemplateResolver templateResolver() {
+        var resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+        return resolver;
+    }
+
+    private static List<Product> products(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(id -> new Product(id, "Product " + id, "Description of product " + id, new BigDecimal("24.99"), 2))
+                .toList();
+    }
+
+    private record Measurement(double rendersPerSecond, long bytesPerRender) {
+    }
+}
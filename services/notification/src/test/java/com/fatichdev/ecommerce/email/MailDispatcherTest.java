@@ -0,0 +1,108 @@
+package com.fatichdev.ecommerce.email;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MailDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+    private GreenMail smtpServer;
+    private MailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            mailSender.setProtocol("smtp");
+            mailSender.setHost("localhost");
+            mailSender.setPort(socket.getLocalPort());
+        }
+        smtpServer = new GreenMail(new ServerSetup(mailSender.getPort(), "localhost", ServerSetup.PROTOCOL_SMTP));
+        dispatcher = new MailDispatcher(mailSender, new MailDispatchProperties(
+                1,
+                Duration.ofMillis(100),
+                1,
+                100,
+                Duration.ofSeconds(1),
+                100,
+                2,
+                Duration.ofMillis(20),
+                Duration.ofMillis(100)
+        ), meterRegistry);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+        smtpServer.stop();
+    }
+
+    @Test
+    void anEmailQueuedDuringAnOutageIsSentOnceTheServerIsBack() throws Exception {
+        dispatcher.submit(message("ada@example.com"), "ada@example.com");
+        // Well past the two attempts an email gets when the server refuses it
+        Thread.sleep(500);
+
+        // The waiting email still holds the only permit
+        assertThatThrownBy(() -> dispatcher.submit(message("grace@example.com"), "grace@example.com"))
+                .isInstanceOf(IllegalStateException.class);
+
+        smtpServer.start();
+        assertThat(smtpServer.waitForIncomingEmail(5000, 1)).isTrue();
+        assertThat(smtpServer.getReceivedMessages()[0].getAllRecipients())
+                .containsExactly(new InternetAddress("ada@example.com"));
+
+        dispatcher.submit(message("grace@example.com"), "grace@example.com");
+        assertThat(smtpServer.waitForIncomingEmail(5000, 2)).isTrue();
+        assertThat(meterRegistry.counter("mail.send.dropped").count()).isZero();
+    }
+
+    @Test
+    void anEmailTheServerRefusesIsDroppedAndGivesBackItsPermit() throws Exception {
+        smtpServer.start();
+
+        // No recipients: every attempt is refused
+        dispatcher.submit(message(null), "nobody@example.com");
+        waitForDrop();
+
+        dispatcher.submit(message("ada@example.com"), "ada@example.com");
+        assertThat(smtpServer.waitForIncomingEmail(5000, 1)).isTrue();
+        assertThat(meterRegistry.counter("mail.send.retries").count()).isEqualTo(1);
+    }
+
+    private void waitForDrop() throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (meterRegistry.counter("mail.send.dropped").count() == 0) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private MimeMessage message(String to) throws MessagingException {
+        var message = mailSender.createMimeMessage();
+        message.setFrom("hello@fatihes.com");
+        if (to != null) {
+            message.setRecipients(Message.RecipientType.TO, to);
+        }
+        message.setSubject("Order confirmation");
+        message.setText("Thank you for your order");
+        return message;
+    }
+}
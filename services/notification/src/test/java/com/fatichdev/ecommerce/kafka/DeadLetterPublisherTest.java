@@ -0,0 +1,113 @@
+package com.fatichdev.ecommerce.kafka;
+
+import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
+import com.fatichdev.ecommerce.kafka.payment.PaymentMethod;
+import com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec;
+import com.fatichdev.ecommerce.kafka.serialization.EventDeserializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeadLetterPublisherTest {
+
+    private static final String PAYMENT_TOPIC = "payment-topic";
+
+    @SuppressWarnings("unchecked")
+    private final KafkaOperations<String, byte[]> deadLetterTemplate = mock(KafkaOperations.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeadLetterPublisher deadLetters = new DeadLetterPublisher(deadLetterTemplate, meterRegistry);
+    private final ErrorHandlingDeserializer<Object> deserializer = new ErrorHandlingDeserializer<>(new EventDeserializer());
+    private final AvroEventCodec codec = AvroEventCodec.load(AvroEventCodec.DEFAULT_SCHEMA_LOCATION);
+
+    DeadLetterPublisherTest() {
+        deserializer.configure(Map.of(), false);
+    }
+
+    @Test
+    void aRecordFromAnUnknownSchemaIsParkedAndTheRestOfTheBatchIsRead() throws IOException {
+        when(deadLetterTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        var unknown = unknownSchemaPayload();
+
+        var readable = deadLetters.readable(List.of(
+                consumed(0, payment("ORD-1")),
+                consumed(1, unknown),
+                consumed(2, payment("ORD-2"))
+        ));
+
+        assertThat(readable).extracting(PaymentConfirmation::orderReference).containsExactly("ORD-1", "ORD-2");
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<ProducerRecord<String, byte[]>> parked = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(deadLetterTemplate).send(parked.capture());
+        assertThat(parked.getValue().topic()).isEqualTo("payment-topic.DLT");
+        assertThat(parked.getValue().key()).isEqualTo("key-1");
+        assertThat(parked.getValue().value()).isEqualTo(unknown);
+        assertThat(header(parked.getValue(), KafkaHeaders.DLT_ORIGINAL_OFFSET)).isEqualTo("1");
+        assertThat(header(parked.getValue(), KafkaHeaders.DLT_EXCEPTION_FQCN)).isEqualTo("org.apache.avro.message.MissingSchemaException");
+        assertThat(meterRegistry.counter("notification.dead.letters", "topic", PAYMENT_TOPIC).count()).isEqualTo(1);
+    }
+
+    @Test
+    void aPaymentWithoutAnAmountIsReadWithoutOne() {
+        var readable = deadLetters.readable(List.of(consumed(0, payment("ORD-3"))));
+
+        assertThat(readable).singleElement().satisfies(payment -> {
+            assertThat(payment.orderReference()).isEqualTo("ORD-3");
+            assertThat(payment.amount()).isNull();
+            assertThat(payment.paymentMethod()).isEqualTo(PaymentMethod.VISA);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConsumerRecord<String, PaymentConfirmation> consumed(long offset, byte[] data) {
+        var headers = new RecordHeaders();
+        var value = (PaymentConfirmation) deserializer.deserialize(PAYMENT_TOPIC, headers, data);
+        return new ConsumerRecord<>(PAYMENT_TOPIC, 0, offset, 0L, TimestampType.CREATE_TIME, -1, data.length,
+                "key-" + offset, value, headers, Optional.empty());
+    }
+
+    private byte[] payment(String orderReference) {
+        var record = new GenericData.Record(codec.schema("payment-confirmation"));
+        record.put("orderReference", orderReference);
+        record.put("paymentMethod", "VISA");
+        record.put("customerEmail", "ada@example.com");
+        return codec.encode("payment-confirmation", record);
+    }
+
+    // Written by a producer that already moved to a schema this consumer was not deployed with
+    private static byte[] unknownSchemaPayload() throws IOException {
+        var schema = SchemaBuilder.record("PaymentConfirmation").namespace("com.fatichdev.ecommerce.events")
+                .fields().optionalString("orderReference").optionalString("voucher").endRecord();
+        var record = new GenericData.Record(schema);
+        record.put("orderReference", "ORD-9");
+        return new BinaryMessageEncoder<GenericRecord>(GenericData.get(), schema).encode(record).array();
+    }
+
+    private static String header(ProducerRecord<String, byte[]> record, String key) {
+        return new String(record.headers().lastHeader(key).value(), StandardCharsets.UTF_8);
+    }
+}
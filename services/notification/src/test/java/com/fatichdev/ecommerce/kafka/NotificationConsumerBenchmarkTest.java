@@ -0,0 +1,203 @@
+package com.fatichdev.ecommerce.kafka;
+
+import com.fatichdev.ecommerce.email.EmailService;
+import com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec;
+import com.fatichdev.ecommerce.notification.Notification;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Consumes fifty thousand orders, an order and a payment confirmation each, plus a few records of an unknown schema,
+ * from an embedded broker through the service's own listener containers, set up as in notification-service.yml:
+ * batch listeners behind the ErrorHandlingDeserializer, six consumers per topic, Mongo behind them. Reports how many
+ * messages per second reach Mongo once the containers start on the full topics. Only the SMTP side is stubbed out.
+ */
+@SpringBootTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "management.tracing.enabled=false",
+        "spring.mail.host=localhost",
+        "spring.data.mongodb.auto-index-creation=true",
+        "spring.kafka.consumer.group-id=notification-benchmark",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "spring.kafka.consumer.enable-auto-commit=false",
+        "spring.kafka.consumer.max-poll-records=500",
+        "spring.kafka.consumer.key-deserializer=org.apache.kafka.common.serialization.StringDeserializer",
+        "spring.kafka.consumer.value-deserializer=org.springframework.kafka.support.serializer.ErrorHandlingDeserializer",
+        "spring.kafka.consumer.properties.spring.deserializer.value.delegate.class=com.fatichdev.ecommerce.kafka.serialization.EventDeserializer",
+        "spring.kafka.consumer.properties.spring.json.trusted.packages=*",
+        "spring.kafka.listener.type=batch",
+        "spring.kafka.listener.ack-mode=batch",
+        "spring.kafka.listener.concurrency=6",
+        // Started by the test once the topics are full
+        "spring.kafka.listener.auto-startup=false"
+})
+@Slf4j
+class NotificationConsumerBenchmarkTest {
+
+    private static final int ORDERS = 50_000;
+    private static final int UNREADABLE = 100;
+    private static final int PARTITIONS = 6;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+    private static final EmbeddedKafkaKraftBroker BROKER = new EmbeddedKafkaKraftBroker(1, PARTITIONS, "order-topic", "payment-topic");
+
+    @DynamicPropertySource
+    static void infrastructure(DynamicPropertyRegistry registry) {
+        var address = MONGO.bind();
+        registry.add("spring.data.mongodb.uri", () -> "mongodb://localhost:" + address.getPort() + "/notification");
+        BROKER.afterPropertiesSet();
+        registry.add("spring.kafka.bootstrap-servers", BROKER::getBrokersAsString);
+    }
+
+    @AfterAll
+    static void stopInfrastructure() {
+        BROKER.destroy();
+        MONGO.shutdown();
+    }
+
+    @MockBean
+    private EmailService emailService;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listeners;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AvroEventCodec codec = AvroEventCodec.load(AvroEventCodec.DEFAULT_SCHEMA_LOCATION);
+
+    @Test
+    void consumesBothTopicsIntoMongo() throws Exception {
+        var queued = CompletableFuture.<Void>completedFuture(null);
+        when(emailService.sendOrderSummaryEmail(any(), any(), any(), any(), any(), any())).thenReturn(queued);
+        when(emailService.sendOrderConfirmationEmail(any(), any(), any(), any(), any())).thenReturn(queued);
+        when(emailService.sendPaymentSuccessEmail(any(), any(), any(), any())).thenReturn(queued);
+        produce();
+
+        var start = System.nanoTime();
+        listeners.getListenerContainers().forEach(MessageListenerContainer::start);
+        await(() -> mongoTemplate.count(new Query(), Notification.class), 2L * ORDERS);
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        log.info("Consumed {} confirmations and {} unreadable records into Mongo in {} ms: {} messages/s",
+                2 * ORDERS, UNREADABLE, elapsed.toMillis(), Math.round((2 * ORDERS + UNREADABLE) / (elapsed.toNanos() / 1e9)));
+
+        // Messages per second are reported, not asserted: they depend on the machine
+        assertThat(listeners.getListenerContainers()).hasSize(2).allSatisfy(container -> {
+            assertThat(((ConcurrentMessageListenerContainer<?, ?>) container).getConcurrency()).isEqualTo(PARTITIONS);
+            assertThat(container.getAssignedPartitions()).hasSize(PARTITIONS);
+        });
+        await(() -> (long) meterRegistry.counter("notification.dead.letters", "topic", "payment-topic").count(), UNREADABLE);
+        // Every order is emailed once its digest window closes
+        await(() -> mongoTemplate.count(new Query(Criteria.where("emailPending").is(true)), Notification.class), 0L);
+    }
+
+    private void produce() throws IOException {
+        var configs = Map.<String, Object>of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BROKER.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class,
+                ProducerConfig.LINGER_MS_CONFIG, 20
+        );
+        var producerFactory = new DefaultKafkaProducerFactory<String, byte[]>(configs);
+        try {
+            var template = new KafkaTemplate<>(producerFactory);
+            var sends = new ArrayList<CompletableFuture<?>>(2 * ORDERS + UNREADABLE);
+            var unreadable = unknownSchemaPayload();
+            for (int i = 0; i < ORDERS; i++) {
+                var reference = "ORD-" + i;
+                sends.add(template.send(new ProducerRecord<>("order-topic", reference, orderConfirmation(reference))));
+                sends.add(template.send(new ProducerRecord<>("payment-topic", reference, paymentConfirmation(reference))));
+                if (i % (ORDERS / UNREADABLE) == 0) {
+                    sends.add(template.send(new ProducerRecord<>("payment-topic", reference, unreadable)));
+                }
+            }
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            producerFactory.destroy();
+        }
+    }
+
+    private byte[] orderConfirmation(String reference) {
+        var schema = codec.schema("order-confirmation");
+        var customer = new GenericData.Record(schema.getField("customer").schema());
+        customer.put("id", "c-1");
+        customer.put("firstname", "Ada");
+        customer.put("lastname", "Lovelace");
+        customer.put("email", "ada@example.com");
+        var record = new GenericData.Record(schema);
+        record.put("orderReference", reference);
+        record.put("paymentMethod", "VISA");
+        record.put("customer", customer);
+        record.put("products", List.of());
+        return codec.encode("order-confirmation", record);
+    }
+
+    private byte[] paymentConfirmation(String reference) {
+        var record = new GenericData.Record(codec.schema("payment-confirmation"));
+        record.put("orderReference", reference);
+        record.put("paymentMethod", "VISA");
+        record.put("customerFirstName", "Ada");
+        record.put("customerLastName", "Lovelace");
+        record.put("customerEmail", "ada@example.com");
+        return codec.encode("payment-confirmation", record);
+    }
+
+    // Written by a producer that already moved to a schema this consumer was not deployed with
+    private static byte[] unknownSchemaPayload() throws IOException {
+        var schema = SchemaBuilder.record("PaymentConfirmation").namespace("com.fatichdev.ecommerce.events")
+                .fields().optionalString("orderReference").optionalString("voucher").endRecord();
+        var record = new GenericData.Record(schema);
+        record.put("orderReference", "ORD-X");
+        return new BinaryMessageEncoder<GenericRecord>(GenericData.get(), schema).encode(record).array();
+    }
+
+    private static void await(LongSupplier actual, long expected) throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (actual.getAsLong() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(200);
+        }
+        assertThat(actual.getAsLong()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,139 @@
+package com.fatichdev.ecommerce.notification;
+
+import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
+import com.fatichdev.ecommerce.kafka.payment.PaymentMethod;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.fatichdev.ecommerce.notification.NotificationType.PAYMENT_CONFIRMATION;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.data.mongodb.auto-index-creation=true"
+})
+class NotificationDeduplicatorTest {
+
+    // In-memory stand-in speaking the Mongo wire protocol
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        var address = MONGO.bind();
+        registry.add("spring.data.mongodb.uri", () -> "mongodb://localhost:" + address.getPort() + "/notification");
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.remove(new Query(), Notification.class);
+    }
+
+    @Test
+    void aReplayedRecordMapsOntoTheNotificationOfItsFirstDelivery() {
+        var first = newReplica(Duration.ofMinutes(5)).insertNew(List.of(payment("ORD-1")));
+        var replayed = newReplica(Duration.ofMinutes(5)).insertNew(List.of(payment("ORD-1")));
+
+        assertThat(first).extracting(Notification::getId).containsExactly("PAYMENT_CONFIRMATION:ORD-1");
+        // Still leased to the replica that consumed it first
+        assertThat(replayed).isEmpty();
+        assertThat(mongoTemplate.count(new Query(), Notification.class)).isEqualTo(1);
+    }
+
+    @Test
+    void aPendingNotificationWhoseLeaseLapsedIsTakenOverOnRedelivery() throws InterruptedException {
+        newReplica(Duration.ofMillis(1)).insertNew(List.of(payment("ORD-2")));
+        Thread.sleep(10);
+
+        var redelivered = newReplica(Duration.ofMinutes(5)).insertNew(List.of(payment("ORD-2")));
+
+        assertThat(redelivered).extracting(Notification::getOrderReference).containsExactly("ORD-2");
+        assertThat(redelivered.getFirst().getLeasedUntil()).isAfter(LocalDateTime.now());
+    }
+
+    @Test
+    void aNotificationWhoseEmailWentOutIsNeverTakenOver() throws InterruptedException {
+        newReplica(Duration.ofMillis(1)).insertNew(List.of(payment("ORD-3")));
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("id").is("PAYMENT_CONFIRMATION:ORD-3")),
+                new Update().set("emailSentAt", LocalDateTime.now()).unset("emailPending"),
+                Notification.class
+        );
+        Thread.sleep(10);
+
+        var replica = newReplica(Duration.ofMinutes(5));
+        assertThat(replica.insertNew(List.of(payment("ORD-3")))).isEmpty();
+        assertThat(replica.findLapsed(10)).isEmpty();
+    }
+
+    @Test
+    void theScanFindsLapsedLeasesOnly() throws InterruptedException {
+        newReplica(Duration.ofMillis(1)).insertNew(List.of(payment("ORD-4")));
+        newReplica(Duration.ofMinutes(5)).insertNew(List.of(payment("ORD-5")));
+        Thread.sleep(10);
+
+        var replica = newReplica(Duration.ofMinutes(5));
+        var lapsed = replica.findLapsed(10);
+
+        assertThat(lapsed).containsExactly("PAYMENT_CONFIRMATION:ORD-4");
+        assertThat(replica.takeOver(lapsed, false)).hasSize(1);
+        // Taken: nobody else gets it until this lease lapses
+        assertThat(newReplica(Duration.ofMinutes(5)).takeOver(lapsed, false)).isEmpty();
+    }
+
+    @Test
+    void aReplicaRestartedUnderItsInstanceIdResumesItsLeasesAtOnce() {
+        newReplica(Duration.ofMinutes(5), "notification-1").insertNew(List.of(payment("ORD-6"), payment("ORD-7")));
+        newReplica(Duration.ofMinutes(5), "notification-2").insertNew(List.of(payment("ORD-8")));
+
+        var restarted = newReplica(Duration.ofMinutes(5), "notification-1");
+        var leased = restarted.findLeased(null, 10);
+
+        assertThat(leased).containsExactly("PAYMENT_CONFIRMATION:ORD-6", "PAYMENT_CONFIRMATION:ORD-7");
+        assertThat(restarted.findLeased("PAYMENT_CONFIRMATION:ORD-6", 10)).containsExactly("PAYMENT_CONFIRMATION:ORD-7");
+        assertThat(restarted.takeOver(leased, true)).hasSize(2);
+        assertThat(restarted.findLapsed(10)).isEmpty();
+    }
+
+    private NotificationDeduplicator newReplica(Duration lease) {
+        return newReplica(lease, null);
+    }
+
+    private NotificationDeduplicator newReplica(Duration lease, String instanceId) {
+        return new NotificationDeduplicator(
+                mongoTemplate,
+                new NotificationDedupeProperties(1000, instanceId),
+                new NotificationDigestProperties(true, Duration.ofSeconds(10), 1000, lease),
+                new SimpleMeterRegistry()
+        );
+    }
+
+    private static Notification payment(String orderReference) {
+        return Notification.builder()
+                .type(PAYMENT_CONFIRMATION)
+                .orderReference(orderReference)
+                .notificationDate(LocalDateTime.now())
+                .emailPending(true)
+                .paymentConfirmation(new PaymentConfirmation(orderReference, new BigDecimal("19.99"), PaymentMethod.VISA,
+                        "Ada", "Lovelace", "ada@example.com"))
+                .build();
+    }
+}
@@ -0,0 +1,244 @@
+package com.fatichdev.ecommerce.notification;
+
+import com.fatichdev.ecommerce.email.EmailService;
+import com.fatichdev.ecommerce.kafka.order.Customer;
+import com.fatichdev.ecommerce.kafka.order.OrderConfirmation;
+import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
+import com.fatichdev.ecommerce.kafka.payment.PaymentMethod;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.fatichdev.ecommerce.notification.NotificationType.ORDER_CONFIRMATION;
+import static com.fatichdev.ecommerce.notification.NotificationType.PAYMENT_CONFIRMATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataMongoTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.data.mongodb.auto-index-creation=true"
+})
+class NotificationDigestTest {
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        var address = MONGO.bind();
+        registry.add("spring.data.mongodb.uri", () -> "mongodb://localhost:" + address.getPort() + "/notification");
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final EmailService emailService = mock(EmailService.class);
+    private final NotificationDeduplicator deduplicator = mock(NotificationDeduplicator.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CompletableFuture<Void> delivery = new CompletableFuture<>();
+    private NotificationDigest digest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mongoTemplate.remove(new Query(), Notification.class);
+        mongoTemplate.remove(new Query(), OrderDigest.class);
+        when(emailService.sendPaymentSuccessEmail(anyString(), anyString(), any(), anyString())).thenReturn(delivery);
+        when(emailService.sendOrderConfirmationEmail(anyString(), anyString(), any(), anyString(), any())).thenReturn(delivery);
+        when(emailService.sendOrderSummaryEmail(anyString(), anyString(), any(), any(), anyString(), any())).thenReturn(delivery);
+        when(deduplicator.instanceId()).thenReturn("replica-1");
+        digest = replica(deduplicator, Duration.ZERO, meterRegistry);
+    }
+
+    @Test
+    void aNotificationIsMarkedSentOnlyOnceItsEmailWasDelivered() throws Exception {
+        digest.add(List.of(payment("n-1", "ORD-1")));
+        digest.flushExpired();
+
+        verify(emailService).sendPaymentSuccessEmail("ada@example.com", "Ada Lovelace", new BigDecimal("19.99"), "ORD-1");
+        assertThat(stored("n-1").getEmailPending()).isTrue();
+
+        delivery.complete(null);
+        digest.flushExpired();
+
+        assertThat(stored("n-1").getEmailPending()).isNull();
+        assertThat(stored("n-1").getEmailSentAt()).isNotNull();
+    }
+
+    @Test
+    void aDroppedEmailStaysPendingAndGivesUpItsClaim() {
+        digest.add(List.of(payment("n-1", "ORD-1")));
+        digest.flushExpired();
+
+        delivery.completeExceptionally(new IllegalStateException("Mailbox unavailable"));
+        digest.flushExpired();
+
+        assertThat(stored("n-1").getEmailPending()).isTrue();
+        assertThat(meterRegistry.counter("notification.digest.emails", "kind", "failed").count()).isEqualTo(1);
+        assertThat(orderDigest("ORD-1").isClaimed()).isFalse();
+    }
+
+    @Test
+    void aFullDispatchQueueReachesTheCaller() throws Exception {
+        when(emailService.sendOrderSummaryEmail(anyString(), anyString(), any(), any(), anyString(), any()))
+                .thenThrow(new IllegalStateException("Mail dispatch queue is full"));
+
+        assertThatThrownBy(() -> digest.add(List.of(order("n-1", "ORD-1"), payment("n-2", "ORD-1"))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(stored("n-1").getEmailPending()).isTrue();
+        assertThat(stored("n-2").getEmailPending()).isTrue();
+        assertThat(orderDigest("ORD-1").isClaimed()).isFalse();
+    }
+
+    @Test
+    void theScanRenewsTheLeasesItHoldsAndTakesOverLapsedOnes() {
+        var registry = new SimpleMeterRegistry();
+        digest = replica(deduplicator, Duration.ofMinutes(1), registry);
+        when(deduplicator.findLapsed(anyInt())).thenReturn(List.of("n-2"));
+        when(deduplicator.takeOver(List.of("n-2"), false)).thenReturn(List.of(payment("n-2", "ORD-2")));
+        digest.add(List.of(payment("n-1", "ORD-1")));
+
+        digest.scanPending();
+
+        verify(deduplicator).renew(List.of("n-1"));
+        assertThat(registry.get("notification.digest.pending").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void theFirstScanResumesTheLeasesOfAnEarlierRunOfThisReplica() {
+        var registry = new SimpleMeterRegistry();
+        digest = replica(deduplicator, Duration.ofMinutes(1), registry);
+        when(deduplicator.findLeased(null, 1000)).thenReturn(List.of("n-3"));
+        when(deduplicator.takeOver(List.of("n-3"), true)).thenReturn(List.of(payment("n-3", "ORD-3")));
+
+        digest.scanPending();
+        digest.scanPending();
+
+        verify(deduplicator).findLeased(null, 1000);
+        assertThat(registry.get("notification.digest.pending").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void aNotificationAlreadyHeldIsNotAddedTwice() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        digest = replica(deduplicator, Duration.ofMinutes(1), registry);
+
+        digest.add(List.of(payment("n-1", "ORD-1")));
+        digest.add(List.of(payment("n-1", "ORD-1"), order("n-2", "ORD-1")));
+
+        verify(emailService).sendOrderSummaryEmail(anyString(), anyString(), any(), any(), anyString(), any());
+        assertThat(registry.get("notification.digest.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void confirmationsConsumedByTwoReplicasGetOneSummary() throws Exception {
+        var otherRegistry = new SimpleMeterRegistry();
+        var other = replica(otherDeduplicator(), Duration.ofMillis(200), otherRegistry);
+        digest = replica(deduplicator, Duration.ofMillis(200), meterRegistry);
+
+        other.add(List.of(order("n-1", "ORD-1")));
+        digest.add(List.of(payment("n-2", "ORD-1")));
+        delivery.complete(null);
+        digest.flushExpired();
+        Thread.sleep(300);
+        other.flushExpired();
+
+        // The replica that completed the digest emails both; the other lets its notification go
+        verify(emailService).sendOrderSummaryEmail(anyString(), anyString(), any(), any(), anyString(), any());
+        verify(emailService, never()).sendOrderConfirmationEmail(anyString(), anyString(), any(), anyString(), any());
+        assertThat(stored("n-1").getEmailSentAt()).isNotNull();
+        assertThat(stored("n-2").getEmailSentAt()).isNotNull();
+        assertThat(otherRegistry.get("notification.digest.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void aConfirmationArrivingAfterTheWindowClosedIsEmailedOnItsOwn() throws Exception {
+        var other = replica(otherDeduplicator(), Duration.ZERO, new SimpleMeterRegistry());
+
+        other.add(List.of(order("n-1", "ORD-1")));
+        other.flushExpired();
+        digest.add(List.of(payment("n-2", "ORD-1")));
+
+        verify(emailService).sendOrderConfirmationEmail(anyString(), anyString(), any(), anyString(), any());
+        verify(emailService).sendPaymentSuccessEmail(anyString(), anyString(), any(), anyString());
+        verify(emailService, never()).sendOrderSummaryEmail(anyString(), anyString(), any(), any(), anyString(), any());
+    }
+
+    @Test
+    void notificationsWhoseClaimOutlivedTheirLeaseAreEmailedByTheReplicaTakingThemOver() throws Exception {
+        var other = replica(otherDeduplicator(), Duration.ofMinutes(1), new SimpleMeterRegistry());
+        digest = replica(deduplicator, Duration.ofMinutes(1), meterRegistry);
+        // Claimed and queued on the other replica, which is lost before the email goes out
+        other.add(List.of(order("n-1", "ORD-1"), payment("n-2", "ORD-1")));
+        when(deduplicator.findLapsed(anyInt())).thenReturn(List.of("n-1", "n-2"));
+        when(deduplicator.takeOver(List.of("n-1", "n-2"), false)).thenReturn(List.of(stored("n-1"), stored("n-2")));
+
+        digest.scanPending();
+
+        verify(emailService, times(2)).sendOrderSummaryEmail(anyString(), anyString(), any(), any(), anyString(), any());
+    }
+
+    private NotificationDigest replica(NotificationDeduplicator deduplicator, Duration window, SimpleMeterRegistry registry) {
+        return new NotificationDigest(emailService, deduplicator, new OrderDigestStore(mongoTemplate), mongoTemplate,
+                new NotificationDigestProperties(true, window, 100, Duration.ofMinutes(5)), registry);
+    }
+
+    private static NotificationDeduplicator otherDeduplicator() {
+        var deduplicator = mock(NotificationDeduplicator.class);
+        when(deduplicator.instanceId()).thenReturn("replica-2");
+        return deduplicator;
+    }
+
+    private Notification stored(String id) {
+        return mongoTemplate.findById(id, Notification.class);
+    }
+
+    private OrderDigest orderDigest(String orderReference) {
+        return mongoTemplate.findById(orderReference, OrderDigest.class);
+    }
+
+    // Inserted as the deduplicator would before handing it to the digest
+    private Notification payment(String id, String orderReference) {
+        return mongoTemplate.save(Notification.builder()
+                .id(id)
+                .type(PAYMENT_CONFIRMATION)
+                .orderReference(orderReference)
+                .notificationDate(LocalDateTime.now())
+                .emailPending(true)
+                .paymentConfirmation(new PaymentConfirmation(orderReference, new BigDecimal("19.99"), PaymentMethod.VISA,
+                        "Ada", "Lovelace", "ada@example.com"))
+                .build());
+    }
+
+    private Notification order(String id, String orderReference) {
+        return mongoTemplate.save(Notification.builder()
+                .id(id)
+                .type(ORDER_CONFIRMATION)
+                .orderReference(orderReference)
+                .notificationDate(LocalDateTime.now())
+                .emailPending(true)
+                .orderConfirmation(new OrderConfirmation(orderReference, new BigDecimal("19.99"), PaymentMethod.VISA,
+                        new Customer("c-1", "Ada", "Lovelace", "ada@example.com"), List.of()))
+                .build());
+    }
+}
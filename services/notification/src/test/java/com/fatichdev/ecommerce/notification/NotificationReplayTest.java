@@ -0,0 +1,181 @@
+package com.fatichdev.ecommerce.notification;
+
+import com.fatichdev.ecommerce.email.EmailService;
+import com.fatichdev.ecommerce.kafka.payment.PaymentConfirmation;
+import com.fatichdev.ecommerce.kafka.payment.PaymentMethod;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.fatichdev.ecommerce.notification.NotificationType.PAYMENT_CONFIRMATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Replays a million payment confirmations through the deduplicator and the digest, as the consumer does, with
+ * rebalance replays and two failed batches injected, and checks that every order gets exactly one email.
+ */
+@DataMongoTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.data.mongodb.auto-index-creation=true"
+})
+@Slf4j
+class NotificationReplayTest {
+
+    private static final int RECORDS = 1_000_000;
+    private static final int ORDERS = 200_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int RECENT_KEYS = 10_000;
+    // A rebalance every REPLAY_EVERY new orders replays the last REPLAY_WINDOW records
+    private static final int REPLAY_EVERY = 500;
+    private static final int REPLAY_WINDOW = 2_000;
+    // Older than the recent keys: only Mongo knows these were handled
+    private static final int OLD_REPLAY_EVERY = 20_000;
+    private static final int OLD_REPLAY_WINDOW = 500;
+    private static final int OLD_REPLAY_AGE = 50_000;
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        var address = MONGO.bind();
+        registry.add("spring.data.mongodb.uri", () -> "mongodb://localhost:" + address.getPort() + "/notification");
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void aMillionRecordsWithReplaysAndFailedBatchesSendEveryEmailOnce() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var emails = new CountingEmailService();
+        var deduplicator = new NotificationDeduplicator(
+                mongoTemplate,
+                new NotificationDedupeProperties(RECENT_KEYS, null),
+                new NotificationDigestProperties(false, Duration.ZERO, 1000, Duration.ofMinutes(5)),
+                meterRegistry
+        );
+        var digest = new NotificationDigest(emails, deduplicator, new OrderDigestStore(mongoTemplate), mongoTemplate,
+                new NotificationDigestProperties(false, Duration.ZERO, 1000, Duration.ofMinutes(5)), meterRegistry);
+
+        var stream = records();
+        var batches = 0;
+        var queueFilled = false;
+        var start = System.nanoTime();
+        for (int from = 0; from < stream.size(); from += BATCH_SIZE) {
+            var batch = stream.subList(from, Math.min(stream.size(), from + BATCH_SIZE));
+            batches++;
+            if (batches == 100) {
+                // The consumer dies after the insert, before the digest saw the batch
+                deduplicator.insertNew(notifications(batch));
+            } else if (batches >= 200 && !queueFilled) {
+                var handed = deduplicator.insertNew(notifications(batch));
+                if (!handed.isEmpty()) {
+                    // The mail queue fills up halfway through the batch
+                    emails.failAfter(handed.size() / 2);
+                    assertThatThrownBy(() -> digest.add(handed)).isInstanceOf(IllegalStateException.class);
+                    queueFilled = true;
+                }
+            }
+            // Delivered, or redelivered after the failure
+            digest.add(deduplicator.insertNew(notifications(batch)));
+            digest.flushExpired();
+        }
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        var memory = meterRegistry.counter("notification.dedupe", "result", "memory").count();
+        var store = meterRegistry.counter("notification.dedupe", "result", "store").count();
+        log.info("Replayed {} records in {} ms: {} records/s, {}% of duplicates caught in memory",
+                stream.size(), elapsed.toMillis(), Math.round(stream.size() / (elapsed.toNanos() / 1e9)),
+                "%.1f".formatted(100 * memory / (memory + store)));
+
+        assertThat(stream).hasSizeGreaterThanOrEqualTo(RECORDS);
+        assertThat(emails.sent).hasSize(ORDERS);
+        assertThat(emails.sent.values()).allMatch(count -> count == 1);
+        assertThat(meterRegistry.counter("notification.dedupe", "result", "new").count()).isEqualTo(ORDERS);
+        assertThat(meterRegistry.counter("notification.dedupe", "result", "taken-over").count()).isPositive();
+        assertThat(memory).isGreaterThan(store);
+        assertThat(mongoTemplate.count(new Query(), Notification.class)).isEqualTo(ORDERS);
+    }
+
+    private static List<Integer> records() {
+        var records = new ArrayList<Integer>(RECORDS + REPLAY_WINDOW);
+        for (int order = 0; order < ORDERS; order++) {
+            records.add(order);
+            if (order % REPLAY_EVERY == REPLAY_EVERY - 1) {
+                records.addAll(List.copyOf(records.subList(Math.max(0, records.size() - REPLAY_WINDOW), records.size())));
+            }
+            if (order % OLD_REPLAY_EVERY == OLD_REPLAY_EVERY - 1 && order >= OLD_REPLAY_AGE) {
+                for (int old = order - OLD_REPLAY_AGE; old < order - OLD_REPLAY_AGE + OLD_REPLAY_WINDOW; old++) {
+                    records.add(old);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static List<Notification> notifications(List<Integer> orders) {
+        var notifications = new ArrayList<Notification>(orders.size());
+        for (Integer order : orders) {
+            var orderReference = "ORD-" + order;
+            notifications.add(Notification.builder()
+                    .type(PAYMENT_CONFIRMATION)
+                    .orderReference(orderReference)
+                    .notificationDate(LocalDateTime.now())
+                    .emailPending(true)
+                    .paymentConfirmation(new PaymentConfirmation(orderReference, BigDecimal.TEN, PaymentMethod.VISA,
+                            "Ada", "Lovelace", "ada@example.com"))
+                    .build());
+        }
+        return notifications;
+    }
+
+    private static final class CountingEmailService extends EmailService {
+
+        private final Map<String, Integer> sent = new HashMap<>();
+        private int failAfter = -1;
+
+        private CountingEmailService() {
+            super(null, null, null);
+        }
+
+        private void failAfter(int emails) {
+            failAfter = emails;
+        }
+
+        @Override
+        public CompletableFuture<Void> sendPaymentSuccessEmail(
+                String destinationEmail,
+                String customerName,
+                BigDecimal amount,
+                String orderReference
+        ) {
+            if (failAfter == 0) {
+                failAfter = -1;
+                throw new IllegalStateException("Mail dispatch queue is full, cannot send email to " + destinationEmail);
+            }
+            if (failAfter > 0) {
+                failAfter--;
+            }
+            sent.merge(orderReference, 1, Integer::sum);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
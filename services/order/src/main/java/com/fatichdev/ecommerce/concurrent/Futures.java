@@ -0,0 +1,62 @@
+package com.fatichdev.ecommerce.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for the downstream calls an order makes in parallel.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Like {@link CompletableFuture#supplyAsync}, but cancelling the returned future interrupts the running call,
+     * which aborts a blocking HTTP request on a virtual thread instead of letting it run to its timeout.
+     */
+    public static <T> CompletableFuture<T> supplyInterruptibly(Supplier<T> supplier, ExecutorService executor) {
+        var future = new CompletableFuture<T>();
+        var task = executor.submit(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Waits for the future and rethrows the exception of a failed call as is.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the exception of a future that completed exceptionally, unwrapped like {@link #await} does.
+     */
+    public static RuntimeException failure(CompletableFuture<?> future) {
+        try {
+            await(future);
+        } catch (RuntimeException e) {
+            return e;
+        }
+        throw new IllegalStateException("Future completed normally");
+    }
+}
@@ -0,0 +1,16 @@
+package com.fatichdev.ecommerce.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService orderTaskExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,27 @@
+package com.fatichdev.ecommerce.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Pool and timeouts of the RestTemplate used for product-service. The Feign clients are tuned
+ * through {@code spring.cloud.openfeign}.
+ */
+@ConfigurationProperties(prefix = "application.http-client.product")
+public record HttpClientProperties(
+        @DefaultValue("200")
+        int maxConnections,
+        @DefaultValue("1s")
+        Duration connectTimeout,
+        @DefaultValue("500ms")
+        Duration connectionRequestTimeout,
+        @DefaultValue("5s")
+        Duration responseTimeout,
+        @DefaultValue("30s")
+        Duration idleTimeout,
+        @DefaultValue("5m")
+        Duration timeToLive
+) {
+}
@@ -12,6 +12,7 @@ public class KafkaOrderTopicConfig {
     public NewTopic orderTopic() {
         return TopicBuilder
                 .name("order-topic")
+                .partitions(6)
                 .build();
     }
 
@@ -0,0 +1,36 @@
+package com.fatichdev.ecommerce.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * Client metrics (request latency, batch size, compression rate...) are bound by Spring Boot;
+ * this adds how full the producer batches are compared to the configured {@code batch.size}.
+ */
+@Configuration
+public class KafkaProducerMetricsConfig {
+
+    @Bean
+    public Gauge kafkaProducerBatchFillRatio(
+            MeterRegistry meterRegistry,
+            KafkaTemplate<?, ?> kafkaTemplate,
+            @Value("${spring.kafka.producer.batch-size:16384}") long batchSize
+    ) {
+        return Gauge.builder("kafka.producer.batch.fill.ratio", kafkaTemplate, template -> template.metrics()
+                        .entrySet()
+                        .stream()
+                        .filter(metric -> metric.getKey().name().equals("batch-size-avg")
+                                && metric.getKey().group().equals("producer-metrics"))
+                        .mapToDouble(metric -> ((Number) metric.getValue().metricValue()).doubleValue() / batchSize)
+                        .filter(Double::isFinite)
+                        .max()
+                        .orElse(0))
+                .description("Average producer batch size divided by " + ProducerConfig.BATCH_SIZE_CONFIG)
+                .register(meterRegistry);
+    }
+}
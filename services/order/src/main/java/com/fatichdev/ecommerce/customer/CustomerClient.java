@@ -8,7 +8,8 @@ import java.util.Optional;
 
 @FeignClient(
         name = "customer-service",
-        url = "${application.config.customer-url}"
+        url = "${application.config.customer-url:}",
+        path = "/api/v1/customers"
 )
 public interface CustomerClient {
 
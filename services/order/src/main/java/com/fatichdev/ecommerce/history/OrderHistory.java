@@ -0,0 +1,56 @@
+package com.fatichdev.ecommerce.history;
+
+import com.fatichdev.ecommerce.order.PaymentMethod;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One row per order, denormalized from order-topic so history reads never join the transactional tables.
+ * Written only by {@link OrderHistoryProjector}.
+ */
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(
+        name = "order_history",
+        indexes = @Index(name = "order_history_customer_id_created_at_idx", columnList = "customer_id, created_at, order_reference")
+)
+public class OrderHistory {
+
+    @Id
+    private String orderReference;
+
+    @Column(nullable = false)
+    private String customerId;
+
+    private BigDecimal totalAmount;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentMethod paymentMethod;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<PurchaseResponse> products;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,39 @@
+package com.fatichdev.ecommerce.history;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/v1/orders/history")
+@RequiredArgsConstructor
+public class OrderHistoryController {
+
+    private final OrderHistoryService service;
+    private final OrderHistoryProjector projector;
+
+    @GetMapping("/customer/{customer-id}")
+    public ResponseEntity<OrderHistoryPageResponse> findByCustomerId(
+            @PathVariable("customer-id") String customerId,
+            @RequestParam(value = "cursorCreatedAt", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorCreatedAt,
+            @RequestParam(value = "cursorReference", required = false) String cursorReference,
+            @RequestParam(value = "size", defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(service.findPage(customerId, new OrderHistoryCursor(cursorCreatedAt, cursorReference), size));
+    }
+
+    @PostMapping("/rebuild")
+    public ResponseEntity<Void> rebuild() {
+        projector.rebuild();
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,9 @@
+package com.fatichdev.ecommerce.history;
+
+import java.time.LocalDateTime;
+
+public record OrderHistoryCursor(
+        LocalDateTime createdAt,
+        String orderReference
+) {
+}
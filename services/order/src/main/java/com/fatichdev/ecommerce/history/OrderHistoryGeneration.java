@@ -0,0 +1,36 @@
+package com.fatichdev.ecommerce.history;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * The single row every projector instance polls to learn that order_history was rebuilt. Each generation consumes
+ * order-topic in a consumer group of its own, so a rebuild replays every partition from the earliest offset no
+ * matter which instance it is assigned to.
+ */
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "order_history_generation")
+public class OrderHistoryGeneration {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private long generation;
+
+    private LocalDateTime rebuiltAt;
+}
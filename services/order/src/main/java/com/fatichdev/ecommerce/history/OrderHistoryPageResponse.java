@@ -0,0 +1,9 @@
+package com.fatichdev.ecommerce.history;
+
+import java.util.List;
+
+public record OrderHistoryPageResponse(
+        List<OrderHistoryResponse> orders,
+        OrderHistoryCursor nextCursor
+) {
+}
@@ -0,0 +1,227 @@
+package com.fatichdev.ecommerce.history;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatichdev.ecommerce.kafka.OrderConfirmation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.fatichdev.ecommerce.history.ProjectionMode.REBUILD;
+
+/**
+ * Builds the order_history projection from order-topic. Rows are upserted by order reference, so replaying the
+ * topic (after a rebalance or during a rebuild) converges to the same table.
+ * <p>
+ * A rebuild empties the table and bumps the generation in order_history_generation. Every instance polls that row
+ * and moves its listener to the consumer group of the new generation, which has no committed offsets and so starts
+ * each partition at the earliest offset. Until an instance notices, it keeps applying the live end of the topic;
+ * those rows are overwritten as the replay reaches them.
+ */
+@Service
+@Slf4j
+public class OrderHistoryProjector {
+
+    static final String LISTENER_ID = "order-history";
+
+    private static final String UPSERT = """
+            insert into order_history (order_reference, customer_id, total_amount, payment_method, products, created_at)
+            values (?, ?, ?, ?, cast(? as jsonb), ?)
+            on conflict (order_reference) do update
+            set customer_id = excluded.customer_id,
+                total_amount = excluded.total_amount,
+                payment_method = excluded.payment_method,
+                products = excluded.products,
+                created_at = excluded.created_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ObjectMapper objectMapper;
+    private final OrderHistoryProperties properties;
+    private final Counter rebuilds;
+
+    private final Map<TopicPartition, Long> lag = new ConcurrentHashMap<>();
+    private volatile long lastEventTimestamp;
+    private volatile Long generation;
+
+    public OrderHistoryProjector(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            KafkaListenerEndpointRegistry listenerRegistry,
+            ObjectMapper objectMapper,
+            OrderHistoryProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.listenerRegistry = listenerRegistry;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.rebuilds = meterRegistry.counter("order.history.rebuilds");
+        Gauge.builder("order.history.lag.records", lag, partitions -> partitions.values().stream().mapToLong(Long::longValue).sum())
+                .description("Events on order-topic not yet applied to the order history")
+                .register(meterRegistry);
+        Gauge.builder("order.history.lag.seconds", this, OrderHistoryProjector::lagSeconds)
+                .description("Age of the last applied event while the projection is behind")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the listener in the consumer group of the current generation, after starting a new one in REBUILD mode.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.enabled()) {
+            return;
+        }
+        jdbcTemplate.update("insert into order_history_generation (id, generation) values (1, 0) on conflict (id) do nothing");
+        if (properties.mode() == REBUILD) {
+            log.info("Rebuilding order history from the beginning of order-topic");
+            follow(startGeneration());
+        } else {
+            follow(currentGeneration());
+        }
+    }
+
+    /**
+     * Moves this instance to the generation another instance started.
+     */
+    @Scheduled(fixedDelayString = "${application.history.generation-check-ms:10000}")
+    public void followGeneration() {
+        if (generation == null) {
+            return;
+        }
+        var current = currentGeneration();
+        if (current != generation) {
+            log.info("Order history was rebuilt, following generation {}", current);
+            follow(current);
+        }
+    }
+
+    @KafkaListener(
+            id = LISTENER_ID,
+            topics = "order-topic",
+            groupId = "${application.history.group-id:order-history}",
+            batch = "true",
+            autoStartup = "false"
+    )
+    public void project(List<ConsumerRecord<String, OrderConfirmation>> records, Consumer<?, ?> consumer) {
+        // One row per order: the same reference twice in one batch would make the upsert touch a row twice
+        var latest = new LinkedHashMap<String, ConsumerRecord<String, OrderConfirmation>>();
+        var skipped = 0;
+        for (ConsumerRecord<String, OrderConfirmation> record : records) {
+            if (record.value() == null || record.value().customer() == null) {
+                skipped++;
+            } else {
+                latest.put(record.value().orderReference(), record);
+            }
+        }
+        var events = List.copyOf(latest.values());
+        jdbcTemplate.batchUpdate(UPSERT, events, events.size(), (statement, record) -> {
+            var order = record.value();
+            statement.setString(1, order.orderReference());
+            statement.setString(2, order.customer().id());
+            statement.setBigDecimal(3, order.totalAmount());
+            statement.setObject(4, order.paymentMethod() == null ? null : order.paymentMethod().name(), Types.VARCHAR);
+            statement.setString(5, toJson(order));
+            // Events published before they carried the order's creation time fall back to the publish time
+            statement.setTimestamp(6, order.createdAt() == null
+                    ? new Timestamp(record.timestamp())
+                    : Timestamp.valueOf(order.createdAt()));
+        });
+        if (skipped > 0) {
+            log.warn("Skipped {} order events without a customer", skipped);
+        }
+
+        for (ConsumerRecord<String, OrderConfirmation> record : records) {
+            lastEventTimestamp = Math.max(lastEventTimestamp, record.timestamp());
+        }
+        records.stream()
+                .map(record -> new TopicPartition(record.topic(), record.partition()))
+                .distinct()
+                .forEach(partition -> consumer.currentLag(partition).ifPresent(value -> lag.put(partition, value)));
+    }
+
+    /**
+     * Empties the projection and replays order-topic from the earliest offset, on every instance.
+     */
+    public void rebuild() {
+        log.info("Rebuilding order history on request");
+        follow(startGeneration());
+    }
+
+    private long startGeneration() {
+        var started = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("truncate table order_history");
+            return jdbcTemplate.queryForObject(
+                    "update order_history_generation set generation = generation + 1, rebuilt_at = now() where id = 1 returning generation",
+                    Long.class
+            );
+        });
+        rebuilds.increment();
+        return started;
+    }
+
+    private long currentGeneration() {
+        return jdbcTemplate.queryForObject("select generation from order_history_generation where id = 1", Long.class);
+    }
+
+    private synchronized void follow(long next) {
+        if (generation != null && generation == next) {
+            return;
+        }
+        var container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            throw new IllegalStateException("No listener container " + LISTENER_ID);
+        }
+        container.stop();
+        container.getContainerProperties().setGroupId(groupId(next));
+        lag.clear();
+        lastEventTimestamp = 0;
+        generation = next;
+        container.start();
+    }
+
+    // The first generation keeps the configured group, and with it the offsets committed before rebuilds existed
+    private String groupId(long generation) {
+        return generation == 0 ? properties.groupId() : properties.groupId() + "-" + generation;
+    }
+
+    private String toJson(OrderConfirmation order) {
+        try {
+            return objectMapper.writeValueAsString(order.products() == null ? List.of() : order.products());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize products of order " + order.orderReference(), e);
+        }
+    }
+
+    private double lagSeconds() {
+        var behind = lag.values().stream().anyMatch(value -> value > 0);
+        if (!behind || lastEventTimestamp == 0) {
+            return 0;
+        }
+        return Math.max(0, Instant.now().toEpochMilli() - lastEventTimestamp) / 1000d;
+    }
+}
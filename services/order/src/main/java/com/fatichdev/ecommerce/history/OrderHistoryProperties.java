@@ -0,0 +1,15 @@
+package com.fatichdev.ecommerce.history;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "application.history")
+public record OrderHistoryProperties(
+        @DefaultValue("true")
+        boolean enabled,
+        @DefaultValue("CATCH_UP")
+        ProjectionMode mode,
+        @DefaultValue("order-history")
+        String groupId
+) {
+}
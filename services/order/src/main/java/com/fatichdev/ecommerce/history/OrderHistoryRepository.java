@@ -0,0 +1,25 @@
+package com.fatichdev.ecommerce.history;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderHistoryRepository extends JpaRepository<OrderHistory, String> {
+
+    @Query("""
+            select h from OrderHistory h
+            where h.customerId = :customerId
+              and (h.createdAt, h.orderReference) < (:createdAt, :orderReference)
+            order by h.createdAt desc, h.orderReference desc
+            """)
+    List<OrderHistory> findPage(
+            @Param("customerId") String customerId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("orderReference") String orderReference,
+            Limit limit
+    );
+}
@@ -0,0 +1,17 @@
+package com.fatichdev.ecommerce.history;
+
+import com.fatichdev.ecommerce.order.PaymentMethod;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record OrderHistoryResponse(
+        String orderReference,
+        BigDecimal totalAmount,
+        PaymentMethod paymentMethod,
+        LocalDateTime createdAt,
+        List<PurchaseResponse> products
+) {
+}
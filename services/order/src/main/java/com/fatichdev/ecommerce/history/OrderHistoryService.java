@@ -0,0 +1,41 @@
+package com.fatichdev.ecommerce.history;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class OrderHistoryService {
+
+    private static final OrderHistoryCursor FIRST_PAGE = new OrderHistoryCursor(LocalDateTime.of(9999, 12, 31, 0, 0), "");
+
+    private final OrderHistoryRepository repository;
+
+    @Value("${application.listing.max-page-size:500}")
+    private int maxPageSize;
+
+    @Transactional(readOnly = true)
+    public OrderHistoryPageResponse findPage(String customerId, OrderHistoryCursor cursor, int size) {
+        var pageSize = Math.max(1, Math.min(size, maxPageSize));
+        var after = cursor == null || cursor.createdAt() == null || cursor.orderReference() == null ? FIRST_PAGE : cursor;
+        List<OrderHistoryResponse> orders = repository.findPage(customerId, after.createdAt(), after.orderReference(), Limit.of(pageSize))
+                .stream()
+                .map(order -> new OrderHistoryResponse(
+                        order.getOrderReference(),
+                        order.getTotalAmount(),
+                        order.getPaymentMethod(),
+                        order.getCreatedAt(),
+                        order.getProducts()
+                ))
+                .toList();
+        var last = orders.isEmpty() ? null : orders.get(orders.size() - 1);
+        var nextCursor = orders.size() < pageSize ? null : new OrderHistoryCursor(last.createdAt(), last.orderReference());
+        return new OrderHistoryPageResponse(orders, nextCursor);
+    }
+}
@@ -0,0 +1,11 @@
+package com.fatichdev.ecommerce.history;
+
+public enum ProjectionMode {
+    /** Resume from the committed offsets and apply what was published since. */
+    CATCH_UP,
+    /**
+     * Empty the projection on startup and replay order-topic from the earliest offset, on every instance. Each
+     * instance started in this mode starts another rebuild, so roll it out to one instance only.
+     */
+    REBUILD
+}
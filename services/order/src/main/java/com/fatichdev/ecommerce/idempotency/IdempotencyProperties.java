@@ -0,0 +1,21 @@
+package com.fatichdev.ecommerce.idempotency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("24h")
+        Duration ttl,
+        @DefaultValue("30s")
+        Duration inProgressLease,
+        @DefaultValue("10m")
+        Duration hotTtl,
+        @DefaultValue("100000")
+        long hotMaxSize,
+        @DefaultValue("10000")
+        int purgeBatchSize
+) {
+}
@@ -5,6 +5,7 @@ import com.fatichdev.ecommerce.order.PaymentMethod;
 import com.fatichdev.ecommerce.product.PurchaseResponse;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public record OrderConfirmation(
@@ -12,6 +13,7 @@ public record OrderConfirmation(
         BigDecimal totalAmount,
         PaymentMethod paymentMethod,
         CustomerResponse customer,
-        List<PurchaseResponse> products
+        List<PurchaseResponse> products,
+        LocalDateTime createdAt
 ) {
 }
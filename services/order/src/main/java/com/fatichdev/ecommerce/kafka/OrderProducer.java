@@ -1,30 +1,25 @@
 package com.fatichdev.ecommerce.kafka;
 
+import com.fatichdev.ecommerce.outbox.OutboxService;
+import com.fatichdev.ecommerce.payment.PaymentRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
-import static org.springframework.kafka.support.KafkaHeaders.TOPIC;
-
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OrderProducer {
 
-    private final KafkaTemplate<String, OrderConfirmation> kafkaTemplate;
+    private final OutboxService outboxService;
 
     public void sendOrderConfirmation(OrderConfirmation orderConfirmation) {
         log.info("Sending order confirmation");
-        Message<OrderConfirmation> message = MessageBuilder
-                .withPayload(orderConfirmation)
-                .setHeader(TOPIC, "order-topic")
-                .build();
-
-        kafkaTemplate.send(message);
+        outboxService.enqueue("order-topic", orderConfirmation.orderReference(), orderConfirmation);
+    }
 
+    public void sendPaymentRequest(PaymentRequest paymentRequest) {
+        log.info("Requesting payment of order {}", paymentRequest.orderReference());
+        outboxService.enqueue("payment-request-topic", paymentRequest.orderReference(), paymentRequest);
     }
 }
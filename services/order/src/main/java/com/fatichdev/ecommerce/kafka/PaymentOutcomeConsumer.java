@@ -0,0 +1,31 @@
+package com.fatichdev.ecommerce.kafka;
+
+import com.fatichdev.ecommerce.payment.PaymentOutcome;
+import com.fatichdev.ecommerce.saga.OrderSagaOrchestrator;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+@Component
+@RequiredArgsConstructor
+public class PaymentOutcomeConsumer {
+
+    private final OrderSagaOrchestrator sagaOrchestrator;
+
+    @KafkaListener(
+            id = "payment-outcomes",
+            topics = "payment-outcome-topic",
+            groupId = "${application.saga.payment-outcome-group-id:order-saga}",
+            batch = "true"
+    )
+    public void consume(List<ConsumerRecord<String, PaymentOutcome>> records) {
+        records.stream()
+                .map(ConsumerRecord::value)
+                .filter(Objects::nonNull)
+                .forEach(sagaOrchestrator::onPaymentOutcome);
+    }
+}
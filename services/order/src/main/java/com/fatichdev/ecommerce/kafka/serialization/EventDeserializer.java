@@ -0,0 +1,92 @@
+package com.fatichdev.ecommerce.kafka.serialization;
+
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.kafka.OrderConfirmation;
+import com.fatichdev.ecommerce.order.PaymentMethod;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.fromDecimal;
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.fromLocalTimestamp;
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.string;
+
+/**
+ * Reads this service's own {@link OrderConfirmation} events back, in either of the formats {@link EventSerializer} writes.
+ */
+public class EventDeserializer implements Deserializer<Object> {
+
+    private static final String ORDER_TOPIC = "order-topic";
+    private static final String ORDER_CONFIRMATION = "order-confirmation";
+
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+    private AvroEventCodec codec;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+        var location = configs.get(AvroEventCodec.SCHEMA_LOCATION_CONFIG);
+        codec = AvroEventCodec.load(location == null ? AvroEventCodec.DEFAULT_SCHEMA_LOCATION : location.toString());
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (!ORDER_TOPIC.equals(topic) || !AvroEventCodec.isAvro(data)) {
+            return headers == null ? jsonDeserializer.deserialize(topic, data) : jsonDeserializer.deserialize(topic, headers, data);
+        }
+        return toOrderConfirmation(codec.decode(ORDER_CONFIRMATION, data));
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static OrderConfirmation toOrderConfirmation(GenericRecord record) {
+        var customer = (GenericRecord) record.get("customer");
+        var products = (List<GenericRecord>) record.get("products");
+        return new OrderConfirmation(
+                string(record.get("orderReference")),
+                fromDecimal(record.get("totalAmount"), record.getSchema().getField("totalAmount").schema()),
+                paymentMethod(record.get("paymentMethod")),
+                new CustomerResponse(
+                        string(customer.get("id")),
+                        string(customer.get("firstname")),
+                        string(customer.get("lastname")),
+                        string(customer.get("email"))
+                ),
+                products.stream()
+                        .map(product -> new PurchaseResponse(
+                                (Integer) product.get("productId"),
+                                string(product.get("name")),
+                                string(product.get("description")),
+                                fromDecimal(product.get("price"), product.getSchema().getField("price").schema()),
+                                (Double) product.get("quantity")
+                        ))
+                        .toList(),
+                fromLocalTimestamp(record.get("createdAt"))
+        );
+    }
+
+    private static PaymentMethod paymentMethod(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return PaymentMethod.valueOf(value.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.fatichdev.ecommerce.kafka.serialization;
+
+import com.fatichdev.ecommerce.kafka.OrderConfirmation;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.toDecimal;
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.toLocalTimestamp;
+
+/**
+ * Writes {@link OrderConfirmation} as Avro when {@code event.format=avro}, everything else (and the JSON mode) as JSON.
+ */
+public class EventSerializer implements Serializer<Object> {
+
+    public static final String FORMAT_CONFIG = "event.format";
+    private static final String ORDER_CONFIRMATION = "order-confirmation";
+
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private AvroEventCodec codec;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+        if ("avro".equalsIgnoreCase(String.valueOf(configs.get(FORMAT_CONFIG)))) {
+            var location = configs.get(AvroEventCodec.SCHEMA_LOCATION_CONFIG);
+            codec = AvroEventCodec.load(location == null ? AvroEventCodec.DEFAULT_SCHEMA_LOCATION : location.toString());
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (codec != null && data instanceof OrderConfirmation orderConfirmation) {
+            return codec.encode(ORDER_CONFIRMATION, toRecord(orderConfirmation));
+        }
+        return jsonSerializer.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+
+    private GenericRecord toRecord(OrderConfirmation orderConfirmation) {
+        var schema = codec.schema(ORDER_CONFIRMATION);
+        var customerSchema = schema.getField("customer").schema();
+        var productsSchema = schema.getField("products").schema();
+        var productSchema = productsSchema.getElementType();
+
+        var customer = new GenericData.Record(customerSchema);
+        if (orderConfirmation.customer() != null) {
+            customer.put("id", orderConfirmation.customer().id());
+            customer.put("firstname", orderConfirmation.customer().firstname());
+            customer.put("lastname", orderConfirmation.customer().lastname());
+            customer.put("email", orderConfirmation.customer().email());
+        }
+
+        var purchases = orderConfirmation.products() == null ? List.<PurchaseResponse>of() : orderConfirmation.products();
+        var products = new GenericData.Array<GenericRecord>(purchases.size(), productsSchema);
+        purchases.forEach(purchased -> {
+            var product = new GenericData.Record(productSchema);
+            product.put("productId", purchased.productId());
+            product.put("name", purchased.name());
+            product.put("description", purchased.description());
+            product.put("price", toDecimal(purchased.price(), productSchema.getField("price").schema()));
+            product.put("quantity", purchased.quantity());
+            products.add(product);
+        });
+
+        var record = new GenericData.Record(schema);
+        record.put("orderReference", orderConfirmation.orderReference());
+        record.put("totalAmount", toDecimal(orderConfirmation.totalAmount(), schema.getField("totalAmount").schema()));
+        record.put("paymentMethod", orderConfirmation.paymentMethod() == null ? null : orderConfirmation.paymentMethod().name());
+        record.put("customer", customer);
+        record.put("products", products);
+        record.put("createdAt", toLocalTimestamp(orderConfirmation.createdAt()));
+        return record;
+    }
+}
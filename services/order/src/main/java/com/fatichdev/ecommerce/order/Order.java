@@ -8,6 +8,7 @@ import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import java.math.BigDecimal;
@@ -30,7 +31,13 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @Entity
 @EntityListeners(AuditingEntityListener.class)
 @NoArgsConstructor
-@Table(name = "customer_order")
+@Table(
+        name = "customer_order",
+        indexes = {
+                @Index(name = "customer_order_created_date_id_idx", columnList = "created_date, id"),
+                @Index(name = "customer_order_customer_id_created_date_id_idx", columnList = "customer_id, created_date, id")
+        }
+)
 public class Order {
 
     @Id
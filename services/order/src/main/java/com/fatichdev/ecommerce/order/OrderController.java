@@ -1,28 +1,60 @@
 package com.fatichdev.ecommerce.order;
 
+import com.fatichdev.ecommerce.idempotency.IdempotencyService;
+import com.fatichdev.ecommerce.saga.OrderSagaOrchestrator;
+import com.fatichdev.ecommerce.saga.OrderStatusResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/v1/orders")
 @RequiredArgsConstructor
 public class OrderController {
     private final OrderService service;
+    private final OrderQueryService queryService;
+    private final IdempotencyService idempotencyService;
+    private final OrderSagaOrchestrator sagaOrchestrator;
 
     @PostMapping
     public ResponseEntity<Integer> createOrder(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody @Valid OrderRequest request
     ) {
-        return ResponseEntity.ok(service.createOrder(request));
+        return ResponseEntity.ok(idempotencyService.execute(
+                idempotencyKey, "create-order", request, Integer.class, () -> service.createOrder(request)
+        ));
+    }
+
+    @PostMapping("/async")
+    public ResponseEntity<Integer> acceptOrder(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid OrderRequest request
+    ) {
+        var orderId = idempotencyService.execute(
+                idempotencyKey, "accept-order", request, Integer.class, () -> service.acceptOrder(request)
+        );
+        var statusLocation = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/orders/{order-id}/status")
+                .buildAndExpand(orderId)
+                .toUri();
+        return ResponseEntity.accepted().location(statusLocation).body(orderId);
     }
 
     @GetMapping
-    public ResponseEntity<List<OrderResponse>> findAll() {
-        return ResponseEntity.ok(service.findAll());
+    public ResponseEntity<OrderPageResponse> findAll(
+            @RequestParam(value = "customerId", required = false) String customerId,
+            @RequestParam(value = "cursorCreatedDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorCreatedDate,
+            @RequestParam(value = "cursorId", required = false) Integer cursorId,
+            @RequestParam(value = "size", defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(queryService.findPage(customerId, new OrderCursor(cursorCreatedDate, cursorId), size));
     }
 
     @GetMapping("/{order-id}")
@@ -31,4 +63,11 @@ public class OrderController {
     ) {
         return ResponseEntity.ok(service.findById(orderId));
     }
+
+    @GetMapping("/{order-id}/status")
+    public ResponseEntity<OrderStatusResponse> findStatus(
+            @PathVariable("order-id") Integer orderId
+    ) {
+        return ResponseEntity.ok(sagaOrchestrator.status(orderId));
+    }
 }
@@ -0,0 +1,9 @@
+package com.fatichdev.ecommerce.order;
+
+import java.time.LocalDateTime;
+
+public record OrderCursor(
+        LocalDateTime createdDate,
+        Integer id
+) {
+}
@@ -0,0 +1,34 @@
+package com.fatichdev.ecommerce.order;
+
+import com.fatichdev.ecommerce.orderline.OrderLineDetails;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record OrderDetailsResponse(
+        Integer id,
+        String reference,
+        BigDecimal amount,
+        PaymentMethod paymentMethod,
+        String customerId,
+        LocalDateTime createdDate,
+        List<OrderLineDetails> orderLines
+) {
+
+    // Used by the JPQL projection; lines are loaded for the whole page afterwards
+    public OrderDetailsResponse(
+            Integer id,
+            String reference,
+            BigDecimal amount,
+            PaymentMethod paymentMethod,
+            String customerId,
+            LocalDateTime createdDate
+    ) {
+        this(id, reference, amount, paymentMethod, customerId, createdDate, List.of());
+    }
+
+    public OrderDetailsResponse withOrderLines(List<OrderLineDetails> orderLines) {
+        return new OrderDetailsResponse(id, reference, amount, paymentMethod, customerId, createdDate, orderLines);
+    }
+}
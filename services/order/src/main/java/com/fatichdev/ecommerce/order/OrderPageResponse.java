@@ -0,0 +1,9 @@
+package com.fatichdev.ecommerce.order;
+
+import java.util.List;
+
+public record OrderPageResponse(
+        List<OrderDetailsResponse> orders,
+        OrderCursor nextCursor
+) {
+}
@@ -0,0 +1,47 @@
+package com.fatichdev.ecommerce.order;
+
+import com.fatichdev.ecommerce.orderline.OrderLineService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Newest-first order listing. A page costs two queries whatever its size: one index range scan for the orders
+ * and one IN query for all of their lines.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderQueryService {
+
+    // Sorts after any real order, so the first page uses the same row comparison as the following ones
+    private static final OrderCursor FIRST_PAGE = new OrderCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Integer.MAX_VALUE);
+
+    private final OrderRepository repository;
+    private final OrderLineService orderLineService;
+
+    @Value("${application.listing.max-page-size:500}")
+    private int maxPageSize;
+
+    @Transactional(readOnly = true)
+    public OrderPageResponse findPage(String customerId, OrderCursor cursor, int size) {
+        var pageSize = Math.max(1, Math.min(size, maxPageSize));
+        var after = cursor == null || cursor.createdDate() == null || cursor.id() == null ? FIRST_PAGE : cursor;
+        var orders = customerId == null
+                ? repository.findPage(after.createdDate(), after.id(), Limit.of(pageSize))
+                : repository.findPageByCustomerId(customerId, after.createdDate(), after.id(), Limit.of(pageSize));
+
+        var orderLines = orderLineService.findByOrderIds(orders.stream().map(OrderDetailsResponse::id).toList());
+        var page = orders.stream()
+                .map(order -> order.withOrderLines(orderLines.getOrDefault(order.id(), List.of())))
+                .toList();
+
+        var last = page.isEmpty() ? null : page.get(page.size() - 1);
+        var nextCursor = page.size() < pageSize ? null : new OrderCursor(last.createdDate(), last.id());
+        return new OrderPageResponse(page, nextCursor);
+    }
+}
@@ -1,6 +1,42 @@
 package com.fatichdev.ecommerce.order;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface OrderRepository extends JpaRepository<Order, Integer> {
+
+    @Query("""
+            select new com.fatichdev.ecommerce.order.OrderDetailsResponse(
+                o.id, o.reference, o.totalAmount, o.paymentMethod, o.customerId, o.createdDate
+            )
+            from Order o
+            where (o.createdDate, o.id) < (:createdDate, :id)
+            order by o.createdDate desc, o.id desc
+            """)
+    List<OrderDetailsResponse> findPage(
+            @Param("createdDate") LocalDateTime createdDate,
+            @Param("id") Integer id,
+            Limit limit
+    );
+
+    @Query("""
+            select new com.fatichdev.ecommerce.order.OrderDetailsResponse(
+                o.id, o.reference, o.totalAmount, o.paymentMethod, o.customerId, o.createdDate
+            )
+            from Order o
+            where o.customerId = :customerId
+              and (o.createdDate, o.id) < (:createdDate, :id)
+            order by o.createdDate desc, o.id desc
+            """)
+    List<OrderDetailsResponse> findPageByCustomerId(
+            @Param("customerId") String customerId,
+            @Param("createdDate") LocalDateTime createdDate,
+            @Param("id") Integer id,
+            Limit limit
+    );
 }
@@ -1,6 +1,8 @@
 package com.fatichdev.ecommerce.order;
 
+import com.fatichdev.ecommerce.concurrent.Futures;
 import com.fatichdev.ecommerce.customer.CustomerClient;
+import com.fatichdev.ecommerce.customer.CustomerResponse;
 import com.fatichdev.ecommerce.exception.BusinessException;
 import com.fatichdev.ecommerce.kafka.OrderConfirmation;
 import com.fatichdev.ecommerce.kafka.OrderProducer;
@@ -9,17 +11,23 @@ import com.fatichdev.ecommerce.orderline.OrderLineService;
 import com.fatichdev.ecommerce.payment.PaymentClient;
 import com.fatichdev.ecommerce.payment.PaymentRequest;
 import com.fatichdev.ecommerce.product.ProductClient;
-import com.fatichdev.ecommerce.product.PurchaseRequest;
+import com.fatichdev.ecommerce.product.ReservationConfirmation;
+import com.fatichdev.ecommerce.product.ReservationResponse;
+import com.fatichdev.ecommerce.saga.OrderSagaOrchestrator;
+import feign.FeignException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class OrderService {
 
     private final OrderRepository repository;
@@ -29,29 +37,47 @@ public class OrderService {
     private final OrderLineService orderLineService;
     private final OrderProducer orderProducer;
     private final PaymentClient paymentClient;
+    private final ExecutorService orderTaskExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderSagaOrchestrator sagaOrchestrator;
 
     public Integer createOrder(@Valid OrderRequest request) {
         // Check the customer --> customer microservice (OpenFeign)
-        var customer = this.customerClient.findCustomerById(request.customerId())
-                .orElseThrow(() -> new BusinessException("Cannot create order:: No customer exist with the provided ID:: " + request.customerId()));
+        // and reserve the products --> product microservice (RestTemplate), both at the same time
+        var customerLookup = Futures.supplyInterruptibly(
+                () -> this.customerClient.findCustomerById(request.customerId()), orderTaskExecutor);
+        var reservation = CompletableFuture.supplyAsync(
+                () -> this.productClient.reserveProducts(request.products()), orderTaskExecutor);
+        // A failed reservation makes the customer irrelevant: stop the lookup instead of waiting for it
+        reservation.whenComplete((reserved, e) -> {
+            if (e != null) {
+                customerLookup.cancel(true);
+            }
+        });
 
-        // Purchase the products --> product microservice (RestTemplate)
-        var purchasedProducts = this.productClient.purchaseProducts(request.products());
-
-        // Persist order
-
-        var order = this.repository.save(mapper.toOrder(request));
+        CustomerResponse customer;
+        ReservationResponse reservedProducts;
+        try {
+            customer = Futures.await(customerLookup)
+                    .orElseThrow(() -> new BusinessException("Cannot create order:: No customer exist with the provided ID:: " + request.customerId()));
+            reservedProducts = Futures.await(reservation);
+        } catch (RuntimeException e) {
+            // The reservation may still be in flight: hand the stock back as soon as it completes
+            reservation.thenAcceptAsync(reserved -> releaseReservation(reserved.reference()), orderTaskExecutor);
+            if (customerLookup.isCancelled()) {
+                // The lookup was stopped because the reservation failed; that failure is the one to report
+                throw Futures.failure(reservation);
+            }
+            throw e;
+        }
 
-        // Persist order lines
-        for (PurchaseRequest purchaseRequest: request.products()) {
-            this.orderLineService.saveOrderLine(
-                    new OrderLineRequest(
-                            null,
-                            order.getId(),
-                            purchaseRequest.productId(),
-                            purchaseRequest.quantity()
-                    )
-            );
+        // Persist order and order lines
+        Order order;
+        try {
+            order = this.transactionTemplate.execute(status -> persistOrder(request));
+        } catch (RuntimeException e) {
+            releaseReservation(reservedProducts.reference());
+            throw e;
         }
 
         //Start payment process
@@ -62,28 +88,98 @@ public class OrderService {
                 order.getReference(),
                 customer
         );
-        paymentClient.requestOrderPayment(paymentRequest);
+        try {
+            // Keyed by order reference, so a retried call cannot charge the order twice
+            paymentClient.requestOrderPayment(order.getReference(), paymentRequest);
+        } catch (RuntimeException e) {
+            if (isRejected(e)) {
+                releaseReservation(reservedProducts.reference());
+                throw e;
+            }
+            // A timeout or a server error may have charged the customer all the same: the stock stays held while
+            // the saga asks again, keyed by order reference, or refunds the payment
+            log.warn("Payment of order {} has no definite outcome; handing the order to the saga", order.getReference(), e);
+            sagaOrchestrator.resumeUnpaid(order, reservedProducts, customer);
+            return order.getId();
+        }
 
+        // Payment accepted: the reserved stock is now definitively purchased. The customer has paid, so a confirm
+        // that fails is not the caller's problem: the saga retries it, reserves again or refunds the payment
+        if (!confirmReservation(reservedProducts.reference())) {
+            sagaOrchestrator.resumePaid(order, reservedProducts, customer);
+            return order.getId();
+        }
 
-        // Send the order confirmation --> notification microservice (via kafka message broker)
-        orderProducer.sendOrderConfirmation(
+        // Send the order confirmation --> notification microservice (via the outbox and kafka message broker)
+        this.transactionTemplate.executeWithoutResult(status -> orderProducer.sendOrderConfirmation(
                 new OrderConfirmation(
                         request.reference(),
                         request.amount(),
                         request.paymentMethod(),
                         customer,
-                        purchasedProducts
+                        reservedProducts.products(),
+                        order.getCreatedDate()
                 )
-        );
+        ));
         return order.getId();
     }
 
-    public List<OrderResponse> findAll() {
-        return repository.findAll().stream()
-                .map(mapper::fromOrder)
-                .collect(Collectors.toList());
+    private boolean confirmReservation(String reference) {
+        try {
+            var confirmation = productClient.confirmReservation(reference);
+            if (confirmation != ReservationConfirmation.CONFIRMED) {
+                log.warn("Reservation {} of a paid order was {}; handing the order to the saga", reference, confirmation);
+            }
+            return confirmation == ReservationConfirmation.CONFIRMED;
+        } catch (RuntimeException e) {
+            log.warn("Cannot confirm reservation {} of a paid order; handing the order to the saga", reference, e);
+            return false;
+        }
     }
 
+    /**
+     * Persists the order together with a pending saga and returns straight away;
+     * the saga reserves stock, takes the payment and confirms the order in the background.
+     */
+    public Integer acceptOrder(@Valid OrderRequest request) {
+        return this.transactionTemplate.execute(status -> {
+            var order = persistOrder(request);
+            sagaOrchestrator.begin(order);
+            return order.getId();
+        });
+    }
+
+    private Order persistOrder(OrderRequest request) {
+        // The order and its lines are written in one transaction; the lines go out as a single JDBC batch
+        var order = this.repository.save(mapper.toOrder(request));
+        this.orderLineService.saveOrderLines(
+                request.products().stream()
+                        .map(purchaseRequest -> new OrderLineRequest(
+                                null,
+                                order.getId(),
+                                purchaseRequest.productId(),
+                                purchaseRequest.quantity()
+                        ))
+                        .toList()
+        );
+        return order;
+    }
+
+    /**
+     * Whether the payment service turned the payment down, so that nothing was charged.
+     */
+    private static boolean isRejected(RuntimeException e) {
+        return e instanceof FeignException feignException && feignException.status() >= 400 && feignException.status() < 500;
+    }
+
+    private void releaseReservation(String reference) {
+        try {
+            productClient.releaseReservation(reference);
+        } catch (RuntimeException e) {
+            // The product service expires the reservation on its own if the release is lost
+            log.warn("Cannot release product reservation {}", reference, e);
+        }
+    }
 
     public OrderResponse findById(Integer orderId) {
         return repository.findById(orderId)
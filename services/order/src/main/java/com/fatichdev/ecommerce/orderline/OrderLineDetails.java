@@ -0,0 +1,9 @@
+package com.fatichdev.ecommerce.orderline;
+
+public record OrderLineDetails(
+        Integer orderId,
+        Integer id,
+        Integer productId,
+        double quantity
+) {
+}
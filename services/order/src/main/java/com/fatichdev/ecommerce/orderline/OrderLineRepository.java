@@ -1,10 +1,36 @@
 package com.fatichdev.ecommerce.orderline;
 
+import com.fatichdev.ecommerce.product.PurchaseRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.nio.channels.FileChannel;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderLineRepository extends JpaRepository<OrderLine, Integer> {
-    List<OrderLine> findAllByOrderId(Integer orderId);
+
+    @Query("""
+            select new com.fatichdev.ecommerce.orderline.OrderLineResponse(l.id, l.quantity)
+            from OrderLine l
+            where l.order.id = :orderId
+            order by l.id
+            """)
+    List<OrderLineResponse> findAllByOrderId(@Param("orderId") Integer orderId);
+
+    @Query("""
+            select new com.fatichdev.ecommerce.orderline.OrderLineDetails(l.order.id, l.id, l.productId, l.quantity)
+            from OrderLine l
+            where l.order.id in :orderIds
+            order by l.order.id, l.id
+            """)
+    List<OrderLineDetails> findAllByOrderIdIn(@Param("orderIds") Collection<Integer> orderIds);
+
+    @Query("""
+            select new com.fatichdev.ecommerce.product.PurchaseRequest(l.productId, l.quantity)
+            from OrderLine l
+            where l.order.id = :orderId
+            order by l.id
+            """)
+    List<PurchaseRequest> findPurchasesByOrderId(@Param("orderId") Integer orderId);
 }
@@ -1,9 +1,12 @@
 package com.fatichdev.ecommerce.orderline;
 
+import com.fatichdev.ecommerce.product.PurchaseRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,9 +20,28 @@ public class OrderLineService {
         return repository.save(order).getId();
     }
 
+    public List<Integer> saveOrderLines(List<OrderLineRequest> requests) {
+        var orderLines = requests.stream()
+                .map(mapper::toOrderLine)
+                .toList();
+        return repository.saveAll(orderLines).stream()
+                .map(OrderLine::getId)
+                .toList();
+    }
+
     public List<OrderLineResponse> findByOrderId(Integer orderId) {
-        return repository.findAllByOrderId(orderId).stream()
-                .map(mapper::toOrderLineResponse)
-                .collect(Collectors.toList());
+        return repository.findAllByOrderId(orderId);
+    }
+
+    public List<PurchaseRequest> findPurchaseRequests(Integer orderId) {
+        return repository.findPurchasesByOrderId(orderId);
+    }
+
+    public Map<Integer, List<OrderLineDetails>> findByOrderIds(Collection<Integer> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Map.of();
+        }
+        return repository.findAllByOrderIdIn(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderLineDetails::orderId));
     }
 }
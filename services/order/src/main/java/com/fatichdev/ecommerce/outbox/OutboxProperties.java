@@ -0,0 +1,19 @@
+package com.fatichdev.ecommerce.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.outbox")
+public record OutboxProperties(
+        @DefaultValue("500")
+        int batchSize,
+        @DefaultValue("10s")
+        Duration sendTimeout,
+        @DefaultValue("30s")
+        Duration lease,
+        @DefaultValue("5")
+        int maxAttempts
+) {
+}
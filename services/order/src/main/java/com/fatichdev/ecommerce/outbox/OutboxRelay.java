@@ -0,0 +1,178 @@
+package com.fatichdev.ecommerce.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes outbox events in {@link OutboxEvent#getPosition() position} order, keyed by aggregate so events of one
+ * aggregate land on one partition. The position is taken from a database sequence on insert; events of one
+ * aggregate are written by successive transactions, so their positions follow the order they were written in on
+ * any replica. A lease row keeps a single relay active across replicas.
+ * <p>
+ * Acknowledgements are awaited outside any transaction, and acknowledged events are deleted in a short one
+ * afterwards, so delivery is at-least-once. An event that is not acknowledged holds back the later events of its
+ * aggregate: those not sent yet are skipped, and those Kafka already took stay in the outbox and are published again
+ * after it, so the last copy of each event on the topic follows position order. An event that fails for a reason
+ * Kafka will not retry, such as an unreadable payload, is dead-lettered after {@code max-attempts}, so it cannot
+ * block the outbox.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxRepository repository;
+    private final OutboxProperties properties;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String owner = UUID.randomUUID().toString();
+
+    @Scheduled(fixedDelayString = "${application.outbox.linger-ms:100}")
+    public void relay() {
+        int published;
+        do {
+            published = publishBatch();
+        } while (published == properties.batchSize());
+    }
+
+    private int publishBatch() {
+        if (repository.claimRelay(owner, properties.lease().toMillis()) == 0) {
+            return 0;
+        }
+        var events = repository.findAllByDeadLetteredAtIsNullOrderByPosition(Limit.of(properties.batchSize()));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        var sends = new LinkedHashMap<OutboxEvent, CompletableFuture<?>>();
+        var failures = new LinkedHashMap<OutboxEvent, Throwable>();
+        var heldBackKeys = new HashSet<String>();
+        for (OutboxEvent event : events) {
+            if (heldBackKeys.contains(event.getAggregateKey())) {
+                continue;
+            }
+            try {
+                sends.put(event, send(event));
+            } catch (Exception e) {
+                failures.put(event, e);
+                heldBackKeys.add(event.getAggregateKey());
+            }
+        }
+        awaitAcks(sends.values());
+
+        var sentIds = new ArrayList<Long>(sends.size());
+        // In position order, so an event that failed or timed out holds back the later events of its aggregate
+        sends.forEach((event, send) -> {
+            if (send.isDone() && !send.isCompletedExceptionally()) {
+                if (!heldBackKeys.contains(event.getAggregateKey())) {
+                    sentIds.add(event.getId());
+                }
+                return;
+            }
+            heldBackKeys.add(event.getAggregateKey());
+            if (send.isDone()) {
+                failures.put(event, send.exceptionNow());
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.deleteAllByIdInBatch(sentIds);
+            recordFailures(failures);
+        });
+        if (sentIds.size() < events.size()) {
+            log.warn("Published {} of {} outbox events, retrying the rest later", sentIds.size(), events.size());
+        }
+        return sentIds.size();
+    }
+
+    private CompletableFuture<?> send(OutboxEvent event) throws ClassNotFoundException, IOException {
+        var payload = objectMapper.readValue(event.getPayload(), Class.forName(event.getPayloadType()));
+        var sample = Timer.start(meterRegistry);
+        return kafkaTemplate.send(new ProducerRecord<>(event.getTopic(), event.getAggregateKey(), payload))
+                .whenComplete((result, error) -> sample.stop(meterRegistry.timer(
+                        "outbox.send.latency",
+                        "topic", event.getTopic(),
+                        "outcome", error == null ? "success" : "failure"
+                )));
+    }
+
+    private void awaitAcks(Iterable<CompletableFuture<?>> sends) {
+        var all = new ArrayList<CompletableFuture<?>>();
+        sends.forEach(all::add);
+        try {
+            CompletableFuture.allOf(all.toArray(CompletableFuture[]::new))
+                    .get(properties.sendTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Judged per event below
+        }
+    }
+
+    /**
+     * Counts failures Kafka would not retry against the event; transient ones, such as a broker that is down,
+     * are simply tried again on the next run.
+     */
+    private void recordFailures(Map<OutboxEvent, Throwable> failures) {
+        var failed = new ArrayList<OutboxEvent>();
+        failures.forEach((event, error) -> {
+            if (isTransient(error)) {
+                return;
+            }
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(truncate(String.valueOf(rootCause(error))));
+            if (event.getAttempts() >= properties.maxAttempts()) {
+                event.setDeadLetteredAt(LocalDateTime.now());
+                meterRegistry.counter("outbox.dead.letters", "topic", event.getTopic()).increment();
+                log.error("Dead-lettered outbox event {} for {} after {} attempts", event.getId(), event.getTopic(),
+                        event.getAttempts(), error);
+            }
+            failed.add(event);
+        });
+        repository.saveAll(failed);
+    }
+
+    private static boolean isTransient(Throwable error) {
+        for (var cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof RetriableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        var cause = error;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String truncate(String message) {
+        return message.substring(0, Math.min(message.length(), 1000));
+    }
+}
@@ -0,0 +1,30 @@
+package com.fatichdev.ecommerce.outbox;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    List<OutboxEvent> findAllByDeadLetteredAtIsNullOrderByPosition(Limit limit);
+
+    /**
+     * Takes or renews the relay lease for {@code owner}; returns 0 while another replica holds an unexpired lease.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into outbox_relay_lease (id, owner, locked_until)
+            values ('relay', :owner, localtimestamp + :leaseMillis * interval '1 millisecond')
+            on conflict (id) do update
+            set owner = excluded.owner,
+                locked_until = excluded.locked_until
+            where outbox_relay_lease.owner = excluded.owner or outbox_relay_lease.locked_until < localtimestamp
+            """, nativeQuery = true)
+    int claimRelay(@Param("owner") String owner, @Param("leaseMillis") long leaseMillis);
+}
@@ -3,13 +3,24 @@ package com.fatichdev.ecommerce.payment;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 
 @FeignClient(
         name = "payment-service",
-        url = "${application.config.payment-url}"
+        url = "${application.config.payment-url:}",
+        path = "/api/v1/payments"
 )
 public interface PaymentClient {
 
     @PostMapping
-    Integer requestOrderPayment(@RequestBody PaymentRequest paymentRequest);
+    Integer requestOrderPayment(
+            @RequestHeader("Idempotency-Key") String idempotencyKey,
+            @RequestBody PaymentRequest paymentRequest
+    );
+
+    /**
+     * Idempotent: refunding an order twice returns the same payment.
+     */
+    @PostMapping("/refunds")
+    Integer refundOrderPayment(@RequestBody RefundRequest refundRequest);
 }
@@ -0,0 +1,10 @@
+package com.fatichdev.ecommerce.payment;
+
+public record PaymentOutcome(
+        Integer orderId,
+        String orderReference,
+        Integer paymentId,
+        PaymentStatus status,
+        String failureReason
+) {
+}
@@ -0,0 +1,6 @@
+package com.fatichdev.ecommerce.payment;
+
+public enum PaymentStatus {
+    SUCCEEDED,
+    FAILED
+}
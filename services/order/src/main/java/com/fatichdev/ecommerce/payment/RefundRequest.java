@@ -0,0 +1,12 @@
+package com.fatichdev.ecommerce.payment;
+
+/**
+ * Cancels the payment of an order that cannot be fulfilled: a payment already taken is refunded, and one that has
+ * not arrived yet is refused when it does.
+ */
+public record RefundRequest(
+        Integer orderId,
+        String orderReference,
+        String reason
+) {
+}
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
@@ -42,4 +43,44 @@ public class ProductClient {
 
         return response.getBody();
     }
+
+    public ReservationResponse reserveProducts(List<PurchaseRequest> requests) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(CONTENT_TYPE, APPLICATION_JSON_VALUE);
+
+        HttpEntity<List<PurchaseRequest>> entity = new HttpEntity<>(requests, headers);
+
+        ResponseEntity<ReservationResponse> response = restTemplate.exchange(
+                productUrl + "/reservations", HttpMethod.POST, entity, ReservationResponse.class
+        );
+
+        if (response.getStatusCode().isError()) {
+            throw new BusinessException("An error occurred while reserving products: " + response.getStatusCode());
+        }
+
+        return response.getBody();
+    }
+
+    /**
+     * Confirms a reservation. The call is idempotent; a reservation whose stock is no longer held is reported
+     * instead of thrown, so callers can decide between reserving again and compensating.
+     */
+    public ReservationConfirmation confirmReservation(String reference) {
+        try {
+            restTemplate.postForEntity(productUrl + "/reservations/{reference}/confirm", null, Void.class, reference);
+            return ReservationConfirmation.CONFIRMED;
+        } catch (HttpClientErrorException.Gone e) {
+            return ReservationConfirmation.EXPIRED;
+        } catch (HttpClientErrorException.Conflict e) {
+            return ReservationConfirmation.RELEASED;
+        }
+    }
+
+    /**
+     * Releases a reservation; releasing one that was already released or expired is a no-op.
+     * Throws {@link HttpClientErrorException.Conflict} when the reservation was confirmed in the meantime.
+     */
+    public void releaseReservation(String reference) {
+        restTemplate.postForEntity(productUrl + "/reservations/{reference}/release", null, Void.class, reference);
+    }
 }
@@ -0,0 +1,12 @@
+package com.fatichdev.ecommerce.product;
+
+/**
+ * How the product service answered a reservation confirm. Confirming an already confirmed reservation is a success.
+ */
+public enum ReservationConfirmation {
+    CONFIRMED,
+    /** The reservation ran past its TTL and its stock went back on sale. */
+    EXPIRED,
+    /** The reservation was released, so its stock went back on sale. */
+    RELEASED
+}
@@ -0,0 +1,11 @@
+package com.fatichdev.ecommerce.product;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record ReservationResponse(
+        String reference,
+        LocalDateTime expiresAt,
+        List<PurchaseResponse> products
+) {
+}
@@ -0,0 +1,85 @@
+package com.fatichdev.ecommerce.saga;
+
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.payment.PaymentStatus;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@AllArgsConstructor
+@Builder
+@Getter
+@Setter
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@NoArgsConstructor
+@Table(name = "order_saga", indexes = @Index(name = "order_saga_state_next_attempt_at_idx", columnList = "state, next_attempt_at"))
+public class OrderSaga {
+
+    @Id
+    private Integer orderId;
+
+    @Column(nullable = false)
+    private String orderReference;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SagaState state;
+
+    private String reservationReference;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private CustomerResponse customer;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<PurchaseResponse> products;
+
+    @Column(length = 1000)
+    private String failureReason;
+
+    /** Written only by {@link OrderSagaRepository#recordPaymentOutcome}, so saving the saga never overwrites it. */
+    @Enumerated(EnumType.STRING)
+    @Column(insertable = false, updatable = false)
+    private PaymentStatus paymentOutcome;
+
+    @Column(length = 1000, insertable = false, updatable = false)
+    private String paymentFailureReason;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime stateEnteredAt;
+
+    /** When the sweeper may pick the saga up again: after a failed attempt, or if its worker died mid-step. */
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    private LocalDateTime lockedUntil;
+
+    @CreatedDate
+    @Column(updatable = false, nullable = false)
+    private LocalDateTime createdDate;
+
+    @LastModifiedDate
+    @Column(insertable = false)
+    private LocalDateTime lastModifiedDate;
+}
@@ -0,0 +1,491 @@
+package com.fatichdev.ecommerce.saga;
+
+import com.fatichdev.ecommerce.concurrent.Futures;
+import com.fatichdev.ecommerce.customer.CustomerClient;
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.exception.BusinessException;
+import com.fatichdev.ecommerce.kafka.OrderConfirmation;
+import com.fatichdev.ecommerce.kafka.OrderProducer;
+import com.fatichdev.ecommerce.order.Order;
+import com.fatichdev.ecommerce.order.OrderRepository;
+import com.fatichdev.ecommerce.orderline.OrderLineService;
+import com.fatichdev.ecommerce.payment.PaymentClient;
+import com.fatichdev.ecommerce.payment.PaymentOutcome;
+import com.fatichdev.ecommerce.payment.PaymentRequest;
+import com.fatichdev.ecommerce.payment.PaymentStatus;
+import com.fatichdev.ecommerce.payment.RefundRequest;
+import com.fatichdev.ecommerce.product.ProductClient;
+import com.fatichdev.ecommerce.product.ReservationConfirmation;
+import com.fatichdev.ecommerce.product.ReservationResponse;
+import feign.FeignException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.fatichdev.ecommerce.saga.SagaState.COMPENSATING;
+import static com.fatichdev.ecommerce.saga.SagaState.COMPLETED;
+import static com.fatichdev.ecommerce.saga.SagaState.FAILED;
+import static com.fatichdev.ecommerce.saga.SagaState.PAID;
+import static com.fatichdev.ecommerce.saga.SagaState.PAYMENT_REQUESTED;
+import static com.fatichdev.ecommerce.saga.SagaState.PENDING;
+import static com.fatichdev.ecommerce.saga.SagaState.REFUNDING;
+import static com.fatichdev.ecommerce.saga.SagaState.STOCK_RESERVED;
+
+/**
+ * Drives accepted orders through {@link SagaState} on a bounded worker pool. Every transition is persisted, so a
+ * saga interrupted by a crash, a full queue or a failing downstream service is resumed by the sweeper.
+ */
+@Service
+@Slf4j
+public class OrderSagaOrchestrator {
+
+    private static final Set<SagaState> ACTIVE = EnumSet.of(PENDING, STOCK_RESERVED, PAYMENT_REQUESTED, PAID, REFUNDING, COMPENSATING);
+    private static final int MAX_BACKOFF_SHIFT = 6;
+
+    private final OrderSagaRepository sagaRepository;
+    private final OrderRepository orderRepository;
+    private final OrderLineService orderLineService;
+    private final CustomerClient customerClient;
+    private final ProductClient productClient;
+    private final PaymentClient paymentClient;
+    private final OrderProducer orderProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService orderTaskExecutor;
+    private final SagaProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor workers;
+
+    public OrderSagaOrchestrator(
+            OrderSagaRepository sagaRepository,
+            OrderRepository orderRepository,
+            OrderLineService orderLineService,
+            CustomerClient customerClient,
+            ProductClient productClient,
+            PaymentClient paymentClient,
+            OrderProducer orderProducer,
+            TransactionTemplate transactionTemplate,
+            ExecutorService orderTaskExecutor,
+            SagaProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.sagaRepository = sagaRepository;
+        this.orderRepository = orderRepository;
+        this.orderLineService = orderLineService;
+        this.customerClient = customerClient;
+        this.productClient = productClient;
+        this.paymentClient = paymentClient;
+        this.orderProducer = orderProducer;
+        this.transactionTemplate = transactionTemplate;
+        this.orderTaskExecutor = orderTaskExecutor;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        var threadNumber = new AtomicInteger();
+        // A full queue drops the hand-off; the saga is already persisted and the sweeper picks it up when due
+        this.workers = new ThreadPoolExecutor(
+                properties.workers(),
+                properties.workers(),
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()),
+                runnable -> new Thread(runnable, "order-saga-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.DiscardPolicy()
+        );
+        Gauge.builder("order.saga.queue.depth", workers, executor -> executor.getQueue().size()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates the saga of a freshly persisted order. Must run in the transaction that writes the order; the saga
+     * starts once that transaction commits.
+     */
+    public void begin(Order order) {
+        var now = LocalDateTime.now();
+        start(OrderSaga.builder()
+                .orderId(order.getId())
+                .orderReference(order.getReference())
+                .state(PENDING)
+                .stateEnteredAt(now)
+                .nextAttemptAt(now.plus(properties.stallTimeout()))
+                .build());
+    }
+
+    /**
+     * Takes over an order placed synchronously whose payment went through but whose reservation could not be
+     * confirmed. The saga confirms it, reserving the stock again or refunding the payment when it has to.
+     */
+    public void resumePaid(Order order, ReservationResponse reservation, CustomerResponse customer) {
+        resume(order, reservation, customer, PAID);
+    }
+
+    /**
+     * Takes over an order placed synchronously whose payment call failed without a definite answer, a timeout or a
+     * server error, so the customer may or may not have been charged. The saga asks for the payment again, keyed by
+     * order reference, and refunds it when it keeps failing.
+     */
+    public void resumeUnpaid(Order order, ReservationResponse reservation, CustomerResponse customer) {
+        resume(order, reservation, customer, STOCK_RESERVED);
+    }
+
+    private void resume(Order order, ReservationResponse reservation, CustomerResponse customer, SagaState state) {
+        var now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> start(OrderSaga.builder()
+                .orderId(order.getId())
+                .orderReference(order.getReference())
+                .state(state)
+                .reservationReference(reservation.reference())
+                .products(reservation.products())
+                .customer(customer)
+                .stateEnteredAt(now)
+                .nextAttemptAt(now)
+                .build()));
+    }
+
+    private void start(OrderSaga saga) {
+        sagaRepository.save(saga);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(saga.getOrderId());
+            }
+        });
+    }
+
+    public OrderStatusResponse status(Integer orderId) {
+        return sagaRepository.findById(orderId)
+                .map(saga -> new OrderStatusResponse(
+                        saga.getOrderId(),
+                        saga.getOrderReference(),
+                        saga.getState(),
+                        saga.getFailureReason(),
+                        saga.getStateEnteredAt()
+                ))
+                .orElseThrow(() -> new EntityNotFoundException(String.format("No order saga found with id %d", orderId)));
+    }
+
+    /**
+     * Hands a payment outcome to the saga waiting for it. Outcomes for sagas that are no longer waiting are
+     * redeliveries and are dropped, except a successful payment of a failed order, which sends the saga back to
+     * refund it.
+     */
+    public void onPaymentOutcome(PaymentOutcome outcome) {
+        if (sagaRepository.recordPaymentOutcome(outcome.orderId(), outcome.status(), truncate(outcome.failureReason())) > 0) {
+            submit(outcome.orderId());
+            return;
+        }
+        if (outcome.status() == PaymentStatus.SUCCEEDED && sagaRepository.reopenForRefund(
+                outcome.orderId(), "Paid after the order failed", LocalDateTime.now()) > 0) {
+            log.warn("Order {} was paid (payment {}) after its saga gave up; refunding it",
+                    outcome.orderReference(), outcome.paymentId());
+            submit(outcome.orderId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.saga.sweep-interval-ms:5000}")
+    public void sweep() {
+        sagaRepository.findDue(ACTIVE, LocalDateTime.now(), Limit.of(properties.sweepBatchSize()))
+                .forEach(this::submit);
+    }
+
+    private void submit(Integer orderId) {
+        workers.execute(() -> run(orderId));
+    }
+
+    void run(Integer orderId) {
+        var now = LocalDateTime.now();
+        if (sagaRepository.tryLock(orderId, now, now.plus(properties.lease())) == 0) {
+            return;
+        }
+        var awaitingPayment = false;
+        try {
+            var saga = sagaRepository.findById(orderId).orElse(null);
+            while (saga != null && !saga.getState().isTerminal()) {
+                awaitingPayment = saga.getState() == PAYMENT_REQUESTED && saga.getPaymentOutcome() == null;
+                saga = step(saga);
+            }
+        } catch (RuntimeException e) {
+            log.error("Order saga {} stopped unexpectedly; it resumes on the next sweep", orderId, e);
+        } finally {
+            sagaRepository.unlock(orderId);
+        }
+        // An outcome that arrived while this worker held the lease was not picked up by its own hand-off
+        if (awaitingPayment && sagaRepository.existsByOrderIdAndPaymentOutcomeIsNotNull(orderId)) {
+            submit(orderId);
+        }
+    }
+
+    /**
+     * Runs the step of the current state and returns the saga in its next state,
+     * or {@code null} when the step has to be retried later.
+     */
+    private OrderSaga step(OrderSaga saga) {
+        var state = saga.getState();
+        try {
+            return switch (state) {
+                case PENDING -> reserve(saga);
+                case STOCK_RESERVED -> pay(saga);
+                case PAYMENT_REQUESTED -> awaitPayment(saga);
+                case PAID -> complete(saga);
+                case REFUNDING -> refund(saga);
+                case COMPENSATING -> compensate(saga);
+                case COMPLETED, FAILED -> saga;
+            };
+        } catch (RuntimeException e) {
+            if (isPermanent(e) && (state == PENDING || state == STOCK_RESERVED)) {
+                return transition(saga, COMPENSATING, reason(e));
+            }
+            return retryLater(saga, e);
+        }
+    }
+
+    private OrderSaga reserve(OrderSaga saga) {
+        var order = loadOrder(saga);
+        var purchases = orderLineService.findPurchaseRequests(order.getId());
+        var customerLookup = Futures.supplyInterruptibly(
+                () -> customerClient.findCustomerById(order.getCustomerId()), orderTaskExecutor);
+        var reservation = CompletableFuture.supplyAsync(
+                () -> productClient.reserveProducts(purchases), orderTaskExecutor);
+
+        ReservationResponse reserved;
+        try {
+            reserved = Futures.await(reservation);
+        } catch (RuntimeException e) {
+            // Nothing is held yet, and the customer no longer matters
+            customerLookup.cancel(true);
+            throw e;
+        }
+        saga.setReservationReference(reserved.reference());
+        saga.setProducts(reserved.products());
+        try {
+            var customer = Futures.await(customerLookup)
+                    .orElseThrow(() -> new BusinessException("No customer exist with the provided ID:: " + order.getCustomerId()));
+            saga.setCustomer(customer);
+            return transition(saga, STOCK_RESERVED, null);
+        } catch (RuntimeException e) {
+            // Stock is held from here on: a retry would reserve it twice, so hand it back instead
+            return transition(saga, COMPENSATING, reason(e));
+        }
+    }
+
+    private OrderSaga pay(OrderSaga saga) {
+        var paymentRequest = paymentRequest(saga);
+        if (properties.paymentMode() == PaymentMode.REST) {
+            // Keyed by order reference, so retrying after a timeout cannot charge the order twice
+            paymentClient.requestOrderPayment(paymentRequest.orderReference(), paymentRequest);
+            return transition(saga, PAID, null);
+        }
+        return transactionTemplate.execute(status -> {
+            orderProducer.sendPaymentRequest(paymentRequest);
+            return transition(saga, PAYMENT_REQUESTED, null, properties.paymentTimeout());
+        });
+    }
+
+    /**
+     * Moves on once the payment outcome is in, and asks again when none came within the payment timeout;
+     * the payment service answers a repeated request with the payment it already made.
+     */
+    private OrderSaga awaitPayment(OrderSaga saga) {
+        if (saga.getPaymentOutcome() == PaymentStatus.SUCCEEDED) {
+            return transition(saga, PAID, null);
+        }
+        if (saga.getPaymentOutcome() == PaymentStatus.FAILED) {
+            return transition(saga, COMPENSATING, "Payment failed:: " + saga.getPaymentFailureReason());
+        }
+        if (saga.getNextAttemptAt().isAfter(LocalDateTime.now())) {
+            return null;
+        }
+
+        var attempts = saga.getAttempts() + 1;
+        if (attempts >= properties.maxAttempts()) {
+            // One of the requests may still be paid; the refund also makes the payment service refuse it
+            return transition(saga, REFUNDING, "No payment outcome after " + attempts + " requests");
+        }
+        meterRegistry.counter("order.saga.retries", "state", PAYMENT_REQUESTED.name()).increment();
+        var paymentRequest = paymentRequest(saga);
+        transactionTemplate.executeWithoutResult(status -> {
+            orderProducer.sendPaymentRequest(paymentRequest);
+            saga.setAttempts(attempts);
+            saga.setNextAttemptAt(LocalDateTime.now().plus(properties.paymentTimeout()));
+            sagaRepository.save(saga);
+        });
+        return null;
+    }
+
+    private PaymentRequest paymentRequest(OrderSaga saga) {
+        var order = loadOrder(saga);
+        return new PaymentRequest(
+                order.getTotalAmount(),
+                order.getPaymentMethod(),
+                order.getId(),
+                order.getReference(),
+                saga.getCustomer()
+        );
+    }
+
+    private OrderSaga complete(OrderSaga saga) {
+        var order = loadOrder(saga);
+        var confirmation = productClient.confirmReservation(saga.getReservationReference());
+        if (confirmation != ReservationConfirmation.CONFIRMED) {
+            return reserveAgain(saga, order, confirmation);
+        }
+        return transactionTemplate.execute(status -> {
+            orderProducer.sendOrderConfirmation(new OrderConfirmation(
+                    order.getReference(),
+                    order.getTotalAmount(),
+                    order.getPaymentMethod(),
+                    saga.getCustomer(),
+                    saga.getProducts(),
+                    order.getCreatedDate()
+            ));
+            return transition(saga, COMPLETED, null);
+        });
+    }
+
+    /**
+     * The reservation lapsed while the payment was in flight. The order is paid, so the stock is taken again and
+     * confirmed on the next step; when it is gone, the payment is refunded.
+     */
+    private OrderSaga reserveAgain(OrderSaga saga, Order order, ReservationConfirmation confirmation) {
+        log.info("Reservation {} of paid order saga {} was {}; reserving again",
+                saga.getReservationReference(), saga.getOrderId(), confirmation);
+        ReservationResponse reserved;
+        try {
+            reserved = productClient.reserveProducts(orderLineService.findPurchaseRequests(order.getId()));
+        } catch (RuntimeException e) {
+            if (!isPermanent(e)) {
+                throw e;
+            }
+            return transition(saga, REFUNDING, "Reservation " + confirmation.name().toLowerCase() + " and stock is gone:: " + reason(e));
+        }
+        saga.setReservationReference(reserved.reference());
+        saga.setProducts(reserved.products());
+        return sagaRepository.save(saga);
+    }
+
+    private OrderSaga refund(OrderSaga saga) {
+        paymentClient.refundOrderPayment(new RefundRequest(saga.getOrderId(), saga.getOrderReference(), saga.getFailureReason()));
+        return transition(saga, COMPENSATING, null);
+    }
+
+    private OrderSaga compensate(OrderSaga saga) {
+        if (saga.getReservationReference() != null) {
+            try {
+                productClient.releaseReservation(saga.getReservationReference());
+            } catch (HttpClientErrorException.Conflict e) {
+                // Confirmed before the order failed; the refund covers the customer and the stock stays sold
+                log.warn("Reservation {} of failed order saga {} was already confirmed",
+                        saga.getReservationReference(), saga.getOrderId());
+            }
+        }
+        return transition(saga, FAILED, null);
+    }
+
+    private OrderSaga transition(OrderSaga saga, SagaState next, String failureReason) {
+        return transition(saga, next, failureReason, properties.stallTimeout());
+    }
+
+    private OrderSaga transition(OrderSaga saga, SagaState next, String failureReason, Duration nextAttemptIn) {
+        var now = LocalDateTime.now();
+        meterRegistry.timer("order.saga.state", "state", saga.getState().name(), "next", next.name())
+                .record(Duration.between(saga.getStateEnteredAt(), now));
+        saga.setState(next);
+        saga.setStateEnteredAt(now);
+        saga.setAttempts(0);
+        if (failureReason != null) {
+            saga.setFailureReason(truncate(failureReason));
+        }
+        saga.setNextAttemptAt(now.plus(nextAttemptIn));
+        saga.setLockedUntil(now.plus(properties.lease()));
+        return sagaRepository.save(saga);
+    }
+
+    private OrderSaga retryLater(OrderSaga saga, RuntimeException e) {
+        var attempts = saga.getAttempts() + 1;
+        var state = saga.getState();
+        meterRegistry.counter("order.saga.retries", "state", state.name()).increment();
+        if (attempts >= properties.maxAttempts()) {
+            if (state == PENDING || state == STOCK_RESERVED && properties.paymentMode() == PaymentMode.EVENT) {
+                log.warn("Order saga {} gave up in {} after {} attempts", saga.getOrderId(), state, attempts, e);
+                return transition(saga, COMPENSATING, reason(e));
+            }
+            if (state == STOCK_RESERVED) {
+                // A timed out payment call may still have charged the customer
+                log.warn("Order saga {} gave up paying after {} attempts", saga.getOrderId(), attempts, e);
+                return transition(saga, REFUNDING, reason(e));
+            }
+            if (state == COMPENSATING) {
+                // The product service expires the reservation on its own
+                log.warn("Cannot release stock of order saga {}; leaving it to the reservation TTL", saga.getOrderId(), e);
+                return transition(saga, FAILED, null);
+            }
+        }
+        if (attempts >= properties.maxPaidAttempts()) {
+            if (state == PAID) {
+                alert(saga, attempts, "refunding the order", e);
+                return transition(saga, REFUNDING, "Cannot confirm the paid order:: " + reason(e));
+            }
+            if (attempts == properties.maxPaidAttempts()) {
+                // A refund is money owed, so it keeps retrying at the longest backoff once someone has been alerted
+                alert(saga, attempts, "still retrying", e);
+            }
+        }
+        log.info("Order saga {} step {} failed (attempt {}), retrying later: {}", saga.getOrderId(), state, attempts, e.getMessage());
+        saga.setAttempts(attempts);
+        saga.setNextAttemptAt(LocalDateTime.now().plus(
+                properties.retryBackoff().multipliedBy(1L << Math.min(attempts - 1, MAX_BACKOFF_SHIFT))
+        ));
+        sagaRepository.save(saga);
+        return null;
+    }
+
+    private void alert(OrderSaga saga, int attempts, String action, RuntimeException e) {
+        meterRegistry.counter("order.saga.alerts", "state", saga.getState().name()).increment();
+        log.error("Order saga {} failed {} times in {}; {}", saga.getOrderId(), attempts, saga.getState(), action, e);
+    }
+
+    private Order loadOrder(OrderSaga saga) {
+        return orderRepository.findById(saga.getOrderId())
+                .orElseThrow(() -> new EntityNotFoundException(String.format("No order found with id %d", saga.getOrderId())));
+    }
+
+    private static boolean isPermanent(RuntimeException e) {
+        return e instanceof BusinessException
+                || e instanceof EntityNotFoundException
+                || e instanceof HttpClientErrorException
+                || e instanceof FeignException feignException && feignException.status() >= 400 && feignException.status() < 500;
+    }
+
+    private static String reason(RuntimeException e) {
+        var message = e instanceof BusinessException businessException ? businessException.getMsg() : e.getMessage();
+        return message == null ? e.getClass().getSimpleName() : message;
+    }
+
+    private static String truncate(String message) {
+        return message == null ? null : message.substring(0, Math.min(message.length(), 1000));
+    }
+}
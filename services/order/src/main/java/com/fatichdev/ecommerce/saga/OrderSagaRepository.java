@@ -0,0 +1,77 @@
+package com.fatichdev.ecommerce.saga;
+
+import com.fatichdev.ecommerce.payment.PaymentStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderSagaRepository extends JpaRepository<OrderSaga, Integer> {
+
+    /**
+     * Leases the saga to the calling worker; returns 0 when another worker holds an unexpired lease.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSaga s set s.lockedUntil = :until
+            where s.orderId = :orderId and (s.lockedUntil is null or s.lockedUntil < :now)
+            """)
+    int tryLock(@Param("orderId") Integer orderId, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query("update OrderSaga s set s.lockedUntil = null where s.orderId = :orderId")
+    void unlock(@Param("orderId") Integer orderId);
+
+    /**
+     * Stores a payment outcome on a saga that is waiting for one; returns 0 when the saga is not waiting.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSaga s set s.paymentOutcome = :outcome, s.paymentFailureReason = :reason
+            where s.orderId = :orderId and s.state = com.fatichdev.ecommerce.saga.SagaState.PAYMENT_REQUESTED
+            """)
+    int recordPaymentOutcome(
+            @Param("orderId") Integer orderId,
+            @Param("outcome") PaymentStatus outcome,
+            @Param("reason") String reason
+    );
+
+    boolean existsByOrderIdAndPaymentOutcomeIsNotNull(Integer orderId);
+
+    /**
+     * Sends a saga that already gave up back to {@link SagaState#REFUNDING}; returns 0 when the saga is still
+     * running or was never started.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update OrderSaga s
+            set s.state = com.fatichdev.ecommerce.saga.SagaState.REFUNDING,
+                s.failureReason = :reason, s.attempts = 0, s.stateEnteredAt = :now, s.nextAttemptAt = :now
+            where s.orderId = :orderId
+              and s.state in (com.fatichdev.ecommerce.saga.SagaState.COMPENSATING, com.fatichdev.ecommerce.saga.SagaState.FAILED)
+            """)
+    int reopenForRefund(@Param("orderId") Integer orderId, @Param("reason") String reason, @Param("now") LocalDateTime now);
+
+    @Query("""
+            select s.orderId from OrderSaga s
+            where s.state in :states
+              and s.nextAttemptAt <= :now
+              and (s.lockedUntil is null or s.lockedUntil < :now)
+            order by s.nextAttemptAt
+            """)
+    List<Integer> findDue(
+            @Param("states") Collection<SagaState> states,
+            @Param("now") LocalDateTime now,
+            Limit limit
+    );
+}
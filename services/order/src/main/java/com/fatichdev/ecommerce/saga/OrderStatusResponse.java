@@ -0,0 +1,12 @@
+package com.fatichdev.ecommerce.saga;
+
+import java.time.LocalDateTime;
+
+public record OrderStatusResponse(
+        Integer orderId,
+        String orderReference,
+        SagaState state,
+        String failureReason,
+        LocalDateTime stateEnteredAt
+) {
+}
@@ -0,0 +1,11 @@
+package com.fatichdev.ecommerce.saga;
+
+/**
+ * How the saga asks the payment service to pay an order.
+ */
+public enum PaymentMode {
+    /** Publish to payment-request-topic and wait for the outcome on payment-outcome-topic. */
+    EVENT,
+    /** Call the payment service's REST endpoint. */
+    REST
+}
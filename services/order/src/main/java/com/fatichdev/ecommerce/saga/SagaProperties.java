@@ -0,0 +1,31 @@
+package com.fatichdev.ecommerce.saga;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.saga")
+public record SagaProperties(
+        @DefaultValue("16")
+        int workers,
+        @DefaultValue("1000")
+        int queueCapacity,
+        @DefaultValue("1m")
+        Duration lease,
+        @DefaultValue("2m")
+        Duration stallTimeout,
+        @DefaultValue("5")
+        int maxAttempts,
+        @DefaultValue("20")
+        int maxPaidAttempts,
+        @DefaultValue("1s")
+        Duration retryBackoff,
+        @DefaultValue("500")
+        int sweepBatchSize,
+        @DefaultValue("event")
+        PaymentMode paymentMode,
+        @DefaultValue("1m")
+        Duration paymentTimeout
+) {
+}
@@ -0,0 +1,25 @@
+package com.fatichdev.ecommerce.saga;
+
+/**
+ * Steps of the asynchronous order saga. Every state except the terminal ones has exactly one step that moves it on.
+ */
+public enum SagaState {
+    /** Order and lines persisted; customer not checked and no stock reserved yet. */
+    PENDING,
+    /** Customer verified and stock reserved in the product service. */
+    STOCK_RESERVED,
+    /** Payment requested over Kafka; waiting for its outcome. */
+    PAYMENT_REQUESTED,
+    /** Payment accepted; the reservation still has to be confirmed. */
+    PAID,
+    /** The order cannot be fulfilled after a payment may have been taken; the payment is being refunded. */
+    REFUNDING,
+    /** A step failed for good; the reserved stock is being handed back. */
+    COMPENSATING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
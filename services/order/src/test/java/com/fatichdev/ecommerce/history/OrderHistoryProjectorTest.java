@@ -0,0 +1,171 @@
+package com.fatichdev.ecommerce.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.kafka.OrderConfirmation;
+import com.fatichdev.ecommerce.order.PaymentMethod;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderHistoryProjectorTest {
+
+    private static final LocalDateTime ORDERED_AT = LocalDateTime.of(2026, 3, 1, 9, 30);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Consumer<?, ?> consumer = mock(Consumer.class);
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from order_history");
+        jdbcTemplate.update("delete from order_history_generation");
+        when(consumer.currentLag(any())).thenReturn(OptionalLong.of(0));
+    }
+
+    @Test
+    void anOrderPublishedTwiceInOneBatchIsWrittenOnceWithItsLastEvent() {
+        var projector = newInstance(mock(MessageListenerContainer.class));
+
+        projector.project(List.of(
+                record(0, order("ORD-1", "10.00", ORDERED_AT)),
+                record(1, order("ORD-2", "5.00", ORDERED_AT)),
+                record(2, order("ORD-1", "12.50", ORDERED_AT))
+        ), consumer);
+
+        assertThat(jdbcTemplate.queryForList("select order_reference from order_history order by order_reference", String.class))
+                .containsExactly("ORD-1", "ORD-2");
+        assertThat(jdbcTemplate.queryForObject(
+                "select total_amount from order_history where order_reference = 'ORD-1'", BigDecimal.class))
+                .isEqualByComparingTo("12.50");
+    }
+
+    @Test
+    void anOrderIsDatedByItsCreationNotByItsPublication() {
+        var projector = newInstance(mock(MessageListenerContainer.class));
+        var publishedAt = ORDERED_AT.plusHours(6);
+
+        projector.project(List.of(
+                record(0, order("ORD-1", "10.00", ORDERED_AT), publishedAt),
+                // Published before events carried the creation time
+                record(1, order("ORD-2", "10.00", null), publishedAt)
+        ), consumer);
+
+        assertThat(createdAt("ORD-1")).isEqualTo(ORDERED_AT);
+        assertThat(createdAt("ORD-2")).isEqualTo(publishedAt);
+    }
+
+    @Test
+    void aRebuildMovesEveryInstanceToAFreshConsumerGroup() {
+        var container = container();
+        var otherContainer = container();
+        var projector = newInstance(container);
+        var otherInstance = newInstance(otherContainer);
+        projector.start();
+        otherInstance.start();
+        projector.project(List.of(record(0, order("ORD-1", "10.00", ORDERED_AT))), consumer);
+
+        projector.rebuild();
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from order_history", Integer.class)).isZero();
+        assertThat(container.getContainerProperties().getGroupId()).isEqualTo("order-history-1");
+        assertThat(otherContainer.getContainerProperties().getGroupId()).isEqualTo("order-history");
+
+        otherInstance.followGeneration();
+
+        // A new group has no committed offsets: every partition starts from the earliest one, whoever owns it
+        assertThat(otherContainer.getContainerProperties().getGroupId()).isEqualTo("order-history-1");
+        verify(otherContainer, times(2)).start();
+    }
+
+    private OrderHistoryProjector newInstance(MessageListenerContainer container) {
+        var registry = mock(KafkaListenerEndpointRegistry.class);
+        when(registry.getListenerContainer(OrderHistoryProjector.LISTENER_ID)).thenReturn(container);
+        return new OrderHistoryProjector(
+                jdbcTemplate,
+                new TransactionTemplate(transactionManager),
+                registry,
+                new ObjectMapper(),
+                new OrderHistoryProperties(true, ProjectionMode.CATCH_UP, "order-history"),
+                new SimpleMeterRegistry()
+        );
+    }
+
+    private static MessageListenerContainer container() {
+        var container = mock(MessageListenerContainer.class);
+        var properties = new ContainerProperties("order-topic");
+        when(container.getContainerProperties()).thenReturn(properties);
+        return container;
+    }
+
+    private LocalDateTime createdAt(String orderReference) {
+        return jdbcTemplate.queryForObject(
+                "select created_at from order_history where order_reference = ?", LocalDateTime.class, orderReference);
+    }
+
+    private static ConsumerRecord<String, OrderConfirmation> record(long offset, OrderConfirmation order) {
+        return record(offset, order, ORDERED_AT);
+    }
+
+    private static ConsumerRecord<String, OrderConfirmation> record(
+            long offset,
+            OrderConfirmation order,
+            LocalDateTime publishedAt
+    ) {
+        var timestamp = publishedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new ConsumerRecord<>("order-topic", 0, offset, timestamp, TimestampType.CREATE_TIME, -1, -1,
+                order.orderReference(), order, new RecordHeaders(), Optional.empty());
+    }
+
+    private static OrderConfirmation order(String reference, String amount, LocalDateTime createdAt) {
+        return new OrderConfirmation(
+                reference,
+                new BigDecimal(amount),
+                PaymentMethod.VISA,
+                new CustomerResponse("c-1", "Ada", "Lovelace", "ada@example.com"),
+                List.of(new PurchaseResponse(1, "Keyboard", "Mechanical", new BigDecimal(amount), 1)),
+                createdAt
+        );
+    }
+}
@@ -0,0 +1,110 @@
+package com.fatichdev.ecommerce.kafka.serialization;
+
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.kafka.OrderConfirmation;
+import com.fatichdev.ecommerce.order.PaymentMethod;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the Avro encoding of order confirmations with the JSON one it replaces: payload size, and the CPU time
+ * to write and read one event.
+ */
+@Slf4j
+class EventSerializerBenchmarkTest {
+
+    private static final String ORDER_TOPIC = "order-topic";
+    private static final int WARM_UP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    private final EventSerializer avroSerializer = new EventSerializer();
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private final EventDeserializer deserializer = new EventDeserializer();
+
+    EventSerializerBenchmarkTest() {
+        avroSerializer.configure(Map.of(EventSerializer.FORMAT_CONFIG, "avro"), false);
+        deserializer.configure(Map.of(
+                "spring.json.trusted.packages", "com.fatichdev.ecommerce.*",
+                "spring.json.value.default.type", OrderConfirmation.class.getName()
+        ), false);
+    }
+
+    @Test
+    void anOrderConfirmationIsReadBackAsItWasWritten() {
+        var order = order(3);
+
+        assertThat(deserializer.deserialize(ORDER_TOPIC, avroSerializer.serialize(ORDER_TOPIC, order))).isEqualTo(order);
+    }
+
+    @Test
+    void missingAmountsAreWrittenAndReadAsNull() {
+        var order = new OrderConfirmation("ORD-1", null, PaymentMethod.VISA, customer(),
+                List.of(new PurchaseResponse(1, "Keyboard", "Mechanical", null, 1)), null);
+
+        assertThat(deserializer.deserialize(ORDER_TOPIC, avroSerializer.serialize(ORDER_TOPIC, order))).isEqualTo(order);
+    }
+
+    @Test
+    void avroPayloadsAreLessThanHalfTheSizeOfJson() {
+        for (int products : new int[]{1, 10, 50}) {
+            var order = order(products);
+            var avro = avroSerializer.serialize(ORDER_TOPIC, new RecordHeaders(), order);
+            var json = jsonSerializer.serialize(ORDER_TOPIC, new RecordHeaders(), order);
+
+            var avroWrite = nanosPerEvent(() -> avroSerializer.serialize(ORDER_TOPIC, new RecordHeaders(), order));
+            var jsonWrite = nanosPerEvent(() -> jsonSerializer.serialize(ORDER_TOPIC, new RecordHeaders(), order));
+            var avroRead = nanosPerEvent(() -> deserializer.deserialize(ORDER_TOPIC, avro));
+            var jsonRead = nanosPerEvent(() -> deserializer.deserialize(ORDER_TOPIC, json));
+            log.info("{} products: avro {} bytes, write {} ns, read {} ns | json {} bytes, write {} ns, read {} ns",
+                    products, avro.length, Math.round(avroWrite), Math.round(avroRead),
+                    json.length, Math.round(jsonWrite), Math.round(jsonRead));
+
+            // Field names are no longer repeated for every product. CPU time is reported, not asserted: it depends on the machine
+            assertThat(avro.length).isLessThan(json.length / 2);
+        }
+    }
+
+    private static double nanosPerEvent(Supplier<Object> work) {
+        Object sink = null;
+        for (int i = 0; i < WARM_UP; i++) {
+            sink = work.get();
+        }
+        var start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = work.get();
+        }
+        var elapsed = System.nanoTime() - start;
+        assertThat(sink).isNotNull();
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static OrderConfirmation order(int products) {
+        return new OrderConfirmation(
+                "ORD-20260301-000042",
+                new BigDecimal("1249.90"),
+                PaymentMethod.MASTER_CARD,
+                customer(),
+                IntStream.rangeClosed(1, products)
+                        .mapToObj(id -> new PurchaseResponse(id, "Product " + id, "Description of product " + id,
+                                new BigDecimal("24.99"), 2))
+                        .toList(),
+                LocalDateTime.of(2026, 3, 1, 9, 30, 15)
+        );
+    }
+
+    private static CustomerResponse customer() {
+        return new CustomerResponse("c-1", "Ada", "Lovelace", "ada@example.com");
+    }
+}
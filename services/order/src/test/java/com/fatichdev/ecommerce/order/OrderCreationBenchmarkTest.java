@@ -0,0 +1,156 @@
+package com.fatichdev.ecommerce.order;
+
+import com.fatichdev.ecommerce.config.HttpClientProperties;
+import com.fatichdev.ecommerce.config.RestTemplateConfig;
+import com.fatichdev.ecommerce.customer.CustomerClient;
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.kafka.OrderProducer;
+import com.fatichdev.ecommerce.orderline.OrderLineService;
+import com.fatichdev.ecommerce.payment.PaymentClient;
+import com.fatichdev.ecommerce.product.ProductClient;
+import com.fatichdev.ecommerce.product.PurchaseRequest;
+import com.fatichdev.ecommerce.saga.OrderSagaOrchestrator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Creates orders concurrently against a stubbed product service, once over a bare {@code new RestTemplate()} and
+ * once over the pooled client of {@link RestTemplateConfig}, and reports orders per second and the TCP connections
+ * the product service had to accept. Customer and payment lookups, and the database, are stubbed out.
+ */
+@Slf4j
+class OrderCreationBenchmarkTest {
+
+    private static final int CALLERS = 64;
+    private static final int ORDERS = 5_000;
+    private static final Duration PRODUCT_SERVICE_LATENCY = Duration.ofMillis(1);
+    private static final List<PurchaseRequest> PURCHASES = List.of(new PurchaseRequest(1, 2));
+    private static final CustomerResponse CUSTOMER = new CustomerResponse("c-1", "Ada", "Lovelace", "ada@example.com");
+    private static final byte[] RESERVATION = """
+            {"reference":"res-1","expiresAt":"2026-03-01T09:45:00","products":[]}"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private HttpServer productService;
+
+    @BeforeEach
+    void startProductService() throws IOException {
+        productService = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        productService.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        productService.createContext("/api/v1/products/reservations", this::reservations);
+        productService.start();
+    }
+
+    @AfterEach
+    void stopProductService() {
+        productService.stop(0);
+    }
+
+    @Test
+    void pooledConnectionsAreReusedAcrossOrders() throws Exception {
+        var bare = createOrders(new RestTemplate());
+        var bareConnections = connections.size();
+        connections.clear();
+
+        var config = new RestTemplateConfig();
+        var httpClient = config.productHttpClient(new HttpClientProperties(
+                200, Duration.ofSeconds(1), Duration.ofMillis(500), Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofMinutes(5)));
+        double pooled;
+        try {
+            pooled = createOrders(config.restTemplate(httpClient));
+        } finally {
+            httpClient.close();
+        }
+        var pooledConnections = connections.size();
+        log.info("{} orders from {} callers: bare RestTemplate {} orders/s over {} connections | pooled {} orders/s over {} connections",
+                ORDERS, CALLERS, Math.round(bare), bareConnections, Math.round(pooled), pooledConnections);
+
+        // Orders per second are reported, not asserted: they depend on the machine
+        assertThat(pooledConnections).isLessThanOrEqualTo(CALLERS * 2);
+        assertThat(pooledConnections).isLessThan(bareConnections);
+    }
+
+    private double createOrders(RestTemplate restTemplate) throws Exception {
+        var productClient = new ProductClient(restTemplate);
+        ReflectionTestUtils.setField(productClient, "productUrl",
+                "http://localhost:" + productService.getAddress().getPort() + "/api/v1/products");
+        var repository = mock(OrderRepository.class);
+        var mapper = mock(OrderMapper.class);
+        var customerClient = mock(CustomerClient.class);
+        when(mapper.toOrder(any())).thenAnswer(invocation -> Order.builder()
+                .id(1)
+                .reference(invocation.<OrderRequest>getArgument(0).reference())
+                .build());
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(customerClient.findCustomerById(CUSTOMER.id())).thenReturn(Optional.of(CUSTOMER));
+
+        try (var orderTaskExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             var callers = Executors.newFixedThreadPool(CALLERS)) {
+            var service = new OrderService(repository, mapper, customerClient, productClient, mock(OrderLineService.class),
+                    mock(OrderProducer.class), mock(PaymentClient.class), orderTaskExecutor,
+                    new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(OrderSagaOrchestrator.class));
+            // Warm up both clients before measuring
+            run(service, callers, ORDERS / 10);
+            var start = System.nanoTime();
+            run(service, callers, ORDERS);
+            return ORDERS * 1e9 / (System.nanoTime() - start);
+        }
+    }
+
+    private static void run(OrderService service, ExecutorService callers, int orders) throws Exception {
+        var created = new ArrayList<Future<Integer>>(orders);
+        for (int i = 0; i < orders; i++) {
+            var request = new OrderRequest(null, UUID.randomUUID().toString(), BigDecimal.TEN, PaymentMethod.VISA,
+                    CUSTOMER.id(), PURCHASES);
+            created.add(callers.submit(() -> service.createOrder(request)));
+        }
+        for (var order : created) {
+            assertThat(order.get()).isEqualTo(1);
+        }
+    }
+
+    private void reservations(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            Thread.sleep(PRODUCT_SERVICE_LATENCY);
+            if (exchange.getRequestURI().getPath().endsWith("/confirm")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(201, RESERVATION.length);
+            exchange.getResponseBody().write(RESERVATION);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
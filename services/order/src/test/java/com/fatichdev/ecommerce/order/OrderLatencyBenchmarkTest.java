@@ -0,0 +1,152 @@
+package com.fatichdev.ecommerce.order;
+
+import com.fatichdev.ecommerce.customer.CustomerClient;
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.kafka.OrderProducer;
+import com.fatichdev.ecommerce.orderline.OrderLineService;
+import com.fatichdev.ecommerce.payment.PaymentClient;
+import com.fatichdev.ecommerce.product.ProductClient;
+import com.fatichdev.ecommerce.product.PurchaseRequest;
+import com.fatichdev.ecommerce.product.ReservationConfirmation;
+import com.fatichdev.ecommerce.product.ReservationResponse;
+import com.fatichdev.ecommerce.saga.OrderSagaOrchestrator;
+import feign.Request;
+import feign.RetryableException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Creates orders one after the other against customer, product and payment services stubbed to answer after a fixed
+ * delay, and reports the latency of createOrder when the payment goes through and when it times out and the order is
+ * handed to the saga. The database is stubbed out.
+ */
+@Slf4j
+class OrderLatencyBenchmarkTest {
+
+    private static final Duration DOWNSTREAM_LATENCY = Duration.ofMillis(20);
+    private static final int WARM_UP = 20;
+    private static final int ITERATIONS = 100;
+    private static final List<PurchaseRequest> PURCHASES = List.of(new PurchaseRequest(1, 2));
+    private static final CustomerResponse CUSTOMER = new CustomerResponse("c-1", "Ada", "Lovelace", "ada@example.com");
+    private static final ReservationResponse RESERVATION =
+            new ReservationResponse("res-1", LocalDateTime.now().plusMinutes(15), List.of());
+    private static final Request PAYMENT_CALL =
+            Request.create(Request.HttpMethod.POST, "/api/v1/payments", Map.of(), null, UTF_8, null);
+
+    private final OrderRepository repository = mock(OrderRepository.class);
+    private final OrderMapper mapper = mock(OrderMapper.class);
+    private final CustomerClient customerClient = mock(CustomerClient.class);
+    private final ProductClient productClient = mock(ProductClient.class);
+    private final PaymentClient paymentClient = mock(PaymentClient.class);
+    private final OrderSagaOrchestrator sagaOrchestrator = mock(OrderSagaOrchestrator.class);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private OrderService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new OrderService(repository, mapper, customerClient, productClient, mock(OrderLineService.class),
+                mock(OrderProducer.class), paymentClient, executor,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), sagaOrchestrator);
+        when(mapper.toOrder(any())).thenAnswer(invocation -> Order.builder()
+                .id(1)
+                .reference(invocation.<OrderRequest>getArgument(0).reference())
+                .build());
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(customerClient.findCustomerById(CUSTOMER.id())).thenAnswer(invocation -> {
+            Thread.sleep(DOWNSTREAM_LATENCY);
+            return Optional.of(CUSTOMER);
+        });
+        when(productClient.reserveProducts(PURCHASES)).thenAnswer(invocation -> {
+            Thread.sleep(DOWNSTREAM_LATENCY);
+            return RESERVATION;
+        });
+        when(productClient.confirmReservation(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(DOWNSTREAM_LATENCY);
+            return ReservationConfirmation.CONFIRMED;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void orderLatencyWithPaidAndTimedOutPayments() {
+        when(paymentClient.requestOrderPayment(anyString(), any())).thenAnswer(invocation -> {
+            Thread.sleep(DOWNSTREAM_LATENCY);
+            return 1;
+        });
+        var paid = measure();
+
+        when(paymentClient.requestOrderPayment(anyString(), any())).thenAnswer(invocation -> {
+            Thread.sleep(DOWNSTREAM_LATENCY);
+            throw new RetryableException(-1, "Read timed out", Request.HttpMethod.POST, (Long) null, PAYMENT_CALL);
+        });
+        var timedOut = measure();
+
+        log.info("Downstream calls of {} ms each: createOrder p50 {} ms, p99 {} ms when paid | p50 {} ms, p99 {} ms when the payment times out",
+                DOWNSTREAM_LATENCY.toMillis(),
+                millis(percentile(paid, 0.5)), millis(percentile(paid, 0.99)),
+                millis(percentile(timedOut, 0.5)), millis(percentile(timedOut, 0.99)));
+
+        // Latencies are reported, not asserted: they depend on the machine. Only the shape of the calls is checked:
+        // the customer lookup overlaps the reservation, and a timed out payment skips the confirm
+        assertThat(percentile(paid, 0.5)).isLessThan(DOWNSTREAM_LATENCY.multipliedBy(4).toNanos());
+        assertThat(percentile(timedOut, 0.5)).isLessThan(DOWNSTREAM_LATENCY.multipliedBy(3).toNanos());
+        verify(productClient, never()).releaseReservation(any());
+    }
+
+    private long[] measure() {
+        for (int i = 0; i < WARM_UP; i++) {
+            createOrder();
+        }
+        var latencies = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            var start = System.nanoTime();
+            createOrder();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private void createOrder() {
+        var request = new OrderRequest(null, UUID.randomUUID().toString(), BigDecimal.TEN, PaymentMethod.VISA,
+                CUSTOMER.id(), PURCHASES);
+        assertThat(service.createOrder(request)).isEqualTo(1);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+
+    private static String millis(long nanos) {
+        return "%.2f".formatted(nanos / 1e6);
+    }
+}
@@ -0,0 +1,225 @@
+package com.fatichdev.ecommerce.order;
+
+import com.fatichdev.ecommerce.orderline.OrderLineMapper;
+import com.fatichdev.ecommerce.orderline.OrderLineRepository;
+import com.fatichdev.ecommerce.orderline.OrderLineService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lists orders with their lines from a table of a million orders: keyset pages through {@link OrderQueryService},
+ * against an OFFSET page at the same depth and against loading the lines order by order. The table size is set with
+ * {@code -Dbenchmark.orders}, e.g. {@code -Dbenchmark.orders=10000000} for the full 10M orders; the default keeps the
+ * run short. The keyset pages only ever touch one page of index entries, so their cost does not depend on the table
+ * size, while the OFFSET page grows with it.
+ */
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=warn"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class OrderQueryBenchmarkTest {
+
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 1_000_000);
+    private static final int LINES_PER_ORDER = 3;
+    // A hundred orders per customer, so a customer always fills a page
+    private static final int CUSTOMERS = ORDERS / 100;
+    private static final int PAGE_SIZE = 50;
+    private static final int WARM_UP = 300;
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderLineRepository orderLineRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private OrderLineService orderLineService;
+    private OrderQueryService queryService;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        orderLineService = new OrderLineService(orderLineRepository, new OrderLineMapper());
+        queryService = new OrderQueryService(orderRepository, orderLineService);
+        ReflectionTestUtils.setField(queryService, "maxPageSize", 500);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        if (jdbcTemplate.queryForObject("select count(*) from customer_order", Integer.class) == ORDERS) {
+            return;
+        }
+        // Creation dates are shuffled against ids and shared by pairs of orders, so the id tie-breaker matters
+        jdbcTemplate.update("""
+                insert into customer_order (id, reference, total_amount, payment_method, customer_id, created_date)
+                select i, 'ORD-' || i, 100, 'VISA', 'c-' || (i % ?),
+                       timestamp '2026-01-01' + make_interval(secs => ((i::bigint * 7919) % ?) / 2)
+                from generate_series(1, ?) i
+                """, CUSTOMERS, ORDERS, ORDERS);
+        jdbcTemplate.update("""
+                insert into customer_line (id, order_id, product_id, quantity)
+                select o * ? + l, o, l + 1, 1
+                from generate_series(1, ?) o, generate_series(0, ? - 1) l
+                """, LINES_PER_ORDER, ORDERS, LINES_PER_ORDER);
+        // Vacuumed up front, so autovacuum does not compete with the measurements
+        jdbcTemplate.execute("vacuum analyze customer_order");
+        jdbcTemplate.execute("vacuum analyze customer_line");
+    }
+
+    @Test
+    void keysetPagesFollowTheOffsetOrderWithTheirLinesInTwoQueries() {
+        OrderCursor cursor = null;
+        var seen = new HashSet<Integer>();
+        for (int page = 0; page < 5; page++) {
+            var statements = statistics().getPrepareStatementCount();
+            var after = cursor;
+            var response = readOnly.execute(status -> queryService.findPage(null, after, PAGE_SIZE));
+
+            assertThat(statistics().getPrepareStatementCount() - statements).isEqualTo(2);
+            assertThat(response.orders()).extracting(OrderDetailsResponse::id)
+                    .containsExactlyElementsOf(offsetPage(page * PAGE_SIZE));
+            assertThat(response.orders()).allSatisfy(order -> assertThat(order.orderLines()).hasSize(LINES_PER_ORDER));
+            assertThat(response.orders()).isSortedAccordingTo(Comparator
+                    .comparing(OrderDetailsResponse::createdDate)
+                    .thenComparing(OrderDetailsResponse::id)
+                    .reversed());
+            response.orders().forEach(order -> assertThat(seen.add(order.id())).isTrue());
+            cursor = response.nextCursor();
+        }
+
+        var customerPage = readOnly.execute(status -> queryService.findPage("c-42", null, PAGE_SIZE));
+        assertThat(customerPage.orders()).hasSize(PAGE_SIZE).allSatisfy(order -> assertThat(order.customerId()).isEqualTo("c-42"));
+    }
+
+    @Test
+    void aDeepKeysetPageCostsAsMuchAsTheFirstOne() {
+        var depth = ORDERS * 9 / 10;
+        var deepCursor = jdbcTemplate.queryForObject("""
+                select created_date, id from customer_order
+                order by created_date desc, id desc offset ? limit 1
+                """, (rs, row) -> new OrderCursor(rs.getTimestamp(1).toLocalDateTime(), rs.getInt(2)), depth - 1);
+
+        var firstPage = millisPerPage(() -> queryService.findPage(null, null, PAGE_SIZE));
+        var deepPage = millisPerPage(() -> queryService.findPage(null, deepCursor, PAGE_SIZE));
+        var customerPage = millisPerPage(() -> queryService.findPage("c-42", null, PAGE_SIZE));
+        var offsetDeepPage = millisPerPage(() -> offsetPageWithLines(depth));
+        var linesPerOrder = millisPerPage(() -> {
+            var orders = orderRepository.findPage(deepCursor.createdDate(), deepCursor.id(), Limit.of(PAGE_SIZE));
+            return orders.stream().map(order -> orderLineService.findByOrderId(order.id())).toList();
+        });
+        log.info("""
+                        {} orders, {} per page:
+                          keyset first page          {} ms (2 queries)
+                          keyset page at depth {}   {} ms (2 queries)
+                          keyset page of one customer {} ms (2 queries)
+                          OFFSET page at depth {}   {} ms (2 queries)
+                          keyset page, lines per order {} ms ({} queries)""",
+                ORDERS, PAGE_SIZE, millis(firstPage), depth, millis(deepPage), millis(customerPage), depth,
+                millis(offsetDeepPage), millis(linesPerOrder), PAGE_SIZE + 1);
+
+        // Loose bounds, as latencies depend on the machine: a deep page is a seek like the first one, not a 900k row skip
+        assertThat(deepPage).isLessThan(firstPage * 3);
+        assertThat(deepPage).isLessThan(offsetDeepPage / 10);
+        assertThat(jdbcTemplate.queryForList("""
+                        explain select id from customer_order
+                        where (created_date, id) < (timestamp '2026-01-03', 500000)
+                        order by created_date desc, id desc limit 50
+                        """, String.class))
+                .anySatisfy(line -> assertThat(line).contains("Scan Backward using customer_order_created_date_id_idx"));
+    }
+
+    private static String millis(double millis) {
+        return "%.2f".formatted(millis);
+    }
+
+    private double millisPerPage(Supplier<?> page) {
+        for (int i = 0; i < WARM_UP; i++) {
+            readOnly.execute(status -> page.get());
+        }
+        var start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Object result = readOnly.execute(status -> page.get());
+            assertThat(result).isNotNull();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+
+    private List<Integer> offsetPage(int offset) {
+        return jdbcTemplate.queryForList("""
+                select id from customer_order
+                order by created_date desc, id desc offset ? limit ?
+                """, Integer.class, offset, PAGE_SIZE);
+    }
+
+    private List<Object> offsetPageWithLines(int offset) {
+        var ids = offsetPage(offset);
+        var page = new ArrayList<Object>(ids);
+        page.add(orderLineService.findByOrderIds(ids));
+        return page;
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * The embedded database hands out a new connection, and so a new server process, per request; pool them as
+     * Hikari does in the service.
+     */
+    @TestConfiguration
+    static class PooledConnections {
+
+        @Bean
+        static BeanPostProcessor pooledDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof HikariDataSource)) {
+                        var pool = new HikariDataSource();
+                        pool.setDataSource(dataSource);
+                        return pool;
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
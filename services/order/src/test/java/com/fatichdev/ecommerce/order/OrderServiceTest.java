@@ -0,0 +1,187 @@
+package com.fatichdev.ecommerce.order;
+
+import com.fatichdev.ecommerce.customer.CustomerClient;
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.exception.BusinessException;
+import com.fatichdev.ecommerce.kafka.OrderProducer;
+import com.fatichdev.ecommerce.orderline.OrderLineService;
+import com.fatichdev.ecommerce.payment.PaymentClient;
+import com.fatichdev.ecommerce.product.ProductClient;
+import com.fatichdev.ecommerce.product.PurchaseRequest;
+import com.fatichdev.ecommerce.product.ReservationConfirmation;
+import com.fatichdev.ecommerce.product.ReservationResponse;
+import com.fatichdev.ecommerce.saga.OrderSagaOrchestrator;
+import feign.FeignException;
+import feign.Request;
+import feign.RetryableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderServiceTest {
+
+    private static final List<PurchaseRequest> PURCHASES = List.of(new PurchaseRequest(1, 2));
+    private static final CustomerResponse CUSTOMER = new CustomerResponse("c-1", "Ada", "Lovelace", "ada@example.com");
+    private static final OrderRequest REQUEST =
+            new OrderRequest(null, "ORD-9", BigDecimal.TEN, PaymentMethod.VISA, CUSTOMER.id(), PURCHASES);
+    private static final ReservationResponse RESERVATION =
+            new ReservationResponse("res-1", LocalDateTime.now().plusMinutes(15), List.of());
+    private static final Request PAYMENT_CALL =
+            Request.create(Request.HttpMethod.POST, "/api/v1/payments", Map.of(), null, UTF_8, null);
+
+    private final OrderRepository repository = mock(OrderRepository.class);
+    private final OrderMapper mapper = mock(OrderMapper.class);
+    private final CustomerClient customerClient = mock(CustomerClient.class);
+    private final ProductClient productClient = mock(ProductClient.class);
+    private final OrderLineService orderLineService = mock(OrderLineService.class);
+    private final OrderProducer orderProducer = mock(OrderProducer.class);
+    private final PaymentClient paymentClient = mock(PaymentClient.class);
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    private final OrderSagaOrchestrator sagaOrchestrator = mock(OrderSagaOrchestrator.class);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private OrderService service;
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        service = new OrderService(repository, mapper, customerClient, productClient, orderLineService, orderProducer,
+                paymentClient, executor, transactionTemplate, sagaOrchestrator);
+        order = Order.builder().id(9).reference("ORD-9").build();
+        when(mapper.toOrder(REQUEST)).thenReturn(order);
+        when(repository.save(order)).thenReturn(order);
+        when(customerClient.findCustomerById(CUSTOMER.id())).thenReturn(Optional.of(CUSTOMER));
+        when(productClient.reserveProducts(PURCHASES)).thenReturn(RESERVATION);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void confirmsThePaidReservationAndSendsTheConfirmation() {
+        when(productClient.confirmReservation("res-1")).thenReturn(ReservationConfirmation.CONFIRMED);
+
+        assertThat(service.createOrder(REQUEST)).isEqualTo(9);
+
+        verify(orderProducer).sendOrderConfirmation(any());
+        verify(sagaOrchestrator, never()).resumePaid(any(), any(), any());
+    }
+
+    @Test
+    void aFailedConfirmAfterPaymentHandsTheOrderToTheSagaInsteadOfFailing() {
+        when(productClient.confirmReservation("res-1")).thenThrow(new ResourceAccessException("product service down"));
+
+        assertThat(service.createOrder(REQUEST)).isEqualTo(9);
+
+        verify(sagaOrchestrator).resumePaid(order, RESERVATION, CUSTOMER);
+        verify(productClient, never()).releaseReservation(any());
+        verify(orderProducer, never()).sendOrderConfirmation(any());
+    }
+
+    @Test
+    void anExpiredReservationAfterPaymentHandsTheOrderToTheSaga() {
+        when(productClient.confirmReservation("res-1")).thenReturn(ReservationConfirmation.EXPIRED);
+
+        assertThat(service.createOrder(REQUEST)).isEqualTo(9);
+
+        verify(sagaOrchestrator).resumePaid(order, RESERVATION, CUSTOMER);
+    }
+
+    @Test
+    void aFailedReservationCancelsTheCustomerLookupAndIsReported() throws Exception {
+        var lookupStarted = new CountDownLatch(1);
+        var lookupInterrupted = new CountDownLatch(1);
+        when(customerClient.findCustomerById(anyString())).thenAnswer(invocation -> {
+            lookupStarted.countDown();
+            try {
+                Thread.sleep(Duration.ofMinutes(1));
+            } catch (InterruptedException e) {
+                lookupInterrupted.countDown();
+            }
+            return Optional.of(CUSTOMER);
+        });
+        when(productClient.reserveProducts(PURCHASES)).thenAnswer(invocation -> {
+            lookupStarted.await(5, TimeUnit.SECONDS);
+            throw new BusinessException("Insufficient stock");
+        });
+
+        assertThatThrownBy(() -> service.createOrder(REQUEST))
+                .isInstanceOf(BusinessException.class)
+                .hasFieldOrPropertyWithValue("msg", "Insufficient stock");
+        assertThat(lookupInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        verify(paymentClient, never()).requestOrderPayment(any(), any());
+    }
+
+    @Test
+    void anUnknownCustomerReleasesTheReservation() {
+        when(customerClient.findCustomerById(CUSTOMER.id())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.createOrder(REQUEST)).isInstanceOf(BusinessException.class);
+
+        verify(productClient, timeout(5000)).releaseReservation("res-1");
+        verify(paymentClient, never()).requestOrderPayment(any(), any());
+    }
+
+    @Test
+    void aRejectedPaymentReleasesTheReservation() {
+        when(paymentClient.requestOrderPayment(any(), any()))
+                .thenThrow(new FeignException.BadRequest("Card declined", PAYMENT_CALL, null, null));
+
+        assertThatThrownBy(() -> service.createOrder(REQUEST)).isInstanceOf(FeignException.BadRequest.class);
+
+        verify(productClient).releaseReservation("res-1");
+        verify(sagaOrchestrator, never()).resumeUnpaid(any(), any(), any());
+        verify(productClient, never()).confirmReservation(any());
+    }
+
+    @Test
+    void aTimedOutPaymentHandsTheOrderToTheSagaAndKeepsTheStock() {
+        when(paymentClient.requestOrderPayment(any(), any())).thenThrow(
+                new RetryableException(-1, "Read timed out", Request.HttpMethod.POST, (Long) null, PAYMENT_CALL));
+
+        assertThat(service.createOrder(REQUEST)).isEqualTo(9);
+
+        verify(sagaOrchestrator).resumeUnpaid(order, RESERVATION, CUSTOMER);
+        verify(productClient, never()).releaseReservation(any());
+        verify(productClient, never()).confirmReservation(any());
+        verify(orderProducer, never()).sendOrderConfirmation(any());
+    }
+
+    @Test
+    void aPaymentServerErrorHandsTheOrderToTheSaga() {
+        when(paymentClient.requestOrderPayment(any(), any()))
+                .thenThrow(new FeignException.ServiceUnavailable("Unavailable", PAYMENT_CALL, null, null));
+
+        assertThat(service.createOrder(REQUEST)).isEqualTo(9);
+
+        verify(sagaOrchestrator).resumeUnpaid(order, RESERVATION, CUSTOMER);
+        verify(productClient, never()).releaseReservation(any());
+    }
+}
@@ -0,0 +1,194 @@
+package com.fatichdev.ecommerce.orderline;
+
+import com.fatichdev.ecommerce.order.Order;
+import com.fatichdev.ecommerce.order.OrderRepository;
+import com.fatichdev.ecommerce.order.PaymentMethod;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Writes orders of 1 to 200 lines one line at a time, as createOrder used to, and as one batch in the order
+ * transaction, and compares database round trips and latency. Hibernate and the driver are set up as in
+ * order-service.yml.
+ */
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=pooled-lo",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "zonky.test.database.postgres.client.properties.reWriteBatchedInserts=true"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(OrderLineBatchBenchmarkTest.RoundTrips.class)
+@Slf4j
+class OrderLineBatchBenchmarkTest {
+
+    private static final int REPETITIONS = 20;
+    private static final AtomicInteger ROUND_TRIPS = new AtomicInteger();
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderLineRepository orderLineRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+    private OrderLineService orderLineService;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        orderLineService = new OrderLineService(orderLineRepository, new OrderLineMapper());
+    }
+
+    @Test
+    void aBatchedOrderCostsAFewRoundTripsWhateverItsSize() {
+        for (int lines : new int[]{1, 10, 50, 200}) {
+            // Warm up both paths before measuring
+            for (int i = 0; i < REPETITIONS; i++) {
+                perLine(lines);
+                batched(lines);
+            }
+
+            var perLine = measure(() -> perLine(lines));
+            var batched = measure(() -> batched(lines));
+            log.info("{} lines: one save per line {} round trips, {} ms | batched {} round trips, {} ms",
+                    lines, perLine.roundTrips(), "%.2f".formatted(perLine.millis()),
+                    batched.roundTrips(), "%.2f".formatted(batched.millis()));
+
+            // Order insert, one sequence call and one multi-row insert per 50 lines, commit
+            assertThat(batched.roundTrips()).isLessThanOrEqualTo(3 + 2 * ((lines + 49) / 50));
+            if (lines > 1) {
+                assertThat(batched.roundTrips()).isLessThan(perLine.roundTrips());
+            }
+        }
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from customer_line l left join customer_order o on o.id = l.order_id where o.id is null",
+                Integer.class)).isZero();
+    }
+
+    private void perLine(int lines) {
+        var order = transactionTemplate.execute(status -> orderRepository.save(order()));
+        requests(order, lines).forEach(orderLineService::saveOrderLine);
+    }
+
+    private void batched(int lines) {
+        transactionTemplate.executeWithoutResult(status -> {
+            var order = orderRepository.save(order());
+            orderLineService.saveOrderLines(requests(order, lines));
+        });
+    }
+
+    private static Measurement measure(Runnable write) {
+        var roundTrips = 0;
+        var start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            ROUND_TRIPS.set(0);
+            write.run();
+            roundTrips = Math.max(roundTrips, ROUND_TRIPS.get());
+        }
+        return new Measurement(roundTrips, (System.nanoTime() - start) / 1e6 / REPETITIONS);
+    }
+
+    private static List<OrderLineRequest> requests(Order order, int lines) {
+        return IntStream.range(0, lines)
+                .mapToObj(line -> new OrderLineRequest(null, order.getId(), line + 1, 1))
+                .toList();
+    }
+
+    private static Order order() {
+        return Order.builder()
+                .reference(UUID.randomUUID().toString())
+                .totalAmount(BigDecimal.TEN)
+                .paymentMethod(PaymentMethod.VISA)
+                .customerId("c-1")
+                .createdDate(LocalDateTime.now())
+                .build();
+    }
+
+    private record Measurement(int roundTrips, double millis) {
+    }
+
+    /**
+     * Pools the embedded database's connections as Hikari does in the service, and counts the calls that reach the
+     * database: statement executions and commits.
+     */
+    @TestConfiguration
+    static class RoundTrips {
+
+        private static final Set<String> EXECUTIONS = Set.of("execute", "executeQuery", "executeUpdate", "executeBatch", "executeLargeBatch", "commit");
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        var pool = new HikariDataSource();
+                        pool.setDataSource(dataSource);
+                        return counting(pool, DataSource.class);
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static <T> T counting(T target, Class<T> type) {
+            return type.cast(proxy(target, type));
+        }
+
+        private static Object proxy(Object target, Class<?> type) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (EXECUTIONS.contains(method.getName())) {
+                    ROUND_TRIPS.incrementAndGet();
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Connection || result instanceof Statement) {
+                    return proxy(result, method.getReturnType());
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.fatichdev.ecommerce.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatichdev.ecommerce.payment.RefundRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaProducerException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String TOPIC = "payment-refund-topic";
+
+    @Autowired
+    private OutboxRepository repository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    private final ConcurrentLinkedQueue<ProducerRecord<String, Object>> sent = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from outbox_event");
+        jdbcTemplate.update("delete from outbox_relay_lease");
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Test
+    void publishesInInsertionOrderEvenWhenIdsAreNot() {
+        // Two replicas drawing ids from different pooled blocks
+        insert(900, "ORD-1", RefundRequest.class.getName(), refund(1));
+        insert(5, "ORD-1", RefundRequest.class.getName(), refund(2));
+
+        relay().relay();
+
+        assertThat(sent).extracting(record -> ((RefundRequest) record.value()).orderId()).containsExactly(1, 2);
+        assertThat(pending()).isEmpty();
+    }
+
+    @Test
+    void aPoisonEventHoldsBackItsAggregateUntilItIsDeadLettered() {
+        insert(1, "ORD-1", "com.fatichdev.ecommerce.Missing", "{}");
+        insert(2, "ORD-1", RefundRequest.class.getName(), refund(1));
+        insert(3, "ORD-2", RefundRequest.class.getName(), refund(2));
+        var relay = relay();
+
+        relay.relay();
+        assertThat(sent).extracting(ProducerRecord::key).containsExactly("ORD-2");
+
+        for (int run = 1; run < MAX_ATTEMPTS; run++) {
+            relay.relay();
+        }
+        assertThat(jdbcTemplate.queryForMap("select attempts, last_error, dead_lettered_at from outbox_event where id = 1"))
+                .containsEntry("attempts", MAX_ATTEMPTS)
+                .hasEntrySatisfying("last_error", error -> assertThat((String) error).contains("ClassNotFoundException"))
+                .hasEntrySatisfying("dead_lettered_at", deadLetteredAt -> assertThat(deadLetteredAt).isNotNull());
+
+        relay.relay();
+        assertThat(sent).extracting(ProducerRecord::key).containsExactly("ORD-2", "ORD-1");
+        assertThat(pending()).isEmpty();
+    }
+
+    @Test
+    void aFailedSendRepublishesTheLaterEventsOfItsAggregateAfterIt() {
+        var failed = new CompletableFuture<SendResult<String, Object>>();
+        failed.completeExceptionally(new KafkaProducerException(null, "Send failed", new TimeoutException("Expiring 1 record(s)")));
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenAnswer(invocation -> {
+                    // The first event of ORD-1 times out in the producer; the second one gets through
+                    sent.add(invocation.getArgument(0));
+                    return failed;
+                })
+                .thenAnswer(invocation -> {
+                    sent.add(invocation.getArgument(0));
+                    return CompletableFuture.completedFuture(null);
+                });
+        insert(1, "ORD-1", RefundRequest.class.getName(), refund(1));
+        insert(2, "ORD-1", RefundRequest.class.getName(), refund(2));
+        insert(3, "ORD-2", RefundRequest.class.getName(), refund(3));
+        var relay = relay();
+
+        relay.relay();
+        assertThat(pending()).containsExactly(1L, 2L);
+
+        sent.clear();
+        relay.relay();
+        assertThat(sent).extracting(record -> ((RefundRequest) record.value()).orderId()).containsExactly(1, 2);
+        assertThat(pending()).isEmpty();
+    }
+
+    @Test
+    void aBrokerOutageIsNotCountedAgainstTheEvent() {
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.failedFuture(
+                new KafkaProducerException(null, "Send failed", new TimeoutException("broker down"))));
+        insert(1, "ORD-1", RefundRequest.class.getName(), refund(1));
+        var relay = relay();
+
+        for (int run = 0; run < MAX_ATTEMPTS + 1; run++) {
+            relay.relay();
+        }
+
+        assertThat(pending()).containsExactly(1L);
+        assertThat(jdbcTemplate.queryForObject("select attempts from outbox_event where id = 1", Integer.class)).isZero();
+    }
+
+    @Test
+    void waitsForAcknowledgementsOutsideATransactionWhileHoldingTheLease() throws Exception {
+        var ack = new CompletableFuture<SendResult<String, Object>>();
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(ack);
+        insert(1, "ORD-1", RefundRequest.class.getName(), refund(1));
+
+        try (var executor = Executors.newSingleThreadExecutor()) {
+            var relaying = executor.submit(() -> relay().relay());
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (jdbcTemplate.queryForObject("select count(*) from outbox_relay_lease", Integer.class) == 0
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            Thread.sleep(200);
+
+            assertThat(jdbcTemplate.queryForObject(
+                    "select count(*) from pg_stat_activity where state like 'idle in transaction%'", Integer.class)).isZero();
+            // Another replica stays idle while the lease is held
+            assertThat(repository.claimRelay("other-replica", Duration.ofSeconds(30).toMillis())).isZero();
+
+            ack.complete(null);
+            relaying.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(pending()).isEmpty();
+    }
+
+    private OutboxRelay relay() {
+        return new OutboxRelay(repository,
+                new OutboxProperties(100, Duration.ofSeconds(5), Duration.ofSeconds(30), MAX_ATTEMPTS),
+                kafkaTemplate, new ObjectMapper(), new TransactionTemplate(transactionManager), new SimpleMeterRegistry());
+    }
+
+    private void insert(long id, String key, String payloadType, String payload) {
+        jdbcTemplate.update("""
+                insert into outbox_event (id, topic, aggregate_key, payload_type, payload, created_date)
+                values (?, ?, ?, ?, ?, localtimestamp)
+                """, id, TOPIC, key, payloadType, payload);
+    }
+
+    private List<Long> pending() {
+        return jdbcTemplate.queryForList("select id from outbox_event where dead_lettered_at is null order by position", Long.class);
+    }
+
+    private static String refund(int orderId) {
+        return "{\"orderId\":" + orderId + ",\"orderReference\":\"ORD-" + orderId + "\",\"reason\":\"test\"}";
+    }
+}
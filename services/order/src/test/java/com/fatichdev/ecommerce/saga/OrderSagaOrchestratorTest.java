@@ -0,0 +1,250 @@
+package com.fatichdev.ecommerce.saga;
+
+import com.fatichdev.ecommerce.customer.CustomerClient;
+import com.fatichdev.ecommerce.customer.CustomerResponse;
+import com.fatichdev.ecommerce.exception.BusinessException;
+import com.fatichdev.ecommerce.kafka.OrderConfirmation;
+import com.fatichdev.ecommerce.kafka.OrderProducer;
+import com.fatichdev.ecommerce.order.Order;
+import com.fatichdev.ecommerce.order.OrderRepository;
+import com.fatichdev.ecommerce.order.PaymentMethod;
+import com.fatichdev.ecommerce.orderline.OrderLineService;
+import com.fatichdev.ecommerce.payment.PaymentClient;
+import com.fatichdev.ecommerce.payment.PaymentOutcome;
+import com.fatichdev.ecommerce.payment.PaymentStatus;
+import com.fatichdev.ecommerce.payment.RefundRequest;
+import com.fatichdev.ecommerce.product.ProductClient;
+import com.fatichdev.ecommerce.product.PurchaseRequest;
+import com.fatichdev.ecommerce.product.PurchaseResponse;
+import com.fatichdev.ecommerce.product.ReservationConfirmation;
+import com.fatichdev.ecommerce.product.ReservationResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderSagaOrchestratorTest {
+
+    private static final int ORDER_ID = 7;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_PAID_ATTEMPTS = 6;
+    private static final List<PurchaseRequest> PURCHASES = List.of(new PurchaseRequest(1, 2));
+    private static final CustomerResponse CUSTOMER = new CustomerResponse("c-1", "Ada", "Lovelace", "ada@example.com");
+
+    private final OrderSagaRepository sagaRepository = mock(OrderSagaRepository.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderLineService orderLineService = mock(OrderLineService.class);
+    private final CustomerClient customerClient = mock(CustomerClient.class);
+    private final ProductClient productClient = mock(ProductClient.class);
+    private final PaymentClient paymentClient = mock(PaymentClient.class);
+    private final OrderProducer orderProducer = mock(OrderProducer.class);
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private OrderSagaOrchestrator orchestrator;
+    private OrderSaga saga;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new SagaProperties(1, 10, Duration.ofMinutes(1), Duration.ofMinutes(2), MAX_ATTEMPTS,
+                MAX_PAID_ATTEMPTS, Duration.ofMillis(1), 10, PaymentMode.EVENT, Duration.ofMinutes(1));
+        orchestrator = new OrderSagaOrchestrator(sagaRepository, orderRepository, orderLineService, customerClient,
+                productClient, paymentClient, orderProducer, transactionTemplate, executor, properties, meterRegistry);
+
+        var order = Order.builder()
+                .id(ORDER_ID)
+                .reference("ORD-7")
+                .totalAmount(BigDecimal.TEN)
+                .paymentMethod(PaymentMethod.VISA)
+                .customerId(CUSTOMER.id())
+                .build();
+        when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(order));
+        when(orderLineService.findPurchaseRequests(ORDER_ID)).thenReturn(PURCHASES);
+        when(sagaRepository.tryLock(eq(ORDER_ID), any(), any())).thenReturn(1);
+        when(sagaRepository.findById(ORDER_ID)).thenAnswer(invocation -> Optional.ofNullable(saga));
+        when(sagaRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        orchestrator.shutdown();
+        executor.close();
+    }
+
+    @Test
+    void anAlreadyConfirmedReservationCompletesThePaidOrder() {
+        saga = saga(SagaState.PAID, "res-1");
+        when(productClient.confirmReservation("res-1")).thenReturn(ReservationConfirmation.CONFIRMED);
+
+        orchestrator.run(ORDER_ID);
+
+        assertThat(saga.getState()).isEqualTo(SagaState.COMPLETED);
+        verify(orderProducer).sendOrderConfirmation(any(OrderConfirmation.class));
+    }
+
+    @Test
+    void anExpiredReservationOfAPaidOrderIsReservedAgain() {
+        saga = saga(SagaState.PAID, "res-1");
+        when(productClient.confirmReservation("res-1")).thenReturn(ReservationConfirmation.EXPIRED);
+        when(productClient.reserveProducts(PURCHASES)).thenReturn(reservation("res-2"));
+        when(productClient.confirmReservation("res-2")).thenReturn(ReservationConfirmation.CONFIRMED);
+
+        orchestrator.run(ORDER_ID);
+
+        assertThat(saga.getState()).isEqualTo(SagaState.COMPLETED);
+        assertThat(saga.getReservationReference()).isEqualTo("res-2");
+        verify(paymentClient, never()).refundOrderPayment(any());
+    }
+
+    @Test
+    void aPaidOrderWhoseStockIsGoneIsRefunded() {
+        saga = saga(SagaState.PAID, "res-1");
+        when(productClient.confirmReservation("res-1")).thenReturn(ReservationConfirmation.EXPIRED);
+        when(productClient.reserveProducts(PURCHASES)).thenThrow(new BusinessException("Insufficient stock"));
+
+        orchestrator.run(ORDER_ID);
+
+        assertThat(saga.getState()).isEqualTo(SagaState.FAILED);
+        assertThat(saga.getFailureReason()).contains("Insufficient stock");
+        verify(paymentClient).refundOrderPayment(new RefundRequest(ORDER_ID, "ORD-7", saga.getFailureReason()));
+        verify(productClient).releaseReservation("res-1");
+        verify(orderProducer, never()).sendOrderConfirmation(any());
+    }
+
+    @Test
+    void paidRetriesAreCappedWithAnAlertAndARefund() {
+        saga = saga(SagaState.PAID, "res-1");
+        when(productClient.confirmReservation("res-1")).thenThrow(new ResourceAccessException("product service down"));
+
+        for (int attempt = 1; attempt < MAX_PAID_ATTEMPTS; attempt++) {
+            orchestrator.run(ORDER_ID);
+            assertThat(saga.getState()).isEqualTo(SagaState.PAID);
+        }
+        assertThat(meterRegistry.find("order.saga.alerts").counter()).isNull();
+
+        orchestrator.run(ORDER_ID);
+
+        assertThat(meterRegistry.get("order.saga.alerts").tag("state", "PAID").counter().count()).isEqualTo(1);
+        assertThat(saga.getState()).isEqualTo(SagaState.FAILED);
+        verify(paymentClient).refundOrderPayment(any());
+    }
+
+    @Test
+    void aConfirmedReservationIsKeptWhenThePaidOrderIsRefunded() {
+        saga = saga(SagaState.REFUNDING, "res-1");
+        doThrow(HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null))
+                .when(productClient).releaseReservation("res-1");
+
+        orchestrator.run(ORDER_ID);
+
+        assertThat(saga.getState()).isEqualTo(SagaState.FAILED);
+    }
+
+    @Test
+    void refundsKeepRetryingPastTheCap() {
+        saga = saga(SagaState.REFUNDING, "res-1");
+        when(paymentClient.refundOrderPayment(any())).thenThrow(new ResourceAccessException("payment service down"));
+
+        for (int attempt = 1; attempt <= MAX_PAID_ATTEMPTS + 2; attempt++) {
+            orchestrator.run(ORDER_ID);
+        }
+
+        assertThat(saga.getState()).isEqualTo(SagaState.REFUNDING);
+        assertThat(meterRegistry.get("order.saga.alerts").tag("state", "REFUNDING").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aPaymentThatNeverAnswersIsRefundedBeforeTheStockIsReleased() {
+        saga = saga(SagaState.PAYMENT_REQUESTED, "res-1");
+        saga.setCustomer(CUSTOMER);
+        saga.setAttempts(MAX_ATTEMPTS - 1);
+        saga.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+
+        orchestrator.run(ORDER_ID);
+
+        assertThat(saga.getState()).isEqualTo(SagaState.FAILED);
+        var order = inOrder(paymentClient, productClient);
+        order.verify(paymentClient).refundOrderPayment(any());
+        order.verify(productClient).releaseReservation("res-1");
+    }
+
+    @Test
+    void aFailedReservationCancelsTheCustomerLookup() throws Exception {
+        saga = saga(SagaState.PENDING, null);
+        var lookupStarted = new CountDownLatch(1);
+        var lookupInterrupted = new CountDownLatch(1);
+        when(customerClient.findCustomerById(anyString())).thenAnswer(invocation -> {
+            lookupStarted.countDown();
+            try {
+                Thread.sleep(Duration.ofMinutes(1));
+            } catch (InterruptedException e) {
+                lookupInterrupted.countDown();
+            }
+            return Optional.of(CUSTOMER);
+        });
+        when(productClient.reserveProducts(PURCHASES)).thenAnswer(invocation -> {
+            lookupStarted.await(5, TimeUnit.SECONDS);
+            throw new BusinessException("Insufficient stock");
+        });
+
+        orchestrator.run(ORDER_ID);
+
+        assertThat(lookupInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(saga.getState()).isEqualTo(SagaState.FAILED);
+        verify(productClient, never()).releaseReservation(any());
+    }
+
+    @Test
+    void aLatePaymentOfAFailedOrderReopensItForARefund() {
+        when(sagaRepository.reopenForRefund(eq(ORDER_ID), anyString(), any())).thenReturn(1);
+
+        orchestrator.onPaymentOutcome(new PaymentOutcome(ORDER_ID, "ORD-7", 3, PaymentStatus.SUCCEEDED, null));
+
+        verify(sagaRepository).reopenForRefund(eq(ORDER_ID), anyString(), any());
+    }
+
+    private static OrderSaga saga(SagaState state, String reservationReference) {
+        var now = LocalDateTime.now();
+        return OrderSaga.builder()
+                .orderId(ORDER_ID)
+                .orderReference("ORD-7")
+                .state(state)
+                .reservationReference(reservationReference)
+                .customer(CUSTOMER)
+                .stateEnteredAt(now)
+                .nextAttemptAt(now)
+                .build();
+    }
+
+    private static ReservationResponse reservation(String reference) {
+        return new ReservationResponse(reference, LocalDateTime.now().plusMinutes(15),
+                List.of(new PurchaseResponse(1, "Lamp", "Brass lamp", BigDecimal.ONE, 2)));
+    }
+}
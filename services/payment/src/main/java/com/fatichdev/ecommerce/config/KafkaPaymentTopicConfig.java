@@ -12,6 +12,23 @@ public class KafkaPaymentTopicConfig {
     public NewTopic paymentTopic() {
         return TopicBuilder
                 .name("payment-topic")
+                .partitions(6)
+                .build();
+    }
+
+    @Bean
+    public NewTopic paymentRequestTopic() {
+        return TopicBuilder
+                .name("payment-request-topic")
+                .partitions(6)
+                .build();
+    }
+
+    @Bean
+    public NewTopic paymentOutcomeTopic() {
+        return TopicBuilder
+                .name("payment-outcome-topic")
+                .partitions(6)
                 .build();
     }
 }
@@ -0,0 +1,59 @@
+package com.fatichdev.ecommerce.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IdempotencyRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Claims the key for this instance for a short lease; returns 0 when another request holds it. Expired keys,
+     * including the lease of a request that died mid-flight, are taken over. Expiry is set and compared on the
+     * database clock only, so instances with skewed clocks agree on it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into idempotency_key (id, request_hash, status, expires_at)
+            values (:id, :requestHash, 'IN_PROGRESS', localtimestamp + :leaseMillis * interval '1 millisecond')
+            on conflict (id) do update
+            set request_hash = excluded.request_hash,
+                status = excluded.status,
+                response = null,
+                expires_at = excluded.expires_at
+            where idempotency_key.expires_at < localtimestamp
+            """, nativeQuery = true)
+    int claim(
+            @Param("id") String id,
+            @Param("requestHash") String requestHash,
+            @Param("leaseMillis") long leaseMillis
+    );
+
+    /**
+     * Stores the response and keeps it for the full TTL; returns 0 when the claim was lost to another request
+     * after its lease ran out.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            update idempotency_key
+            set status = 'COMPLETED', response = :response, expires_at = localtimestamp + :ttlMillis * interval '1 millisecond'
+            where id = :id and status = 'IN_PROGRESS' and request_hash = :requestHash
+            """, nativeQuery = true)
+    int complete(
+            @Param("id") String id,
+            @Param("requestHash") String requestHash,
+            @Param("response") String response,
+            @Param("ttlMillis") long ttlMillis
+    );
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            delete from idempotency_key
+            where id in (select id from idempotency_key where expires_at < localtimestamp limit :batchSize)
+            """, nativeQuery = true)
+    int deleteExpired(@Param("batchSize") int batchSize);
+}
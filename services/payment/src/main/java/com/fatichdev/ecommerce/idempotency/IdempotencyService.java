@@ -0,0 +1,188 @@
+package com.fatichdev.ecommerce.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key and replays its response to repeats. Completed responses are
+ * kept in Postgres for the TTL and in a local Caffeine tier for recent keys; a repeat that arrives while the first
+ * request is still running on this instance waits for it instead of running again. A running request only holds
+ * its key for a short lease, so a key left behind by a crashed instance is free again soon after.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private final IdempotencyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, StoredResponse> hotTier;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(
+            IdempotencyRepository repository,
+            ObjectMapper objectMapper,
+            IdempotencyProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.hotTier = Caffeine.newBuilder()
+                .maximumSize(properties.hotMaxSize())
+                .expireAfterWrite(min(properties.hotTtl(), properties.ttl()))
+                .build();
+    }
+
+    public <T> T execute(String key, String operation, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyConflictException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        var id = operation + ":" + key;
+        var requestHash = hash(request);
+
+        var cached = hotTier.getIfPresent(id);
+        if (cached != null) {
+            count("hot");
+            return read(cached, requestHash, responseType);
+        }
+
+        var execution = new CompletableFuture<StoredResponse>();
+        var running = inFlight.putIfAbsent(id, execution);
+        if (running != null) {
+            count("coalesced");
+            return read(await(running), requestHash, responseType);
+        }
+        try {
+            var stored = executeOnce(id, requestHash, action);
+            execution.complete(stored);
+            return read(stored, requestHash, responseType);
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, execution);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        int deleted;
+        do {
+            deleted = repository.deleteExpired(properties.purgeBatchSize());
+        } while (deleted == properties.purgeBatchSize());
+    }
+
+    private StoredResponse executeOnce(String id, String requestHash, Supplier<?> action) {
+        if (repository.claim(id, requestHash, properties.inProgressLease().toMillis()) == 0) {
+            // Claimed before: either finished (replay it) or still running on another instance
+            var existing = repository.findById(id)
+                    .filter(record -> record.getStatus() == IdempotencyStatus.COMPLETED)
+                    .orElseThrow(() -> new IdempotencyConflictException(
+                            "A request with this " + HEADER + " is still being processed"
+                    ));
+            count("stored");
+            var stored = new StoredResponse(existing.getRequestHash(), existing.getResponse());
+            hotTier.put(id, stored);
+            return stored;
+        }
+
+        Object result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            // Failed requests are not remembered, so the client can retry with the same key
+            release(id);
+            throw e;
+        }
+        var stored = new StoredResponse(requestHash, write(result));
+        if (repository.complete(id, requestHash, stored.response(), properties.ttl().toMillis()) == 0) {
+            log.warn("Idempotency key {} outlived its in-progress lease and was claimed again", id);
+        }
+        hotTier.put(id, stored);
+        count("executed");
+        return stored;
+    }
+
+    private <T> T read(StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(HEADER + " was already used for a different request");
+        }
+        try {
+            return objectMapper.readValue(stored.response(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored idempotent response", e);
+        }
+    }
+
+    private String write(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot store idempotent response", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot hash request", e);
+        }
+    }
+
+    private void release(String id) {
+        try {
+            repository.deleteById(id);
+        } catch (RuntimeException e) {
+            log.warn("Cannot release idempotency key {}; it stays locked until it expires", id, e);
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("idempotency.requests", "outcome", outcome).increment();
+    }
+
+    private static StoredResponse await(CompletableFuture<StoredResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    private record StoredResponse(String requestHash, String response) {
+    }
+}
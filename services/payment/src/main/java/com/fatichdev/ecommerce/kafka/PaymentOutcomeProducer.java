@@ -0,0 +1,17 @@
+package com.fatichdev.ecommerce.kafka;
+
+import com.fatichdev.ecommerce.outbox.OutboxService;
+import com.fatichdev.ecommerce.payment.PaymentOutcome;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class PaymentOutcomeProducer {
+
+    private final OutboxService outboxService;
+
+    public void sendPaymentOutcome(PaymentOutcome outcome) {
+        outboxService.enqueue("payment-outcome-topic", outcome.orderReference(), outcome);
+    }
+}
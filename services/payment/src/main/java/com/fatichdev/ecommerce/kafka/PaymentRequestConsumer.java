@@ -0,0 +1,49 @@
+package com.fatichdev.ecommerce.kafka;
+
+import com.fatichdev.ecommerce.payment.PaymentRequest;
+import com.fatichdev.ecommerce.payment.PaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Takes payment requests off payment-request-topic a poll at a time; each poll is paid for in one transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentRequestConsumer {
+
+    private final PaymentService paymentService;
+    private final MeterRegistry meterRegistry;
+
+    @KafkaListener(
+            id = "payment-requests",
+            topics = "payment-request-topic",
+            groupId = "${application.payment-requests.group-id:payment-service}",
+            concurrency = "${application.payment-requests.concurrency:3}",
+            batch = "true"
+    )
+    public void consume(List<ConsumerRecord<String, PaymentRequest>> records) {
+        var requests = records.stream()
+                .map(ConsumerRecord::value)
+                .filter(Objects::nonNull)
+                .toList();
+        if (requests.size() < records.size()) {
+            log.warn("Skipped {} payment requests that could not be read", records.size() - requests.size());
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        var outcomes = paymentService.processPayments(requests);
+        meterRegistry.summary("payment.requests.batch.size").record(requests.size());
+        outcomes.forEach(outcome -> meterRegistry.counter("payment.requests", "status", outcome.status().name()).increment());
+    }
+}
@@ -0,0 +1,63 @@
+package com.fatichdev.ecommerce.kafka.serialization;
+
+import com.fatichdev.ecommerce.notification.PaymentNotificationRequest;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+import static com.fatichdev.ecommerce.kafka.serialization.AvroEventCodec.toDecimal;
+
+/**
+ * Writes {@link PaymentNotificationRequest} as Avro when {@code event.format=avro}, everything else (and the JSON mode) as JSON.
+ */
+public class EventSerializer implements Serializer<Object> {
+
+    public static final String FORMAT_CONFIG = "event.format";
+    private static final String PAYMENT_CONFIRMATION = "payment-confirmation";
+
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private AvroEventCodec codec;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+        if ("avro".equalsIgnoreCase(String.valueOf(configs.get(FORMAT_CONFIG)))) {
+            var location = configs.get(AvroEventCodec.SCHEMA_LOCATION_CONFIG);
+            codec = AvroEventCodec.load(location == null ? AvroEventCodec.DEFAULT_SCHEMA_LOCATION : location.toString());
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (codec != null && data instanceof PaymentNotificationRequest request) {
+            return codec.encode(PAYMENT_CONFIRMATION, toRecord(request));
+        }
+        return jsonSerializer.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+
+    private GenericRecord toRecord(PaymentNotificationRequest request) {
+        var schema = codec.schema(PAYMENT_CONFIRMATION);
+        var record = new GenericData.Record(schema);
+        record.put("orderReference", request.orderReference());
+        record.put("amount", toDecimal(request.amount(), schema.getField("amount").schema()));
+        record.put("paymentMethod", request.paymentMethod() == null ? null : request.paymentMethod().name());
+        record.put("customerFirstName", request.customerFirstName());
+        record.put("customerLastName", request.customerLastName());
+        record.put("customerEmail", request.customerEmail());
+        return record;
+    }
+}
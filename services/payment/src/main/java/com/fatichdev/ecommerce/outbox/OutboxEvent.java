@@ -0,0 +1,66 @@
+package com.fatichdev.ecommerce.outbox;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "outbox_event", indexes = @Index(name = "outbox_event_dead_lettered_at_position_idx", columnList = "dead_lettered_at, position"))
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    /**
+     * Publishing order, drawn from a database sequence when the row is inserted. Ids come from per-instance pooled
+     * blocks, so they do not follow insertion order across replicas.
+     */
+    @Column(insertable = false, updatable = false, columnDefinition = "bigserial")
+    private Long position;
+
+    @Column(nullable = false)
+    private String topic;
+
+    @Column(nullable = false)
+    private String aggregateKey;
+
+    @Column(nullable = false)
+    private String payloadType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    /** Failed publishing attempts that Kafka would not retry on its own, such as an unreadable payload. */
+    @Column(columnDefinition = "integer not null default 0")
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    /** Set once the event failed too often; the relay skips it from then on. */
+    private LocalDateTime deadLetteredAt;
+
+    @CreatedDate
+    @Column(updatable = false, nullable = false)
+    private LocalDateTime createdDate;
+}
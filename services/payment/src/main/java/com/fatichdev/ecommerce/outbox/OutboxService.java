@@ -0,0 +1,33 @@
+package com.fatichdev.ecommerce.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxRepository repository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Records an event in the caller's transaction; {@link OutboxRelay} publishes it once committed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, String aggregateKey, Object payload) {
+        try {
+            repository.save(OutboxEvent.builder()
+                    .topic(topic)
+                    .aggregateKey(aggregateKey)
+                    .payloadType(payload.getClass().getName())
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize outbox payload " + payload.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -18,7 +18,7 @@ import static jakarta.persistence.EnumType.STRING;
 @Builder
 @Entity
 @EntityListeners(AuditingEntityListener.class)
-@Table(name = "payment")
+@Table(name = "payment", indexes = @Index(name = "payment_order_id_key", columnList = "order_id", unique = true))
 public class Payment {
 
    @Id
@@ -31,6 +31,12 @@ public class Payment {
 
    private Integer orderId;
 
+    /** Set when the order service cancelled the order; a payment without an amount was refused before it arrived. */
+    private LocalDateTime refundedAt;
+
+    @Column(length = 1000)
+    private String refundReason;
+
     @CreatedDate
     @Column(updatable = false, nullable = false)
     private LocalDateTime createdDate;
@@ -1,10 +1,12 @@
 package com.fatichdev.ecommerce.payment;
 
+import com.fatichdev.ecommerce.idempotency.IdempotencyService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -13,11 +15,22 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class PaymentController {
     private final PaymentService service;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping
     public ResponseEntity<Integer> createPayment(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody @Valid PaymentRequest request
     ) {
-        return ResponseEntity.ok(service.createPayment(request));
+        return ResponseEntity.ok(idempotencyService.execute(
+                idempotencyKey, "create-payment", request, Integer.class, () -> service.createPayment(request)
+        ));
+    }
+
+    @PostMapping("/refunds")
+    public ResponseEntity<Integer> refundPayment(
+            @RequestBody @Valid RefundRequest request
+    ) {
+        return ResponseEntity.ok(service.refundPayment(request));
     }
 }
@@ -0,0 +1,21 @@
+package com.fatichdev.ecommerce.payment;
+
+/**
+ * Result of a payment requested over payment-request-topic, published back to the order service on payment-outcome-topic.
+ */
+public record PaymentOutcome(
+        Integer orderId,
+        String orderReference,
+        Integer paymentId,
+        PaymentStatus status,
+        String failureReason
+) {
+
+    public static PaymentOutcome succeeded(PaymentRequest request, Integer paymentId) {
+        return new PaymentOutcome(request.orderId(), request.orderReference(), paymentId, PaymentStatus.SUCCEEDED, null);
+    }
+
+    public static PaymentOutcome failed(PaymentRequest request, String reason) {
+        return new PaymentOutcome(request.orderId(), request.orderReference(), null, PaymentStatus.FAILED, reason);
+    }
+}
@@ -2,5 +2,13 @@ package com.fatichdev.ecommerce.payment;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface PaymentRepository extends JpaRepository<Payment, Integer> {
+
+    List<Payment> findAllByOrderIdIn(Collection<Integer> orderIds);
+
+    Optional<Payment> findFirstByOrderIdOrderById(Integer orderId);
 }
@@ -1,34 +1,163 @@
 package com.fatichdev.ecommerce.payment;
 
+import com.fatichdev.ecommerce.kafka.PaymentOutcomeProducer;
 import com.fatichdev.ecommerce.notification.NotificationProvider;
 import com.fatichdev.ecommerce.notification.PaymentNotificationRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class PaymentService {
 
+    private static final String CANCELLED = "Order was cancelled and its payment refunded, order ID:: ";
+
     private final PaymentRepository repository;
     private final PaymentMapper mapper;
     private final NotificationProvider notificationProvider;
+    private final PaymentOutcomeProducer paymentOutcomeProducer;
+    private final TransactionTemplate transactionTemplate;
 
+    /**
+     * Pays for an order once: asking again for an order that is already paid answers with the existing payment.
+     */
     public Integer createPayment(@Valid PaymentRequest request) {
-        var payment = repository.save(mapper.toPayment(request));
-
-        // Send notification --> notification microservice
-        notificationProvider.sendNotification(
-                new PaymentNotificationRequest(
-                        request.orderReference(),
-                        request.amount(),
-                        request.paymentMethod(),
-                        request.customer().firstname(),
-                        request.customer().lastname(),
-                        request.customer().email()
-                )
-        );
+        return inOrderTransaction(status -> {
+            if (request.orderId() != null) {
+                var existing = repository.findFirstByOrderIdOrderById(request.orderId());
+                if (existing.isPresent() && existing.get().getRefundedAt() != null) {
+                    throw new PaymentRejectedException(CANCELLED + request.orderId());
+                }
+                if (existing.isPresent()) {
+                    return existing.get().getId();
+                }
+            }
+            var payment = repository.saveAndFlush(mapper.toPayment(request));
+
+            // Send notification --> notification microservice
+            notificationProvider.sendNotification(toNotification(request));
+
+            return payment.getId();
+        });
+    }
+
+    /**
+     * Refunds the payment of an order the order service gave up on. When the payment has not arrived yet, a refunded
+     * placeholder is written instead, so the late request is refused rather than charged. Refunding twice is a no-op.
+     */
+    public Integer refundPayment(@Valid RefundRequest request) {
+        return inOrderTransaction(status -> {
+            var payment = repository.findFirstByOrderIdOrderById(request.orderId())
+                    .orElseGet(() -> Payment.builder().orderId(request.orderId()).build());
+            if (payment.getRefundedAt() == null) {
+                payment.setRefundedAt(LocalDateTime.now());
+                payment.setRefundReason(request.reason() == null
+                        ? null
+                        : request.reason().substring(0, Math.min(request.reason().length(), 1000)));
+                payment = repository.saveAndFlush(payment);
+                log.info("Refunded payment {} of order {}: {}", payment.getId(), request.orderReference(), request.reason());
+            }
+            return payment.getId();
+        });
+    }
+
+    /**
+     * Pays a batch of requests read from payment-request-topic: new payments are written with one batched insert,
+     * and every request gets an outcome, published in the same transaction. A request for an order that is
+     * already paid (a redelivery, or the order service asking again) is answered with the existing payment.
+     */
+    public List<PaymentOutcome> processPayments(List<PaymentRequest> requests) {
+        return inOrderTransaction(status -> payBatch(requests));
+    }
 
-        return payment.getId();
+    private List<PaymentOutcome> payBatch(List<PaymentRequest> requests) {
+        var orderIds = requests.stream()
+                .map(PaymentRequest::orderId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        var existing = repository.findAllByOrderIdIn(orderIds);
+        var paymentIds = existing.stream()
+                .collect(Collectors.toMap(Payment::getOrderId, Payment::getId, (first, second) -> first));
+        var refundedOrderIds = existing.stream()
+                .filter(payment -> payment.getRefundedAt() != null)
+                .map(Payment::getOrderId)
+                .collect(Collectors.toSet());
+
+        var newPayments = new LinkedHashMap<Integer, PaymentRequest>();
+        for (PaymentRequest request : requests) {
+            if (rejectionReason(request) == null && !paymentIds.containsKey(request.orderId())) {
+                newPayments.putIfAbsent(request.orderId(), request);
+            }
+        }
+        repository.saveAllAndFlush(newPayments.values().stream().map(mapper::toPayment).toList())
+                .forEach(payment -> paymentIds.put(payment.getOrderId(), payment.getId()));
+        newPayments.values().forEach(request -> notificationProvider.sendNotification(toNotification(request)));
+
+        var outcomes = new ArrayList<PaymentOutcome>(requests.size());
+        for (PaymentRequest request : requests) {
+            var rejection = refundedOrderIds.contains(request.orderId())
+                    ? CANCELLED + request.orderId()
+                    : rejectionReason(request);
+            var outcome = rejection == null
+                    ? PaymentOutcome.succeeded(request, paymentIds.get(request.orderId()))
+                    : PaymentOutcome.failed(request, rejection);
+            paymentOutcomeProducer.sendPaymentOutcome(outcome);
+            outcomes.add(outcome);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Runs the work in a transaction. A payment is unique per order, so when a concurrent transaction inserted one
+     * for the same order first, the work runs once more: the second run finds that payment and answers with it.
+     */
+    private <T> T inOrderTransaction(TransactionCallback<T> work) {
+        try {
+            return transactionTemplate.execute(work);
+        } catch (DataIntegrityViolationException e) {
+            log.info("Another transaction paid for the same order first, retrying against its payment: {}",
+                    e.getMostSpecificCause().getMessage());
+            return transactionTemplate.execute(work);
+        }
+    }
+
+    private static String rejectionReason(PaymentRequest request) {
+        if (request.orderId() == null || request.orderReference() == null) {
+            return "Order ID and reference are required";
+        }
+        if (request.amount() == null || request.amount().signum() <= 0) {
+            return "Payment amount must be positive";
+        }
+        if (request.paymentMethod() == null) {
+            return "Payment method is required";
+        }
+        if (request.customer() == null || request.customer().email() == null) {
+            return "Customer details are required";
+        }
+        return null;
+    }
+
+    private static PaymentNotificationRequest toNotification(PaymentRequest request) {
+        return new PaymentNotificationRequest(
+                request.orderReference(),
+                request.amount(),
+                request.paymentMethod(),
+                request.customer().firstname(),
+                request.customer().lastname(),
+                request.customer().email()
+        );
     }
 }
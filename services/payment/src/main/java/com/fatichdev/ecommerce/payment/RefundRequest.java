@@ -0,0 +1,11 @@
+package com.fatichdev.ecommerce.payment;
+
+import jakarta.validation.constraints.NotNull;
+
+public record RefundRequest(
+        @NotNull(message = "Order ID is required")
+        Integer orderId,
+        String orderReference,
+        String reason
+) {
+}
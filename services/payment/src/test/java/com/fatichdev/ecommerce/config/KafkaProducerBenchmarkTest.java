@@ -0,0 +1,179 @@
+package com.fatichdev.ecommerce.config;
+
+import com.fatichdev.ecommerce.kafka.serialization.EventSerializer;
+import com.fatichdev.ecommerce.notification.PaymentNotificationRequest;
+import com.fatichdev.ecommerce.payment.PaymentMethod;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sends payment confirmations to an embedded broker with the client defaults and with the producer settings of
+ * payment-service.yml, and reports throughput, send latency and batch fill ratio for both.
+ */
+@Slf4j
+class KafkaProducerBenchmarkTest {
+
+    private static final int PARTITIONS = 6;
+    private static final int EVENTS = 100_000;
+    private static final int ORDERS = 1_000;
+    private static final String DEFAULTS_TOPIC = "payment-topic-defaults";
+    private static final String TUNED_TOPIC = "payment-topic-tuned";
+    private static final String SEQUENCE = "sequence";
+
+    private static EmbeddedKafkaKraftBroker broker;
+
+    @BeforeAll
+    static void startBroker() {
+        broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, DEFAULTS_TOPIC, TUNED_TOPIC);
+        broker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        broker.destroy();
+    }
+
+    @Test
+    void theTunedProducerSendsFullerBatchesAndKeepsEachOrderOnOnePartition() {
+        var defaults = send(DEFAULTS_TOPIC, Map.of(), 16_384);
+        var tuned = send(TUNED_TOPIC, Map.of(
+                ProducerConfig.ACKS_CONFIG, "all",
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4",
+                ProducerConfig.BATCH_SIZE_CONFIG, 65_536,
+                ProducerConfig.LINGER_MS_CONFIG, 20,
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true,
+                ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5
+        ), 65_536);
+        log.info("defaults: {} | tuned: {}", defaults, tuned);
+
+        // Throughput and latency are reported, not asserted: they depend on the machine
+        assertThat(tuned.bytesPerEvent()).isLessThan(defaults.bytesPerEvent());
+        assertThat(tuned.recordsPerRequest()).isGreaterThan(defaults.recordsPerRequest());
+        assertThat(tuned.fillRatio()).isPositive();
+        assertOneOrderedPartitionPerOrder(TUNED_TOPIC);
+    }
+
+    private static Result send(String topic, Map<String, Object> overrides, long batchSize) {
+        var configs = new HashMap<String, Object>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, EventSerializer.class,
+                EventSerializer.FORMAT_CONFIG, "avro"
+        ));
+        configs.putAll(overrides);
+        var meterRegistry = new SimpleMeterRegistry();
+        var producerFactory = new DefaultKafkaProducerFactory<String, Object>(configs);
+        var kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        var fillRatio = new KafkaProducerMetricsConfig().kafkaProducerBatchFillRatio(meterRegistry, kafkaTemplate, batchSize);
+        var latency = Timer.builder("send.latency").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        try {
+            var sends = new ArrayList<CompletableFuture<?>>(EVENTS);
+            var start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                var sample = Timer.start(meterRegistry);
+                var record = new ProducerRecord<String, Object>(topic, orderReference(i % ORDERS), payment(i));
+                record.headers().add(SEQUENCE, Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+                sends.add(kafkaTemplate.send(record)
+                        .whenComplete((result, error) -> sample.stop(latency)));
+            }
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+            var elapsed = System.nanoTime() - start;
+
+            var snapshot = latency.takeSnapshot().percentileValues();
+            return new Result(
+                    EVENTS * 1e9 / elapsed,
+                    snapshot[0].value(TimeUnit.MILLISECONDS),
+                    snapshot[1].value(TimeUnit.MILLISECONDS),
+                    fillRatio.value(),
+                    producerMetric(kafkaTemplate, "records-per-request-avg"),
+                    producerMetric(kafkaTemplate, "outgoing-byte-total") / EVENTS
+            );
+        } finally {
+            producerFactory.destroy();
+        }
+    }
+
+    private static void assertOneOrderedPartitionPerOrder(String topic) {
+        var partitions = new HashMap<String, Integer>();
+        var lastSequence = new HashMap<String, Integer>();
+        try (var consumer = new KafkaConsumer<String, byte[]>(Map.<String, Object>of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, "benchmark",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class
+        ))) {
+            consumer.subscribe(List.of(topic));
+            var read = 0;
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (read < EVENTS && System.nanoTime() < deadline) {
+                for (var record : consumer.poll(Duration.ofMillis(500))) {
+                    read++;
+                    assertThat(partitions.putIfAbsent(record.key(), record.partition()))
+                            .as("partition of %s", record.key())
+                            .isIn(null, record.partition());
+                    var sequence = Integer.parseInt(new String(record.headers().lastHeader(SEQUENCE).value(), StandardCharsets.UTF_8));
+                    assertThat(lastSequence.put(record.key(), sequence))
+                            .as("event before %d of %s", sequence, record.key())
+                            .isIn(null, sequence - ORDERS);
+                }
+            }
+            assertThat(read).isEqualTo(EVENTS);
+        }
+        assertThat(partitions).hasSize(ORDERS);
+        assertThat(partitions.values()).hasSameElementsAs(List.of(0, 1, 2, 3, 4, 5));
+    }
+
+    private static double producerMetric(KafkaTemplate<?, ?> kafkaTemplate, String name) {
+        return kafkaTemplate.metrics().entrySet().stream()
+                .filter(metric -> metric.getKey().name().equals(name) && metric.getKey().group().equals("producer-metrics"))
+                .mapToDouble(metric -> ((Number) metric.getValue().metricValue()).doubleValue())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static String orderReference(int order) {
+        return "ORD-%06d".formatted(order);
+    }
+
+    private static PaymentNotificationRequest payment(int i) {
+        return new PaymentNotificationRequest(orderReference(i % ORDERS), new BigDecimal("49.98"),
+                PaymentMethod.VISA, "Ada", "Lovelace", "ada@example.com");
+    }
+
+    private record Result(double eventsPerSecond, double p50Millis, double p99Millis, double fillRatio,
+                          double recordsPerRequest, double bytesPerEvent) {
+
+        @Override
+        public String toString() {
+            return "%.0f events/s, send latency p50 %.1f ms p99 %.1f ms, batch fill %.2f, %.0f records/request, %.0f bytes/event"
+                    .formatted(eventsPerSecond, p50Millis, p99Millis, fillRatio, recordsPerRequest, bytesPerEvent);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.fatichdev.ecommerce.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceTest {
+
+    private static final Duration TTL = Duration.ofHours(24);
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    @Autowired
+    private IdempotencyRepository repository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private IdempotencyService service;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from idempotency_key");
+        service = newInstance();
+    }
+
+    @Test
+    void aRunningRequestHoldsItsKeyForTheLeaseOnly() throws Exception {
+        var started = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = executor.submit(() -> service.execute("k-1", "create-payment", "body", Integer.class, () -> {
+                started.countDown();
+                await(finish);
+                return 42;
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(secondsUntilExpiry("create-payment:k-1")).isBetween(LEASE.toSeconds() - 5, LEASE.toSeconds());
+            // Another instance sees the key as taken
+            assertThatThrownBy(() -> newInstance().execute("k-1", "create-payment", "body", Integer.class, this::run))
+                    .isInstanceOf(IdempotencyConflictException.class);
+
+            finish.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        }
+
+        assertThat(secondsUntilExpiry("create-payment:k-1")).isBetween(TTL.toSeconds() - 5, TTL.toSeconds());
+        assertThat(newInstance().execute("k-1", "create-payment", "body", Integer.class, this::run)).isEqualTo(42);
+        assertThat(executions).hasValue(0);
+    }
+
+    @Test
+    void aKeyLeftInProgressByACrashedInstanceIsTakenOverOnceItsLeaseLapses() {
+        jdbcTemplate.update("""
+                insert into idempotency_key (id, request_hash, status, expires_at)
+                values ('create-payment:k-2', 'x', 'IN_PROGRESS', localtimestamp - interval '1 second')
+                """);
+
+        assertThat(service.execute("k-2", "create-payment", "body", Integer.class, this::run)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "select status from idempotency_key where id = 'create-payment:k-2'", String.class)).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void expiryIsJudgedOnTheDatabaseClock() {
+        // Still valid by the database clock, whatever the clock of this JVM says
+        jdbcTemplate.update("""
+                insert into idempotency_key (id, request_hash, status, expires_at)
+                values ('create-payment:k-3', 'x', 'IN_PROGRESS', localtimestamp + interval '2 seconds')
+                """);
+
+        assertThat(repository.claim("create-payment:k-3", "y", LEASE.toMillis())).isZero();
+        assertThat(repository.deleteExpired(100)).isZero();
+    }
+
+    @Test
+    void aCompletionAfterTheClaimWasLostDoesNotOverwriteTheNewOwner() {
+        assertThat(repository.claim("create-payment:k-4", "x", LEASE.toMillis())).isEqualTo(1);
+        jdbcTemplate.update("update idempotency_key set expires_at = localtimestamp - interval '1 second'");
+        assertThat(repository.claim("create-payment:k-4", "y", LEASE.toMillis())).isEqualTo(1);
+
+        assertThat(repository.complete("create-payment:k-4", "x", "1", TTL.toMillis())).isZero();
+        assertThat(repository.complete("create-payment:k-4", "y", "2", TTL.toMillis())).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("select response from idempotency_key", String.class)).isEqualTo(List.of("2"));
+    }
+
+    private IdempotencyService newInstance() {
+        return new IdempotencyService(repository, new ObjectMapper(),
+                new IdempotencyProperties(TTL, LEASE, Duration.ofMinutes(10), 1000, 1000), new SimpleMeterRegistry());
+    }
+
+    private Integer run() {
+        return executions.incrementAndGet();
+    }
+
+    private long secondsUntilExpiry(String id) {
+        return jdbcTemplate.queryForObject(
+                "select extract(epoch from expires_at - localtimestamp)::bigint from idempotency_key where id = ?", Long.class, id);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.fatichdev.ecommerce.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatichdev.ecommerce.kafka.PaymentOutcomeProducer;
+import com.fatichdev.ecommerce.notification.NotificationProvider;
+import com.fatichdev.ecommerce.outbox.OutboxRepository;
+import com.fatichdev.ecommerce.outbox.OutboxService;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentServiceTest {
+
+    @Autowired
+    private PaymentRepository repository;
+    @Autowired
+    private OutboxRepository outboxRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+    private PaymentService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from payment");
+        jdbcTemplate.update("delete from outbox_event");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        var outboxService = new OutboxService(outboxRepository, new ObjectMapper());
+        service = new PaymentService(
+                repository,
+                new PaymentMapper(),
+                new NotificationProvider(outboxService),
+                new PaymentOutcomeProducer(outboxService),
+                transactionTemplate
+        );
+    }
+
+    @Test
+    void everyRequestIsAnsweredWithAnOutcomeForItsOwnOrder() {
+        var outcomes = service.processPayments(List.of(request(1, "ORD-1"), request(2, "ORD-2", BigDecimal.ZERO)));
+
+        assertThat(outcomes).extracting(PaymentOutcome::orderId, PaymentOutcome::orderReference, PaymentOutcome::status)
+                .containsExactly(
+                        tuple(1, "ORD-1", PaymentStatus.SUCCEEDED),
+                        tuple(2, "ORD-2", PaymentStatus.FAILED)
+                );
+        assertThat(outcomes.get(0).paymentId()).isEqualTo(paymentIdOf(1));
+        assertThat(outcomes.get(1).failureReason()).isEqualTo("Payment amount must be positive");
+        assertThat(jdbcTemplate.queryForList(
+                "select aggregate_key from outbox_event where topic = 'payment-outcome-topic' order by position", String.class))
+                .containsExactly("ORD-1", "ORD-2");
+    }
+
+    @Test
+    void aRedeliveredRequestIsAnsweredWithTheExistingPayment() {
+        var first = service.processPayments(List.of(request(1, "ORD-1"))).get(0);
+        var again = service.processPayments(List.of(request(1, "ORD-1"), request(1, "ORD-1"))).get(0);
+
+        assertThat(again.status()).isEqualTo(PaymentStatus.SUCCEEDED);
+        assertThat(again.paymentId()).isEqualTo(first.paymentId());
+        assertThat(paymentsOf(1)).isEqualTo(1);
+        assertThat(service.createPayment(request(1, "ORD-1"))).isEqualTo(first.paymentId());
+        assertThat(paymentsOf(1)).isEqualTo(1);
+        // The customer is told about the payment once
+        assertThat(outboxRepository.findAll()).filteredOn(event -> event.getTopic().equals("payment-topic")).hasSize(1);
+    }
+
+    @Test
+    void aBatchThatLosesTheRaceForAnOrderAnswersWithTheWinningPayment() throws Exception {
+        var winner = racePayment(7, () -> service.processPayments(List.of(request(7, "ORD-7"))).get(0).paymentId());
+
+        assertThat(winner.raced()).isEqualTo(winner.paymentId());
+        assertThat(paymentsOf(7)).isEqualTo(1);
+    }
+
+    @Test
+    void aPaymentThatLosesTheRaceForAnOrderAnswersWithTheWinningPayment() throws Exception {
+        var winner = racePayment(8, () -> service.createPayment(request(8, "ORD-8")));
+
+        assertThat(winner.raced()).isEqualTo(winner.paymentId());
+        assertThat(paymentsOf(8)).isEqualTo(1);
+    }
+
+    @Test
+    void aRefundBeforeThePaymentRefusesTheLatePayment() {
+        var refund = new RefundRequest(9, "ORD-9", "Reserved stock expired");
+        var placeholder = service.refundPayment(refund);
+
+        var outcome = service.processPayments(List.of(request(9, "ORD-9"))).get(0);
+
+        assertThat(outcome.status()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(outcome.paymentId()).isNull();
+        assertThat(outcome.failureReason()).startsWith("Order was cancelled");
+        assertThatThrownBy(() -> service.createPayment(request(9, "ORD-9"))).isInstanceOf(PaymentRejectedException.class);
+        assertThat(service.refundPayment(refund)).isEqualTo(placeholder);
+        assertThat(paymentsOf(9)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select amount from payment where order_id = 9", BigDecimal.class)).isNull();
+    }
+
+    @Test
+    void aRefundAfterThePaymentRefundsThatPayment() {
+        var paymentId = service.processPayments(List.of(request(10, "ORD-10"))).get(0).paymentId();
+
+        assertThat(service.refundPayment(new RefundRequest(10, "ORD-10", "Order cancelled"))).isEqualTo(paymentId);
+
+        var payment = repository.findById(paymentId).orElseThrow();
+        assertThat(payment.getRefundedAt()).isNotNull();
+        assertThat(payment.getRefundReason()).isEqualTo("Order cancelled");
+        assertThat(service.processPayments(List.of(request(10, "ORD-10"))).get(0).status()).isEqualTo(PaymentStatus.FAILED);
+    }
+
+    /**
+     * Holds a payment for the order in an open transaction, lets the raced call insert its own behind it and
+     * commits once that insert waits on the unique index.
+     */
+    private Race racePayment(int orderId, Callable<Integer> raced) throws Exception {
+        var inserted = new CountDownLatch(1);
+        var commit = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var winner = executor.submit(() -> transactionTemplate.execute(status -> {
+                var payment = repository.saveAndFlush(new PaymentMapper().toPayment(request(orderId, "ORD-" + orderId)));
+                inserted.countDown();
+                await(commit);
+                return payment.getId();
+            }));
+            assertThat(inserted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            var loser = executor.submit(raced);
+            awaitLockWait();
+            commit.countDown();
+
+            return new Race(winner.get(5, TimeUnit.SECONDS), loser.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private void awaitLockWait() throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            var waiting = jdbcTemplate.queryForObject(
+                    "select count(*) from pg_stat_activity where wait_event_type = 'Lock'", Integer.class);
+            if (waiting > 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("The raced payment never waited on the unique index");
+    }
+
+    private int paymentsOf(int orderId) {
+        return jdbcTemplate.queryForObject("select count(*) from payment where order_id = ?", Integer.class, orderId);
+    }
+
+    private Integer paymentIdOf(int orderId) {
+        return jdbcTemplate.queryForObject("select id from payment where order_id = ?", Integer.class, orderId);
+    }
+
+    private static PaymentRequest request(int orderId, String orderReference) {
+        return request(orderId, orderReference, new BigDecimal("19.99"));
+    }
+
+    private static PaymentRequest request(int orderId, String orderReference, BigDecimal amount) {
+        return new PaymentRequest(null, amount, PaymentMethod.VISA, orderId, orderReference,
+                new Customer("c-1", "Ada", "Lovelace", "ada@example.com"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Race(Integer paymentId, Integer raced) {
+    }
+}
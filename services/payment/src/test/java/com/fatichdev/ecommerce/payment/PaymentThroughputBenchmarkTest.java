@@ -0,0 +1,190 @@
+package com.fatichdev.ecommerce.payment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.client.RestClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pays the same number of orders through both entry points of the service, set up as in payment-service.yml on an
+ * embedded broker and an embedded Postgres: one POST /api/v1/payments per order from a pool of concurrent clients,
+ * and payment requests queued on payment-request-topic for the batch listener. Reports payments per second for both.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.cloud.config.enabled=false",
+        "eureka.client.enabled=false",
+        "management.tracing.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=pooled-lo",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.kafka.producer.key-serializer=org.apache.kafka.common.serialization.StringSerializer",
+        "spring.kafka.producer.value-serializer=com.fatichdev.ecommerce.kafka.serialization.EventSerializer",
+        "spring.kafka.producer.acks=all",
+        "spring.kafka.producer.properties.event.format=avro",
+        "spring.kafka.producer.properties.linger.ms=20",
+        "spring.kafka.producer.properties.spring.json.type.mapping=paymentConfirmation:com.fatichdev.ecommerce.notification.PaymentNotificationRequest,paymentOutcome:com.fatichdev.ecommerce.payment.PaymentOutcome",
+        "spring.kafka.consumer.group-id=payment-benchmark",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "spring.kafka.consumer.enable-auto-commit=false",
+        "spring.kafka.consumer.max-poll-records=500",
+        "spring.kafka.consumer.key-deserializer=org.apache.kafka.common.serialization.StringDeserializer",
+        "spring.kafka.consumer.value-deserializer=org.springframework.kafka.support.serializer.ErrorHandlingDeserializer",
+        "spring.kafka.consumer.properties.spring.deserializer.value.delegate.class=org.springframework.kafka.support.serializer.JsonDeserializer",
+        "spring.kafka.consumer.properties.spring.json.trusted.packages=com.fatichdev.ecommerce.*",
+        "spring.kafka.consumer.properties.spring.json.type.mapping=paymentRequest:com.fatichdev.ecommerce.payment.PaymentRequest",
+        "spring.kafka.listener.ack-mode=batch",
+        "application.payment-requests.concurrency=3",
+        // Started by the test once the topic is full
+        "spring.kafka.listener.auto-startup=false"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Slf4j
+class PaymentThroughputBenchmarkTest {
+
+    private static final int PAYMENTS = 5_000;
+    private static final int CLIENTS = 8;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    private static final EmbeddedKafkaKraftBroker BROKER = new EmbeddedKafkaKraftBroker(1, 6, "payment-request-topic");
+
+    @DynamicPropertySource
+    static void kafka(DynamicPropertyRegistry registry) {
+        BROKER.afterPropertiesSet();
+        registry.add("spring.kafka.bootstrap-servers", BROKER::getBrokersAsString);
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        BROKER.destroy();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listeners;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void paysOverRestAndFromThePaymentRequestTopic() throws Exception {
+        var rest = payOverRest();
+        var events = payFromTopic();
+
+        log.info("""
+                        {} payments each:
+                          REST, {} concurrent clients   {} ms, {} payments/s
+                          payment-request-topic       {} ms, {} payments/s, {} requests per batch on average""",
+                PAYMENTS, CLIENTS, rest.toMillis(), perSecond(rest), events.toMillis(), perSecond(events),
+                Math.round(meterRegistry.summary("payment.requests.batch.size").mean()));
+
+        // Payments per second are reported, not asserted: they depend on the machine
+        assertThat(jdbcTemplate.queryForObject("select count(distinct order_id) from payment", Long.class))
+                .isEqualTo(2L * PAYMENTS);
+        assertThat(meterRegistry.counter("payment.requests", "status", "SUCCEEDED").count()).isEqualTo(PAYMENTS);
+        assertThat(meterRegistry.summary("payment.requests.batch.size").mean()).isGreaterThan(1);
+    }
+
+    private Duration payOverRest() {
+        var client = RestClient.create("http://localhost:" + port);
+        var start = System.nanoTime();
+        try (var executor = Executors.newFixedThreadPool(CLIENTS)) {
+            var payments = new ArrayList<CompletableFuture<Integer>>(PAYMENTS);
+            for (int i = 1; i <= PAYMENTS; i++) {
+                var request = request(i);
+                payments.add(CompletableFuture.supplyAsync(() -> client.post()
+                        .uri("/api/v1/payments")
+                        .body(request)
+                        .retrieve()
+                        .body(Integer.class), executor));
+            }
+            assertThat(payments.stream().map(CompletableFuture::join).distinct()).hasSize(PAYMENTS);
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private Duration payFromTopic() throws InterruptedException {
+        produce();
+        var start = System.nanoTime();
+        listeners.getListenerContainer("payment-requests").start();
+        await(() -> (long) meterRegistry.counter("payment.requests", "status", "SUCCEEDED").count(), PAYMENTS);
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    // Queued up front, as a backlog the listener works through at its own pace
+    private void produce() {
+        var configs = Map.<String, Object>of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BROKER.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class,
+                ProducerConfig.LINGER_MS_CONFIG, 20,
+                JsonSerializer.TYPE_MAPPINGS, "paymentRequest:" + PaymentRequest.class.getName()
+        );
+        var producerFactory = new DefaultKafkaProducerFactory<String, PaymentRequest>(configs);
+        try {
+            var template = new KafkaTemplate<>(producerFactory);
+            var sends = new ArrayList<CompletableFuture<?>>(PAYMENTS);
+            for (int i = PAYMENTS + 1; i <= 2 * PAYMENTS; i++) {
+                var request = request(i);
+                sends.add(template.send(new ProducerRecord<>("payment-request-topic", request.orderReference(), request)));
+            }
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            producerFactory.destroy();
+        }
+    }
+
+    private static PaymentRequest request(int orderId) {
+        return new PaymentRequest(
+                null,
+                new BigDecimal("19.99"),
+                PaymentMethod.VISA,
+                orderId,
+                "ORD-" + orderId,
+                new Customer("c-1", "Ada", "Lovelace", "ada@example.com")
+        );
+    }
+
+    private static long perSecond(Duration elapsed) {
+        return Math.round(PAYMENTS / (elapsed.toNanos() / 1e9));
+    }
+
+    private static void await(LongSupplier actual, long expected) throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (actual.getAsLong() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(actual.getAsLong()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,31 @@
+package com.fatichdev.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    public static final String PRODUCT_DETAILS = "product-details";
+    public static final String PRODUCT_QUANTITIES = "product-quantities";
+
+    @Bean
+    public CacheManager cacheManager(ProductCacheProperties properties) {
+        var cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(PRODUCT_DETAILS, Caffeine.newBuilder()
+                .maximumSize(properties.detailsMaxSize())
+                .expireAfterWrite(properties.detailsTtl())
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(PRODUCT_QUANTITIES, Caffeine.newBuilder()
+                .maximumSize(properties.quantityMaxSize())
+                .expireAfterWrite(properties.quantityTtl())
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+}
@@ -0,0 +1,20 @@
+package com.fatichdev.ecommerce.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+@Component
+@ConditionalOnProperty(name = "application.cache.distributed", havingValue = "false", matchIfMissing = true)
+public class LocalProductCacheTier implements ProductCacheTier {
+
+    @Override
+    public void publishEviction(Collection<Integer> productIds, boolean details) {
+    }
+
+    @Override
+    public void onEviction(BiConsumer<Collection<Integer>, Boolean> listener) {
+    }
+}
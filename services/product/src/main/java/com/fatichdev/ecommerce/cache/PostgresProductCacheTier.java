@@ -0,0 +1,110 @@
+package com.fatichdev.ecommerce.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Broadcasts evictions with Postgres LISTEN/NOTIFY. Notifications sent inside a transaction
+ * are only delivered when it commits, so replicas never evict ahead of the data change. The listener holds its
+ * own unpooled connection, so it never takes a slot of the request pool.
+ */
+@Component
+@ConditionalOnProperty(name = "application.cache.distributed", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresProductCacheTier implements ProductCacheTier {
+
+    private static final String CHANNEL = "product_cache";
+    private static final int MAX_PAYLOAD_LENGTH = 7900;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<BiConsumer<Collection<Integer>, Boolean>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    @Override
+    public void publishEviction(Collection<Integer> productIds, boolean details) {
+        // NOTIFY payloads are capped at 8000 bytes, so large batches go out as several notifications
+        var payload = new StringBuilder();
+        for (Integer productId : productIds) {
+            if (payload.length() + 12 > MAX_PAYLOAD_LENGTH) {
+                notify(details, payload);
+                payload.setLength(0);
+            }
+            payload.append(payload.isEmpty() ? "" : ",").append(productId);
+        }
+        if (!payload.isEmpty()) {
+            notify(details, payload);
+        }
+    }
+
+    private void notify(boolean details, CharSequence productIds) {
+        jdbcTemplate.queryForList("select pg_notify(?, ?)", CHANNEL, (details ? "d:" : "q:") + productIds);
+    }
+
+    @Override
+    public void onEviction(BiConsumer<Collection<Integer>, Boolean> listener) {
+        listeners.add(listener);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void listen() {
+        var listenerDataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(SimpleDriverDataSource.class)
+                .build();
+        Thread.ofVirtual().name("product-cache-listener").start(() -> {
+            while (running) {
+                try (var connection = listenerDataSource.getConnection(); var statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                    var pgConnection = connection.unwrap(PGConnection.class);
+                    while (running) {
+                        var notifications = pgConnection.getNotifications(1000);
+                        if (notifications != null) {
+                            Arrays.stream(notifications).forEach(notification -> dispatch(notification.getParameter()));
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("Product cache listener disconnected, retrying", e);
+                    sleepBeforeRetry();
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+    }
+
+    private void dispatch(String payload) {
+        var details = payload.startsWith("d:");
+        var productIds = Arrays.stream(payload.substring(2).split(","))
+                .filter(id -> !id.isEmpty())
+                .map(Integer::valueOf)
+                .toList();
+        listeners.forEach(listener -> listener.accept(productIds, details));
+    }
+
+    private static void sleepBeforeRetry() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
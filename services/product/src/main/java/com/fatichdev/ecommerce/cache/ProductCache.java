@@ -0,0 +1,114 @@
+package com.fatichdev.ecommerce.cache;
+
+import com.fatichdev.ecommerce.product.ProductResponse;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static com.fatichdev.ecommerce.cache.CacheConfig.PRODUCT_DETAILS;
+import static com.fatichdev.ecommerce.cache.CacheConfig.PRODUCT_QUANTITIES;
+
+/**
+ * Read-through cache for products. Static attributes and the available quantity are cached
+ * separately so purchases only evict the short-lived quantity entries. Every eviction applied here, whether
+ * made on this replica or announced by another one, is passed on to the in-process eviction listeners.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductCache {
+
+    private final CacheManager cacheManager;
+    private final ProductCacheTier tier;
+    private final List<BiConsumer<Collection<Integer>, Boolean>> listeners = new CopyOnWriteArrayList<>();
+    private Cache details;
+    private Cache quantities;
+
+    @PostConstruct
+    void init() {
+        details = cacheManager.getCache(PRODUCT_DETAILS);
+        quantities = cacheManager.getCache(PRODUCT_QUANTITIES);
+        tier.onEviction(this::evictLocally);
+    }
+
+    /**
+     * Registers a listener for the products evicted on this replica, called with the ids and whether their details
+     * changed; local evictions reach it once their transaction has committed.
+     */
+    public void onEviction(BiConsumer<Collection<Integer>, Boolean> listener) {
+        listeners.add(listener);
+    }
+
+    public Optional<ProductResponse> getDetails(Integer productId, Supplier<Optional<ProductResponse>> loader) {
+        return getOrLoad(details, productId, loader);
+    }
+
+    public Optional<Double> getQuantity(Integer productId, Supplier<Optional<Double>> loader) {
+        return getOrLoad(quantities, productId, loader);
+    }
+
+    public void evictProducts(Collection<Integer> productIds) {
+        evict(productIds, true);
+    }
+
+    public void evictQuantities(Collection<Integer> productIds) {
+        evict(productIds, false);
+    }
+
+    private <T> Optional<T> getOrLoad(Cache cache, Integer productId, Supplier<Optional<T>> loader) {
+        try {
+            // The load runs inside the cache's own compute, so an eviction issued meanwhile waits for it and
+            // then removes the loaded value instead of being overwritten by it
+            return Optional.of(cache.get(productId, () -> loader.get().orElseThrow(MissingProduct::new)));
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof MissingProduct) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    private void evict(Collection<Integer> productIds, boolean includeDetails) {
+        tier.publishEviction(productIds, includeDetails);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictLocally(productIds, includeDetails);
+            return;
+        }
+        // Evicting before commit would let a concurrent read cache the old row again
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictLocally(productIds, includeDetails);
+            }
+        });
+    }
+
+    private void evictLocally(Collection<Integer> productIds, boolean includeDetails) {
+        productIds.forEach(productId -> {
+            quantities.evict(productId);
+            if (includeDetails) {
+                details.evict(productId);
+            }
+        });
+        listeners.forEach(listener -> listener.accept(productIds, includeDetails));
+    }
+
+    /**
+     * Signals a miss out of the cache loader without caching anything.
+     */
+    private static final class MissingProduct extends RuntimeException {
+        MissingProduct() {
+            super(null, null, false, false);
+        }
+    }
+}
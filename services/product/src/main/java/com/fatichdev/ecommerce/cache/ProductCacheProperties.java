@@ -0,0 +1,21 @@
+package com.fatichdev.ecommerce.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.cache")
+public record ProductCacheProperties(
+        @DefaultValue("10m")
+        Duration detailsTtl,
+        @DefaultValue("10000")
+        long detailsMaxSize,
+        @DefaultValue("5s")
+        Duration quantityTtl,
+        @DefaultValue("10000")
+        long quantityMaxSize,
+        @DefaultValue("false")
+        boolean distributed
+) {
+}
@@ -0,0 +1,14 @@
+package com.fatichdev.ecommerce.cache;
+
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+/**
+ * Propagates evictions to the other product-service replicas.
+ */
+public interface ProductCacheTier {
+
+    void publishEviction(Collection<Integer> productIds, boolean details);
+
+    void onEviction(BiConsumer<Collection<Integer>, Boolean> listener);
+}
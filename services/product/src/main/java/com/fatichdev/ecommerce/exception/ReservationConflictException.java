@@ -0,0 +1,10 @@
+package com.fatichdev.ecommerce.exception;
+
+/**
+ * The reservation was already settled the other way: a released reservation cannot be confirmed and vice versa.
+ */
+public class ReservationConflictException extends RuntimeException {
+    public ReservationConflictException(String msg) {
+        super(msg);
+    }
+}
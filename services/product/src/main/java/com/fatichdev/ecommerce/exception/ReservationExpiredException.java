@@ -0,0 +1,10 @@
+package com.fatichdev.ecommerce.exception;
+
+/**
+ * The reservation ran out before it was confirmed; its stock has been or is about to be put back on sale.
+ */
+public class ReservationExpiredException extends RuntimeException {
+    public ReservationExpiredException(String msg) {
+        super(msg);
+    }
+}
@@ -2,6 +2,8 @@ package com.fatichdev.ecommerce.handler;
 
 
 import com.fatichdev.ecommerce.exception.ProductPurchaseException;
+import com.fatichdev.ecommerce.exception.ReservationConflictException;
+import com.fatichdev.ecommerce.exception.ReservationExpiredException;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -22,6 +24,20 @@ public class GlobalExceptionHandler  {
                 .body(exp.getMessage());
     }
 
+    @ExceptionHandler(ReservationExpiredException.class)
+    public ResponseEntity<String> handle(ReservationExpiredException exp) {
+        return ResponseEntity
+                .status(HttpStatus.GONE)
+                .body(exp.getMessage());
+    }
+
+    @ExceptionHandler(ReservationConflictException.class)
+    public ResponseEntity<String> handle(ReservationConflictException exp) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(exp.getMessage());
+    }
+
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<String> handle(EntityNotFoundException exp) {
         return ResponseEntity
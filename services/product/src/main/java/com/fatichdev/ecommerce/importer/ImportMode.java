@@ -0,0 +1,6 @@
+package com.fatichdev.ecommerce.importer;
+
+public enum ImportMode {
+    COPY,
+    BATCH
+}
@@ -0,0 +1,17 @@
+package com.fatichdev.ecommerce.importer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "application.import")
+public record ImportProperties(
+        @DefaultValue("5000")
+        int batchSize,
+        @DefaultValue("COPY")
+        ImportMode mode,
+        @DefaultValue("50")
+        int sequenceIncrement,
+        @DefaultValue("100")
+        int maxReportedErrors
+) {
+}
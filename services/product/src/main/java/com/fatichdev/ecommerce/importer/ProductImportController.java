@@ -0,0 +1,28 @@
+package com.fatichdev.ecommerce.importer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/v1/products/import")
+@RequiredArgsConstructor
+public class ProductImportController {
+
+    private final ProductImportService service;
+
+    @PostMapping
+    public ResponseEntity<ProductImportResponse> importProducts(
+            InputStream body,
+            @RequestParam(value = "format", defaultValue = "CSV") ImportFormat format,
+            @RequestParam(value = "importId", required = false) String importId
+    ) throws IOException {
+        return ResponseEntity.ok(service.importProducts(body, format, importId));
+    }
+}
@@ -0,0 +1,115 @@
+package com.fatichdev.ecommerce.importer;
+
+import com.fatichdev.ecommerce.category.Category;
+import com.fatichdev.ecommerce.product.ProductRequest;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class ProductImportRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    /**
+     * Reserves ids the same way Hibernate's pooled optimizer does: each sequence value {@code hi}
+     * owns the block {@code hi - increment + 1 .. hi}, so imported rows never collide with entity inserts.
+     */
+    public List<Integer> allocateIds(int count, int increment) {
+        var blocks = (count + increment - 1) / increment;
+        var ids = new ArrayList<Integer>(blocks * increment);
+        jdbcTemplate.queryForList("select nextval('product_seq') from generate_series(1, ?)", Long.class, blocks)
+                .forEach(hi -> {
+                    for (long id = hi - increment + 1; id <= hi; id++) {
+                        ids.add((int) id);
+                    }
+                });
+        return ids.subList(0, count);
+    }
+
+    public void copy(List<Integer> ids, List<ProductRequest> products) throws SQLException, IOException {
+        var csv = new StringBuilder(products.size() * 128);
+        for (int i = 0; i < products.size(); i++) {
+            var product = products.get(i);
+            csv.append(ids.get(i)).append(',')
+                    .append(quote(product.name())).append(',')
+                    .append(quote(product.description())).append(',')
+                    .append(product.availableQuantity()).append(',')
+                    .append(product.price().toPlainString()).append(',')
+                    .append(product.categoryId()).append('\n');
+        }
+        var connection = DataSourceUtils.getConnection(dataSource);
+        connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                "copy product (id, name, description, available_quantity, price, category_id) from stdin with (format csv)",
+                new StringReader(csv.toString())
+        );
+    }
+
+    public void batchInsert(List<Integer> ids, List<ProductRequest> products) {
+        var args = new ArrayList<Object[]>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            var product = products.get(i);
+            args.add(new Object[]{
+                    ids.get(i),
+                    product.name(),
+                    product.description(),
+                    product.availableQuantity(),
+                    product.price(),
+                    product.categoryId()
+            });
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into product (id, name, description, available_quantity, price, category_id) values (?, ?, ?, ?, ?, ?)",
+                args
+        );
+    }
+
+    public long findCheckpoint(String importId) {
+        return jdbcTemplate.queryForList(
+                        "select rows_processed from product_import_checkpoint where import_id = ?",
+                        Long.class,
+                        importId
+                )
+                .stream()
+                .findFirst()
+                .orElse(0L);
+    }
+
+    public void saveCheckpoint(String importId, long rowsProcessed) {
+        jdbcTemplate.update("""
+                insert into product_import_checkpoint (import_id, rows_processed, updated_at)
+                values (?, ?, now())
+                on conflict (import_id) do update
+                set rows_processed = excluded.rows_processed, updated_at = excluded.updated_at
+                """, importId, rowsProcessed);
+    }
+
+    public Map<Integer, Category> findCategories() {
+        var categories = new HashMap<Integer, Category>();
+        jdbcTemplate.query("select id, name, description from category", row -> {
+            categories.put(row.getInt("id"), Category.builder()
+                    .id(row.getInt("id"))
+                    .name(row.getString("name"))
+                    .description(row.getString("description"))
+                    .build());
+        });
+        return categories;
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
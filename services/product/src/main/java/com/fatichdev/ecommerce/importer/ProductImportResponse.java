@@ -0,0 +1,15 @@
+package com.fatichdev.ecommerce.importer;
+
+import java.util.List;
+
+public record ProductImportResponse(
+        String importId,
+        long rowsRead,
+        long rowsSkipped,
+        long rowsImported,
+        long rowsRejected,
+        long elapsedMillis,
+        double rowsPerSecond,
+        List<String> errors
+) {
+}
@@ -0,0 +1,40 @@
+package com.fatichdev.ecommerce.importer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Command line import: {@code java -jar product.jar --import.file=catalogue.csv [--import.format=ndjson] [--import.id=...]}.
+ * The application exits once the file has been imported.
+ */
+@Component
+@ConditionalOnProperty(name = "import.file")
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportRunner implements ApplicationRunner {
+
+    private final ProductImportService service;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        var file = Path.of(context.getEnvironment().getRequiredProperty("import.file"));
+        var format = ImportFormat.valueOf(context.getEnvironment().getProperty("import.format", "csv").toUpperCase(Locale.ROOT));
+        var importId = context.getEnvironment().getProperty("import.id", file.getFileName().toString());
+        try (var input = Files.newInputStream(file)) {
+            var report = service.importProducts(input, format, importId);
+            log.info("Import report: {}", report);
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
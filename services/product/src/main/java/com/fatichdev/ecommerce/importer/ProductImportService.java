@@ -0,0 +1,228 @@
+package com.fatichdev.ecommerce.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.category.Category;
+import com.fatichdev.ecommerce.product.ProductRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streams a product catalogue into the product table in large batches. Every batch is committed
+ * together with its checkpoint, so an interrupted import resumes after the last committed row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportService {
+
+    private final ProductImportRepository repository;
+    private final ImportProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ProductCache productCache;
+
+    public ProductImportResponse importProducts(InputStream input, ImportFormat format, String importId) throws IOException {
+        var id = importId == null || importId.isBlank() ? UUID.randomUUID().toString() : importId;
+        var start = System.nanoTime();
+        var checkpoint = repository.findCheckpoint(id);
+        var categories = repository.findCategories();
+        var errors = new ArrayList<String>();
+        var batch = new ArrayList<ProductRequest>(properties.batchSize());
+        long rowsRead = 0;
+        long rowsImported = 0;
+        long rowsRejected = 0;
+
+        try (var reader = new BufferedReader(new InputStreamReader(input, UTF_8))) {
+            Map<String, Integer> header = format == ImportFormat.CSV ? readHeader(reader) : Map.of();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                rowsRead++;
+                if (rowsRead <= checkpoint) {
+                    continue;
+                }
+                try {
+                    var product = format == ImportFormat.CSV
+                            ? parseCsv(line, header)
+                            : objectMapper.readValue(line, ProductRequest.class);
+                    var violation = validate(product, categories);
+                    if (violation == null) {
+                        batch.add(product);
+                    } else {
+                        rowsRejected++;
+                        reportError(errors, rowsRead, violation);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    rowsRejected++;
+                    reportError(errors, rowsRead, e.getMessage());
+                }
+                if (batch.size() == properties.batchSize()) {
+                    rowsImported += flush(id, batch, rowsRead);
+                }
+            }
+            rowsImported += flush(id, batch, rowsRead);
+        }
+
+        var elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        var rowsPerSecond = elapsedMillis == 0 ? rowsImported : rowsImported * 1000d / elapsedMillis;
+        log.info("Import {} finished: {} rows imported, {} rejected in {} ms ({} rows/s)",
+                id, rowsImported, rowsRejected, elapsedMillis, Math.round(rowsPerSecond));
+        return new ProductImportResponse(
+                id,
+                rowsRead,
+                Math.min(checkpoint, rowsRead),
+                rowsImported,
+                rowsRejected,
+                elapsedMillis,
+                rowsPerSecond,
+                errors
+        );
+    }
+
+    private int flush(String importId, List<ProductRequest> batch, long rowsProcessed) {
+        var products = List.copyOf(batch);
+        batch.clear();
+        var ids = transactionTemplate.execute(status -> {
+            var allocatedIds = products.isEmpty()
+                    ? List.<Integer>of()
+                    : repository.allocateIds(products.size(), properties.sequenceIncrement());
+            try {
+                if (!products.isEmpty() && properties.mode() == ImportMode.COPY) {
+                    repository.copy(allocatedIds, products);
+                } else if (!products.isEmpty()) {
+                    repository.batchInsert(allocatedIds, products);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot copy products into the product table", e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            repository.saveCheckpoint(importId, rowsProcessed);
+            return allocatedIds;
+        });
+        // Announces the new rows so every replica, this one included, adds them to its search index
+        productCache.evictProducts(ids);
+        return products.size();
+    }
+
+    private String validate(ProductRequest product, Map<Integer, Category> categories) {
+        var violations = validator.validate(product);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (product.availableQuantity() == null || product.price() == null) {
+            return "Product available quantity and price are required";
+        }
+        if (!categories.containsKey(product.categoryId())) {
+            return "No category found with ID:: " + product.categoryId();
+        }
+        return null;
+    }
+
+    private void reportError(List<String> errors, long row, String message) {
+        if (errors.size() < properties.maxReportedErrors()) {
+            errors.add("Row " + row + ": " + message);
+        }
+    }
+
+    private static Map<String, Integer> readHeader(BufferedReader reader) throws IOException {
+        var line = reader.readLine();
+        if (line == null) {
+            return Map.of();
+        }
+        var columns = splitCsv(line);
+        var header = new HashMap<String, Integer>();
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).replace("_", "").trim().toLowerCase(Locale.ROOT), i);
+        }
+        return header;
+    }
+
+    private static ProductRequest parseCsv(String line, Map<String, Integer> header) {
+        var columns = splitCsv(line);
+        return new ProductRequest(
+                null,
+                column(columns, header, "name"),
+                column(columns, header, "description"),
+                toDouble(column(columns, header, "availablequantity")),
+                toBigDecimal(column(columns, header, "price")),
+                toInteger(column(columns, header, "categoryid"))
+        );
+    }
+
+    private static String column(List<String> columns, Map<String, Integer> header, String name) {
+        var index = header.get(name);
+        if (index == null || index >= columns.size() || columns.get(index).isEmpty()) {
+            return null;
+        }
+        return columns.get(index);
+    }
+
+    private static List<String> splitCsv(String line) {
+        var columns = new ArrayList<String>();
+        var current = new StringBuilder();
+        var quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+
+    private static Double toDouble(String value) {
+        return value == null ? null : Double.valueOf(value);
+    }
+
+    private static BigDecimal toBigDecimal(String value) {
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    private static Integer toInteger(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+}
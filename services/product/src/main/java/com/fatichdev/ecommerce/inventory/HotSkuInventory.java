@@ -0,0 +1,289 @@
+package com.fatichdev.ecommerce.inventory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the stock of flagged products in memory. Each replica leases a slice of a product's stock from its row
+ * and sells only from that slice, so replicas can never sell the same units. Purchases are recorded in
+ * {@code stock_journal} instead of updating the hot rows, and the journal is folded into the lease in batches.
+ * A replica stops selling from a lease once its time to live has passed without a renewal, since another replica
+ * may have handed that stock back to the row by then.
+ */
+@Service
+@Slf4j
+public class HotSkuInventory {
+
+    // Quantities are kept in thousandths so fractional stock survives the conversion to long
+    private static final double QUANTITY_SCALE = 1000d;
+
+    private final HotSkuProperties properties;
+    private final StockJournal journal;
+    private final TransactionTemplate transactionTemplate;
+    private final String owner;
+    private final Map<Integer, StripedStockCounter> counters = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<Void>> refills = new ConcurrentHashMap<>();
+    // Local time (System.nanoTime) until which each lease is known to be held; never later than its database expiry
+    private final Map<Integer, Long> leaseDeadlines = new ConcurrentHashMap<>();
+    private final ExecutorService leaseExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "hot-sku-lease"));
+
+    public HotSkuInventory(HotSkuProperties properties, StockJournal journal, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.journal = journal;
+        // Lease changes commit on their own, whatever happens to the purchase that triggered them
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.owner = properties.instanceId() == null || properties.instanceId().isBlank()
+                ? UUID.randomUUID().toString()
+                : properties.instanceId();
+    }
+
+    @PostConstruct
+    void reconcile() {
+        if (!properties.enabled() || properties.productIds().isEmpty()) {
+            return;
+        }
+        // Entries left behind by a crash are applied to this owner's leases before the counters adopt them
+        int folded = foldJournal();
+        int reclaimed = transactionTemplate.execute(status -> journal.reclaimExpiredLeases());
+        var leases = transactionTemplate.execute(status -> journal.findLeases(owner));
+        properties.productIds().forEach(productId -> counters.put(
+                productId,
+                new StripedStockCounter(properties.shards(), toUnits(leases.getOrDefault(productId, 0d)))
+        ));
+        properties.productIds().forEach(this::refill);
+        log.info("Hot SKU mode enabled for products {} as {} ({} journal entries reconciled, {} expired leases reclaimed)",
+                counters.keySet(), owner, folded, reclaimed);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        leaseExecutor.shutdown();
+        leaseExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        if (counters.isEmpty()) {
+            return;
+        }
+        foldJournal();
+        transactionTemplate.executeWithoutResult(status -> journal.releaseLeases(owner));
+        counters.values().forEach(StripedStockCounter::drain);
+    }
+
+    public boolean isHot(Integer productId) {
+        return counters.containsKey(productId);
+    }
+
+    /**
+     * Takes the requested quantities from this replica's leased stock and journals them in the current transaction.
+     * A product whose lease runs dry is topped up from its row first. Returns the ids that could not be reserved;
+     * on any failure nothing is kept.
+     */
+    public List<Integer> reserve(Map<Integer, Double> quantities) {
+        var reserved = new ArrayList<Map.Entry<Integer, Double>>();
+        var failed = new ArrayList<Integer>();
+        quantities.forEach((productId, quantity) -> {
+            if (tryDecrement(productId, toUnits(quantity))) {
+                reserved.add(Map.entry(productId, quantity));
+            } else {
+                failed.add(productId);
+            }
+        });
+        if (!failed.isEmpty()) {
+            reserved.forEach(entry -> release(entry.getKey(), entry.getValue()));
+            return failed;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    reserved.forEach(entry -> release(entry.getKey(), entry.getValue()));
+                }
+            }
+        });
+        journal.append(owner, quantities);
+        return failed;
+    }
+
+    /**
+     * Journals returned stock in the current transaction; the counters only grow once it commits.
+     */
+    public void restock(Map<Integer, Double> quantities) {
+        journal.append(owner, quantities.entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> -entry.getValue())));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                quantities.forEach(HotSkuInventory.this::release);
+            }
+        });
+    }
+
+    /**
+     * Stock across the product row and the leases of every replica.
+     */
+    public double availableQuantity(Integer productId) {
+        return journal.findAvailableQuantities(Set.of(productId))
+                .stream()
+                .mapToDouble(row -> ((Number) row.get("available_quantity")).doubleValue())
+                .findFirst()
+                .orElse(0d);
+    }
+
+    @Scheduled(fixedDelayString = "${application.hot-sku.flush-interval-ms:1000}")
+    public void flush() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        foldJournal();
+        var renewedAt = System.nanoTime();
+        var leased = transactionTemplate.execute(status -> journal.renewLeases(owner, properties.leaseTtl()));
+        extendLeases(leased, renewedAt);
+        counters.forEach((productId, counter) -> {
+            if (!leased.contains(productId) && counter.sum() > 0) {
+                // Another replica reclaimed the lease after it expired; its stock is back on the product row
+                log.warn("Lease on product {} expired before it was renewed; dropping the local stock", productId);
+                counter.drain();
+            }
+        });
+        transactionTemplate.execute(status -> journal.reclaimExpiredLeases());
+        counters.forEach((productId, counter) -> {
+            if (counter.sum() < lowWaterMark()) {
+                refill(productId);
+            }
+        });
+    }
+
+    private boolean tryDecrement(Integer productId, long units) {
+        if (!holdsLease(productId)) {
+            // Not renewed in time: the stock may be back on the row, so sell nothing until the lease is renewed
+            awaitRefill(productId);
+            if (!holdsLease(productId)) {
+                return false;
+            }
+        }
+        var counter = counters.get(productId);
+        if (!counter.tryDecrement(units)) {
+            awaitRefill(productId);
+            if (!counter.tryDecrement(units)) {
+                return false;
+            }
+        }
+        if (counter.sum() < lowWaterMark()) {
+            refill(productId);
+        }
+        return true;
+    }
+
+    private void awaitRefill(Integer productId) {
+        try {
+            refill(productId).get(properties.refillWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("No stock lease top-up for product {} in time", productId, e);
+        }
+    }
+
+    private boolean holdsLease(Integer productId) {
+        var deadline = leaseDeadlines.get(productId);
+        return deadline != null && System.nanoTime() - deadline < 0;
+    }
+
+    /**
+     * Records leases renewed by a statement sent at {@code renewedAt}; the database set their expiry no earlier.
+     */
+    private void extendLeases(Set<Integer> productIds, long renewedAt) {
+        var deadline = renewedAt + properties.leaseTtl().toNanos();
+        productIds.forEach(productId -> leaseDeadlines.put(productId, deadline));
+    }
+
+    /**
+     * Renews and tops up the lease of a product on the lease thread; concurrent requests for the same product share
+     * one top-up. Local stock whose lease was reclaimed is dropped before the new lease is counted.
+     */
+    private CompletableFuture<Void> refill(Integer productId) {
+        var refill = new CompletableFuture<Void>();
+        var pending = refills.putIfAbsent(productId, refill);
+        if (pending != null) {
+            return pending;
+        }
+        try {
+            leaseExecutor.execute(() -> {
+                try {
+                    var renewedAt = System.nanoTime();
+                    var renewed = new HashSet<Integer>();
+                    var taken = transactionTemplate.execute(status -> {
+                        renewed.addAll(journal.renewLeases(owner, properties.leaseTtl()));
+                        if (!renewed.contains(productId) && counters.get(productId).drain() > 0) {
+                            log.warn("Lease on product {} expired before it was renewed; dropping the local stock", productId);
+                        }
+                        return journal.acquireLease(owner, productId, properties.leaseSize(), properties.leaseTtl());
+                    });
+                    if (taken > 0) {
+                        renewed.add(productId);
+                    }
+                    counters.get(productId).increment(toUnits(taken));
+                    extendLeases(renewed, renewedAt);
+                    refills.remove(productId, refill);
+                    refill.complete(null);
+                } catch (RuntimeException e) {
+                    refills.remove(productId, refill);
+                    refill.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            refills.remove(productId, refill);
+            refill.completeExceptionally(e);
+        }
+        return refill;
+    }
+
+    private int foldJournal() {
+        int total = 0;
+        StockJournal.Fold fold;
+        do {
+            fold = transactionTemplate.execute(status -> journal.fold(owner, properties.flushBatchSize()));
+            fold.oversold().forEach((productId, quantity) -> log.error(
+                    "Purchases of product {} committed after its lease was reclaimed oversold it by {}; its stock was floored at zero",
+                    productId, quantity));
+            total += fold.entries();
+        } while (fold.entries() == properties.flushBatchSize());
+        return total;
+    }
+
+    private long lowWaterMark() {
+        return toUnits(properties.leaseSize()) / 4;
+    }
+
+    private void release(Integer productId, double quantity) {
+        counters.get(productId).increment(toUnits(quantity));
+    }
+
+    private static long toUnits(double quantity) {
+        return Math.round(quantity * QUANTITY_SCALE);
+    }
+}
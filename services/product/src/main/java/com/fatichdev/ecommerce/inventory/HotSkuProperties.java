@@ -0,0 +1,34 @@
+package com.fatichdev.ecommerce.inventory;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+@ConfigurationProperties(prefix = "application.hot-sku")
+public record HotSkuProperties(
+        @DefaultValue("false")
+        boolean enabled,
+        @DefaultValue
+        Set<Integer> productIds,
+        @DefaultValue("16")
+        int shards,
+        @DefaultValue("5000")
+        int flushBatchSize,
+        /*
+         * Owner of this replica's leases. A stable id (e.g. the pod name) lets a restarted replica adopt its
+         * unexpired leases; a blank id gets a random one and the old leases are reclaimed once they expire.
+         */
+        String instanceId,
+        /* Stock taken from the product row per lease; each replica only ever sells what it has leased. */
+        @DefaultValue("100")
+        double leaseSize,
+        /* Leases not renewed within this time are handed back to the product row by any replica. */
+        @DefaultValue("30s")
+        Duration leaseTtl,
+        /* How long a purchase that finds the local lease empty waits for a top-up before failing. */
+        @DefaultValue("200ms")
+        Duration refillWait
+) {
+}
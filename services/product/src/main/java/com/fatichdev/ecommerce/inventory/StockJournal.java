@@ -0,0 +1,197 @@
+package com.fatichdev.ecommerce.inventory;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stock of hot products is leased from the product row in chunks ({@code stock_lease}, one row per product and
+ * replica). Purchases against a lease are appended to {@code stock_journal} instead of updating a shared row, and
+ * the journal is folded into the lease in batches. Lease expiry uses the database clock only.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockJournal {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void append(String owner, Map<Integer, Double> quantities) {
+        var args = new ArrayList<Object[]>(quantities.size());
+        quantities.forEach((productId, quantity) -> args.add(new Object[]{owner, productId, quantity}));
+        jdbcTemplate.batchUpdate(
+                "insert into stock_journal (owner, product_id, quantity) values (?, ?, ?)",
+                args
+        );
+    }
+
+    /**
+     * Applies up to {@code batchSize} of the owner's journal entries to its leases and removes them, as a single
+     * statement so a crash can never apply an entry twice. Entries whose lease was already reclaimed go straight
+     * to the product row, where the reclaimed stock went, but never take it below zero: what they sold beyond the
+     * row's stock is returned as oversold.
+     */
+    public Fold fold(String owner, int batchSize) {
+        var entries = new int[1];
+        var oversold = new HashMap<Integer, Double>();
+        jdbcTemplate.query("""
+                with folded as (
+                    delete from stock_journal
+                    where id in (select id from stock_journal where owner = ? order by id limit ?)
+                    returning product_id, quantity
+                ), totals as (
+                    select product_id, sum(quantity) as quantity from folded group by product_id
+                ), leased as (
+                    update stock_lease l
+                    set quantity = l.quantity - t.quantity
+                    from totals t
+                    where l.owner = ? and l.product_id = t.product_id
+                    returning l.product_id
+                ), current as (
+                    select p.id, p.available_quantity, t.quantity
+                    from product p
+                    join totals t on t.product_id = p.id
+                    where t.product_id not in (select product_id from leased)
+                    order by p.id
+                    for update of p
+                ), orphaned as (
+                    update product p
+                    set available_quantity = p.available_quantity - least(c.available_quantity, c.quantity)
+                    from current c
+                    where p.id = c.id
+                    returning p.id, c.quantity - least(c.available_quantity, c.quantity) as oversold
+                )
+                select (select count(*) from folded) as entries, o.id as product_id, o.oversold
+                from (select 1) one
+                left join orphaned o on o.oversold > 0
+                """, row -> {
+            entries[0] = row.getInt("entries");
+            var productId = row.getObject("product_id", Integer.class);
+            if (productId != null) {
+                oversold.put(productId, row.getDouble("oversold"));
+            }
+        }, owner, batchSize, owner);
+        return new Fold(entries[0], oversold);
+    }
+
+    /**
+     * Moves up to {@code quantity} of a product's stock into the owner's lease and returns how much was taken.
+     */
+    public double acquireLease(String owner, Integer productId, double quantity, Duration ttl) {
+        return jdbcTemplate.queryForObject("""
+                with current as (
+                    select id, available_quantity from product where id = ? for update
+                ), taken as (
+                    update product p
+                    set available_quantity = p.available_quantity - least(c.available_quantity, ?)
+                    from current c
+                    where p.id = c.id
+                      and c.available_quantity > 0
+                    returning p.id, least(c.available_quantity, ?) as quantity
+                ), leased as (
+                    insert into stock_lease (product_id, owner, quantity, expires_at)
+                    select id, ?, quantity, now() + ? * interval '1 millisecond' from taken
+                    on conflict (product_id, owner) do update
+                    set quantity = stock_lease.quantity + excluded.quantity,
+                        expires_at = excluded.expires_at
+                )
+                select coalesce((select quantity from taken), 0)
+                """, Double.class, productId, quantity, quantity, owner, ttl.toMillis());
+    }
+
+    /**
+     * Extends the owner's leases and returns the products it still holds a lease on.
+     */
+    public Set<Integer> renewLeases(String owner, Duration ttl) {
+        return new HashSet<>(jdbcTemplate.queryForList("""
+                update stock_lease
+                set expires_at = now() + ? * interval '1 millisecond'
+                where owner = ?
+                returning product_id
+                """, Integer.class, ttl.toMillis(), owner));
+    }
+
+    /**
+     * Leases held by the owner, with its unfolded journal entries already applied.
+     */
+    public Map<Integer, Double> findLeases(String owner) {
+        var leases = new HashMap<Integer, Double>();
+        jdbcTemplate.query(
+                "select product_id, quantity from stock_lease where owner = ?",
+                row -> {
+                    leases.put(row.getInt("product_id"), row.getDouble("quantity"));
+                },
+                owner
+        );
+        return leases;
+    }
+
+    /**
+     * Hands every expired lease back to its product row, net of the journal entries its owner left behind.
+     */
+    public int reclaimExpiredLeases() {
+        return reclaim("expires_at < now()", new Object[0]);
+    }
+
+    /**
+     * Hands the owner's leases back to the product rows, e.g. on shutdown.
+     */
+    public int releaseLeases(String owner) {
+        return reclaim("owner = ?", new Object[]{owner});
+    }
+
+    private int reclaim(String condition, Object[] args) {
+        return jdbcTemplate.queryForObject("""
+                with reclaimed as (
+                    delete from stock_lease
+                    where %s
+                    returning product_id, owner, quantity
+                ), pending as (
+                    delete from stock_journal j
+                    using reclaimed r
+                    where j.owner = r.owner and j.product_id = r.product_id
+                    returning j.product_id, j.owner, j.quantity
+                ), remaining as (
+                    select r.product_id, r.quantity - coalesce(sum(p.quantity), 0) as quantity
+                    from reclaimed r
+                    left join pending p on p.product_id = r.product_id and p.owner = r.owner
+                    group by r.product_id, r.owner, r.quantity
+                ), returned as (
+                    update product p
+                    set available_quantity = p.available_quantity + t.quantity
+                    from (select product_id, sum(quantity) as quantity from remaining group by product_id) t
+                    where p.id = t.product_id
+                )
+                select count(*) from reclaimed
+                """.formatted(condition), Integer.class, args);
+    }
+
+    /**
+     * Stock of the products across the product rows and every replica's lease, minus purchases not yet folded.
+     */
+    public List<Map<String, Object>> findAvailableQuantities(Set<Integer> productIds) {
+        return jdbcTemplate.queryForList("""
+                select p.id,
+                       p.available_quantity
+                           + coalesce((select sum(l.quantity) from stock_lease l where l.product_id = p.id), 0)
+                           - coalesce((select sum(j.quantity) from stock_journal j where j.product_id = p.id), 0)
+                           as available_quantity
+                from product p
+                where p.id = any(?)
+                """, (Object) productIds.toArray(Integer[]::new));
+    }
+
+    /**
+     * Journal entries folded in one batch, and per product what entries folded after its lease was reclaimed sold
+     * beyond the stock left on the row.
+     */
+    public record Fold(int entries, Map<Integer, Double> oversold) {
+    }
+}
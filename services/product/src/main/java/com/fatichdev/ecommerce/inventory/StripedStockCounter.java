@@ -0,0 +1,87 @@
+package com.fatichdev.ecommerce.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stock counter split into independent shards so concurrent purchases of the same product
+ * do not all CAS the same memory word. Each shard holds part of the stock and never goes below zero.
+ */
+class StripedStockCounter {
+
+    // Spread shards over separate cache lines to avoid false sharing
+    private static final int STRIDE = 16;
+
+    private final AtomicLongArray cells;
+    private final int shards;
+
+    StripedStockCounter(int shards, long units) {
+        this.shards = shards;
+        this.cells = new AtomicLongArray(shards * STRIDE);
+        for (int i = 0; i < shards; i++) {
+            cells.set(i * STRIDE, units / shards + (i < units % shards ? 1 : 0));
+        }
+    }
+
+    boolean tryDecrement(long units) {
+        var home = ThreadLocalRandom.current().nextInt(shards);
+        // Fast path: the home shard alone covers the purchase
+        var homeIndex = home * STRIDE;
+        long available;
+        while ((available = cells.get(homeIndex)) >= units) {
+            if (cells.compareAndSet(homeIndex, available, available - units)) {
+                return true;
+            }
+        }
+        return tryDecrementAcrossShards(home, units);
+    }
+
+    private boolean tryDecrementAcrossShards(int home, long units) {
+        var taken = new long[shards];
+        var remaining = units;
+        for (int i = 0; i < shards && remaining > 0; i++) {
+            var shard = (home + i) % shards;
+            var index = shard * STRIDE;
+            long current;
+            long take;
+            do {
+                current = cells.get(index);
+                take = Math.min(current, remaining);
+            } while (take > 0 && !cells.compareAndSet(index, current, current - take));
+            taken[shard] = take;
+            remaining -= take;
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            if (taken[shard] > 0) {
+                cells.addAndGet(shard * STRIDE, taken[shard]);
+            }
+        }
+        return false;
+    }
+
+    void increment(long units) {
+        cells.addAndGet(ThreadLocalRandom.current().nextInt(shards) * STRIDE, units);
+    }
+
+    /**
+     * Empties every shard and returns what they held.
+     */
+    long drain() {
+        long drained = 0;
+        for (int i = 0; i < shards; i++) {
+            drained += cells.getAndSet(i * STRIDE, 0);
+        }
+        return drained;
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < shards; i++) {
+            sum += cells.get(i * STRIDE);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,9 @@
+package com.fatichdev.ecommerce.product;
+
+import java.util.List;
+
+public record ProductPageResponse(
+        List<ProductResponse> products,
+        Integer nextCursor
+) {
+}
@@ -1,10 +1,84 @@
 package com.fatichdev.ecommerce.product;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Integer> {
 
     List<Product> findAllByIdInOrderById(List<Integer> ids);
+
+    @Query("select p.availableQuantity from Product p where p.id = :id")
+    Optional<Double> findAvailableQuantityById(@Param("id") Integer id);
+
+    @Query("""
+            select new com.fatichdev.ecommerce.product.ProductResponse(
+                p.id, p.name, p.description, p.availableQuantity, p.price, c.id, c.name, c.description
+            )
+            from Product p join p.category c
+            where p.id > :lastSeenId
+              and (:categoryId is null or c.id = :categoryId)
+              and (:minPrice is null or p.price >= :minPrice)
+              and (:maxPrice is null or p.price <= :maxPrice)
+            order by p.id
+            """)
+    List<ProductResponse> findPage(
+            @Param("lastSeenId") Integer lastSeenId,
+            @Param("categoryId") Integer categoryId,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            Limit limit
+    );
+
+    /**
+     * Decrements every row that has enough stock and returns their ids. The rows are locked in id order
+     * before anything is updated, so concurrent multi-product purchases cannot deadlock whatever join
+     * order the planner picks for the update.
+     */
+    @Query(value = """
+            with locked as materialized (
+                select p.id from product p
+                where p.id = any(cast(:ids as integer[]))
+                order by p.id
+                for update
+            )
+            update product p
+            set available_quantity = p.available_quantity - r.quantity
+            from locked
+            join unnest(cast(:ids as integer[]), cast(:quantities as double precision[])) as r(id, quantity)
+              on r.id = locked.id
+            where p.id = locked.id
+              and p.available_quantity >= r.quantity
+            returning p.id
+            """, nativeQuery = true)
+    List<Integer> decreaseAvailableQuantities(
+            @Param("ids") Integer[] ids,
+            @Param("quantities") Double[] quantities
+    );
+
+    @Modifying
+    @Query(value = """
+            with locked as materialized (
+                select p.id from product p
+                where p.id = any(cast(:ids as integer[]))
+                order by p.id
+                for update
+            )
+            update product p
+            set available_quantity = p.available_quantity + r.quantity
+            from locked
+            join unnest(cast(:ids as integer[]), cast(:quantities as double precision[])) as r(id, quantity)
+              on r.id = locked.id
+            where p.id = locked.id
+            """, nativeQuery = true)
+    int increaseAvailableQuantities(
+            @Param("ids") Integer[] ids,
+            @Param("quantities") Double[] quantities
+    );
 }
@@ -1,14 +1,22 @@
 package com.fatichdev.ecommerce.product;
 
+import com.fatichdev.ecommerce.cache.ProductCache;
 import com.fatichdev.ecommerce.exception.ProductPurchaseException;
+import com.fatichdev.ecommerce.inventory.HotSkuInventory;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.math.BigDecimal;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,56 +25,165 @@ public class ProductService {
 
     private final ProductRepository repository;
     private final ProductMapper mapper;
+    private final HotSkuInventory hotSkuInventory;
+    private final ProductCache productCache;
+
+    @Value("${application.listing.max-page-size:500}")
+    private int maxPageSize;
 
     public Integer createProduct(
             ProductRequest request
     ) {
         var product = mapper.toProduct(request);
-        return repository.save(product).getId();
+        var productId = repository.save(product).getId();
+        // The eviction also brings the new product into the search index
+        productCache.evictProducts(List.of(productId));
+        return productId;
     }
 
     public ProductResponse findById(Integer id) {
-        return repository.findById(id)
-                .map(mapper::toProductResponse)
+        var product = productCache.getDetails(id, () -> repository.findById(id).map(mapper::toProductResponse))
                 .orElseThrow(() -> new EntityNotFoundException("Product not found with ID:: " + id));
+        if (hotSkuInventory.isHot(id)) {
+            return withHotQuantity(product);
+        }
+        var availableQuantity = productCache.getQuantity(id, () -> repository.findAvailableQuantityById(id))
+                .orElse(product.availableQuantity());
+        return withAvailableQuantity(product, availableQuantity);
+    }
+
+    private ProductResponse withHotQuantity(ProductResponse product) {
+        if (!hotSkuInventory.isHot(product.id())) {
+            return product;
+        }
+        return withAvailableQuantity(product, hotSkuInventory.availableQuantity(product.id()));
+    }
+
+    private ProductResponse withAvailableQuantity(ProductResponse product, double availableQuantity) {
+        return new ProductResponse(
+                product.id(),
+                product.name(),
+                product.description(),
+                availableQuantity,
+                product.price(),
+                product.categoryId(),
+                product.categoryName(),
+                product.categoryDescription()
+        );
     }
 
-    public List<ProductResponse> findAll() {
-        return repository.findAll()
+    public ProductPageResponse findPage(
+            Integer lastSeenId,
+            int size,
+            Integer categoryId,
+            BigDecimal minPrice,
+            BigDecimal maxPrice
+    ) {
+        var pageSize = Math.max(1, Math.min(size, maxPageSize));
+        var products = repository.findPage(
+                        lastSeenId == null ? 0 : lastSeenId,
+                        categoryId,
+                        minPrice,
+                        maxPrice,
+                        Limit.of(pageSize)
+                )
                 .stream()
-                .map(mapper::toProductResponse)
-                .collect(Collectors.toList());
+                .map(this::withHotQuantity)
+                .toList();
+        var nextCursor = products.size() < pageSize ? null : products.get(products.size() - 1).id();
+        return new ProductPageResponse(products, nextCursor);
+    }
+
+    public void exportProducts(
+            Integer categoryId,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            Consumer<ProductResponse> consumer
+    ) {
+        Integer cursor = 0;
+        while (cursor != null) {
+            var page = findPage(cursor, maxPageSize, categoryId, minPrice, maxPrice);
+            page.products().forEach(consumer);
+            cursor = page.nextCursor();
+        }
     }
 
     @Transactional(rollbackFor = ProductPurchaseException.class)
     public List<ProductPurchaseResponse> purchaseProducts(
             List<ProductPurchaseRequest> request
     ) {
-        var productIds = request
+        // Merge duplicate lines; the conditional update locks the rows in id order
+        var requestedQuantities = request
+                .stream()
+                .collect(Collectors.toMap(
+                        ProductPurchaseRequest::productId,
+                        ProductPurchaseRequest::quantity,
+                        Double::sum,
+                        TreeMap::new
+                ));
+        var hotQuantities = new TreeMap<Integer, Double>();
+        var coldQuantities = new TreeMap<Integer, Double>();
+        requestedQuantities.forEach((productId, quantity) ->
+                (hotSkuInventory.isHot(productId) ? hotQuantities : coldQuantities).put(productId, quantity));
+
+        // Hot products are taken from the in-memory counters and released again if this transaction rolls back
+        if (!hotQuantities.isEmpty()) {
+            var failedIds = hotSkuInventory.reserve(hotQuantities);
+            if (!failedIds.isEmpty()) {
+                throw new ProductPurchaseException("Insufficient stock quantity for products with IDs:: " + failedIds);
+            }
+        }
+
+        // Single conditional update: only rows with enough stock are decremented
+        if (!coldQuantities.isEmpty()) {
+            var purchasedIds = new HashSet<>(repository.decreaseAvailableQuantities(
+                    coldQuantities.keySet().toArray(Integer[]::new),
+                    coldQuantities.values().toArray(Double[]::new)
+            ));
+            if (purchasedIds.size() != coldQuantities.size()) {
+                throw failedPurchase(coldQuantities.keySet(), purchasedIds);
+            }
+            productCache.evictQuantities(coldQuantities.keySet());
+        }
+
+        return repository.findAllByIdInOrderById(List.copyOf(requestedQuantities.keySet()))
                 .stream()
-                .map(ProductPurchaseRequest::productId)
+                .map(product -> mapper.toproductPurchaseResponse(product, requestedQuantities.get(product.getId())))
                 .toList();
-        var storedProducts = repository.findAllByIdInOrderById(productIds);
-        if (productIds.size() != storedProducts.size()) {
-            throw new ProductPurchaseException("One or more products does not exist");
+    }
+
+    @Transactional
+    public void restockProducts(Map<Integer, Double> quantities) {
+        var hotQuantities = new TreeMap<Integer, Double>();
+        var coldQuantities = new TreeMap<Integer, Double>();
+        quantities.forEach((productId, quantity) ->
+                (hotSkuInventory.isHot(productId) ? hotQuantities : coldQuantities).put(productId, quantity));
+        if (!hotQuantities.isEmpty()) {
+            hotSkuInventory.restock(hotQuantities);
         }
-        var sortedRequest = request
+        if (!coldQuantities.isEmpty()) {
+            repository.increaseAvailableQuantities(
+                    coldQuantities.keySet().toArray(Integer[]::new),
+                    coldQuantities.values().toArray(Double[]::new)
+            );
+            productCache.evictQuantities(coldQuantities.keySet());
+        }
+    }
+
+    private ProductPurchaseException failedPurchase(Set<Integer> productIds, Set<Integer> purchasedIds) {
+        var failedIds = productIds
                 .stream()
-                .sorted(Comparator.comparing(ProductPurchaseRequest::productId))
+                .filter(id -> !purchasedIds.contains(id))
                 .toList();
-        var purchasedProducts = new ArrayList<ProductPurchaseResponse>();
-        for (int i = 0; i < storedProducts.size(); i++) {
-            var product = storedProducts.get(i);
-            var productRequest = sortedRequest.get(i);
-            if (product.getAvailableQuantity() < productRequest.quantity()) {
-                throw new ProductPurchaseException("Insufficient stock quantity for product with ID:: " + productRequest.productId());
-            }
-            var newAvailableQuantity = product.getAvailableQuantity() - productRequest.quantity();
-            product.setAvailableQuantity(newAvailableQuantity);
-            repository.save(product);
-            purchasedProducts.add(mapper.toproductPurchaseResponse(product, productRequest.quantity()));
+        var existingIds = repository.findAllByIdInOrderById(failedIds)
+                .stream()
+                .map(Product::getId)
+                .collect(Collectors.toSet());
+        var missingIds = failedIds.stream().filter(id -> !existingIds.contains(id)).toList();
+        if (!missingIds.isEmpty()) {
+            return new ProductPurchaseException("One or more products does not exist:: " + missingIds);
         }
-        return purchasedProducts;
+        return new ProductPurchaseException("Insufficient stock quantity for products with IDs:: " + failedIds);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.fatichdev.ecommerce.reservation;
+
+import com.fatichdev.ecommerce.product.ProductPurchaseRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/products/reservations")
+@RequiredArgsConstructor
+public class ReservationController {
+
+    private final ReservationService service;
+
+    @PostMapping
+    public ResponseEntity<ReservationResponse> reserveProducts(
+            @RequestBody List<ProductPurchaseRequest> request
+    ) {
+        return ResponseEntity.ok(service.reserveProducts(request));
+    }
+
+    /**
+     * 200 once every line is confirmed, also when it already was; 410 Gone if the reservation expired first,
+     * 409 Conflict if it was released.
+     */
+    @PostMapping("/{reference}/confirm")
+    public ResponseEntity<Void> confirmReservation(
+            @PathVariable("reference") String reference
+    ) {
+        service.confirmReservation(reference);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * 200 once the stock is back on sale, also when the reservation was already released or expired;
+     * 409 Conflict if it was confirmed.
+     */
+    @PostMapping("/{reference}/release")
+    public ResponseEntity<Void> releaseReservation(
+            @PathVariable("reference") String reference
+    ) {
+        service.releaseReservation(reference);
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.fatichdev.ecommerce.reservation;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "application.reservation")
+public record ReservationProperties(
+        @DefaultValue("15m")
+        Duration ttl,
+        @DefaultValue("10000")
+        int sweepBatchSize
+) {
+}
@@ -0,0 +1,13 @@
+package com.fatichdev.ecommerce.reservation;
+
+import com.fatichdev.ecommerce.product.ProductPurchaseResponse;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record ReservationResponse(
+        String reference,
+        LocalDateTime expiresAt,
+        List<ProductPurchaseResponse> products
+) {
+}
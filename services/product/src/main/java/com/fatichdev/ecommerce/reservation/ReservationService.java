@@ -0,0 +1,121 @@
+package com.fatichdev.ecommerce.reservation;
+
+import com.fatichdev.ecommerce.exception.ReservationConflictException;
+import com.fatichdev.ecommerce.exception.ReservationExpiredException;
+import com.fatichdev.ecommerce.product.ProductPurchaseRequest;
+import com.fatichdev.ecommerce.product.ProductService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationService {
+
+    private final StockReservationRepository repository;
+    private final ProductService productService;
+    private final ReservationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    @Transactional
+    public ReservationResponse reserveProducts(List<ProductPurchaseRequest> request) {
+        var purchasedProducts = productService.purchaseProducts(request);
+        var reference = UUID.randomUUID().toString();
+        var expiresAt = LocalDateTime.now().plus(properties.ttl());
+        repository.saveAll(purchasedProducts
+                .stream()
+                .map(product -> StockReservation.builder()
+                        .reference(reference)
+                        .productId(product.productId())
+                        .quantity(product.quantity())
+                        .status(ReservationStatus.RESERVED)
+                        .expiresAt(expiresAt)
+                        .build())
+                .toList());
+        return new ReservationResponse(reference, expiresAt, purchasedProducts);
+    }
+
+    /**
+     * Confirms every line of the reservation or none. Confirming a confirmed reservation is a no-op; an expired
+     * one fails with {@link ReservationExpiredException} and a released one with {@link ReservationConflictException}.
+     */
+    @Transactional
+    public void confirmReservation(String reference) {
+        var lines = repository.countByReference(reference);
+        if (lines == 0) {
+            throw new EntityNotFoundException("No reservation found with reference:: " + reference);
+        }
+        var confirmed = repository.confirm(reference, LocalDateTime.now());
+        if (confirmed == lines) {
+            return;
+        }
+        // Some lines are no longer RESERVED: throwing rolls back whatever this call did confirm
+        var statuses = repository.findStatusesByReference(reference);
+        if (confirmed == 0 && statuses.equals(List.of(ReservationStatus.CONFIRMED))) {
+            return;
+        }
+        if (statuses.contains(ReservationStatus.RELEASED)) {
+            throw new ReservationConflictException("Reservation was released and cannot be confirmed:: " + reference);
+        }
+        throw new ReservationExpiredException("Reservation expired before it was confirmed:: " + reference);
+    }
+
+    /**
+     * Puts the reserved stock back on sale. Releasing a reservation that was already released or has expired
+     * is a no-op; a confirmed one fails with {@link ReservationConflictException}.
+     */
+    @Transactional
+    public void releaseReservation(String reference) {
+        var released = repository.release(reference);
+        if (released.isEmpty()) {
+            var statuses = repository.findStatusesByReference(reference);
+            if (statuses.isEmpty()) {
+                throw new EntityNotFoundException("No reservation found with reference:: " + reference);
+            }
+            if (statuses.contains(ReservationStatus.CONFIRMED)) {
+                throw new ReservationConflictException("Reservation was confirmed and cannot be released:: " + reference);
+            }
+            return;
+        }
+        restock(released);
+    }
+
+    @Scheduled(fixedDelayString = "${application.reservation.sweep-interval-ms:5000}")
+    public void expireReservations() {
+        int expired;
+        int total = 0;
+        do {
+            expired = transactionTemplate.execute(status -> {
+                var batch = repository.expire(LocalDateTime.now(), properties.sweepBatchSize());
+                restock(batch);
+                return batch.size();
+            });
+            total += expired;
+        } while (expired == properties.sweepBatchSize());
+        if (total > 0) {
+            log.info("Released {} expired reservation lines", total);
+        }
+    }
+
+    private void restock(List<ReservedQuantity> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        productService.restockProducts(quantities
+                .stream()
+                .collect(Collectors.groupingBy(
+                        ReservedQuantity::getProductId,
+                        Collectors.summingDouble(ReservedQuantity::getQuantity)
+                )));
+    }
+}
@@ -0,0 +1,8 @@
+package com.fatichdev.ecommerce.reservation;
+
+public enum ReservationStatus {
+    RESERVED,
+    CONFIRMED,
+    RELEASED,
+    EXPIRED
+}
@@ -0,0 +1,8 @@
+package com.fatichdev.ecommerce.reservation;
+
+public interface ReservedQuantity {
+
+    Integer getProductId();
+
+    Double getQuantity();
+}
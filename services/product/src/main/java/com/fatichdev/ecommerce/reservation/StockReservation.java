@@ -0,0 +1,34 @@
+package com.fatichdev.ecommerce.reservation;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+import static jakarta.persistence.EnumType.STRING;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@Entity
+public class StockReservation {
+
+    @Id
+    @GeneratedValue
+    private Integer id;
+    private String reference;
+    private Integer productId;
+    private double quantity;
+    @Enumerated(STRING)
+    private ReservationStatus status;
+    private LocalDateTime expiresAt;
+}
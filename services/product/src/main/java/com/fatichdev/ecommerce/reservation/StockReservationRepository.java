@@ -0,0 +1,51 @@
+package com.fatichdev.ecommerce.reservation;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Integer> {
+
+    long countByReference(String reference);
+
+    @Query("select distinct r.status from StockReservation r where r.reference = :reference")
+    List<ReservationStatus> findStatusesByReference(@Param("reference") String reference);
+
+    @Modifying
+    @Query(value = """
+            update stock_reservation
+            set status = 'CONFIRMED'
+            where reference = :reference
+              and status = 'RESERVED'
+              and expires_at > :now
+            """, nativeQuery = true)
+    int confirm(@Param("reference") String reference, @Param("now") LocalDateTime now);
+
+    @Query(value = """
+            update stock_reservation
+            set status = 'RELEASED'
+            where reference = :reference
+              and status = 'RESERVED'
+            returning product_id as "productId", quantity as "quantity"
+            """, nativeQuery = true)
+    List<ReservedQuantity> release(@Param("reference") String reference);
+
+    @Query(value = """
+            update stock_reservation
+            set status = 'EXPIRED'
+            where id in (
+                select id from stock_reservation
+                where status = 'RESERVED'
+                  and expires_at <= :now
+                order by expires_at
+                limit :limit
+                for update skip locked
+            )
+            returning product_id as "productId", quantity as "quantity"
+            """, nativeQuery = true)
+    List<ReservedQuantity> expire(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -0,0 +1,29 @@
+package com.fatichdev.ecommerce.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+
+@RestController
+@RequestMapping("/api/v1/products/search")
+@RequiredArgsConstructor
+public class ProductSearchController {
+
+    private final ProductSearchService service;
+
+    @GetMapping
+    public ResponseEntity<ProductSearchResponse> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "categoryId", required = false) Integer categoryId,
+            @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+            @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+            @RequestParam(value = "limit", defaultValue = "20") int limit
+    ) {
+        return ResponseEntity.ok(service.search(query, categoryId, minPrice, maxPrice, limit));
+    }
+}
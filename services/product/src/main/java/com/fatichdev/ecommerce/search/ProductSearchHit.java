@@ -0,0 +1,14 @@
+package com.fatichdev.ecommerce.search;
+
+import java.math.BigDecimal;
+
+public record ProductSearchHit(
+        Integer id,
+        String name,
+        String description,
+        BigDecimal price,
+        Integer categoryId,
+        String categoryName,
+        double score
+) {
+}
@@ -0,0 +1,202 @@
+package com.fatichdev.ecommerce.search;
+
+import com.fatichdev.ecommerce.product.ProductResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over product name, description and category name.
+ * Terms are kept sorted so prefix lookups are a range scan; a single writer lock keeps updates consistent.
+ * The index reports itself ready once the initial build has loaded the whole catalogue.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final double EXACT_MATCH = 1.0;
+    private static final double PREFIX_MATCH = 0.6;
+    private static final double FUZZY_MATCH = 0.3;
+
+    private final SearchProperties properties;
+    private final Map<Integer, ProductResponse> documents = new ConcurrentHashMap<>();
+    // term -> product id -> summed field weight
+    private final NavigableMap<String, Map<Integer, Integer>> postings = new ConcurrentSkipListMap<>();
+    private volatile boolean ready;
+
+    public synchronized void index(ProductResponse product) {
+        remove(product.id());
+        documents.put(product.id(), product);
+        fieldTerms(product).forEach((term, weight) ->
+                postings.computeIfAbsent(term, key -> new ConcurrentHashMap<>()).put(product.id(), weight));
+    }
+
+    public synchronized void remove(Integer productId) {
+        var previous = documents.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        fieldTerms(previous).keySet().forEach(term -> postings.computeIfPresent(term, (key, products) -> {
+            products.remove(productId);
+            return products.isEmpty() ? null : products;
+        }));
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void markReady() {
+        ready = true;
+    }
+
+    public ProductSearchResponse search(
+            String query,
+            Integer categoryId,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            int limit
+    ) {
+        var scores = new HashMap<Integer, Double>();
+        for (String term : tokenize(query)) {
+            matchTerm(term).forEach((productId, score) -> scores.merge(productId, score, Double::sum));
+        }
+
+        var topHits = new PriorityQueue<Map.Entry<Integer, Double>>(Map.Entry.comparingByValue());
+        var categories = new HashMap<String, Long>();
+        var priceRanges = new LinkedHashMap<String, Long>();
+        var k = Math.max(1, Math.min(limit, properties.maxResults()));
+        long total = 0;
+        for (var entry : scores.entrySet()) {
+            var product = documents.get(entry.getKey());
+            if (product == null || !matchesFilters(product, categoryId, minPrice, maxPrice)) {
+                continue;
+            }
+            total++;
+            if (product.categoryName() != null) {
+                categories.merge(product.categoryName(), 1L, Long::sum);
+            }
+            if (product.price() != null) {
+                priceRanges.merge(priceRange(product.price()), 1L, Long::sum);
+            }
+            topHits.offer(entry);
+            if (topHits.size() > k) {
+                topHits.poll();
+            }
+        }
+
+        var hits = new ArrayList<ProductSearchHit>(topHits.size());
+        topHits.forEach(entry -> hits.add(toHit(documents.get(entry.getKey()), entry.getValue())));
+        hits.sort(Comparator.comparingDouble(ProductSearchHit::score).reversed().thenComparing(ProductSearchHit::id));
+        return new ProductSearchResponse(total, hits, categories, priceRanges);
+    }
+
+    private Map<Integer, Double> matchTerm(String term) {
+        var matches = new HashMap<Integer, Double>();
+        collect(matches, postings.get(term), EXACT_MATCH);
+        postings.subMap(term, false, term + Character.MAX_VALUE, false)
+                .values()
+                .forEach(products -> collect(matches, products, PREFIX_MATCH));
+        if (matches.isEmpty() && term.length() >= properties.fuzzyMinTermLength()) {
+            // Only terms sharing the first letter are considered, which keeps the typo scan bounded
+            var first = term.substring(0, 1);
+            postings.subMap(first, true, first + Character.MAX_VALUE, false).forEach((candidate, products) -> {
+                if (Math.abs(candidate.length() - term.length()) <= 1 && withinOneEdit(term, candidate)) {
+                    collect(matches, products, FUZZY_MATCH);
+                }
+            });
+        }
+        return matches;
+    }
+
+    private static void collect(Map<Integer, Double> matches, Map<Integer, Integer> products, double matchScore) {
+        if (products != null) {
+            products.forEach((productId, weight) -> matches.merge(productId, matchScore * weight, Math::max));
+        }
+    }
+
+    private static boolean matchesFilters(ProductResponse product, Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        return (categoryId == null || categoryId.equals(product.categoryId()))
+                && (minPrice == null || (product.price() != null && product.price().compareTo(minPrice) >= 0))
+                && (maxPrice == null || (product.price() != null && product.price().compareTo(maxPrice) <= 0));
+    }
+
+    private String priceRange(BigDecimal price) {
+        BigDecimal lower = BigDecimal.ZERO;
+        for (BigDecimal upper : properties.priceBuckets()) {
+            if (price.compareTo(upper) < 0) {
+                return lower.toPlainString() + "-" + upper.toPlainString();
+            }
+            lower = upper;
+        }
+        return lower.toPlainString() + "+";
+    }
+
+    private static ProductSearchHit toHit(ProductResponse product, double score) {
+        return new ProductSearchHit(
+                product.id(),
+                product.name(),
+                product.description(),
+                product.price(),
+                product.categoryId(),
+                product.categoryName(),
+                score
+        );
+    }
+
+    private static Map<String, Integer> fieldTerms(ProductResponse product) {
+        var terms = new HashMap<String, Integer>();
+        tokenize(product.name()).forEach(term -> terms.merge(term, NAME_WEIGHT, Integer::sum));
+        tokenize(product.categoryName()).forEach(term -> terms.merge(term, CATEGORY_WEIGHT, Integer::sum));
+        tokenize(product.description()).forEach(term -> terms.merge(term, DESCRIPTION_WEIGHT, Integer::sum));
+        return terms;
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    private static boolean withinOneEdit(String a, String b) {
+        if (a.length() > b.length()) {
+            return withinOneEdit(b, a);
+        }
+        int i = 0;
+        while (i < a.length() && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (a.length() == b.length()) {
+            // One substitution or one adjacent transposition
+            return a.substring(i + Math.min(1, a.length() - i)).equals(b.substring(i + Math.min(1, b.length() - i)))
+                    || (i + 1 < a.length() && a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+                    && a.substring(i + 2).equals(b.substring(i + 2)));
+        }
+        return a.substring(i).equals(b.substring(i + 1));
+    }
+}
@@ -0,0 +1,12 @@
+package com.fatichdev.ecommerce.search;
+
+import java.util.List;
+import java.util.Map;
+
+public record ProductSearchResponse(
+        long total,
+        List<ProductSearchHit> hits,
+        Map<String, Long> categories,
+        Map<String, Long> priceRanges
+) {
+}
@@ -0,0 +1,92 @@
+package com.fatichdev.ecommerce.search;
+
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.product.Product;
+import com.fatichdev.ecommerce.product.ProductMapper;
+import com.fatichdev.ecommerce.product.ProductRepository;
+import com.fatichdev.ecommerce.product.ProductService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the local search index in step with the product table. The index is built once at startup and then
+ * refreshed from the product cache's evictions, which carry detail changes made on this replica or, with the
+ * distributed cache tier, on any other.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchService {
+
+    private final ProductService productService;
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final ProductSearchIndex index;
+    private final ProductCache productCache;
+    // Changes announced while the initial build is still running, guarded by itself
+    private final Set<Integer> pendingRefresh = new HashSet<>();
+
+    @PostConstruct
+    void subscribe() {
+        productCache.onEviction((productIds, details) -> {
+            if (details) {
+                refresh(productIds);
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        var start = System.nanoTime();
+        productService.exportProducts(null, null, null, index::index);
+        List<Integer> pending;
+        synchronized (pendingRefresh) {
+            pending = List.copyOf(pendingRefresh);
+            pendingRefresh.clear();
+            index.markReady();
+        }
+        reindex(pending);
+        log.info("Indexed {} products for search in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void refresh(Collection<Integer> productIds) {
+        synchronized (pendingRefresh) {
+            if (!index.isReady()) {
+                pendingRefresh.addAll(productIds);
+                return;
+            }
+        }
+        reindex(productIds);
+    }
+
+    public ProductSearchResponse search(
+            String query,
+            Integer categoryId,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            int limit
+    ) {
+        return index.search(query, categoryId, minPrice, maxPrice, limit);
+    }
+
+    private void reindex(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        var products = productRepository.findAllByIdInOrderById(List.copyOf(productIds));
+        products.forEach(product -> index.index(productMapper.toProductResponse(product)));
+        var found = products.stream().map(Product::getId).collect(Collectors.toSet());
+        productIds.stream().filter(productId -> !found.contains(productId)).forEach(index::remove);
+    }
+}
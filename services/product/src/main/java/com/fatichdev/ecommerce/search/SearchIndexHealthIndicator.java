@@ -0,0 +1,22 @@
+package com.fatichdev.ecommerce.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the replica out of service until its search index holds the whole catalogue.
+ */
+@Component("searchIndex")
+@RequiredArgsConstructor
+public class SearchIndexHealthIndicator implements HealthIndicator {
+
+    private final ProductSearchIndex index;
+
+    @Override
+    public Health health() {
+        var health = index.isReady() ? Health.up() : Health.outOfService();
+        return health.withDetail("products", index.size()).build();
+    }
+}
@@ -0,0 +1,18 @@
+package com.fatichdev.ecommerce.search;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "application.search")
+public record SearchProperties(
+        @DefaultValue("100")
+        int maxResults,
+        @DefaultValue("4")
+        int fuzzyMinTermLength,
+        @DefaultValue({"50", "100", "500", "1000"})
+        List<BigDecimal> priceBuckets
+) {
+}
@@ -0,0 +1,6 @@
+create table if not exists stock_journal
+(
+    id bigserial not null primary key,
+    product_id integer not null,
+    quantity double precision not null
+);
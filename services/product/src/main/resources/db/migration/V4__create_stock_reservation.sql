@@ -0,0 +1,14 @@
+create table if not exists stock_reservation
+(
+    id integer not null primary key,
+    reference varchar(36) not null,
+    product_id integer not null,
+    quantity double precision not null,
+    status varchar(20) not null,
+    expires_at timestamp(6) not null
+);
+
+create index if not exists idx_stock_reservation_reference on stock_reservation (reference);
+create index if not exists idx_stock_reservation_expires_at on stock_reservation (expires_at) where status = 'RESERVED';
+
+create sequence if not exists stock_reservation_seq increment by 50;
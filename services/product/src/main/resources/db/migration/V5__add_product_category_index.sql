@@ -0,0 +1 @@
+create index if not exists idx_product_category_id on product (category_id, id);
@@ -0,0 +1,6 @@
+create table if not exists product_import_checkpoint
+(
+    import_id varchar(255) not null primary key,
+    rows_processed bigint not null,
+    updated_at timestamp(6) not null
+);
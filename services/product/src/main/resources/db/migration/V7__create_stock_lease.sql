@@ -0,0 +1,26 @@
+-- Apply what the single-instance journal still holds, then make every journal entry belong to a lease owner
+with folded as (
+    delete from stock_journal
+    returning product_id, quantity
+), totals as (
+    select product_id, sum(quantity) as quantity from folded group by product_id
+)
+update product p
+set available_quantity = p.available_quantity - t.quantity
+from totals t
+where p.id = t.product_id;
+
+alter table stock_journal add column if not exists owner varchar(64) not null default '';
+alter table stock_journal alter column owner drop default;
+create index if not exists idx_stock_journal_owner on stock_journal (owner, id);
+
+create table if not exists stock_lease
+(
+    product_id integer not null,
+    owner varchar(64) not null,
+    quantity double precision not null,
+    expires_at timestamp(6) not null,
+    primary key (product_id, owner)
+);
+
+create index if not exists idx_stock_lease_expires_at on stock_lease (expires_at);
@@ -0,0 +1,105 @@
+package com.fatichdev.ecommerce.cache;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest(properties = "spring.cloud.config.enabled=false")
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PostgresProductCacheTierTest {
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private PostgresProductCacheTier tier;
+
+    @AfterEach
+    void tearDown() {
+        if (tier != null) {
+            tier.stop();
+        }
+    }
+
+    @Test
+    void listensOnItsOwnConnectionAndDispatchesEvictions() throws Exception {
+        var received = new LinkedBlockingQueue<Eviction>();
+        tier = new PostgresProductCacheTier(listenerProperties(), jdbcTemplate);
+        tier.onEviction((productIds, details) -> received.add(new Eviction(productIds, details)));
+
+        tier.listen();
+        awaitListening();
+        tier.publishEviction(List.of(4, 2), true);
+        tier.publishEviction(List.of(7), false);
+
+        assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo(new Eviction(List.of(4, 2), true));
+        assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo(new Eviction(List.of(7), false));
+    }
+
+    @Test
+    void splitsLargeEvictionsAcrossNotifications() throws Exception {
+        var received = new LinkedBlockingQueue<Eviction>();
+        tier = new PostgresProductCacheTier(listenerProperties(), jdbcTemplate);
+        tier.onEviction((productIds, details) -> received.add(new Eviction(productIds, details)));
+        var productIds = IntStream.range(1_000_000, 1_005_000).boxed().toList();
+
+        tier.listen();
+        awaitListening();
+        tier.publishEviction(productIds, true);
+
+        var evicted = new ArrayList<Integer>();
+        var notifications = 0;
+        while (evicted.size() < productIds.size()) {
+            var eviction = received.poll(5, TimeUnit.SECONDS);
+            assertThat(eviction).isNotNull();
+            evicted.addAll(eviction.productIds());
+            notifications++;
+        }
+        assertThat(evicted).isEqualTo(productIds);
+        assertThat(notifications).isGreaterThan(1);
+    }
+
+    private DataSourceProperties listenerProperties() throws Exception {
+        var properties = new DataSourceProperties();
+        try (var connection = dataSource.getConnection()) {
+            properties.setUrl(connection.getMetaData().getURL());
+            properties.setUsername(connection.getMetaData().getUserName());
+        }
+        return properties;
+    }
+
+    private void awaitListening() throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            var listening = jdbcTemplate.queryForObject(
+                    "select count(*) from pg_stat_activity where query = 'LISTEN product_cache'", Integer.class);
+            if (listening != null && listening > 0) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Listener never subscribed");
+    }
+
+    private record Eviction(Collection<Integer> productIds, boolean details) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.fatichdev.ecommerce.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCacheTest {
+
+    private static final int PRODUCT = 1;
+
+    private ProductCache cache;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new ProductCacheProperties(Duration.ofMinutes(10), 100, Duration.ofMinutes(10), 100, false);
+        cache = new ProductCache(new CacheConfig().cacheManager(properties), new LocalProductCacheTier());
+        cache.init();
+    }
+
+    @Test
+    void loadsOnceAndServesFromCache() {
+        var loads = new AtomicInteger();
+
+        cache.getQuantity(PRODUCT, () -> Optional.of((double) loads.incrementAndGet()));
+        var cached = cache.getQuantity(PRODUCT, () -> Optional.of((double) loads.incrementAndGet()));
+
+        assertThat(cached).contains(1.0);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void missingProductIsNotCached() {
+        var loads = new AtomicInteger();
+
+        var first = cache.getQuantity(PRODUCT, () -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        var second = cache.getQuantity(PRODUCT, () -> Optional.of((double) loads.incrementAndGet()));
+
+        assertThat(first).isEmpty();
+        assertThat(second).contains(2.0);
+    }
+
+    @Test
+    void evictionDuringLoadIsNotOverwrittenByTheStaleValue() throws Exception {
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        try (var executor = Executors.newFixedThreadPool(2)) {
+            var staleLoad = executor.submit(() -> cache.getQuantity(PRODUCT, () -> {
+                loading.countDown();
+                await(release);
+                return Optional.of(10.0);
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // The purchase commits and evicts while the read above still holds the old quantity
+            var eviction = executor.submit(() -> cache.evictQuantities(List.of(PRODUCT)));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(staleLoad.get(5, TimeUnit.SECONDS)).contains(10.0);
+            eviction.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(cache.getQuantity(PRODUCT, () -> Optional.of(7.0))).contains(7.0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.fatichdev.ecommerce.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.category.Category;
+import com.fatichdev.ecommerce.product.Product;
+import com.fatichdev.ecommerce.product.ProductRepository;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Imports a catalogue of 1,050 products in batches of 100 into a real Postgres.
+ */
+@DataJpaTest(properties = {"spring.cloud.config.enabled=false", "spring.jpa.show-sql=false"})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductImportServiceTest {
+
+    private static final int CATEGORY_ID = 96_001;
+    private static final int ROWS = 1_050;
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("delete from product where category_id = ?", CATEGORY_ID);
+        jdbcTemplate.update("delete from product_import_checkpoint");
+        jdbcTemplate.update("insert into category (id, name, description) values (96001, 'Import', 'Import') on conflict do nothing");
+    }
+
+    @Test
+    void anInterruptedCopyResumesFromItsCheckpoint() throws IOException {
+        resumesFromItsCheckpoint(ImportMode.COPY);
+    }
+
+    @Test
+    void anInterruptedBatchInsertResumesFromItsCheckpoint() throws IOException {
+        resumesFromItsCheckpoint(ImportMode.BATCH);
+    }
+
+    @Test
+    void importedIdsNeverCollideWithEntityInserts() throws IOException {
+        var service = service(ImportMode.COPY);
+        var entityIds = new ArrayList<Integer>();
+
+        // Imports and Hibernate's pooled id blocks take turns on product_seq
+        for (int round = 0; round < 3; round++) {
+            service.importProducts(csv(ROWS, Integer.MAX_VALUE), ImportFormat.CSV, "ids-" + round);
+            for (int i = 0; i < 60; i++) {
+                entityIds.add(productRepository.save(Product.builder()
+                        .name("Entity " + round + "-" + i)
+                        .description("entity")
+                        .availableQuantity(1)
+                        .price(BigDecimal.ONE)
+                        .category(Category.builder().id(CATEGORY_ID).build())
+                        .build()).getId());
+            }
+        }
+
+        var ids = jdbcTemplate.queryForList("select id from product where category_id = ?", Integer.class, CATEGORY_ID);
+        assertThat(ids).hasSize(3 * ROWS + entityIds.size()).doesNotHaveDuplicates().containsAll(entityIds);
+    }
+
+    private void resumesFromItsCheckpoint(ImportMode mode) throws IOException {
+        var service = service(mode);
+
+        // The upload breaks off in the middle of the sixth batch
+        assertThatThrownBy(() -> service.importProducts(csv(ROWS, 550), ImportFormat.CSV, "resume"))
+                .isInstanceOf(IOException.class);
+        assertThat(checkpoint()).isEqualTo(500);
+        assertThat(importedNames()).hasSize(500);
+
+        var resumed = service.importProducts(csv(ROWS, Integer.MAX_VALUE), ImportFormat.CSV, "resume");
+
+        assertThat(resumed.rowsSkipped()).isEqualTo(500);
+        assertThat(resumed.rowsImported()).isEqualTo(ROWS - 500);
+        assertThat(checkpoint()).isEqualTo(ROWS);
+        assertThat(importedNames()).containsExactlyInAnyOrderElementsOf(
+                IntStream.rangeClosed(1, ROWS).mapToObj(row -> "Product " + row).toList());
+    }
+
+    private ProductImportService service(ImportMode mode) {
+        return new ProductImportService(
+                new ProductImportRepository(jdbcTemplate, dataSource),
+                new ImportProperties(BATCH_SIZE, mode, 50, 100),
+                transactionTemplate,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(),
+                mock(ProductCache.class)
+        );
+    }
+
+    /**
+     * A CSV of {@code rows} products that fails with an {@link IOException} once {@code failAfter} rows were read.
+     */
+    private static InputStream csv(int rows, int failAfter) {
+        var header = "name,description,available_quantity,price,category_id\n";
+        var lines = IntStream.rangeClosed(1, Math.min(rows, failAfter))
+                .mapToObj(row -> "\"Product %d\",\"Row %d, imported\",10,9.99,%d".formatted(row, row, CATEGORY_ID))
+                .collect(Collectors.joining("\n", header, "\n"));
+        var content = new ByteArrayInputStream(lines.getBytes(UTF_8));
+        if (failAfter >= rows) {
+            return content;
+        }
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                var next = content.read();
+                if (next == -1) {
+                    throw new IOException("Connection reset");
+                }
+                return next;
+            }
+        };
+    }
+
+    private long checkpoint() {
+        return jdbcTemplate.queryForObject(
+                "select rows_processed from product_import_checkpoint where import_id = 'resume'", Long.class);
+    }
+
+    private List<String> importedNames() {
+        return jdbcTemplate.queryForList("select name from product where category_id = ?", String.class, CATEGORY_ID);
+    }
+}
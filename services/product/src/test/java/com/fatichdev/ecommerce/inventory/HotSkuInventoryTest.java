@@ -0,0 +1,193 @@
+package com.fatichdev.ecommerce.inventory;
+
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs two replicas' worth of hot SKU inventory against one Postgres.
+ */
+@JdbcTest(properties = "spring.cloud.config.enabled=false")
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HotSkuInventoryTest {
+
+    private static final int PRODUCT_ID = 91_001;
+    private static final int STOCK = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<HotSkuInventory> replicas = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("delete from stock_lease");
+        jdbcTemplate.update("delete from stock_journal");
+        jdbcTemplate.update("delete from product where id = ?", PRODUCT_ID);
+        jdbcTemplate.update("insert into category (id, name, description) values (91001, 'Hot', 'Hot') on conflict do nothing");
+        jdbcTemplate.update(
+                "insert into product (id, name, description, available_quantity, price, category_id) values (?, 'p', 'p', ?, 1, 91001)",
+                PRODUCT_ID, STOCK
+        );
+    }
+
+    @AfterEach
+    void stopReplicas() throws InterruptedException {
+        for (var replica : replicas) {
+            replica.shutdown();
+        }
+    }
+
+    @Test
+    void replicasNeverSellTheSameStock() throws Exception {
+        var first = replica("replica-a");
+        var second = replica("replica-b");
+        var sold = new AtomicInteger();
+
+        try (var executor = Executors.newFixedThreadPool(16)) {
+            var futures = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < 16; thread++) {
+                var inventory = thread % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        if (buy(inventory, 1)) {
+                            sold.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        }
+        // Whatever is left in either lease or on the row is still sellable
+        while (buy(first, 1) || buy(second, 1)) {
+            sold.incrementAndGet();
+        }
+
+        assertThat(sold.get()).isEqualTo(STOCK);
+        first.flush();
+        second.flush();
+        assertThat(first.availableQuantity(PRODUCT_ID)).isZero();
+    }
+
+    @Test
+    void leaseOfACrashedReplicaIsHandedBack() {
+        var crashed = new HotSkuInventory(properties("crashed"), new StockJournal(jdbcTemplate), transactionManager);
+        crashed.reconcile();
+        awaitLeased("crashed");
+        for (int i = 0; i < 10; i++) {
+            assertThat(buy(crashed, 1)).isTrue();
+        }
+        // The replica dies with unfolded journal entries; nobody renews its lease
+        jdbcTemplate.update("update stock_lease set expires_at = now() - interval '1 second' where owner = 'crashed'");
+
+        var survivor = replica("survivor");
+        survivor.flush();
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from stock_lease where owner = 'crashed'", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from stock_journal where owner = 'crashed'", Integer.class)).isZero();
+        assertThat(survivor.availableQuantity(PRODUCT_ID)).isEqualTo(STOCK - 10d);
+    }
+
+    @Test
+    void restartedReplicaAdoptsItsOwnLease() throws InterruptedException {
+        var replica = new HotSkuInventory(properties("stable"), new StockJournal(jdbcTemplate), transactionManager);
+        replica.reconcile();
+        awaitLeased("stable");
+        assertThat(buy(replica, 3)).isTrue();
+
+        // Restart under the same id before the lease expires: the journal is folded into the adopted lease
+        var restarted = replica("stable");
+
+        assertThat(restarted.availableQuantity(PRODUCT_ID)).isEqualTo(STOCK - 3d);
+        assertThat(jdbcTemplate.queryForObject(
+                "select quantity from stock_lease where owner = 'stable'", Double.class)).isGreaterThanOrEqualTo(50d - 3d);
+    }
+
+    @Test
+    void replicaWhoseLeaseWasReclaimedStopsSellingIt() throws InterruptedException {
+        var ttl = Duration.ofSeconds(1);
+        var late = replica("late", ttl);
+        awaitLeased("late");
+        for (int i = 0; i < 10; i++) {
+            assertThat(buy(late, 1)).isTrue();
+        }
+
+        // The late replica misses its renewal; another one reclaims the lease and sells everything on the row
+        Thread.sleep(ttl.multipliedBy(2));
+        var other = replica("other");
+        var sold = 10;
+        while (buy(other, 1)) {
+            sold++;
+        }
+        assertThat(sold).isEqualTo(STOCK);
+
+        // The late replica still counts its leased units locally, but none of them is left to sell
+        assertThat(buy(late, 1)).isFalse();
+        // A purchase that was in flight when the lease was reclaimed is folded straight onto the empty row
+        new StockJournal(jdbcTemplate).append("late", Map.of(PRODUCT_ID, 1d));
+        late.flush();
+        other.flush();
+
+        assertThat(jdbcTemplate.queryForObject("select available_quantity from product where id = ?", Double.class, PRODUCT_ID)).isZero();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from stock_journal", Integer.class)).isZero();
+        assertThat(other.availableQuantity(PRODUCT_ID)).isZero();
+    }
+
+    private HotSkuInventory replica(String instanceId) {
+        return replica(instanceId, Duration.ofSeconds(30));
+    }
+
+    private HotSkuInventory replica(String instanceId, Duration leaseTtl) {
+        var replica = new HotSkuInventory(properties(instanceId, leaseTtl), new StockJournal(jdbcTemplate), transactionManager);
+        replica.reconcile();
+        replicas.add(replica);
+        return replica;
+    }
+
+    private boolean buy(HotSkuInventory inventory, double quantity) {
+        return Boolean.TRUE.equals(new TransactionTemplate(transactionManager).execute(status ->
+                inventory.reserve(Map.of(PRODUCT_ID, quantity)).isEmpty()));
+    }
+
+    private void awaitLeased(String owner) {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jdbcTemplate.queryForObject("select count(*) from stock_lease where owner = ?", Integer.class, owner) == 0) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private static HotSkuProperties properties(String instanceId) {
+        return properties(instanceId, Duration.ofSeconds(30));
+    }
+
+    private static HotSkuProperties properties(String instanceId, Duration leaseTtl) {
+        return new HotSkuProperties(true, Set.of(PRODUCT_ID), 4, 5000, instanceId, 50, leaseTtl, Duration.ofSeconds(2));
+    }
+}
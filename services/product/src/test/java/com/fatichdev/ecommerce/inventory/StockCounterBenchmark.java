@@ -0,0 +1,72 @@
+package com.fatichdev.ecommerce.inventory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purchases per second of one hot product when every buyer CASes a single stock word (what a single row lock
+ * serializes to) versus {@link StripedStockCounter}. The difference only shows on a multi-core machine. Run with
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.fatichdev.ecommerce.inventory.StockCounterBenchmark"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class StockCounterBenchmark {
+
+    // Large enough that the benchmark never runs out of stock
+    private static final long STOCK = Long.MAX_VALUE / 4;
+
+    @Param({"16", "64"})
+    int shards;
+
+    private AtomicLong single;
+    private StripedStockCounter striped;
+
+    @Setup
+    public void setUp() {
+        single = new AtomicLong(STOCK);
+        striped = new StripedStockCounter(shards, STOCK);
+    }
+
+    @Benchmark
+    public boolean singleCounter() {
+        long current;
+        do {
+            current = single.get();
+            if (current < 1) {
+                return false;
+            }
+        } while (!single.compareAndSet(current, current - 1));
+        return true;
+    }
+
+    @Benchmark
+    public boolean stripedCounter() {
+        return striped.tryDecrement(1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StockCounterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,209 @@
+package com.fatichdev.ecommerce.product;
+
+import com.fatichdev.ecommerce.exception.ProductPurchaseException;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers the set-based stock decrement from many threads against a real Postgres, and times it against the
+ * load-modify-save path it replaced.
+ */
+@DataJpaTest(properties = {"spring.cloud.config.enabled=false", "spring.jpa.show-sql=false"})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class ProductRepositoryConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final List<Integer> PRODUCT_IDS = IntStream.rangeClosed(90_001, 90_008).boxed().toList();
+
+    @Autowired
+    private ProductRepository repository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("delete from product where id between 90001 and 90999");
+        jdbcTemplate.update("insert into category (id, name, description) values (90001, 'Stress', 'Stress') on conflict do nothing");
+        PRODUCT_IDS.forEach(id -> jdbcTemplate.update(
+                "insert into product (id, name, description, available_quantity, price, category_id) values (?, 'p', 'p', 100, 1, 90001)",
+                id
+        ));
+    }
+
+    @Test
+    void neverSellsMoreThanTheAvailableStock() throws Exception {
+        var productId = PRODUCT_IDS.getFirst();
+        var sold = new AtomicInteger();
+
+        run(THREADS, 20, () -> {
+            var purchased = transactionTemplate.execute(status ->
+                    repository.decreaseAvailableQuantities(new Integer[]{productId}, new Double[]{1d}));
+            if (!purchased.isEmpty()) {
+                sold.incrementAndGet();
+            }
+            return null;
+        });
+
+        assertThat(sold.get()).isEqualTo(100);
+        assertThat(repository.findAvailableQuantityById(productId)).contains(0d);
+    }
+
+    @Test
+    void concurrentMultiProductOrdersDoNotDeadlock() throws Exception {
+        var orders = new AtomicInteger();
+
+        // Every order takes one unit of several products, listed in a random order
+        var elapsed = run(THREADS, 25, () -> {
+            var ids = new ArrayList<>(PRODUCT_IDS.subList(0, 2 + ThreadLocalRandom.current().nextInt(PRODUCT_IDS.size() - 1)));
+            Collections.shuffle(ids);
+            var quantities = ids.stream().map(id -> 0.1d).toArray(Double[]::new);
+            transactionTemplate.executeWithoutResult(status -> {
+                repository.decreaseAvailableQuantities(ids.toArray(Integer[]::new), quantities);
+                // Give back half the time, so restocks contend with purchases on the same rows
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    Collections.shuffle(ids);
+                    repository.increaseAvailableQuantities(ids.toArray(Integer[]::new), quantities);
+                }
+            });
+            orders.incrementAndGet();
+            return null;
+        });
+
+        assertThat(orders.get()).isEqualTo(THREADS * 25);
+        log.info("{} multi-product orders in {} ms ({} orders/s)",
+                orders.get(), elapsed, orders.get() * 1000L / Math.max(1, elapsed));
+    }
+
+    @Test
+    void theConditionalUpdateOutsellsLoadModifySave() throws Exception {
+        jdbcTemplate.update("update product set available_quantity = 1000000 where id between 90001 and 90999");
+        var conditionalUpdate = purchasesPerSecond(quantities -> repository.decreaseAvailableQuantities(
+                quantities.keySet().toArray(Integer[]::new), quantities.values().toArray(Double[]::new)));
+        var loadModifySave = purchasesPerSecond(quantities -> {
+            // What purchaseProducts did before the conditional update
+            for (var product : repository.findAllByIdInOrderById(List.copyOf(quantities.keySet()))) {
+                var quantity = quantities.get(product.getId());
+                if (product.getAvailableQuantity() < quantity) {
+                    throw new ProductPurchaseException("Insufficient stock quantity for product with ID:: " + product.getId());
+                }
+                product.setAvailableQuantity(product.getAvailableQuantity() - quantity);
+                repository.save(product);
+            }
+        });
+
+        log.info("{} purchases/s with the conditional update ({} units lost) against {} purchases/s with load-modify-save ({} units lost)",
+                conditionalUpdate.purchasesPerSecond(), conditionalUpdate.lostUnits(),
+                loadModifySave.purchasesPerSecond(), loadModifySave.lostUnits());
+        // Purchases per second are reported, not asserted: they depend on the machine
+        assertThat(conditionalUpdate.lostUnits()).isZero();
+    }
+
+    /**
+     * Runs {@code THREADS} buyers, each buying one unit of one to three random products per purchase, and returns the
+     * purchase rate and how many units the stock failed to account for.
+     */
+    private Throughput purchasesPerSecond(Consumer<TreeMap<Integer, Double>> purchase) throws Exception {
+        var stockBefore = totalStock();
+        var units = new AtomicInteger();
+        var iterations = 50;
+        var elapsed = run(THREADS, iterations, () -> {
+            var quantities = new TreeMap<Integer, Double>();
+            var random = ThreadLocalRandom.current();
+            var products = 1 + random.nextInt(3);
+            while (quantities.size() < products) {
+                quantities.put(PRODUCT_IDS.get(random.nextInt(PRODUCT_IDS.size())), 1d);
+            }
+            transactionTemplate.executeWithoutResult(status -> purchase.accept(quantities));
+            units.addAndGet(quantities.size());
+            return null;
+        });
+        var lostUnits = units.get() - (stockBefore - totalStock());
+        return new Throughput(THREADS * iterations * 1000L / Math.max(1, elapsed), lostUnits);
+    }
+
+    private long totalStock() {
+        return jdbcTemplate.queryForObject(
+                "select sum(available_quantity)::bigint from product where id between 90001 and 90999", Long.class);
+    }
+
+    private record Throughput(long purchasesPerSecond, long lostUnits) {
+    }
+
+    /**
+     * Runs {@code task} {@code iterations} times on each of {@code threads} threads and returns the wall time in ms;
+     * any failure, including a detected deadlock, fails the test.
+     */
+    private static long run(int threads, int iterations, Callable<Void> task) throws Exception {
+        var start = System.nanoTime();
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            var futures = IntStream.range(0, threads)
+                    .mapToObj(thread -> executor.submit(() -> {
+                        for (int i = 0; i < iterations; i++) {
+                            task.call();
+                        }
+                        return null;
+                    }))
+                    .toList();
+            for (var future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * The embedded database hands out a new connection, and so a new server process, per request; pool them as
+     * Hikari does in the service, so the timings measure the statements rather than the connections.
+     */
+    @TestConfiguration
+    static class PooledConnections {
+
+        @Bean
+        static BeanPostProcessor pooledDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof HikariDataSource)) {
+                        var pool = new HikariDataSource();
+                        pool.setDataSource(dataSource);
+                        pool.setMaximumPoolSize(THREADS);
+                        return pool;
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
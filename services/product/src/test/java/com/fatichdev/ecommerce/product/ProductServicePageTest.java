@@ -0,0 +1,121 @@
+package com.fatichdev.ecommerce.product;
+
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.inventory.HotSkuInventory;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Walks the keyset pages of one category, priced 1 to 12 in id order, with pages capped at five products.
+ */
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.show-sql=false",
+        "application.listing.max-page-size=5"
+})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({ProductService.class, ProductMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductServicePageTest {
+
+    private static final int CATEGORY_ID = 94_001;
+    private static final List<Integer> PRODUCT_IDS = IntStream.rangeClosed(94_001, 94_012).boxed().toList();
+
+    @MockBean
+    private HotSkuInventory hotSkuInventory;
+    @MockBean
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductService service;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("delete from product where id between 94001 and 94999");
+        jdbcTemplate.update("insert into category (id, name, description) values (94001, 'Paging', 'Paging') on conflict do nothing");
+        PRODUCT_IDS.forEach(id -> jdbcTemplate.update(
+                "insert into product (id, name, description, available_quantity, price, category_id) values (?, 'p', 'p', 10, ?, 94001)",
+                id, id - 94_000
+        ));
+    }
+
+    @Test
+    void firstPageStartsAtTheLowestId() {
+        var page = service.findPage(null, 5, CATEGORY_ID, null, null);
+
+        assertThat(ids(page)).containsExactlyElementsOf(PRODUCT_IDS.subList(0, 5));
+        assertThat(page.nextCursor()).isEqualTo(94_005);
+    }
+
+    @Test
+    void cursorContinuesAfterTheLastSeenId() {
+        var first = service.findPage(null, 5, CATEGORY_ID, null, null);
+        var second = service.findPage(first.nextCursor(), 5, CATEGORY_ID, null, null);
+
+        assertThat(ids(second)).containsExactlyElementsOf(PRODUCT_IDS.subList(5, 10));
+        assertThat(second.nextCursor()).isEqualTo(94_010);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        var last = service.findPage(94_010, 5, CATEGORY_ID, null, null);
+
+        assertThat(ids(last)).containsExactly(94_011, 94_012);
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    @Test
+    void aFullLastPageIsFollowedByAnEmptyOne() {
+        var last = service.findPage(94_008, 4, CATEGORY_ID, null, null);
+        var after = service.findPage(last.nextCursor(), 4, CATEGORY_ID, null, null);
+
+        assertThat(ids(last)).containsExactly(94_009, 94_010, 94_011, 94_012);
+        assertThat(last.nextCursor()).isEqualTo(94_012);
+        assertThat(after.products()).isEmpty();
+        assertThat(after.nextCursor()).isNull();
+    }
+
+    @Test
+    void pageSizeIsClampedBetweenOneAndTheMaximum() {
+        assertThat(ids(service.findPage(null, 0, CATEGORY_ID, null, null))).containsExactly(94_001);
+        assertThat(ids(service.findPage(null, -3, CATEGORY_ID, null, null))).containsExactly(94_001);
+        var capped = service.findPage(null, 1000, CATEGORY_ID, null, null);
+        assertThat(ids(capped)).containsExactlyElementsOf(PRODUCT_IDS.subList(0, 5));
+        assertThat(capped.nextCursor()).isEqualTo(94_005);
+    }
+
+    @Test
+    void cursorWalksEveryFilteredProductOnce() {
+        var seen = new ArrayList<Integer>();
+        Integer cursor = null;
+        do {
+            var page = service.findPage(cursor, 2, CATEGORY_ID, new BigDecimal("3"), new BigDecimal("8"));
+            seen.addAll(ids(page));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).containsExactly(94_003, 94_004, 94_005, 94_006, 94_007, 94_008);
+    }
+
+    private static List<Integer> ids(ProductPageResponse page) {
+        return page.products().stream().map(ProductResponse::id).toList();
+    }
+}
@@ -0,0 +1,196 @@
+package com.fatichdev.ecommerce.reservation;
+
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.exception.ReservationConflictException;
+import com.fatichdev.ecommerce.exception.ReservationExpiredException;
+import com.fatichdev.ecommerce.inventory.HotSkuInventory;
+import com.fatichdev.ecommerce.product.ProductMapper;
+import com.fatichdev.ecommerce.product.ProductPurchaseRequest;
+import com.fatichdev.ecommerce.product.ProductService;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {"spring.cloud.config.enabled=false", "spring.jpa.show-sql=false"})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({ReservationService.class, ProductService.class, ProductMapper.class, ReservationServiceTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationServiceTest {
+
+    private static final int KEYBOARD = 92_001;
+    private static final int MOUSE = 92_002;
+    private static final int STOCK = 10_000;
+
+    @TestConfiguration
+    @EnableConfigurationProperties(ReservationProperties.class)
+    static class Config {
+    }
+
+    @MockBean
+    private HotSkuInventory hotSkuInventory;
+    @MockBean
+    private ProductCache productCache;
+
+    @Autowired
+    private ReservationService service;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("delete from stock_reservation");
+        jdbcTemplate.update("delete from product where id in (?, ?)", KEYBOARD, MOUSE);
+        jdbcTemplate.update("insert into category (id, name, description) values (92001, 'Race', 'Race') on conflict do nothing");
+        for (var id : List.of(KEYBOARD, MOUSE)) {
+            jdbcTemplate.update(
+                    "insert into product (id, name, description, available_quantity, price, category_id) values (?, 'p', 'p', ?, 1, 92001)",
+                    id, STOCK
+            );
+        }
+    }
+
+    @Test
+    void confirmingTwiceIsANoOp() {
+        var reference = reserve();
+
+        service.confirmReservation(reference);
+        service.confirmReservation(reference);
+
+        assertThat(statuses(reference)).containsExactly("CONFIRMED");
+        assertThat(quantity(KEYBOARD)).isEqualTo(STOCK - 1d);
+    }
+
+    @Test
+    void confirmingAfterExpiryIsGoneAndTheStockIsBack() {
+        var reference = reserve();
+        expireNow(reference);
+        service.expireReservations();
+
+        assertThatThrownBy(() -> service.confirmReservation(reference)).isInstanceOf(ReservationExpiredException.class);
+        assertThat(quantity(KEYBOARD)).isEqualTo(STOCK);
+    }
+
+    @Test
+    void aPartlyExpiredReservationIsNotPartlyConfirmed() {
+        var reference = reserve();
+        // The sweeper got to one line of the reservation before the confirm did
+        jdbcTemplate.update("""
+                update stock_reservation set status = 'EXPIRED'
+                where reference = ? and product_id = ?
+                """, reference, MOUSE);
+
+        assertThatThrownBy(() -> service.confirmReservation(reference)).isInstanceOf(ReservationExpiredException.class);
+        assertThat(jdbcTemplate.queryForObject(
+                "select status from stock_reservation where reference = ? and product_id = ?", String.class, reference, KEYBOARD
+        )).isEqualTo("RESERVED");
+    }
+
+    @Test
+    void confirmingAReleasedReservationConflicts() {
+        var reference = reserve();
+        service.releaseReservation(reference);
+        service.releaseReservation(reference);
+
+        assertThatThrownBy(() -> service.confirmReservation(reference)).isInstanceOf(ReservationConflictException.class);
+        assertThatThrownBy(() -> {
+            var confirmed = reserve();
+            service.confirmReservation(confirmed);
+            service.releaseReservation(confirmed);
+        }).isInstanceOf(ReservationConflictException.class);
+        assertThat(quantity(KEYBOARD)).isEqualTo(STOCK - 1d);
+    }
+
+    @Test
+    void confirmsRacingTheExpirySweeperSettleEveryReservationOneWay() throws Exception {
+        var references = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            references.add(reserve());
+        }
+        // Every reservation expires within the next 300 ms, while confirms and the sweeper run
+        jdbcTemplate.update("""
+                update stock_reservation r
+                set expires_at = localtimestamp + (abs(hashtext(r.reference)) % 300) * interval '1 millisecond'
+                """);
+        Collections.shuffle(references);
+
+        var confirmed = new ConcurrentLinkedQueue<String>();
+        var done = new AtomicBoolean();
+        try (var executor = Executors.newFixedThreadPool(9)) {
+            var sweeper = executor.submit(() -> {
+                while (!done.get()) {
+                    service.expireReservations();
+                }
+            });
+            var confirmers = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < 8; thread++) {
+                var slice = references.subList(thread * 25, (thread + 1) * 25);
+                confirmers.add(executor.submit(() -> slice.forEach(reference -> {
+                    try {
+                        service.confirmReservation(reference);
+                        confirmed.add(reference);
+                    } catch (ReservationExpiredException e) {
+                        // lost the race against the sweeper
+                    }
+                })));
+            }
+            for (var confirmer : confirmers) {
+                confirmer.get(1, TimeUnit.MINUTES);
+            }
+            Thread.sleep(300);
+            done.set(true);
+            sweeper.get(1, TimeUnit.MINUTES);
+        }
+        service.expireReservations();
+
+        for (var reference : references) {
+            assertThat(statuses(reference))
+                    .as("lines of %s", reference)
+                    .containsExactly(confirmed.contains(reference) ? "CONFIRMED" : "EXPIRED");
+        }
+        // Confirmed stock stays sold, expired stock is restocked exactly once
+        assertThat(quantity(KEYBOARD)).isEqualTo(STOCK - (double) confirmed.size());
+        assertThat(quantity(MOUSE)).isEqualTo(STOCK - 2d * confirmed.size());
+    }
+
+    private String reserve() {
+        return service.reserveProducts(List.of(
+                new ProductPurchaseRequest(KEYBOARD, 1),
+                new ProductPurchaseRequest(MOUSE, 2)
+        )).reference();
+    }
+
+    private void expireNow(String reference) {
+        jdbcTemplate.update("update stock_reservation set expires_at = localtimestamp - interval '1 second' where reference = ?", reference);
+    }
+
+    private List<String> statuses(String reference) {
+        return jdbcTemplate.queryForList(
+                "select distinct status from stock_reservation where reference = ?", String.class, reference);
+    }
+
+    private double quantity(int productId) {
+        return jdbcTemplate.queryForObject("select available_quantity from product where id = ?", Double.class, productId);
+    }
+}
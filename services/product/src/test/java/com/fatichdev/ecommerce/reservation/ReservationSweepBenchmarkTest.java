@@ -0,0 +1,186 @@
+package com.fatichdev.ecommerce.reservation;
+
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.inventory.HotSkuInventory;
+import com.fatichdev.ecommerce.product.ProductMapper;
+import com.fatichdev.ecommerce.product.ProductPurchaseRequest;
+import com.fatichdev.ecommerce.product.ProductService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reserves and confirms stock next to a million and a half open reservation lines, first alone and then while the
+ * expiry sweep releases the ones falling due, and reports the latency of both and the rate of the sweep.
+ */
+@DataJpaTest(properties = {"spring.cloud.config.enabled=false", "spring.jpa.show-sql=false"})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({ReservationService.class, ProductService.class, ProductMapper.class, ReservationSweepBenchmarkTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class ReservationSweepBenchmarkTest {
+
+    private static final int RESERVATIONS = 500_000;
+    private static final int LINES_PER_RESERVATION = 3;
+    // Seeded rows start above anything the id sequence hands out during the run
+    private static final int SEEDED_ID_OFFSET = 100_000_000;
+    private static final int FIRST_PRODUCT = 93_001;
+    private static final int PRODUCTS = 100;
+    private static final int WARM_UP = 300;
+    private static final int ITERATIONS = 500;
+
+    @TestConfiguration
+    @EnableConfigurationProperties(ReservationProperties.class)
+    static class Config {
+
+        /**
+         * The embedded database hands out a new connection, and so a new server process, per request; pool them
+         * as Hikari does in the service.
+         */
+        @Bean
+        static BeanPostProcessor pooledDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof HikariDataSource)) {
+                        var pool = new HikariDataSource();
+                        pool.setDataSource(dataSource);
+                        return pool;
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @MockBean
+    private HotSkuInventory hotSkuInventory;
+    @MockBean
+    private ProductCache productCache;
+
+    @Autowired
+    private ReservationService service;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("delete from stock_reservation");
+        jdbcTemplate.update("delete from product where id between ? and ?", FIRST_PRODUCT, FIRST_PRODUCT + PRODUCTS - 1);
+        jdbcTemplate.update("insert into category (id, name, description) values (93001, 'Sweep', 'Sweep') on conflict do nothing");
+        jdbcTemplate.update("""
+                insert into product (id, name, description, available_quantity, price, category_id)
+                select id, 'p', 'p', 1000000000, 1, 93001 from generate_series(?, ?) id
+                """, FIRST_PRODUCT, FIRST_PRODUCT + PRODUCTS - 1);
+        // A tenth of the reservations is already due and the rest falls due over the next hour, a second's worth at a time
+        jdbcTemplate.update("""
+                insert into stock_reservation (id, reference, product_id, quantity, status, expires_at)
+                select ? + r * ? + l, 'seed-' || r, ? + (r + l) % ?, 1, 'RESERVED',
+                       localtimestamp + make_interval(secs => (r % 4000) - 400)
+                from generate_series(0, ? - 1) r, generate_series(0, ? - 1) l
+                """, SEEDED_ID_OFFSET, LINES_PER_RESERVATION, FIRST_PRODUCT, PRODUCTS, RESERVATIONS, LINES_PER_RESERVATION);
+        // Vacuumed up front, so autovacuum does not compete with the measurements
+        jdbcTemplate.execute("vacuum analyze stock_reservation");
+        jdbcTemplate.execute("vacuum analyze product");
+    }
+
+    @Test
+    void reservingAndConfirmingKeepsUpWithTheSweep() throws Exception {
+        var alone = measure();
+
+        var swept = new long[1];
+        var sweepNanos = new long[1];
+        var done = new AtomicBoolean();
+        long[] duringSweep;
+        try (var executor = Executors.newSingleThreadExecutor()) {
+            var sweeper = executor.submit(() -> {
+                var start = System.nanoTime();
+                while (!done.get()) {
+                    service.expireReservations();
+                }
+                sweepNanos[0] = System.nanoTime() - start;
+                swept[0] = countLines("EXPIRED");
+            });
+            duringSweep = measure();
+            done.set(true);
+            sweeper.get(5, TimeUnit.MINUTES);
+        }
+
+        log.info("{} reservations of {} lines open: reserve and confirm p50 {} ms, p99 {} ms alone | p50 {} ms, p99 {} ms while the sweep released {} lines ({} lines/s)",
+                RESERVATIONS, LINES_PER_RESERVATION,
+                millis(percentile(alone, 0.5)), millis(percentile(alone, 0.99)),
+                millis(percentile(duringSweep, 0.5)), millis(percentile(duringSweep, 0.99)),
+                swept[0], swept[0] * 1_000_000_000L / Math.max(1, sweepNanos[0]));
+
+        // Latencies are reported, not asserted: they depend on the machine
+        assertThat(swept[0]).isGreaterThanOrEqualTo(RESERVATIONS / 10L * LINES_PER_RESERVATION);
+        assertThat(countLines("CONFIRMED")).isEqualTo(2L * (WARM_UP + ITERATIONS) * 2);
+        // The sweep finds due reservations through the partial index, not by scanning every row
+        assertThat(jdbcTemplate.queryForList("""
+                        explain select id from stock_reservation
+                        where status = 'RESERVED' and expires_at <= localtimestamp
+                        order by expires_at limit 10000 for update skip locked
+                        """, String.class))
+                .anySatisfy(line -> assertThat(line).contains("idx_stock_reservation_expires_at"));
+    }
+
+    /**
+     * Reserves two products and confirms the reservation, over and over, and returns each round's latency.
+     */
+    private long[] measure() {
+        for (int i = 0; i < WARM_UP; i++) {
+            reserveAndConfirm(i);
+        }
+        var latencies = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            var start = System.nanoTime();
+            reserveAndConfirm(i);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private void reserveAndConfirm(int i) {
+        var reference = service.reserveProducts(List.of(
+                new ProductPurchaseRequest(FIRST_PRODUCT + i % PRODUCTS, 1),
+                new ProductPurchaseRequest(FIRST_PRODUCT + (i + 1) % PRODUCTS, 1)
+        )).reference();
+        service.confirmReservation(reference);
+    }
+
+    private long countLines(String status) {
+        return jdbcTemplate.queryForObject("select count(*) from stock_reservation where status = ?", Long.class, status);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+
+    private static String millis(long nanos) {
+        return "%.2f".formatted(nanos / 1e6);
+    }
+}
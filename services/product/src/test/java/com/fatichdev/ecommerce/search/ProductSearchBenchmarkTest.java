@@ -0,0 +1,162 @@
+package com.fatichdev.ecommerce.search;
+
+import com.fatichdev.ecommerce.cache.CacheConfig;
+import com.fatichdev.ecommerce.cache.LocalProductCacheTier;
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.cache.ProductCacheProperties;
+import com.fatichdev.ecommerce.inventory.HotSkuInventory;
+import com.fatichdev.ecommerce.product.ProductMapper;
+import com.fatichdev.ecommerce.product.ProductRepository;
+import com.fatichdev.ecommerce.product.ProductService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Indexes a catalogue of a million products and reports how long searches take, and how long a product renamed on
+ * this replica takes to become searchable under its new name through the local cache tier's evictions. Every
+ * query term is shared by a sixteenth of the catalogue, so each search scores tens of thousands of products.
+ */
+@DataJpaTest(properties = {"spring.cloud.config.enabled=false", "spring.jpa.show-sql=false"})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class ProductSearchBenchmarkTest {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int FIRST_PRODUCT = 1_000_001;
+    private static final int FIRST_CATEGORY = 95_001;
+    private static final int CATEGORIES = 20;
+    private static final List<String> ADJECTIVES = List.of("oak", "brass", "copper", "walnut", "linen", "velvet",
+            "marble", "steel", "bamboo", "leather", "ceramic", "glass", "wool", "cotton", "pine", "birch");
+    private static final List<String> NOUNS = List.of("lamp", "desk", "chair", "table", "shelf", "stool", "sofa",
+            "bench", "mirror", "rug", "vase", "clock", "cabinet", "dresser", "bed", "armchair");
+    private static final int WARM_UP = 50;
+    private static final int ITERATIONS = 100;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void searchesAndLocalChangesStayFastOverAMillionProducts() {
+        seed();
+        var productMapper = new ProductMapper();
+        var cache = new ProductCache(new CacheConfig().cacheManager(
+                new ProductCacheProperties(Duration.ofMinutes(10), 10_000, Duration.ofMinutes(10), 10_000, false)),
+                new LocalProductCacheTier());
+        ReflectionTestUtils.invokeMethod(cache, "init");
+        var productService = new ProductService(productRepository, productMapper, mock(HotSkuInventory.class), cache);
+        ReflectionTestUtils.setField(productService, "maxPageSize", 5_000);
+        var index = new ProductSearchIndex(new SearchProperties(20, 4,
+                List.of(new BigDecimal("50"), new BigDecimal("100"), new BigDecimal("500"), new BigDecimal("1000"))));
+        var service = new ProductSearchService(productService, productRepository, productMapper, index, cache);
+        service.subscribe();
+
+        var start = System.nanoTime();
+        service.buildIndex();
+        var buildMillis = (System.nanoTime() - start) / 1_000_000;
+        assertThat(index.size()).isGreaterThanOrEqualTo(PRODUCTS);
+        System.gc();
+        var heapMegabytes = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20;
+
+        var exact = measure(() -> service.search("walnut armchair", null, null, null, 20));
+        var prefix = measure(() -> service.search("walnu", null, null, null, 20));
+        var fuzzy = measure(() -> service.search("walnit", null, null, null, 20));
+        var filtered = measure(() -> service.search("walnut", FIRST_CATEGORY + 3, null, new BigDecimal("100"), 20));
+        var renamed = new int[1];
+        var refresh = measure(() -> {
+            // A rename committed on this replica: the eviction alone has to bring the new name into the index
+            var productId = FIRST_PRODUCT + ThreadLocalRandom.current().nextInt(PRODUCTS);
+            var name = "renamed" + renamed[0]++;
+            jdbcTemplate.update("update product set name = ? where id = ?", name, productId);
+            cache.evictProducts(List.of(productId));
+            var hits = service.search(name, null, null, null, 20).hits();
+            assertThat(hits).extracting(ProductSearchHit::id).containsExactly(productId);
+            return hits;
+        });
+
+        log.info("{} products indexed in {} ms, {} MB of heap in use; search p50/p99: exact {} | prefix {} | fuzzy {} | category and price filtered {} | rename to searchable {}",
+                index.size(), buildMillis, heapMegabytes, exact, prefix, fuzzy, filtered, refresh);
+    }
+
+    private void seed() {
+        jdbcTemplate.update("""
+                insert into category (id, name, description)
+                select id, 'Category ' || id, 'Furniture' from generate_series(?, ?) id
+                on conflict do nothing
+                """, FIRST_CATEGORY, FIRST_CATEGORY + CATEGORIES - 1);
+        jdbcTemplate.update("delete from product where id >= ?", FIRST_PRODUCT);
+        jdbcTemplate.update("""
+                insert into product (id, name, description, available_quantity, price, category_id)
+                select i,
+                       (?::text[])[1 + i % 16] || ' ' || (?::text[])[1 + (i / 16) % 16],
+                       'Handmade ' || (?::text[])[1 + (i / 256) % 16] || ' finish',
+                       100, 1 + (i % 1500), ? + i % ?
+                from generate_series(?, ? - 1) i
+                """,
+                ADJECTIVES.toArray(String[]::new), NOUNS.toArray(String[]::new), ADJECTIVES.toArray(String[]::new),
+                FIRST_CATEGORY, CATEGORIES, FIRST_PRODUCT, FIRST_PRODUCT + PRODUCTS);
+        jdbcTemplate.execute("vacuum analyze product");
+    }
+
+    private static String measure(Supplier<?> search) {
+        for (int i = 0; i < WARM_UP; i++) {
+            search.get();
+        }
+        var latencies = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            var start = System.nanoTime();
+            assertThat(search.get()).isNotNull();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return "%.2f/%.2f ms".formatted(latencies[ITERATIONS / 2] / 1e6, latencies[ITERATIONS * 99 / 100] / 1e6);
+    }
+
+    /**
+     * The embedded database hands out a new connection, and so a new server process, per request; pool them as
+     * Hikari does in the service.
+     */
+    @TestConfiguration
+    static class PooledConnections {
+
+        @Bean
+        static BeanPostProcessor pooledDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof HikariDataSource)) {
+                        var pool = new HikariDataSource();
+                        pool.setDataSource(dataSource);
+                        return pool;
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.fatichdev.ecommerce.search;
+
+import com.fatichdev.ecommerce.cache.CacheConfig;
+import com.fatichdev.ecommerce.cache.ProductCache;
+import com.fatichdev.ecommerce.cache.ProductCacheProperties;
+import com.fatichdev.ecommerce.cache.ProductCacheTier;
+import com.fatichdev.ecommerce.inventory.HotSkuInventory;
+import com.fatichdev.ecommerce.product.ProductMapper;
+import com.fatichdev.ecommerce.product.ProductRepository;
+import com.fatichdev.ecommerce.product.ProductService;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {"spring.cloud.config.enabled=false", "spring.jpa.show-sql=false"})
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({ProductService.class, ProductMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductSearchServiceTest {
+
+    private static final int LAMP = 93_001;
+    private static final int DESK = 93_002;
+
+    @MockBean
+    private HotSkuInventory hotSkuInventory;
+    @MockBean
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ChangeFeed changeFeed = new ChangeFeed();
+    private ProductCache cache;
+    private ProductSearchIndex index;
+    private ProductSearchService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from product where id in (?, ?)", LAMP, DESK);
+        jdbcTemplate.update("insert into category (id, name, description) values (93001, 'Furniture', 'Furniture') on conflict do nothing");
+        insert(LAMP, "Brass lamp");
+        var cacheProperties = new ProductCacheProperties(Duration.ofMinutes(10), 100, Duration.ofMinutes(10), 100, false);
+        cache = new ProductCache(new CacheConfig().cacheManager(cacheProperties), changeFeed);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+        index = new ProductSearchIndex(new SearchProperties(100, 4, List.of(BigDecimal.TEN)));
+        service = new ProductSearchService(productService, productRepository, productMapper, index, cache);
+        service.subscribe();
+    }
+
+    @Test
+    void staysOutOfServiceUntilTheFirstBuildFinishes() {
+        var health = new SearchIndexHealthIndicator(index);
+        assertThat(health.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        service.buildIndex();
+
+        assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(hitIds("brass")).containsExactly(LAMP);
+    }
+
+    @Test
+    void changesFromOtherReplicasAreAppliedFromTheFeed() {
+        service.buildIndex();
+
+        // Another replica renames the lamp, creates a desk and announces both
+        jdbcTemplate.update("update product set name = 'Copper lamp' where id = ?", LAMP);
+        insert(DESK, "Oak desk");
+        changeFeed.publish(List.of(LAMP, DESK), true);
+
+        assertThat(hitIds("brass")).isEmpty();
+        assertThat(hitIds("copper")).containsExactly(LAMP);
+        assertThat(hitIds("oak")).containsExactly(DESK);
+
+        jdbcTemplate.update("delete from product where id = ?", DESK);
+        changeFeed.publish(List.of(DESK), true);
+
+        assertThat(hitIds("oak")).isEmpty();
+    }
+
+    @Test
+    void changesMadeOnThisReplicaAreAppliedWhateverTheCacheTier() {
+        service.buildIndex();
+
+        // The change feed publishes nothing back, as with the local tier: the eviction alone must refresh the index
+        jdbcTemplate.update("update product set name = 'Copper lamp' where id = ?", LAMP);
+        cache.evictProducts(List.of(LAMP));
+
+        assertThat(hitIds("brass")).isEmpty();
+        assertThat(hitIds("copper")).containsExactly(LAMP);
+    }
+
+    @Test
+    void quantityOnlyChangesDoNotTouchTheIndex() {
+        service.buildIndex();
+
+        jdbcTemplate.update("update product set name = 'Copper lamp' where id = ?", LAMP);
+        changeFeed.publish(List.of(LAMP), false);
+
+        assertThat(hitIds("brass")).containsExactly(LAMP);
+    }
+
+    @Test
+    void changesAnnouncedDuringTheBuildAreAppliedAfterIt() {
+        insert(DESK, "Oak desk");
+        changeFeed.publish(List.of(DESK), true);
+        assertThat(hitIds("oak")).isEmpty();
+
+        jdbcTemplate.update("update product set name = 'Pine desk' where id = ?", DESK);
+        service.buildIndex();
+
+        assertThat(hitIds("oak")).isEmpty();
+        assertThat(hitIds("pine")).containsExactly(DESK);
+    }
+
+    private void insert(int id, String name) {
+        jdbcTemplate.update(
+                "insert into product (id, name, description, available_quantity, price, category_id) values (?, ?, 'x', 1, 5, 93001)",
+                id, name
+        );
+    }
+
+    private List<Integer> hitIds(String query) {
+        return index.search(query, 93_001, null, null, 10).hits().stream().map(ProductSearchHit::id).toList();
+    }
+
+    private static final class ChangeFeed implements ProductCacheTier {
+
+        private final List<BiConsumer<Collection<Integer>, Boolean>> listeners = new ArrayList<>();
+
+        @Override
+        public void publishEviction(Collection<Integer> productIds, boolean details) {
+        }
+
+        @Override
+        public void onEviction(BiConsumer<Collection<Integer>, Boolean> listener) {
+            listeners.add(listener);
+        }
+
+        void publish(Collection<Integer> productIds, boolean details) {
+            listeners.forEach(listener -> listener.accept(productIds, details));
+        }
+    }
+}